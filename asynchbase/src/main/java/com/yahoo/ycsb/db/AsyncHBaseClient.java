@@ -35,11 +35,15 @@ import org.hbase.async.KeyValue;
 import org.hbase.async.PutRequest;
 import org.hbase.async.Scanner;
 
+import com.yahoo.ycsb.AsyncWindow;
 import com.yahoo.ycsb.ByteArrayByteIterator;
 import com.yahoo.ycsb.ByteIterator;
 import com.yahoo.ycsb.DBException;
 import com.yahoo.ycsb.Status;
 
+import com.stumbleupon.async.Callback;
+import com.stumbleupon.async.Deferred;
+
 import static com.yahoo.ycsb.workloads.CoreWorkload.TABLENAME_PROPERTY;
 import static com.yahoo.ycsb.workloads.CoreWorkload.TABLENAME_PROPERTY_DEFAULT;
 
@@ -49,6 +53,13 @@ import static com.yahoo.ycsb.workloads.CoreWorkload.TABLENAME_PROPERTY_DEFAULT;
  * This client provides a subset of the main HBase client and uses a completely
  * asynchronous pipeline for all calls. It is particularly useful for write heavy
  * workloads. It is also compatible with all production versions of HBase. 
+ * 
+ * By default reads wait for their results. With maxinflight set, reads, puts
+ * and deletes return as soon as they are sent, with at most maxinflight of them
+ * outstanding per thread, so a few threads can keep many requests in flight.
+ * Buffered writes also return once sent. Either way, each such operation's
+ * latency until its Deferred fires, and its status, are measured as op-ASYNC,
+ * e.g. READ-ASYNC, by an {@link AsyncWindow}.
  */
 public class AsyncHBaseClient extends com.yahoo.ycsb.DB {
   public static final Charset UTF8_CHARSET = Charset.forName("UTF8");
@@ -59,6 +70,8 @@ public class AsyncHBaseClient extends com.yahoo.ycsb.DB {
   private static final String COLUMN_FAMILY_PROPERTY = "columnfamily";
   private static final String JOIN_TIMEOUT_PROPERTY = "jointimeout";
   private static final String JOIN_TIMEOUT_PROPERTY_DEFAULT = "30000";
+  private static final String MAX_IN_FLIGHT_PROPERTY = "maxinflight";
+  private static final String MAX_IN_FLIGHT_PROPERTY_DEFAULT = "0";
   
   /** Mutex for instantiating a single instance of the client. */
   private static final Object MUTEX = new Object();
@@ -93,6 +106,19 @@ public class AsyncHBaseClient extends com.yahoo.ycsb.DB {
    */
   private boolean clientSideBuffering = false;
   
+  /**
+   * The most operations of this thread outstanding at a time when they
+   * complete asynchronously, or 0 for reads and unbuffered writes to wait for
+   * their results.
+   */
+  private int maxInFlight = 0;
+  
+  /**
+   * The window of operations completed asynchronously, bounded by
+   * maxInFlight if set, or null if operations wait for their results.
+   */
+  private AsyncWindow window = null;
+  
   @Override
   public void init() throws DBException {
     if (getProperties().getProperty(CLIENT_SIDE_BUFFERING_PROPERTY, "false")
@@ -118,6 +144,12 @@ public class AsyncHBaseClient extends com.yahoo.ycsb.DB {
     joinTimeout = Integer.parseInt(getProperties().getProperty(
         JOIN_TIMEOUT_PROPERTY, JOIN_TIMEOUT_PROPERTY_DEFAULT));
     
+    maxInFlight = Integer.parseInt(getProperties().getProperty(
+        MAX_IN_FLIGHT_PROPERTY, MAX_IN_FLIGHT_PROPERTY_DEFAULT));
+    if (maxInFlight > 0 || clientSideBuffering) {
+      window = new AsyncWindow(maxInFlight, joinTimeout);
+    }
+    
     final boolean prefetchMeta = getProperties()
         .getProperty(PREFETCH_META_PROPERTY, "false")
         .toLowerCase().equals("true") ? true : false;
@@ -178,6 +210,21 @@ public class AsyncHBaseClient extends com.yahoo.ycsb.DB {
   
   @Override
   public void cleanup() throws DBException {
+    // Wait for this thread's outstanding operations so they are measured.
+    if (clientSideBuffering && client != null) {
+      try {
+        client.flush().join(joinTimeout);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } catch (Exception e) {
+        System.err.println("Failed to flush the AsyncHBase client: "
+            + e.getMessage());
+      }
+    }
+    if (window != null) {
+      window.drain();
+    }
+    
     synchronized (MUTEX) {
       --threadCount;
       if (client != null && threadCount < 1) {
@@ -213,6 +260,12 @@ public class AsyncHBaseClient extends com.yahoo.ycsb.DB {
         System.out.println("Doing read for key: " + key);
       }
       
+      if (maxInFlight > 0) {
+        // The values are not returned, only measured when they arrive.
+        final long start = window.acquire();
+        return complete("READ", send(get), start);
+      }
+      
       final ArrayList<KeyValue> row = client.get(get).join(joinTimeout);
       if (row == null || row.isEmpty()) {
         return Status.NOT_FOUND;
@@ -327,20 +380,22 @@ public class AsyncHBaseClient extends com.yahoo.ycsb.DB {
     }
     if (!clientSideBuffering) {
       put.setBufferable(false);
-      try {
-        client.put(put).join(joinTimeout);
-      } catch (InterruptedException e) {
-        System.err.println("Thread interrupted");
-        Thread.currentThread().interrupt();
-      } catch (Exception e) {
-        System.err.println("Failure reading from row with key " + key + 
-            ": " + e.getMessage());
-        return Status.ERROR;
+    }
+    try {
+      if (clientSideBuffering || maxInFlight > 0) {
+        // hooray! Asynchronous write, measured by a callback when it completes
+        final long start = window.acquire();
+        return complete("UPDATE", send(put), start);
       }
-    } else {
-      // hooray! Asynchronous write. But without a callback and an async
-      // YCSB call we don't know whether it succeeded or not
-      client.put(put);
+      client.put(put).join(joinTimeout);
+    } catch (InterruptedException e) {
+      System.err.println("Thread interrupted");
+      Thread.currentThread().interrupt();
+      return Status.ERROR;
+    } catch (Exception e) {
+      System.err.println("Failure reading from row with key " + key + 
+          ": " + e.getMessage());
+      return Status.ERROR;
     }
     
     return Status.OK;
@@ -367,24 +422,72 @@ public class AsyncHBaseClient extends com.yahoo.ycsb.DB {
     }
     if (!clientSideBuffering) {
       delete.setBufferable(false);
-      try {
-        client.delete(delete).join(joinTimeout);
-      } catch (InterruptedException e) {
-        System.err.println("Thread interrupted");
-        Thread.currentThread().interrupt();
-      } catch (Exception e) {
-        System.err.println("Failure reading from row with key " + key + 
-            ": " + e.getMessage());
-        return Status.ERROR;
+    }
+    try {
+      if (clientSideBuffering || maxInFlight > 0) {
+        // hooray! Asynchronous write, measured by a callback when it completes
+        final long start = window.acquire();
+        return complete("DELETE", send(delete), start);
       }
-    } else {
-      // hooray! Asynchronous write. But without a callback and an async
-      // YCSB call we don't know whether it succeeded or not
-      client.delete(delete);
+      client.delete(delete).join(joinTimeout);
+    } catch (InterruptedException e) {
+      System.err.println("Thread interrupted");
+      Thread.currentThread().interrupt();
+      return Status.ERROR;
+    } catch (Exception e) {
+      System.err.println("Failure reading from row with key " + key + 
+          ": " + e.getMessage());
+      return Status.ERROR;
     }
     return Status.OK;
   }
 
+  /**
+   * Sends a request, giving back its place in the window if it cannot be sent.
+   */
+  private Deferred<?> send(final Object request) {
+    try {
+      if (request instanceof GetRequest) {
+        return client.get((GetRequest) request);
+      } else if (request instanceof PutRequest) {
+        return client.put((PutRequest) request);
+      }
+      return client.delete((DeleteRequest) request);
+    } catch (RuntimeException e) {
+      window.abandon();
+      throw e;
+    }
+  }
+  
+  /**
+   * Measures an operation as op-ASYNC when its Deferred fires: ERROR if it
+   * failed, NOT_FOUND if it read nothing, OK otherwise.
+   * @return BATCHED_OK, since the operation has only been sent.
+   */
+  private <T> Status complete(final String op, final Deferred<T> deferred,
+      final long start) {
+    deferred.addBoth(new Callback<Object, T>() {
+      @Override
+      public Object call(final T arg) {
+        final Status status;
+        if (arg instanceof Exception) {
+          if (debug) {
+            System.err.println("Failure of " + op + ": "
+                + ((Exception) arg).getMessage());
+          }
+          status = Status.ERROR;
+        } else if (arg instanceof ArrayList && ((ArrayList<?>) arg).isEmpty()) {
+          status = Status.NOT_FOUND;
+        } else {
+          status = Status.OK;
+        }
+        window.complete(op, start, status);
+        return arg;
+      }
+    });
+    return Status.BATCHED_OK;
+  }
+  
   /**
    * Little helper to set the table byte array. If it's different than the last
    * table we reset the byte array. Otherwise we just use the existing array.
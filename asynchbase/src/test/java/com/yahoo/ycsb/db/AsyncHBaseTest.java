@@ -28,6 +28,7 @@ import com.yahoo.ycsb.ByteIterator;
 import com.yahoo.ycsb.Status;
 import com.yahoo.ycsb.StringByteIterator;
 import com.yahoo.ycsb.measurements.Measurements;
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
 import com.yahoo.ycsb.workloads.CoreWorkload;
 
 import org.apache.hadoop.hbase.HBaseTestingUtility;
@@ -48,6 +49,7 @@ import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Vector;
 
@@ -205,6 +207,60 @@ public class AsyncHBaseTest {
     }
   }
 
+  @Test
+  public void testWindowIsDrainedOnCleanup() throws Exception {
+    final Properties p = new Properties();
+    p.setProperty("columnfamily", COLUMN_FAMILY);
+    p.setProperty("hbase.zookeeper.quorum",
+        "127.0.0.1:" + testingUtil.getZkCluster().getClientPort());
+    p.setProperty("maxinflight", "2");
+    final AsyncHBaseClient windowed = new AsyncHBaseClient();
+    windowed.setProperties(p);
+    windowed.init();
+
+    final int n = 5;
+    for (int i = 0; i < n; i++) {
+      final HashMap<String, String> input = new HashMap<String, String>();
+      input.put("column1", "value" + i);
+      assertEquals(Status.BATCHED_OK, windowed.insert(tableName, "key" + i,
+          StringByteIterator.getByteIteratorMap(input)));
+    }
+    assertEquals(Status.BATCHED_OK, windowed.read(tableName, "missing", null,
+        new HashMap<String, ByteIterator>()));
+    windowed.cleanup();
+
+    // the writes completed before cleanup returned, and each was measured
+    for (int i = 0; i < n; i++) {
+      final Result result = this.table.get(new Get(Bytes.toBytes("key" + i)));
+      assertEquals("value" + i, new String(result.getValue(
+          Bytes.toBytes(COLUMN_FAMILY), Bytes.toBytes("column1"))));
+    }
+    final Map<String, Number> values = new HashMap<String, Number>();
+    Measurements.getMeasurements().exportMeasurements(new MeasurementsExporter() {
+      @Override
+      public void write(String metric, String measurement, int i) {
+        values.put(metric + ":" + measurement, i);
+      }
+
+      @Override
+      public void write(String metric, String measurement, long i) {
+        values.put(metric + ":" + measurement, i);
+      }
+
+      @Override
+      public void write(String metric, String measurement, double d) {
+        values.put(metric + ":" + measurement, d);
+      }
+
+      @Override
+      public void close() {
+      }
+    });
+    assertEquals(n, values.get("UPDATE-ASYNC:Operations").intValue());
+    assertEquals(n, values.get("UPDATE-ASYNC:Return=OK").intValue());
+    assertEquals(1, values.get("READ-ASYNC:Return=NOT_FOUND").intValue());
+  }
+
   @Test
   @Ignore("Not yet implemented")
   public void testDelete() {
@@ -17,17 +17,24 @@
  */
 package com.yahoo.ycsb.db;
 
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.TimeoutException;
 
 import com.yahoo.ycsb.ByteIterator;
 import com.yahoo.ycsb.DB;
 import com.yahoo.ycsb.DBException;
+import com.yahoo.ycsb.KeyIndex;
 import com.yahoo.ycsb.Status;
 import com.yahoo.ycsb.StringByteIterator;
 
@@ -35,7 +42,11 @@ import beaker.client.Client;
 import beaker.server.protobuf.Revision;
 
 /**
- * A Caustic, YCSB client.
+ * A Beaker, YCSB client.
+ *
+ * <p>All the client threads share a single connection, created by the first to initialize and closed by the last
+ * to clean up, through a {@link BeakerPipeline} that bounds the requests outstanding on it and coalesces concurrent
+ * reads into multi-key gets.
  *
  * @author ashwin153
  */
@@ -45,13 +56,31 @@ public class BeakerClient extends DB {
   private static final String BEAKER_HOST = "beaker.host";
   private static final String BEAKER_PORT = "beaker.port";
 
+  // The most requests outstanding on the shared connection.
+  private static final String BEAKER_WINDOW = "beaker.window";
+  private static final String BEAKER_WINDOW_DEFAULT = "64";
+
+  // Whether scans are served from the keys this process has written or read, since Beaker cannot list its keys.
+  private static final String BEAKER_SCAN = "beaker.scan";
+  private static final String BEAKER_SCAN_DEFAULT = "false";
+
   // By default, each key has 10 possible fields.
-  private static final Set<String> DEFAULT_FIELDS = new HashSet(Arrays.asList(
+  private static final Set<String> DEFAULT_FIELDS = new HashSet<>(Arrays.asList(
       "FIELD0", "FIELD1", "FIELD2", "FIELD3", "FIELD4",
       "FIELD5", "FIELD6", "FIELD7", "FIELD8", "FIELD9"
   ));
 
-  private Client client;
+  // The state shared by all the clients, guarded by INIT_LOCK and released when the last client cleans up.
+  private static final Object INIT_LOCK = new Object();
+  private static int clients = 0;
+  private static BeakerStore store;
+  private static BeakerPipeline pipeline;
+
+  // The keys of the records of each table written or read so far when scans are enabled.
+  private static final KeyIndex INDEX = new KeyIndex();
+
+  private boolean initialized;
+  private boolean scans;
 
   /**
    * Initialize any state for this DB. Called once per DB instance; there is one DB instance per 
@@ -59,20 +88,84 @@ public class BeakerClient extends DB {
    */
   @Override
   public void init() throws DBException {
+    if (this.initialized) {
+      throw new DBException("Client is already initialized.");
+    }
+
     Properties properties = getProperties();
-    this.client = Client.apply(
+    this.scans = Boolean.parseBoolean(properties.getProperty(BEAKER_SCAN, BEAKER_SCAN_DEFAULT));
+    synchronized (INIT_LOCK) {
+      if (clients == 0) {
+        try {
+          store = connect(properties);
+          pipeline = new BeakerPipeline(store,
+              Integer.parseInt(properties.getProperty(BEAKER_WINDOW, BEAKER_WINDOW_DEFAULT)));
+          INDEX.clear();
+        } catch (Exception e) {
+          store = null;
+          throw new DBException(e);
+        }
+      }
+      clients++;
+    }
+    this.initialized = true;
+  }
+
+  /**
+   * Connects to the Beaker instance. Tests override this to run against a stand-in.
+   */
+  BeakerStore connect(Properties properties) {
+    final Client client = Client.apply(
         properties.getProperty(BEAKER_HOST, "localhost"),
         Integer.parseInt(properties.getProperty(BEAKER_PORT, "9090"))
     );
+
+    return new BeakerStore() {
+      @Override
+      public Map<String, String> get(Set<String> names) throws Exception {
+        Map<String, Revision> revisions = client.get(names).get();
+        Map<String, String> values = new HashMap<>(revisions.size() * 2);
+        for (Map.Entry<String, Revision> entry : revisions.entrySet()) {
+          values.put(entry.getKey(), entry.getValue().value());
+        }
+        return values;
+      }
+
+      @Override
+      public void put(Map<String, String> changes) throws Exception {
+        client.put(changes).get();
+      }
+
+      @Override
+      public void close() {
+        client.close();
+      }
+    };
   }
 
   /**
    * Cleanup any state for this DB. Called once per DB instance; there is one DB instance per client 
-   * thread.
+   * thread. The last client to clean up closes the connection.
    */
   @Override
   public void cleanup() throws DBException {
-    this.client.close();
+    if (!this.initialized) {
+      return;
+    }
+    this.initialized = false;
+
+    synchronized (INIT_LOCK) {
+      if (--clients == 0) {
+        try {
+          store.close();
+        } catch (Exception e) {
+          throw new DBException(e);
+        } finally {
+          store = null;
+          pipeline = null;
+        }
+      }
+    }
   }
 
   /**
@@ -92,34 +185,25 @@ public class BeakerClient extends DB {
       Set<String> fields, 
       Map<String, ByteIterator> result
   ) {
-    try {
-      // Execute the transaction and parse the result.
-      Set<String> names = new HashSet<>();
-      for (String field : (fields == null) ? DEFAULT_FIELDS : fields) {
-        names.add(table + "$" + key + "$" + field);
-      }
-
-      for (Map.Entry<String, Revision> entry : this.client.get(names).get().entrySet()) {
-        result.put(entry.getKey(), new StringByteIterator(entry.getValue().value()));
-      }
-
-      // Return completion.
-      return Status.OK;
-    } catch (Exception e) {
-      return Status.ERROR;
+    List<Map<String, ByteIterator>> results = new ArrayList<>(1);
+    Status status = batchRead(table, Collections.singletonList(key), fields, results);
+    if (status.isOk()) {
+      result.putAll(results.get(0));
     }
+    return status;
   }
 
   /**
    * Perform a range scan for a set of records in the database. Each field/value pair from the
-   * result will be stored in a HashMap.
+   * result will be stored in a HashMap. The range is taken from the keys this process has written
+   * or read, since Beaker cannot list its keys, so scans are only supported with beaker.scan set.
    *
    * @param table The name of the table.
    * @param startkey The record key of the first record to read.
    * @param recordcount The number of records to read.
    * @param fields The list of fields to read, or null for all of them.
    * @param result A Vector of Maps, in which each Map is a set of field/value pairs for each record.
-   * @return Zero on success, a non-zero error code on error.
+   * @return Zero on success, {@link Status#NOT_IMPLEMENTED} without beaker.scan, a non-zero error code on error.
    */
   @Override
   public Status scan(
@@ -129,7 +213,22 @@ public class BeakerClient extends DB {
       Set<String> fields, 
       Vector<HashMap<String, ByteIterator>> result
   ) {
-    return Status.ERROR;
+    if (!this.scans) {
+      return Status.NOT_IMPLEMENTED;
+    }
+
+    // Find the keys in the range, and then read them with a single multi-key get.
+    List<String> keys = INDEX.range(table, startkey, recordcount);
+    if (keys.isEmpty()) {
+      return Status.OK;
+    }
+
+    List<Map<String, ByteIterator>> records = new ArrayList<>(keys.size());
+    Status status = batchRead(table, keys, fields, records);
+    for (Map<String, ByteIterator> record : records) {
+      result.add(new HashMap<>(record));
+    }
+    return status;
   }
 
   /**
@@ -167,18 +266,154 @@ public class BeakerClient extends DB {
       String key, 
       Map<String, ByteIterator> values
   ) {
-    // Construct the transaction.
-    Map<String, String> updates = new HashMap<>();
-    for (Map.Entry<String, ByteIterator> entry : values.entrySet()) {
-      updates.put(table + "$" + key + "$" + entry.getKey(), entry.getValue().toString());
+    return batchUpdate(table, Collections.singletonList(key), Collections.singletonList(values));
+  }
+
+  /**
+   * Read a batch of records from the database with a single multi-key get.
+   *
+   * @param table The name of the table.
+   * @param keys The record keys of the records to read.
+   * @param fields The list of fields to read, or null for all of them.
+   * @param results A List to which a Map of field/value pairs is appended for each key.
+   * @return Zero on success, a non-zero error code on error.
+   */
+  @Override
+  public Status batchRead(
+      String table,
+      List<String> keys,
+      Set<String> fields,
+      List<Map<String, ByteIterator>> results
+  ) {
+    try {
+      Map<String, String> values = pipeline.get(names(table, keys, fields));
+      collect(table, keys, fields, values, results, this.scans);
+      return Status.OK;
+    } catch (Exception e) {
+      return classify(e);
     }
+  }
 
+  /**
+   * Update a batch of records in the database with a single multi-key put.
+   *
+   * @param table The name of the table.
+   * @param keys The record keys of the records to write.
+   * @param values A List of field/value pairs to update, one Map per key.
+   * @return Zero on success, a non-zero error code on error.
+   */
+  @Override
+  public Status batchUpdate(
+      String table,
+      List<String> keys,
+      List<Map<String, ByteIterator>> values
+  ) {
     try {
-      // Execute the transaction.
-      this.client.put(updates).get();
+      pipeline.put(updates(table, keys, values));
+      if (this.scans) {
+        INDEX.addAll(table, keys);
+      }
       return Status.OK;
     } catch (Exception e) {
-      return Status.ERROR;
+      return classify(e);
+    }
+  }
+
+  /**
+   * Insert a batch of records into the database with a single multi-key put.
+   *
+   * @param table The name of the table.
+   * @param keys The record keys of the records to insert.
+   * @param values A List of field/value pairs to insert, one Map per key.
+   * @return Zero on success, a non-zero error code on error.
+   */
+  @Override
+  public Status batchInsert(
+      String table,
+      List<String> keys,
+      List<Map<String, ByteIterator>> values
+  ) {
+    return batchUpdate(table, keys, values);
+  }
+
+  /**
+   * Classifies a failure by the first of its causes that tells, so that timeouts and an unreachable instance can be
+   * told apart from other errors, and retried. gRPC reports its code at the start of the message.
+   */
+  static Status classify(Throwable e) {
+    for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+      String name = cause.getClass().getSimpleName();
+      String message = String.valueOf(cause.getMessage());
+      if (cause instanceof TimeoutException || cause instanceof SocketTimeoutException
+          || message.startsWith("DEADLINE_EXCEEDED")) {
+        return Status.TIMEOUT;
+      }
+      if (cause instanceof ConnectException || name.startsWith("Status") && message.startsWith("UNAVAILABLE")) {
+        return Status.SERVICE_UNAVAILABLE;
+      }
+    }
+    return Status.ERROR;
+  }
+
+  /**
+   * Returns the names of the fields of all keys.
+   */
+  private static Set<String> names(String table, List<String> keys, Set<String> fields) {
+    Set<String> columns = (fields == null) ? DEFAULT_FIELDS : fields;
+    Set<String> names = new HashSet<>(keys.size() * columns.size() * 2);
+    for (String key : keys) {
+      String prefix = table + "$" + key + "$";
+      for (String field : columns) {
+        names.add(prefix + field);
+      }
+    }
+    return names;
+  }
+
+  /**
+   * Returns the updates to the fields of all keys.
+   */
+  private static Map<String, String> updates(
+      String table,
+      List<String> keys,
+      List<Map<String, ByteIterator>> values
+  ) {
+    Map<String, String> updates = new HashMap<>();
+    for (int i = 0; i < keys.size(); i++) {
+      String prefix = table + "$" + keys.get(i) + "$";
+      for (Map.Entry<String, ByteIterator> entry : values.get(i).entrySet()) {
+        updates.put(prefix + entry.getKey(), entry.getValue().toString());
+      }
+    }
+    return updates;
+  }
+
+  /**
+   * Splits the values of a multi-key get into one Map of field/value pairs per key, keyed by field
+   * name. Deleted fields, which are empty, are left out, and keys with any field are indexed if
+   * the index is kept.
+   */
+  private static void collect(
+      String table,
+      List<String> keys,
+      Set<String> fields,
+      Map<String, String> values,
+      List<Map<String, ByteIterator>> results,
+      boolean indexed
+  ) {
+    for (String key : keys) {
+      String prefix = table + "$" + key + "$";
+      Map<String, ByteIterator> result = new HashMap<>();
+      for (String field : (fields == null) ? DEFAULT_FIELDS : fields) {
+        String value = values.get(prefix + field);
+        if (value != null && !value.isEmpty()) {
+          result.put(field, new StringByteIterator(value));
+        }
+      }
+      if (indexed && !result.isEmpty()) {
+        INDEX.add(table, key);
+      }
+      results.add(result);
     }
   }
 
@@ -192,13 +427,20 @@ public class BeakerClient extends DB {
   @Override
   public Status delete(String table, String key) {
     // Delete all the fields of the key.
-    Map<String, ByteIterator> fields = new HashMap<>();
+    Map<String, String> fields = new HashMap<>();
     for (String field : DEFAULT_FIELDS) {
-      fields.put(field, new StringByteIterator(""));
+      fields.put(table + "$" + key + "$" + field, "");
     }
 
-    // Deletion is equivalent to an insert.
-    return insert(table, key, fields);
+    try {
+      pipeline.put(fields);
+      if (this.scans) {
+        INDEX.remove(table, key);
+      }
+      return Status.OK;
+    } catch (Exception e) {
+      return classify(e);
+    }
   }
 
 }
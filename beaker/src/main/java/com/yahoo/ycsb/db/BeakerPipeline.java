@@ -0,0 +1,159 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License. See accompanying LICENSE file.
+ */
+package com.yahoo.ycsb.db;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+
+/**
+ * Shares a {@link BeakerStore} between threads with at most window requests outstanding at a time. Reads made
+ * while the window is full wait in a queue, and the first of them to get a place in the window sends all the reads
+ * queued so far as a single multi-key get, so under load each round trip serves many threads.
+ */
+final class BeakerPipeline {
+
+  private final BeakerStore store;
+  private final int window;
+  private final Queue<Read> queue = new ArrayDeque<>();
+  private int outstanding = 0;
+  private long gets = 0;
+
+  BeakerPipeline(BeakerStore store, int window) {
+    if (window < 1) {
+      throw new IllegalArgumentException("window must be positive, not " + window);
+    }
+    this.store = store;
+    this.window = window;
+  }
+
+  /**
+   * Returns the values of the given names that exist. The names may be read together with those of other threads,
+   * whose values are then returned as well.
+   */
+  Map<String, String> get(Set<String> names) throws Exception {
+    Read read = new Read(names);
+    List<Read> batch;
+    synchronized (this) {
+      this.queue.add(read);
+      while (!read.taken && this.outstanding >= this.window) {
+        wait();
+      }
+      if (read.taken) {
+        // Another thread is reading these names.
+        while (!read.done) {
+          wait();
+        }
+        return read.result();
+      }
+      batch = new ArrayList<>(this.queue);
+      for (Read queued : batch) {
+        queued.taken = true;
+      }
+      this.queue.clear();
+      this.outstanding++;
+      this.gets++;
+    }
+
+    Map<String, String> values = null;
+    Exception error = null;
+    try {
+      values = this.store.get(union(batch));
+    } catch (Exception e) {
+      error = e;
+    }
+
+    synchronized (this) {
+      for (Read queued : batch) {
+        queued.complete(values, error);
+      }
+      this.outstanding--;
+      notifyAll();
+    }
+    return read.result();
+  }
+
+  /**
+   * Writes all the changes together once there is a place in the window.
+   */
+  void put(Map<String, String> changes) throws Exception {
+    synchronized (this) {
+      while (this.outstanding >= this.window) {
+        wait();
+      }
+      this.outstanding++;
+    }
+    try {
+      this.store.put(changes);
+    } finally {
+      synchronized (this) {
+        this.outstanding--;
+        notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Returns the number of gets sent to the store, which is less than the number of reads when reads coalesce.
+   */
+  synchronized long getGets() {
+    return this.gets;
+  }
+
+  private static Set<String> union(List<Read> batch) {
+    if (batch.size() == 1) {
+      return batch.get(0).names;
+    }
+    Set<String> names = new HashSet<>();
+    for (Read read : batch) {
+      names.addAll(read.names);
+    }
+    return names;
+  }
+
+  /**
+   * A read waiting for, or being served by, a multi-key get. Guarded by the pipeline's monitor.
+   */
+  private static final class Read {
+    private final Set<String> names;
+    private boolean taken;
+    private boolean done;
+    private Map<String, String> values;
+    private Exception error;
+
+    Read(Set<String> names) {
+      this.names = names;
+    }
+
+    void complete(Map<String, String> batchValues, Exception batchError) {
+      this.values = batchValues;
+      this.error = batchError;
+      this.done = true;
+    }
+
+    Map<String, String> result() throws Exception {
+      if (this.error != null) {
+        throw this.error;
+      }
+      return this.values;
+    }
+  }
+
+}
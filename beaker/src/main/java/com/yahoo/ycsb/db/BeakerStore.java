@@ -0,0 +1,38 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License. See accompanying LICENSE file.
+ */
+package com.yahoo.ycsb.db;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The operations {@link BeakerClient} makes against Beaker, so that it can be run against a stand-in.
+ */
+interface BeakerStore {
+
+  /**
+   * Returns the values of the given names that exist.
+   */
+  Map<String, String> get(Set<String> names) throws Exception;
+
+  /**
+   * Writes all the changes together.
+   */
+  void put(Map<String, String> changes) throws Exception;
+
+  void close() throws Exception;
+
+}
@@ -0,0 +1,265 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License. See accompanying LICENSE file.
+ */
+package com.yahoo.ycsb.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.net.ConnectException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.yahoo.ycsb.ByteIterator;
+import com.yahoo.ycsb.DB;
+import com.yahoo.ycsb.DBException;
+import com.yahoo.ycsb.Status;
+import com.yahoo.ycsb.StringByteIterator;
+
+/**
+ * Runs {@link BeakerClient} against an in-process stand-in for Beaker.
+ */
+public class BeakerClientTest {
+
+  private static final String TABLE = "usertable";
+
+  private MemoryStore store;
+  private List<DB> clients;
+
+  @Before
+  public void setUp() {
+    this.store = new MemoryStore();
+    this.clients = new ArrayList<>();
+  }
+
+  @After
+  public void tearDown() throws DBException {
+    for (DB client : this.clients) {
+      client.cleanup();
+    }
+  }
+
+  private DB newClient(String window) throws DBException {
+    return newClient(window, false);
+  }
+
+  private DB newClient(String window, boolean scans) throws DBException {
+    DB client = new BeakerClient() {
+      @Override
+      BeakerStore connect(Properties properties) {
+        return store;
+      }
+    };
+    Properties properties = new Properties();
+    properties.setProperty("beaker.window", window);
+    properties.setProperty("beaker.scan", Boolean.toString(scans));
+    client.setProperties(properties);
+    client.init();
+    this.clients.add(client);
+    return client;
+  }
+
+  private static Map<String, ByteIterator> record(String value) {
+    Map<String, ByteIterator> values = new HashMap<>();
+    values.put("FIELD0", new StringByteIterator(value));
+    values.put("FIELD1", new StringByteIterator(value + "!"));
+    return values;
+  }
+
+  @Test
+  public void testReadKeysResultsByField() throws Exception {
+    DB client = newClient("64");
+    assertEquals(Status.OK, client.insert(TABLE, "user1", record("a")));
+
+    Map<String, ByteIterator> result = new HashMap<>();
+    assertEquals(Status.OK, client.read(TABLE, "user1", null, result));
+    assertEquals(2, result.size());
+    assertEquals("a", result.get("FIELD0").toString());
+    assertEquals("a!", result.get("FIELD1").toString());
+
+    result.clear();
+    assertEquals(Status.OK, client.read(TABLE, "user1", Collections.singleton("FIELD1"), result));
+    assertEquals(Collections.singleton("FIELD1"), result.keySet());
+  }
+
+  @Test
+  public void testScanAndDelete() throws Exception {
+    DB client = newClient("64", true);
+    for (int i = 0; i < 5; i++) {
+      assertEquals(Status.OK, client.insert(TABLE, "user" + i, record(Integer.toString(i))));
+    }
+    assertEquals(Status.OK, client.delete(TABLE, "user2"));
+
+    Vector<HashMap<String, ByteIterator>> result = new Vector<>();
+    assertEquals(Status.OK, client.scan(TABLE, "user1", 3, null, result));
+    assertEquals(3, result.size());
+    assertEquals("1", result.get(0).get("FIELD0").toString());
+    assertEquals("3", result.get(1).get("FIELD0").toString());
+    assertEquals("4", result.get(2).get("FIELD0").toString());
+
+    Map<String, ByteIterator> deleted = new HashMap<>();
+    assertEquals(Status.OK, client.read(TABLE, "user2", null, deleted));
+    assertTrue(deleted.isEmpty());
+  }
+
+  @Test
+  public void testScanIsOptIn() throws Exception {
+    DB client = newClient("64");
+    assertEquals(Status.OK, client.insert(TABLE, "user1", record("a")));
+
+    // the keys of this process are not all the keys of the store, so scans are not served unless asked for
+    Vector<HashMap<String, ByteIterator>> result = new Vector<>();
+    assertEquals(Status.NOT_IMPLEMENTED, client.scan(TABLE, "user1", 1, null, result));
+    assertTrue(result.isEmpty());
+  }
+
+  @Test
+  public void testConcurrentReadsCoalesce() throws Exception {
+    final DB writer = newClient("1");
+    final int readers = 4;
+    for (int i = 0; i < readers; i++) {
+      assertEquals(Status.OK, writer.insert(TABLE, "user" + i, record(Integer.toString(i))));
+    }
+
+    // Hold the only place in the window while the readers queue up behind it.
+    this.store.block = new CountDownLatch(1);
+    Thread blocked = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        writer.read(TABLE, "user0", null, new HashMap<String, ByteIterator>());
+      }
+    });
+    blocked.start();
+    while (this.store.gets.get() == 0) {
+      Thread.sleep(1);
+    }
+
+    final List<Map<String, ByteIterator>> results = Collections.synchronizedList(
+        new ArrayList<Map<String, ByteIterator>>());
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < readers; i++) {
+      final DB reader = newClient("1");
+      final String key = "user" + i;
+      Thread thread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          Map<String, ByteIterator> result = new HashMap<>();
+          reader.read(TABLE, key, null, result);
+          results.add(result);
+        }
+      });
+      thread.start();
+      threads.add(thread);
+    }
+    for (Thread thread : threads) {
+      while (thread.getState() != Thread.State.WAITING) {
+        Thread.sleep(1);
+      }
+    }
+
+    this.store.block.countDown();
+    blocked.join();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(2, this.store.gets.get());
+    assertEquals(readers, results.size());
+    for (Map<String, ByteIterator> result : results) {
+      assertEquals(2, result.size());
+    }
+  }
+
+  @Test
+  public void testTransactionFailureIsNotAnAbort() throws Exception {
+    DB client = newClient("64");
+    assertEquals(Status.OK, client.insert(TABLE, "user1", record("a")));
+
+    List<Map<String, ByteIterator>> results = new ArrayList<>();
+    assertEquals(Status.OK, client.transaction(TABLE, Collections.singletonList("user1"), null, results,
+        Collections.singletonList(record("b"))));
+    assertEquals("a", results.get(0).get("FIELD0").toString());
+
+    // the put is unconditional, so a failed one is an error rather than a conflict
+    this.store.failPuts = true;
+    results.clear();
+    assertEquals(Status.ERROR, client.transaction(TABLE, Collections.singletonList("user1"), null, results,
+        Collections.singletonList(record("c"))));
+    assertEquals("b", results.get(0).get("FIELD0").toString());
+  }
+
+  @Test
+  public void testClassify() throws Exception {
+    assertEquals(Status.TIMEOUT, BeakerClient.classify(new ExecutionException(new TimeoutException())));
+    assertEquals(Status.SERVICE_UNAVAILABLE, BeakerClient.classify(new ConnectException("refused")));
+    assertEquals(Status.ERROR, BeakerClient.classify(new Exception("put failed")));
+
+    DB client = newClient("64");
+    this.store.failPuts = true;
+    assertEquals(Status.ERROR, client.insert(TABLE, "user1", record("a")));
+  }
+
+  /**
+   * A stand-in for Beaker that keeps its values in memory, and can hold the first get until released.
+   */
+  private static final class MemoryStore implements BeakerStore {
+    private final Map<String, String> values = new ConcurrentHashMap<>();
+    private final AtomicInteger gets = new AtomicInteger();
+    private volatile CountDownLatch block;
+    private volatile boolean failPuts;
+
+    @Override
+    public Map<String, String> get(Set<String> names) throws Exception {
+      if (this.gets.incrementAndGet() == 1 && this.block != null) {
+        this.block.await();
+      }
+      Map<String, String> found = new HashMap<>();
+      for (String name : names) {
+        String value = this.values.get(name);
+        if (value != null) {
+          found.put(name, value);
+        }
+      }
+      return found;
+    }
+
+    @Override
+    public void put(Map<String, String> changes) throws Exception {
+      if (this.failPuts) {
+        throw new Exception("put failed");
+      }
+      this.values.putAll(changes);
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+
+}
@@ -23,25 +23,45 @@ import com.datastax.driver.core.ConsistencyLevel;
 import com.datastax.driver.core.Host;
 import com.datastax.driver.core.HostDistance;
 import com.datastax.driver.core.Metadata;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.QueryTrace;
+import com.datastax.driver.core.RegularStatement;
 import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
 import com.datastax.driver.core.Row;
 import com.datastax.driver.core.Session;
 import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.SocketOptions;
 import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.exceptions.NoHostAvailableException;
+import com.datastax.driver.core.exceptions.OperationTimedOutException;
+import com.datastax.driver.core.exceptions.OverloadedException;
+import com.datastax.driver.core.exceptions.ReadTimeoutException;
+import com.datastax.driver.core.exceptions.UnavailableException;
+import com.datastax.driver.core.exceptions.WriteTimeoutException;
+import com.datastax.driver.core.policies.DCAwareRoundRobinPolicy;
+import com.datastax.driver.core.policies.LoadBalancingPolicy;
+import com.datastax.driver.core.policies.TokenAwarePolicy;
 import com.datastax.driver.core.querybuilder.Insert;
 import com.datastax.driver.core.querybuilder.QueryBuilder;
 import com.datastax.driver.core.querybuilder.Select;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.yahoo.ycsb.AsyncWindow;
 import com.yahoo.ycsb.ByteArrayByteIterator;
 import com.yahoo.ycsb.ByteIterator;
 import com.yahoo.ycsb.DB;
 import com.yahoo.ycsb.DBException;
 import com.yahoo.ycsb.Status;
+import com.yahoo.ycsb.measurements.Measurements;
 
 import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -87,7 +107,30 @@ public class CassandraCQLClient extends DB {
 
   public static final String TRACING_PROPERTY = "cassandra.tracing";
   public static final String TRACING_PROPERTY_DEFAULT = "false";
-  
+
+  /**
+   * Whether operations are sent as statements prepared once per table, operation and set of fields, with only the
+   * values bound for each operation, rather than as a new CQL string the coordinator parses every time.
+   */
+  public static final String PREPARED_PROPERTY = "cassandra.prepared";
+  public static final String PREPARED_PROPERTY_DEFAULT = "true";
+
+  /**
+   * Whether each statement is sent to a replica of its key. Only prepared statements carry their key's token.
+   */
+  public static final String TOKEN_AWARE_PROPERTY = "cassandra.tokenaware";
+  public static final String TOKEN_AWARE_PROPERTY_DEFAULT = "true";
+
+  /**
+   * Whether inserts, updates and deletes are sent without waiting for them to complete, returning BATCHED_OK, with
+   * at most cassandra.async.maxinflight of them outstanding per client thread. Their latency until completion is
+   * measured as INSERT-ASYNC, UPDATE-ASYNC and DELETE-ASYNC. Reads and scans wait for their results as usual.
+   */
+  public static final String ASYNC_PROPERTY = "cassandra.async";
+  public static final String ASYNC_PROPERTY_DEFAULT = "false";
+  public static final String ASYNC_MAX_IN_FLIGHT_PROPERTY = "cassandra.async.maxinflight";
+  public static final String ASYNC_MAX_IN_FLIGHT_PROPERTY_DEFAULT = "128";
+
   /**
    * Count the number of times initialized to teardown on the last
    * {@link #cleanup()}.
@@ -97,7 +140,30 @@ public class CassandraCQLClient extends DB {
   private static boolean debug = false;
 
   private static boolean trace = false;
-  
+
+  private static boolean prepared = true;
+
+  /**
+   * The statements prepared so far, by operation, table and fields, shared by all the threads.
+   */
+  private static final ConcurrentMap<String, PreparedStatement> PREPARED_STATEMENTS =
+      new ConcurrentHashMap<String, PreparedStatement>();
+
+  /**
+   * The phases of an operation reported when measurement.phases is on: building the statement, executing it, and,
+   * with tracing enabled, the time the coordinator spent on it.
+   */
+  public static final String BUILD_PHASE = "BUILD";
+  public static final String EXECUTE_PHASE = "EXECUTE";
+  public static final String SERVER_PHASE = "SERVER";
+
+  private final Measurements measurements = Measurements.getMeasurements();
+
+  /**
+   * The window of asynchronous writes of this thread, or null if writes wait for completion.
+   */
+  private AsyncWindow window = null;
+
   /**
    * Initialize any state for this DB. Called once per DB instance; there is one
    * DB instance per client thread.
@@ -108,6 +174,17 @@ public class CassandraCQLClient extends DB {
     // Keep track of number of calls to init (for later cleanup)
     INIT_COUNT.incrementAndGet();
 
+    if (Boolean.parseBoolean(getProperties().getProperty(ASYNC_PROPERTY, ASYNC_PROPERTY_DEFAULT))) {
+      int maxInFlight = Integer.parseInt(getProperties().getProperty(ASYNC_MAX_IN_FLIGHT_PROPERTY,
+          ASYNC_MAX_IN_FLIGHT_PROPERTY_DEFAULT));
+      if (maxInFlight < 1) {
+        throw new DBException(ASYNC_MAX_IN_FLIGHT_PROPERTY + " must be positive, not " + maxInFlight);
+      }
+      // the outstanding writes have timed out by the end of a read timeout
+      window = new AsyncWindow(maxInFlight, Long.parseLong(getProperties().getProperty(READ_TIMEOUT_MILLIS_PROPERTY,
+          Integer.toString(SocketOptions.DEFAULT_READ_TIMEOUT_MILLIS))));
+    }
+
     // Synchronized so that we only have a single
     // cluster/session instance for all the threads.
     synchronized (INIT_COUNT) {
@@ -122,7 +199,8 @@ public class CassandraCQLClient extends DB {
         debug =
             Boolean.parseBoolean(getProperties().getProperty("debug", "false"));
         trace = Boolean.valueOf(getProperties().getProperty(TRACING_PROPERTY, TRACING_PROPERTY_DEFAULT));
-        
+        prepared = Boolean.parseBoolean(getProperties().getProperty(PREPARED_PROPERTY, PREPARED_PROPERTY_DEFAULT));
+
         String host = getProperties().getProperty(HOSTS_PROPERTY);
         if (host == null) {
           throw new DBException(String.format(
@@ -145,12 +223,18 @@ public class CassandraCQLClient extends DB {
             getProperties().getProperty(WRITE_CONSISTENCY_LEVEL_PROPERTY,
                 WRITE_CONSISTENCY_LEVEL_PROPERTY_DEFAULT));
 
+        LoadBalancingPolicy loadBalancing = DCAwareRoundRobinPolicy.builder().build();
+        if (Boolean.parseBoolean(getProperties().getProperty(TOKEN_AWARE_PROPERTY, TOKEN_AWARE_PROPERTY_DEFAULT))) {
+          loadBalancing = new TokenAwarePolicy(loadBalancing);
+        }
+
         if ((username != null) && !username.isEmpty()) {
           cluster = Cluster.builder().withCredentials(username, password)
-              .withPort(Integer.valueOf(port)).addContactPoints(hosts).build();
+              .withPort(Integer.valueOf(port)).addContactPoints(hosts)
+              .withLoadBalancingPolicy(loadBalancing).build();
         } else {
           cluster = Cluster.builder().withPort(Integer.valueOf(port))
-              .addContactPoints(hosts).build();
+              .addContactPoints(hosts).withLoadBalancingPolicy(loadBalancing).build();
         }
 
         String maxConnections = getProperties().getProperty(
@@ -207,9 +291,14 @@ public class CassandraCQLClient extends DB {
    */
   @Override
   public void cleanup() throws DBException {
+    if (window != null) {
+      // wait for the outstanding writes before the session may be closed
+      window.drain();
+    }
     synchronized (INIT_COUNT) {
       final int curInitCount = INIT_COUNT.decrementAndGet();
       if (curInitCount <= 0) {
+        PREPARED_STATEMENTS.clear();
         session.close();
         cluster.close();
         cluster = null;
@@ -241,30 +330,32 @@ public class CassandraCQLClient extends DB {
   public Status read(String table, String key, Set<String> fields,
       Map<String, ByteIterator> result) {
     try {
+      measurements.startPhase(BUILD_PHASE);
       Statement stmt;
-      Select.Builder selectBuilder;
 
-      if (fields == null) {
-        selectBuilder = QueryBuilder.select().all();
-      } else {
-        selectBuilder = QueryBuilder.select();
-        for (String col : fields) {
-          ((Select.Selection) selectBuilder).column(col);
+      if (prepared) {
+        String id = "READ " + table + " " + fields;
+        PreparedStatement ps = PREPARED_STATEMENTS.get(id);
+        if (ps == null) {
+          ps = prepare(id, select(fields).from(table).where(QueryBuilder.eq(YCSB_KEY, QueryBuilder.bindMarker()))
+              .limit(1), readConsistencyLevel);
         }
-      }
-
-      stmt = selectBuilder.from(table).where(QueryBuilder.eq(YCSB_KEY, key))
-          .limit(1);
-      stmt.setConsistencyLevel(readConsistencyLevel);
+        stmt = ps.bind(key);
+      } else {
+        stmt = select(fields).from(table).where(QueryBuilder.eq(YCSB_KEY, key))
+            .limit(1);
+        stmt.setConsistencyLevel(readConsistencyLevel);
 
-      if (debug) {
-        System.out.println(stmt.toString());
+        if (debug) {
+          System.out.println(stmt.toString());
+        }
       }
       if (trace) {
         stmt.enableTracing();
       }
       
-      ResultSet rs = session.execute(stmt);
+      measurements.endPhase(BUILD_PHASE);
+      ResultSet rs = execute(stmt);
 
       if (rs.isExhausted()) {
         return Status.NOT_FOUND;
@@ -286,9 +377,11 @@ public class CassandraCQLClient extends DB {
       return Status.OK;
 
     } catch (Exception e) {
-      e.printStackTrace();
-      System.out.println("Error reading key: " + key);
-      return Status.ERROR;
+      Status status = classify(e);
+      if (status == Status.ERROR) {
+        System.out.println("Error reading key: " + key);
+      }
+      return status;
     }
 
   }
@@ -318,45 +411,30 @@ public class CassandraCQLClient extends DB {
       Set<String> fields, Vector<HashMap<String, ByteIterator>> result) {
 
     try {
+      measurements.startPhase(BUILD_PHASE);
       Statement stmt;
-      Select.Builder selectBuilder;
 
-      if (fields == null) {
-        selectBuilder = QueryBuilder.select().all();
-      } else {
-        selectBuilder = QueryBuilder.select();
-        for (String col : fields) {
-          ((Select.Selection) selectBuilder).column(col);
+      if (prepared) {
+        String id = "SCAN " + table + " " + fields;
+        PreparedStatement ps = PREPARED_STATEMENTS.get(id);
+        if (ps == null) {
+          ps = prepare(id, new SimpleStatement(scanQuery(table, fields, "?", "?")), readConsistencyLevel);
         }
-      }
+        stmt = ps.bind(startkey, recordcount);
+      } else {
+        stmt = new SimpleStatement(scanQuery(table, fields, "'" + startkey + "'", Integer.toString(recordcount)));
+        stmt.setConsistencyLevel(readConsistencyLevel);
 
-      stmt = selectBuilder.from(table);
-
-      // The statement builder is not setup right for tokens.
-      // So, we need to build it manually.
-      String initialStmt = stmt.toString();
-      StringBuilder scanStmt = new StringBuilder();
-      scanStmt.append(initialStmt.substring(0, initialStmt.length() - 1));
-      scanStmt.append(" WHERE ");
-      scanStmt.append(QueryBuilder.token(YCSB_KEY));
-      scanStmt.append(" >= ");
-      scanStmt.append("token('");
-      scanStmt.append(startkey);
-      scanStmt.append("')");
-      scanStmt.append(" LIMIT ");
-      scanStmt.append(recordcount);
-
-      stmt = new SimpleStatement(scanStmt.toString());
-      stmt.setConsistencyLevel(readConsistencyLevel);
-
-      if (debug) {
-        System.out.println(stmt.toString());
+        if (debug) {
+          System.out.println(stmt.toString());
+        }
       }
       if (trace) {
         stmt.enableTracing();
       }
       
-      ResultSet rs = session.execute(stmt);
+      measurements.endPhase(BUILD_PHASE);
+      ResultSet rs = execute(stmt);
 
       HashMap<String, ByteIterator> tuple;
       while (!rs.isExhausted()) {
@@ -380,9 +458,11 @@ public class CassandraCQLClient extends DB {
       return Status.OK;
 
     } catch (Exception e) {
-      e.printStackTrace();
-      System.out.println("Error scanning with startkey: " + startkey);
-      return Status.ERROR;
+      Status status = classify(e);
+      if (status == Status.ERROR) {
+        System.out.println("Error scanning with startkey: " + startkey);
+      }
+      return status;
     }
 
   }
@@ -404,7 +484,7 @@ public class CassandraCQLClient extends DB {
   public Status update(String table, String key,
                        Map<String, ByteIterator> values) {
     // Insert and updates provide the same functionality
-    return insert(table, key, values);
+    return write("UPDATE", table, key, values);
   }
 
   /**
@@ -423,39 +503,70 @@ public class CassandraCQLClient extends DB {
   @Override
   public Status insert(String table, String key,
       Map<String, ByteIterator> values) {
+    return write("INSERT", table, key, values);
+  }
+
+  /**
+   * Inserts or updates a record; op names the operation for the measurements of asynchronous writes.
+   */
+  private Status write(String op, String table, String key,
+      Map<String, ByteIterator> values) {
 
     try {
-      Insert insertStmt = QueryBuilder.insertInto(table);
+      measurements.startPhase(BUILD_PHASE);
+      Statement stmt;
 
-      // Add key
-      insertStmt.value(YCSB_KEY, key);
+      if (prepared) {
+        String id = "INSERT " + table + " " + values.keySet();
+        PreparedStatement ps = PREPARED_STATEMENTS.get(id);
+        if (ps == null) {
+          Insert insertStmt = QueryBuilder.insertInto(table);
+          insertStmt.value(YCSB_KEY, QueryBuilder.bindMarker());
+          for (String field : values.keySet()) {
+            insertStmt.value(field, QueryBuilder.bindMarker());
+          }
+          ps = prepare(id, insertStmt, writeConsistencyLevel);
+        }
 
-      // Add fields
-      for (Map.Entry<String, ByteIterator> entry : values.entrySet()) {
-        Object value;
-        ByteIterator byteIterator = entry.getValue();
-        value = byteIterator.toString();
+        // Bound in the order of the fields of the statement's id
+        Object[] boundValues = new Object[values.size() + 1];
+        boundValues[0] = key;
+        int i = 1;
+        for (ByteIterator byteIterator : values.values()) {
+          boundValues[i++] = byteIterator.toString();
+        }
+        stmt = ps.bind(boundValues);
+      } else {
+        Insert insertStmt = QueryBuilder.insertInto(table);
 
-        insertStmt.value(entry.getKey(), value);
-      }
+        // Add key
+        insertStmt.value(YCSB_KEY, key);
 
-      insertStmt.setConsistencyLevel(writeConsistencyLevel);
+        // Add fields
+        for (Map.Entry<String, ByteIterator> entry : values.entrySet()) {
+          Object value;
+          ByteIterator byteIterator = entry.getValue();
+          value = byteIterator.toString();
 
-      if (debug) {
-        System.out.println(insertStmt.toString());
+          insertStmt.value(entry.getKey(), value);
+        }
+
+        insertStmt.setConsistencyLevel(writeConsistencyLevel);
+
+        if (debug) {
+          System.out.println(insertStmt.toString());
+        }
+        stmt = insertStmt;
       }
       if (trace) {
-        insertStmt.enableTracing();
+        stmt.enableTracing();
       }
       
-      session.execute(insertStmt);
-
-      return Status.OK;
+      measurements.endPhase(BUILD_PHASE);
+      return submit(op, stmt);
     } catch (Exception e) {
-      e.printStackTrace();
+      return classify(e);
     }
-
-    return Status.ERROR;
   }
 
   /**
@@ -471,28 +582,157 @@ public class CassandraCQLClient extends DB {
   public Status delete(String table, String key) {
 
     try {
+      measurements.startPhase(BUILD_PHASE);
       Statement stmt;
 
-      stmt = QueryBuilder.delete().from(table)
-          .where(QueryBuilder.eq(YCSB_KEY, key));
-      stmt.setConsistencyLevel(writeConsistencyLevel);
+      if (prepared) {
+        String id = "DELETE " + table;
+        PreparedStatement ps = PREPARED_STATEMENTS.get(id);
+        if (ps == null) {
+          ps = prepare(id, QueryBuilder.delete().from(table)
+              .where(QueryBuilder.eq(YCSB_KEY, QueryBuilder.bindMarker())), writeConsistencyLevel);
+        }
+        stmt = ps.bind(key);
+      } else {
+        stmt = QueryBuilder.delete().from(table)
+            .where(QueryBuilder.eq(YCSB_KEY, key));
+        stmt.setConsistencyLevel(writeConsistencyLevel);
 
-      if (debug) {
-        System.out.println(stmt.toString());
+        if (debug) {
+          System.out.println(stmt.toString());
+        }
       }
       if (trace) {
         stmt.enableTracing();
       }
       
-      session.execute(stmt);
+      measurements.endPhase(BUILD_PHASE);
+      return submit("DELETE", stmt);
+    } catch (Exception e) {
+      Status status = classify(e);
+      if (status == Status.ERROR) {
+        System.out.println("Error deleting key: " + key);
+      }
+      return status;
+    }
+  }
+
+  /**
+   * @return A select of the given fields, or of all of them if fields is null.
+   */
+  private static Select.Builder select(Set<String> fields) {
+    if (fields == null) {
+      return QueryBuilder.select().all();
+    }
+    Select.Builder selectBuilder = QueryBuilder.select();
+    for (String col : fields) {
+      ((Select.Selection) selectBuilder).column(col);
+    }
+    return selectBuilder;
+  }
+
+  /**
+   * The statement builder is not setup right for tokens, so scans are built
+   * manually.
+   *
+   * @return The CQL of a scan of fields from the token of start on, limited to
+   *         limit rows, where start and limit are CQL terms or bind markers.
+   */
+  private static String scanQuery(String table, Set<String> fields,
+      String start, String limit) {
+    String initialStmt = select(fields).from(table).toString();
+    StringBuilder scanStmt = new StringBuilder();
+    scanStmt.append(initialStmt.substring(0, initialStmt.length() - 1));
+    scanStmt.append(" WHERE ");
+    scanStmt.append(QueryBuilder.token(YCSB_KEY));
+    scanStmt.append(" >= ");
+    scanStmt.append("token(");
+    scanStmt.append(start);
+    scanStmt.append(")");
+    scanStmt.append(" LIMIT ");
+    scanStmt.append(limit);
+    return scanStmt.toString();
+  }
 
+  /**
+   * Prepares a statement and caches it under id. Threads racing to prepare the
+   * same statement all prepare it, but share the one cached first.
+   */
+  private static PreparedStatement prepare(String id, RegularStatement stmt,
+      ConsistencyLevel consistencyLevel) {
+    if (debug) {
+      System.out.println("Preparing " + stmt.toString());
+    }
+    PreparedStatement ps = session.prepare(stmt);
+    ps.setConsistencyLevel(consistencyLevel);
+    PreparedStatement cached = PREPARED_STATEMENTS.putIfAbsent(id, ps);
+    return cached != null ? cached : ps;
+  }
+
+  /**
+   * Executes a write, or in async mode sends it once the window has room and
+   * returns, measuring its completion as op-ASYNC.
+   */
+  private Status submit(final String op, Statement stmt) {
+    if (window == null) {
+      execute(stmt);
       return Status.OK;
-    } catch (Exception e) {
-      e.printStackTrace();
-      System.out.println("Error deleting key: " + key);
     }
+    final long start = window.acquireUninterruptibly();
+    ResultSetFuture future;
+    try {
+      future = session.executeAsync(stmt);
+    } catch (RuntimeException e) {
+      window.abandon();
+      throw e;
+    }
+    Futures.addCallback(future, new FutureCallback<ResultSet>() {
+      @Override
+      public void onSuccess(ResultSet rs) {
+        window.complete(op, start, Status.OK);
+      }
 
+      @Override
+      public void onFailure(Throwable t) {
+        window.complete(op, start, t instanceof Exception ? classify((Exception) t) : Status.ERROR);
+      }
+    });
+    return Status.BATCHED_OK;
+  }
+
+  /**
+   * Tells the failures of an overloaded cluster, which are worth retrying and too frequent to print, from others.
+   *
+   * @return TIMEOUT or SERVICE_UNAVAILABLE for timeouts and a cluster refusing work, otherwise ERROR after printing
+   * the exception.
+   */
+  private static Status classify(Exception e) {
+    if (e instanceof OperationTimedOutException || e instanceof ReadTimeoutException
+        || e instanceof WriteTimeoutException) {
+      return Status.TIMEOUT;
+    }
+    if (e instanceof OverloadedException || e instanceof UnavailableException
+        || e instanceof NoHostAvailableException) {
+      return Status.SERVICE_UNAVAILABLE;
+    }
+    e.printStackTrace();
     return Status.ERROR;
   }
 
+  /**
+   * Executes a statement, timing the EXECUTE phase and, when the statement is traced, the SERVER phase.
+   */
+  private ResultSet execute(Statement stmt) {
+    measurements.startPhase(EXECUTE_PHASE);
+    ResultSet rs = session.execute(stmt);
+    measurements.endPhase(EXECUTE_PHASE);
+    if (trace && measurements.isPhaseTimingEnabled()) {
+      QueryTrace queryTrace = rs.getExecutionInfo().getQueryTrace();
+      if (queryTrace != null && queryTrace.getDurationMicros() >= 0) {
+        measurements.measurePhase(SERVER_PHASE, queryTrace.getDurationMicros() * 1000L);
+      }
+    }
+    return rs;
+  }
+
 }
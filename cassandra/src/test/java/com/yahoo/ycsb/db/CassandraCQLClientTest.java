@@ -49,6 +49,7 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.Vector;
 
 /**
  * Integration tests for the Cassandra client
@@ -72,8 +73,10 @@ public class CassandraCQLClientTest {
   @Before
   public void setUp() throws Exception {
     session = cassandraUnit.getSession();
+    client = newClient(new Properties());
+  }
 
-    Properties p = new Properties();
+  private CassandraCQLClient newClient(Properties p) throws Exception {
     p.setProperty("hosts", HOST);
     p.setProperty("port", Integer.toString(PORT));
     p.setProperty("table", TABLE);
@@ -81,9 +84,10 @@ public class CassandraCQLClientTest {
     Measurements.setProperties(p);
     final CoreWorkload workload = new CoreWorkload();
     workload.init(p);
-    client = new CassandraCQLClient();
-    client.setProperties(p);
-    client.init();
+    final CassandraCQLClient cassandraClient = new CassandraCQLClient();
+    cassandraClient.setProperties(p);
+    cassandraClient.init();
+    return cassandraClient;
   }
 
   @After
@@ -178,4 +182,58 @@ public class CassandraCQLClientTest {
     assertThat(row.getString("field0"), is("value1"));
     assertThat(row.getString("field1"), is("value2"));
   }
+
+  @Test
+  public void testUnpreparedRead() throws Exception {
+    insertRow();
+    client.cleanup();
+
+    final Properties p = new Properties();
+    p.setProperty(CassandraCQLClient.PREPARED_PROPERTY, "false");
+    client = newClient(p);
+
+    final HashMap<String, ByteIterator> result = new HashMap<String, ByteIterator>();
+    final Status status = client.read(TABLE, DEFAULT_ROW_KEY, Sets.newHashSet("field0"), result);
+    assertThat(status, is(Status.OK));
+    assertThat(StringByteIterator.getStringMap(result), hasEntry("field0", "value1"));
+  }
+
+  @Test
+  public void testScan() throws Exception {
+    insertRow();
+
+    final Vector<HashMap<String, ByteIterator>> result = new Vector<HashMap<String, ByteIterator>>();
+    final Status status = client.scan(TABLE, DEFAULT_ROW_KEY, 10, Sets.newHashSet("field1"), result);
+    assertThat(status, is(Status.OK));
+    assertThat(result, hasSize(1));
+    assertThat(StringByteIterator.getStringMap(result.get(0)), hasEntry("field1", "value2"));
+  }
+
+  @Test
+  public void testAsyncInsert() throws Exception {
+    client.cleanup();
+
+    final Properties p = new Properties();
+    p.setProperty(CassandraCQLClient.ASYNC_PROPERTY, "true");
+    p.setProperty(CassandraCQLClient.ASYNC_MAX_IN_FLIGHT_PROPERTY, "2");
+    client = newClient(p);
+
+    for (int i = 0; i < 10; i++) {
+      final Map<String, String> input = new HashMap<String, String>();
+      input.put("field0", "value" + i);
+      final Status status = client.insert(TABLE, "key" + i, StringByteIterator.getByteIteratorMap(input));
+      assertThat(status, is(Status.BATCHED_OK));
+    }
+
+    // cleanup waits for the writes still in flight
+    client.cleanup();
+    client = null;
+
+    for (int i = 0; i < 10; i++) {
+      final Row row = session.execute(QueryBuilder.select("field0").from(TABLE)
+          .where(QueryBuilder.eq(CassandraCQLClient.YCSB_KEY, "key" + i))).one();
+      assertThat(row, notNullValue());
+      assertThat(row.getString("field0"), is("value" + i));
+    }
+  }
 }
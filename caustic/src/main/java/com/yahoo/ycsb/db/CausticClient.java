@@ -18,18 +18,23 @@
 package com.yahoo.ycsb.db;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.Vector;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
 
 import com.yahoo.ycsb.ByteIterator;
 import com.yahoo.ycsb.DB;
 import com.yahoo.ycsb.DBException;
+import com.yahoo.ycsb.KeyIndex;
 import com.yahoo.ycsb.Status;
 import com.yahoo.ycsb.StringByteIterator;
 
@@ -42,19 +47,63 @@ import caustic.runtime.Volume;
 /**
  * A Caustic, YCSB client.
  *
+ * <p>All the client threads share a single runtime and volume, created by the first to initialize and released by
+ * the last to clean up. Every write is appended to a {@link CausticLog}, which the next run replays into the volume,
+ * so the load and run phases share data without serializing the whole volume.
+ *
  * @author ashwin153
  */
 public class CausticClient extends DB {
 
+  /** Whether the volume is kept in a log between runs. */
+  public static final String PERSIST_PROPERTY = "caustic.persist";
+  public static final String PERSIST_PROPERTY_DEFAULT = "true";
+
+  /** The path of the log. */
+  public static final String LOG_PROPERTY = "caustic.log";
+  public static final String LOG_PROPERTY_DEFAULT = "./caustic/data.log";
+
+  /** Whether each write is forced to the disk before it completes, rather than written out periodically. */
+  public static final String SYNC_PROPERTY = "caustic.sync";
+  public static final String SYNC_PROPERTY_DEFAULT = "false";
+
+  /** How often, in milliseconds, the writes are written out to the log when it does not sync. */
+  public static final String FLUSH_PROPERTY = "caustic.flushms";
+  public static final String FLUSH_PROPERTY_DEFAULT = "1000";
+
   // By default, each key has 10 possible fields.
   private static final String[] DEFAULT_FIELDS = new String[] {
       "FIELD0", "FIELD1", "FIELD2", "FIELD3", "FIELD4",
       "FIELD5", "FIELD6", "FIELD7", "FIELD8", "FIELD9"
   };
 
-  private final File data = new File("./caustic/data.txt");
-  private Runtime runtime;
-  private Volume volume;
+  // Local variable holding the values read by a transaction.
+  private static final String READ_RESULT = "$reads";
+
+  // Writes replayed from the log per program.
+  private static final int REPLAY_CHUNK = 1000;
+
+  // The appends of a record's values to the log, and its indexing, are serialized by one of these locks. Programs
+  // are not: they run concurrently in the runtime, whose optimistic concurrency control orders them and aborts the
+  // conflicting ones, so two writes of a field that commit at nearly the same time may reach the log in either order.
+  private static final int LOCK_STRIPES = 64;
+
+  // The state shared by all the clients, guarded by INIT_LOCK and released when the last client cleans up.
+  private static final Object INIT_LOCK = new Object();
+  private static int clients = 0;
+  private static Runtime runtime;
+  private static CausticLog log;
+
+  // The keys of the records of each table, in order, for scans.
+  private static final KeyIndex INDEX = new KeyIndex();
+
+  private static final ReentrantLock[] LOCKS = new ReentrantLock[LOCK_STRIPES];
+  static {
+    for (int i = 0; i < LOCKS.length; i++) {
+      LOCKS[i] = new ReentrantLock();
+    }
+  }
+
   private boolean initialized;
 
   /**
@@ -67,38 +116,80 @@ public class CausticClient extends DB {
       throw new DBException("Client is already initialized.");
     }
 
-    try {
-      // Load the volume.
-      if (this.data.exists()) {
-        FileInputStream bytes = new FileInputStream(data);
-        ObjectInputStream stream = new ObjectInputStream(bytes);
-        this.volume = (Volume) stream.readObject();
-        bytes.close();
-      } else {
-        this.volume = Volume.Memory$.MODULE$.empty();
+    Properties props = getProperties();
+    synchronized (INIT_LOCK) {
+      if (clients == 0) {
+        try {
+          runtime = Runtime.apply(Volume.Memory$.MODULE$.empty());
+          INDEX.clear();
+          if (Boolean.parseBoolean(props.getProperty(PERSIST_PROPERTY, PERSIST_PROPERTY_DEFAULT))) {
+            log = new CausticLog(new File(props.getProperty(LOG_PROPERTY, LOG_PROPERTY_DEFAULT)),
+                Boolean.parseBoolean(props.getProperty(SYNC_PROPERTY, SYNC_PROPERTY_DEFAULT)),
+                Long.parseLong(props.getProperty(FLUSH_PROPERTY, FLUSH_PROPERTY_DEFAULT)));
+            replay(log.replay());
+          }
+        } catch (Exception e) {
+          runtime = null;
+          log = null;
+          throw new DBException(e);
+        }
       }
+      clients++;
+    }
+    this.initialized = true;
+  }
 
-      // Construct a runtime.
-      this.runtime = Runtime.apply(volume);
-      this.initialized = true;
-    } catch (Exception e) {
-      throw new DBException(e);
+  /**
+   * Loads the fields of a log into the volume in programs of {@link #REPLAY_CHUNK} writes, and indexes their
+   * records. Fields deleted by a tombstone are not among them.
+   */
+  private static void replay(Map<String, String> fields) throws Exception {
+    Program program = JBuilder.Empty();
+    int writes = 0;
+    for (Map.Entry<String, String> field : fields.entrySet()) {
+      program = JBuilder.cons(program, JBuilder.write(JBuilder.text(field.getKey()), JBuilder.text(field.getValue())));
+      if (++writes % REPLAY_CHUNK == 0) {
+        runtime.execute(program).get();
+        program = JBuilder.Empty();
+      }
+
+      // Fields are named table$key$field.
+      String name = field.getKey();
+      int first = name.indexOf('$');
+      int last = name.lastIndexOf('$');
+      if (first >= 0 && last > first) {
+        INDEX.add(name.substring(0, first), name.substring(first + 1, last));
+      }
+    }
+    if (writes % REPLAY_CHUNK != 0) {
+      runtime.execute(program).get();
     }
   }
 
   /**
    * Cleanup any state for this DB. Called once per DB instance; there is one DB instance per client
-   * thread.
+   * thread. The last client to clean up flushes and closes the log.
    */
   @Override
   public void cleanup() throws DBException {
-    try {
-      FileOutputStream bytes = new FileOutputStream(this.data);
-      ObjectOutputStream stream = new ObjectOutputStream(bytes);
-      stream.writeObject(this.volume);
-      bytes.close();
-    } catch (Exception e) {
-      throw new DBException(e);
+    if (!this.initialized) {
+      return;
+    }
+    this.initialized = false;
+
+    synchronized (INIT_LOCK) {
+      if (--clients == 0) {
+        runtime = null;
+        if (log != null) {
+          try {
+            log.close();
+          } catch (IOException e) {
+            throw new DBException(e);
+          } finally {
+            log = null;
+          }
+        }
+      }
     }
   }
 
@@ -132,7 +223,7 @@ public class CausticClient extends DB {
 
     try {
       // Execute the transaction and parse the result.
-      String[] values = ((Text) (this.runtime.execute(program).get())).value().split("\0");
+      String[] values = ((Text) (runtime.execute(program).get())).value().split("\0");
       for (int i = 0; i < values.length; i++) {
         if (values[i].length() > 0) {
           result.put(names[i], new StringByteIterator(values[i]));
@@ -142,7 +233,7 @@ public class CausticClient extends DB {
       // Return completion.
       return Status.OK;
     } catch (Exception e) {
-      return Status.ERROR;
+      return classify(e);
     }
   }
 
@@ -165,7 +256,18 @@ public class CausticClient extends DB {
       Set<String> fields, 
       Vector<HashMap<String, ByteIterator>> result
   ) {
-    return Status.ERROR;
+    // Find the keys in the range from the index, and then read them in a single program.
+    List<String> keys = INDEX.range(table, startkey, recordcount);
+    if (keys.isEmpty()) {
+      return Status.OK;
+    }
+
+    List<Map<String, ByteIterator>> records = new ArrayList<>(keys.size());
+    Status status = batchRead(table, keys, fields, records);
+    for (Map<String, ByteIterator> record : records) {
+      result.add(new HashMap<>(record));
+    }
+    return status;
   }
 
   /**
@@ -203,23 +305,288 @@ public class CausticClient extends DB {
       String key, 
       Map<String, ByteIterator> values
   ) {
-    // Construct the transaction.
-    Program program = JBuilder.Empty();
-    for (Map.Entry<String, ByteIterator> entry : values.entrySet()) {
-      String name = table + "$" + key + "$" + entry.getKey();
-      String value = entry.getValue().toString();
-      program = JBuilder.cons(program, JBuilder.write(JBuilder.text(name), JBuilder.text(value)));
+    return write(table, Collections.singletonList(key),
+        Collections.singletonList(StringByteIterator.getStringMap(values)));
+  }
+
+  /**
+   * Read a batch of records from the database in a single program.
+   *
+   * @param table The name of the table.
+   * @param keys The record keys of the records to read.
+   * @param fields The list of fields to read, or null for all of them.
+   * @param results A List to which a Map of field/value pairs is appended for each key.
+   * @return Zero on success, a non-zero error code on error.
+   */
+  @Override
+  public Status batchRead(
+      String table,
+      List<String> keys,
+      Set<String> fields,
+      List<Map<String, ByteIterator>> results
+  ) {
+    String[] names = (fields == null) ? DEFAULT_FIELDS : fields.toArray(new String[fields.size()]);
+
+    try {
+      // Execute the transaction and parse the result.
+      parse(((Text) (runtime.execute(reads(table, keys, names)).get())).value(), keys.size(), names, results);
+      return Status.OK;
+    } catch (Exception e) {
+      return classify(e);
+    }
+  }
+
+  /**
+   * Update a batch of records in the database in a single program.
+   *
+   * @param table The name of the table.
+   * @param keys The record keys of the records to write.
+   * @param values A List of field/value pairs to update, one Map per key.
+   * @return Zero on success, a non-zero error code on error.
+   */
+  @Override
+  public Status batchUpdate(
+      String table,
+      List<String> keys,
+      List<Map<String, ByteIterator>> values
+  ) {
+    return write(table, keys, render(values));
+  }
+
+  /**
+   * Insert a batch of records into the database in a single program.
+   *
+   * @param table The name of the table.
+   * @param keys The record keys of the records to insert.
+   * @param values A List of field/value pairs to insert, one Map per key.
+   * @return Zero on success, a non-zero error code on error.
+   */
+  @Override
+  public Status batchInsert(
+      String table,
+      List<String> keys,
+      List<Map<String, ByteIterator>> values
+  ) {
+    return write(table, keys, render(values));
+  }
+
+  /**
+   * Read and then update a set of records in a single program, which the runtime executes atomically. The program
+   * is aborted only if the runtime reports that it conflicted with another transaction; a failure to log the
+   * committed writes is an error.
+   *
+   * @param table The name of the table.
+   * @param keys The record keys of the records to read and write.
+   * @param fields The list of fields to read, or null for all of them.
+   * @param results A List to which a Map of field/value pairs is appended for each key.
+   * @param values A List of field/value pairs to update, one Map per key.
+   * @return Zero on success, {@link Status#ABORTED} if the transaction conflicted, a non-zero error code on error.
+   */
+  @Override
+  public Status transaction(
+      String table,
+      List<String> keys,
+      Set<String> fields,
+      List<Map<String, ByteIterator>> results,
+      List<Map<String, ByteIterator>> values
+  ) {
+    String[] names = (fields == null) ? DEFAULT_FIELDS : fields.toArray(new String[fields.size()]);
+    List<Map<String, String>> rendered = render(values);
+
+    // Store the values read before any of the writes, and return them after the writes.
+    Program program = JBuilder.store(JBuilder.text(READ_RESULT), reads(table, keys, names));
+    program = writes(program, table, keys, rendered);
+    program = JBuilder.cons(program, JBuilder.load(JBuilder.text(READ_RESULT)));
+
+    try {
+      // Execute the transaction and parse the result.
+      String serialized;
+      try {
+        serialized = ((Text) (runtime.execute(program).get())).value();
+      } catch (Exception e) {
+        return classify(e);
+      }
+      parse(serialized, keys.size(), names, results);
+      persist(table, keys, rendered);
+      return Status.OK;
+    } catch (Exception e) {
+      return Status.ERROR;
+    }
+  }
+
+  /**
+   * Returns the status of a program that failed: {@link Status#ABORTED} if it conflicted with a concurrent
+   * transaction, {@link Status#TIMEOUT} if it timed out, and {@link Status#ERROR} otherwise.
+   */
+  static Status classify(Throwable e) {
+    if (isConflict(e)) {
+      return Status.ABORTED;
+    }
+    for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+      if (cause instanceof TimeoutException) {
+        return Status.TIMEOUT;
+      }
+    }
+    return Status.ERROR;
+  }
+
+  /**
+   * Returns whether a program failed because it conflicted with a concurrent transaction. The runtime reports
+   * conflicts with its ConflictException, possibly wrapped, which is matched by name so that other runtime
+   * versions that move it still classify correctly.
+   */
+  static boolean isConflict(Throwable e) {
+    for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+      if (cause.getClass().getSimpleName().equals("ConflictException")) {
+        return true;
+      }
     }
+    return false;
+  }
 
+  /**
+   * Writes the values of all keys in a single program, logs them and updates the index. A null value deletes its
+   * field.
+   */
+  private static Status write(String table, List<String> keys, List<Map<String, String>> values) {
+    Program program = writes(JBuilder.Empty(), table, keys, values);
     try {
       // Execute the transaction.
-      this.runtime.execute(program).get();
+      try {
+        runtime.execute(program).get();
+      } catch (Exception e) {
+        return classify(e);
+      }
+      persist(table, keys, values);
       return Status.OK;
     } catch (Exception e) {
       return Status.ERROR;
     }
   }
 
+  /**
+   * Appends committed values to the log, where deleted fields are logged as tombstones, and indexes the records, under
+   * the locks of the records. A record whose fields were all deleted is dropped from the index.
+   */
+  private static void persist(String table, List<String> keys, List<Map<String, String>> values) throws IOException {
+    List<ReentrantLock> locks = lock(table, keys);
+    try {
+      append(table, keys, values);
+    } finally {
+      unlock(locks);
+    }
+  }
+
+  private static void append(String table, List<String> keys, List<Map<String, String>> values) throws IOException {
+    if (log != null) {
+      List<String> names = new ArrayList<>();
+      List<String> written = new ArrayList<>();
+      for (int i = 0; i < keys.size(); i++) {
+        for (Map.Entry<String, String> entry : values.get(i).entrySet()) {
+          names.add(table + "$" + keys.get(i) + "$" + entry.getKey());
+          written.add(entry.getValue());
+        }
+      }
+      log.append(names, written);
+    }
+
+    for (int i = 0; i < keys.size(); i++) {
+      boolean deleted = !values.get(i).isEmpty();
+      for (String value : values.get(i).values()) {
+        deleted &= value == null;
+      }
+      if (deleted) {
+        INDEX.remove(table, keys.get(i));
+      } else {
+        INDEX.add(table, keys.get(i));
+      }
+    }
+  }
+
+  /**
+   * Acquires the locks of the records in a fixed order, so concurrent batches cannot deadlock.
+   */
+  private static List<ReentrantLock> lock(String table, List<String> keys) {
+    Set<Integer> stripes = new TreeSet<>();
+    for (String key : keys) {
+      stripes.add(((table + "$" + key).hashCode() & Integer.MAX_VALUE) % LOCKS.length);
+    }
+    List<ReentrantLock> locks = new ArrayList<>(stripes.size());
+    for (int stripe : stripes) {
+      LOCKS[stripe].lock();
+      locks.add(LOCKS[stripe]);
+    }
+    return locks;
+  }
+
+  private static void unlock(List<ReentrantLock> locks) {
+    for (ReentrantLock lock : locks) {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Renders each value once, since rendering a ByteIterator consumes it.
+   */
+  private static List<Map<String, String>> render(List<Map<String, ByteIterator>> values) {
+    List<Map<String, String>> rendered = new ArrayList<>(values.size());
+    for (Map<String, ByteIterator> record : values) {
+      rendered.add(StringByteIterator.getStringMap(record));
+    }
+    return rendered;
+  }
+
+  /**
+   * Constructs a program that serializes the fields of all keys to a single string.
+   */
+  private static Program reads(String table, List<String> keys, String[] names) {
+    Program program = JBuilder.Empty();
+    for (String key : keys) {
+      for (String name : names) {
+        String field = table + "$" + key + "$" + name;
+        program = JBuilder.add(JBuilder.add(program, JBuilder.read(JBuilder.text(field))), JBuilder.text("\0"));
+      }
+    }
+    return program;
+  }
+
+  /**
+   * Appends writes of the values of all keys to the program. The runtime reads a field that was never written as
+   * empty text, so a deleted field is cleared by writing it.
+   */
+  private static Program writes(
+      Program program,
+      String table,
+      List<String> keys,
+      List<Map<String, String>> values
+  ) {
+    for (int i = 0; i < keys.size(); i++) {
+      for (Map.Entry<String, String> entry : values.get(i).entrySet()) {
+        String name = table + "$" + keys.get(i) + "$" + entry.getKey();
+        String value = entry.getValue() == null ? "" : entry.getValue();
+        program = JBuilder.cons(program, JBuilder.write(JBuilder.text(name), JBuilder.text(value)));
+      }
+    }
+    return program;
+  }
+
+  /**
+   * Splits the serialized fields of a program constructed by {@link #reads} into one Map per key.
+   */
+  private static void parse(String serialized, int count, String[] names, List<Map<String, ByteIterator>> results) {
+    String[] values = serialized.split("\0", -1);
+    for (int i = 0; i < count; i++) {
+      Map<String, ByteIterator> result = new HashMap<>();
+      for (int j = 0; j < names.length; j++) {
+        int index = i * names.length + j;
+        if (index < values.length && values[index].length() > 0) {
+          result.put(names[j], new StringByteIterator(values[index]));
+        }
+      }
+      results.add(result);
+    }
+  }
+
   /**
    * Delete a record from the database.
    *
@@ -230,13 +597,13 @@ public class CausticClient extends DB {
   @Override
   public Status delete(String table, String key) {
     // Delete all the fields of the key.
-    Map<String, ByteIterator> fields = new HashMap<>();
+    Map<String, String> fields = new HashMap<>();
     for (int i = 0; i < DEFAULT_FIELDS.length; i++) {
-      fields.put(DEFAULT_FIELDS[i], new StringByteIterator(""));
+      fields.put(DEFAULT_FIELDS[i], null);
     }
 
-    // Deletion is equivalent to an insert.
-    return insert(table, key, fields);
+    // Deletion is a write of tombstones.
+    return write(table, Collections.singletonList(key), Collections.singletonList(fields));
   }
 
 }
@@ -0,0 +1,239 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License. See accompanying LICENSE file.
+ */
+package com.yahoo.ycsb.db;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An append-only log of the fields written through {@link CausticClient}, so that the volume survives between the
+ * load and run phases without serializing all of it on every cleanup. Each entry is the length prefixed UTF-8 name
+ * and value of a field, or a tombstone with a length of -1 for a deleted field; replaying the log in order gives the
+ * latest value of every field that was not deleted since.
+ */
+final class CausticLog {
+
+  // Compact the log on replay once it holds this many entries per live field.
+  private static final int COMPACTION_RATIO = 2;
+
+  // The length written in place of the value of a deleted field.
+  private static final int TOMBSTONE = -1;
+
+  private final File file;
+  private final boolean sync;
+  private final long flushMillis;
+  private FileOutputStream fileStream;
+  private DataOutputStream out;
+  private ScheduledExecutorService flusher;
+  private IOException flushFailure;
+
+  /**
+   * @param file The file of the log.
+   * @param sync Whether every append is forced to the disk before it returns.
+   * @param flushMillis How often buffered entries are written out when the log does not sync, or 0 to only write
+   *                    them out when the buffer fills and on {@link #close()}.
+   */
+  CausticLog(File file, boolean sync, long flushMillis) {
+    this.file = file;
+    this.sync = sync;
+    this.flushMillis = flushMillis;
+  }
+
+  /**
+   * Reads the latest value of every field in the log, dropping a partly written last entry, then opens the log for
+   * appending. A log mostly made of overwritten or deleted entries is first rewritten with only the latest values.
+   */
+  Map<String, String> replay() throws IOException {
+    Map<String, String> fields = new LinkedHashMap<>();
+    long entries = 0;
+    long valid = 0;
+    if (this.file.exists()) {
+      try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(this.file)))) {
+        while (true) {
+          String name;
+          String value;
+          try {
+            name = readString(in);
+            value = readString(in);
+          } catch (EOFException e) {
+            break;
+          }
+          if (name == null) {
+            // only values are deleted, so this is a damaged entry
+            break;
+          }
+          if (value == null) {
+            fields.remove(name);
+            valid += 8 + utf8Length(name);
+          } else {
+            fields.put(name, value);
+            valid += 8 + utf8Length(name) + utf8Length(value);
+          }
+          entries++;
+        }
+      }
+      if (valid < this.file.length()) {
+        try (RandomAccessFile truncated = new RandomAccessFile(this.file, "rw")) {
+          truncated.setLength(valid);
+        }
+      }
+    } else if (this.file.getParentFile() != null) {
+      this.file.getParentFile().mkdirs();
+    }
+
+    if (entries > COMPACTION_RATIO * (long) fields.size()) {
+      compact(fields);
+    }
+    this.fileStream = new FileOutputStream(this.file, true);
+    this.out = new DataOutputStream(new BufferedOutputStream(this.fileStream));
+    if (!this.sync && this.flushMillis > 0) {
+      this.flusher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+          Thread thread = new Thread(runnable, "caustic-log-flusher");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+      this.flusher.scheduleWithFixedDelay(new Runnable() {
+        @Override
+        public void run() {
+          flushPeriodically();
+        }
+      }, this.flushMillis, this.flushMillis, TimeUnit.MILLISECONDS);
+    }
+    return fields;
+  }
+
+  /**
+   * Rewrites the log with only the given fields, replacing it atomically.
+   */
+  private void compact(Map<String, String> fields) throws IOException {
+    File compacted = new File(this.file.getPath() + ".compact");
+    try (DataOutputStream rewrite = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(compacted)))) {
+      for (Map.Entry<String, String> field : fields.entrySet()) {
+        writeString(rewrite, field.getKey());
+        writeString(rewrite, field.getValue());
+      }
+    }
+    if (!compacted.renameTo(this.file)) {
+      throw new IOException("Could not replace " + this.file + " with " + compacted);
+    }
+  }
+
+  /**
+   * Appends the new values of the fields written by one operation, where a null value deletes its field. Entries are
+   * buffered until the next periodic {@link #flush()}, or forced to the disk at once when the log syncs.
+   *
+   * @throws IOException If the entries could not be written, or a periodic flush has failed since the last append.
+   */
+  synchronized void append(List<String> names, List<String> values) throws IOException {
+    if (this.flushFailure != null) {
+      IOException failure = this.flushFailure;
+      this.flushFailure = null;
+      throw failure;
+    }
+    for (int i = 0; i < names.size(); i++) {
+      writeString(this.out, names.get(i));
+      writeString(this.out, values.get(i));
+    }
+    if (this.sync) {
+      flush();
+    }
+  }
+
+  /**
+   * Writes out the buffered entries, and forces them to the disk when the log syncs.
+   */
+  synchronized void flush() throws IOException {
+    this.out.flush();
+    if (this.sync) {
+      this.fileStream.getFD().sync();
+    }
+  }
+
+  /**
+   * Flushes on the schedule of a log that does not sync, keeping a failure for the next append to report.
+   */
+  private synchronized void flushPeriodically() {
+    try {
+      flush();
+    } catch (IOException e) {
+      this.flushFailure = e;
+    }
+  }
+
+  /**
+   * Stops the periodic flushes, then writes out the remaining entries and closes the log.
+   */
+  void close() throws IOException {
+    if (this.flusher != null) {
+      this.flusher.shutdown();
+      try {
+        this.flusher.awaitTermination(this.flushMillis, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    synchronized (this) {
+      flush();
+      this.out.close();
+    }
+  }
+
+  private static void writeString(DataOutputStream stream, String value) throws IOException {
+    if (value == null) {
+      stream.writeInt(TOMBSTONE);
+      return;
+    }
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    stream.writeInt(bytes.length);
+    stream.write(bytes);
+  }
+
+  /**
+   * Reads a string written by {@link #writeString}, or null for a tombstone.
+   */
+  private static String readString(DataInputStream stream) throws IOException {
+    int length = stream.readInt();
+    if (length == TOMBSTONE) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    stream.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static int utf8Length(String value) {
+    return value.getBytes(StandardCharsets.UTF_8).length;
+  }
+}
@@ -0,0 +1,45 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License. See accompanying LICENSE file.
+ */
+package com.yahoo.ycsb.db;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Test;
+
+import com.yahoo.ycsb.Status;
+
+/**
+ * Tests how {@link CausticClient} reports failed programs.
+ */
+public class CausticClientTest {
+
+  @Test
+  public void testClassify() {
+    assertEquals(Status.ABORTED, CausticClient.classify(new ExecutionException(new ConflictException())));
+    assertEquals(Status.TIMEOUT, CausticClient.classify(new ExecutionException(new TimeoutException())));
+    assertEquals(Status.ERROR, CausticClient.classify(new IllegalStateException("failed")));
+  }
+
+  /**
+   * Named like the conflicts of the runtime, which are matched by name.
+   */
+  private static final class ConflictException extends Exception {
+    private static final long serialVersionUID = 1L;
+  }
+}
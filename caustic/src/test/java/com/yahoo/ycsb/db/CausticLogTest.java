@@ -0,0 +1,147 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License. See accompanying LICENSE file.
+ */
+package com.yahoo.ycsb.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Writes a {@link CausticLog}, closes it and replays it.
+ */
+public class CausticLogTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private File file() {
+    return new File(this.folder.getRoot(), "caustic/data.log");
+  }
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    CausticLog log = new CausticLog(file(), false, 0);
+    assertTrue(log.replay().isEmpty());
+    log.append(Arrays.asList("usertable$user1$FIELD0", "usertable$user1$FIELD1"), Arrays.asList("a", "\u00e9"));
+    log.append(Arrays.asList("usertable$user2$FIELD0"), Arrays.asList("b"));
+    log.append(Arrays.asList("usertable$user1$FIELD0"), Arrays.asList("c"));
+    log.close();
+
+    Map<String, String> expected = new LinkedHashMap<>();
+    expected.put("usertable$user1$FIELD0", "c");
+    expected.put("usertable$user1$FIELD1", "\u00e9");
+    expected.put("usertable$user2$FIELD0", "b");
+    log = new CausticLog(file(), false, 0);
+    assertEquals(expected, log.replay());
+    log.close();
+  }
+
+  @Test
+  public void testTombstonesDeleteFields() throws Exception {
+    CausticLog log = new CausticLog(file(), true, 0);
+    log.replay();
+    log.append(Arrays.asList("usertable$user1$FIELD0", "usertable$user1$FIELD1"), Arrays.asList("a", "b"));
+    log.append(Arrays.asList("usertable$user1$FIELD0", "usertable$user1$FIELD1"), Arrays.asList((String) null, null));
+    log.append(Arrays.asList("usertable$user2$FIELD0"), Arrays.asList(""));
+    log.close();
+
+    // an empty value is a value, unlike a tombstone
+    log = new CausticLog(file(), true, 0);
+    assertEquals(Collections.singletonMap("usertable$user2$FIELD0", ""), log.replay());
+    log.close();
+  }
+
+  @Test
+  public void testReplayDropsPartialEntry() throws Exception {
+    CausticLog log = new CausticLog(file(), false, 0);
+    log.replay();
+    log.append(Arrays.asList("usertable$user1$FIELD0"), Arrays.asList("a"));
+    log.append(Arrays.asList("usertable$user2$FIELD0"), Arrays.asList("b"));
+    log.close();
+    long length = file().length();
+    try (RandomAccessFile torn = new RandomAccessFile(file(), "rw")) {
+      torn.setLength(length - 1);
+    }
+
+    log = new CausticLog(file(), false, 0);
+    assertEquals(Collections.singletonMap("usertable$user1$FIELD0", "a"), log.replay());
+    log.append(Arrays.asList("usertable$user3$FIELD0"), Arrays.asList("c"));
+    log.close();
+
+    Map<String, String> expected = new LinkedHashMap<>();
+    expected.put("usertable$user1$FIELD0", "a");
+    expected.put("usertable$user3$FIELD0", "c");
+    log = new CausticLog(file(), false, 0);
+    assertEquals(expected, log.replay());
+    log.close();
+  }
+
+  @Test
+  public void testReplayCompacts() throws Exception {
+    CausticLog log = new CausticLog(file(), false, 0);
+    log.replay();
+    for (int i = 0; i < 10; i++) {
+      log.append(Arrays.asList("usertable$user1$FIELD0"), Arrays.asList(Integer.toString(i)));
+    }
+    log.append(Arrays.asList("usertable$user2$FIELD0"), Arrays.asList("b"));
+    log.append(Arrays.asList("usertable$user2$FIELD0"), Arrays.asList((String) null));
+    log.close();
+    long length = file().length();
+
+    log = new CausticLog(file(), false, 0);
+    assertEquals(Collections.singletonMap("usertable$user1$FIELD0", "9"), log.replay());
+    log.close();
+    assertTrue(file().length() < length);
+
+    // the compacted log replays the same
+    log = new CausticLog(file(), false, 0);
+    assertEquals(Collections.singletonMap("usertable$user1$FIELD0", "9"), log.replay());
+    log.close();
+    assertFalse(new File(file().getPath() + ".compact").exists());
+  }
+
+  @Test
+  public void testUnsyncedLogFlushesPeriodically() throws Exception {
+    CausticLog log = new CausticLog(file(), false, 10);
+    log.replay();
+    log.append(Arrays.asList("usertable$user1$FIELD0"), Arrays.asList("a"));
+    long deadline = System.currentTimeMillis() + 5000;
+    while (file().length() == 0 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(5);
+    }
+    assertTrue(file().length() > 0);
+
+    // a copy taken before the log is closed replays the entry
+    File copy = new File(this.folder.getRoot(), "copy.log");
+    Files.copy(file().toPath(), copy.toPath());
+    CausticLog reader = new CausticLog(copy, false, 0);
+    assertEquals(Collections.singletonMap("usertable$user1$FIELD0", "a"), reader.replay());
+    reader.close();
+    log.close();
+  }
+}
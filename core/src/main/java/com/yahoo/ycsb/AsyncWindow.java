@@ -0,0 +1,117 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import com.yahoo.ycsb.measurements.Measurements;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The window of a client thread's asynchronous operations, for bindings whose operations return BATCHED_OK once
+ * sent. A thread waits for a place in the window before sending an operation, and each operation is measured as
+ * op-ASYNC, e.g. INSERT-ASYNC, from before that wait until it completes, so the time spent waiting on a full window
+ * is not left out. The binding's cleanup drains the window so the outstanding operations are measured, waiting no
+ * longer than the drain timeout.
+ */
+public final class AsyncWindow {
+  private final int size;
+  private final long drainTimeoutMillis;
+  private final Semaphore places;
+  private final Measurements measurements = Measurements.getMeasurements();
+
+  /**
+   * @param size The most operations outstanding at a time, or 0 for no bound, only to measure them.
+   * @param drainTimeoutMillis The longest {@link #drain()} waits for the outstanding operations.
+   */
+  public AsyncWindow(int size, long drainTimeoutMillis) {
+    if (size < 0) {
+      throw new IllegalArgumentException("The size of the window must not be negative, not " + size);
+    }
+    this.size = size == 0 ? Integer.MAX_VALUE : size;
+    this.drainTimeoutMillis = drainTimeoutMillis;
+    this.places = new Semaphore(this.size);
+  }
+
+  /**
+   * Waits for a place in the window.
+   *
+   * @return The start of the operation, to pass to {@link #complete}.
+   */
+  public long acquire() throws InterruptedException {
+    long start = System.nanoTime();
+    places.acquire();
+    return start;
+  }
+
+  /**
+   * Waits for a place in the window, without giving up if interrupted.
+   *
+   * @return The start of the operation, to pass to {@link #complete}.
+   */
+  public long acquireUninterruptibly() {
+    long start = System.nanoTime();
+    places.acquireUninterruptibly();
+    return start;
+  }
+
+  /**
+   * Gives back the place of an operation that could not be sent, without measuring it.
+   */
+  public void abandon() {
+    places.release();
+  }
+
+  /**
+   * Gives back the place of a completed operation, and measures it as op-ASYNC.
+   */
+  public void complete(String op, long start, Status status) {
+    places.release();
+    measurements.measureNanos(op + "-ASYNC", System.nanoTime() - start);
+    measurements.reportStatus(op + "-ASYNC", status);
+  }
+
+  /**
+   * Returns the number of operations outstanding.
+   */
+  public int getOutstanding() {
+    return size - places.availablePermits();
+  }
+
+  /**
+   * Waits up to the drain timeout for the outstanding operations to complete, warning on stderr about any that did
+   * not, since they are then not measured.
+   *
+   * @return Whether all of them completed.
+   */
+  public boolean drain() {
+    String reason = "after " + drainTimeoutMillis + " ms";
+    try {
+      if (places.tryAcquire(size, drainTimeoutMillis, TimeUnit.MILLISECONDS)) {
+        places.release(size);
+        return true;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      reason = "when interrupted";
+    }
+    System.err.println("WARNING: gave up waiting for " + getOutstanding() + " outstanding asynchronous operations " +
+        reason + "; they are not measured.");
+    return false;
+  }
+}
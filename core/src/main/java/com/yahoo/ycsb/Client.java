@@ -18,7 +18,9 @@
 package com.yahoo.ycsb;
 
 import com.yahoo.ycsb.measurements.Measurements;
+import com.yahoo.ycsb.measurements.OperationSampler;
 import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+import com.yahoo.ycsb.measurements.exporter.StructuredMeasurementsExporter;
 import com.yahoo.ycsb.measurements.exporter.TextMeasurementsExporter;
 import org.apache.htrace.core.HTraceConfiguration;
 import org.apache.htrace.core.TraceScope;
@@ -28,6 +30,8 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
 import java.text.DecimalFormat;
 import java.text.SimpleDateFormat;
 import java.util.*;
@@ -52,6 +56,9 @@ class StatusThread extends Thread {
   // The clients that are running.
   private final List<ClientThread> clients;
 
+  // The account of the client's resources, if tracked.
+  private final ClientResources resources;
+
   private final String label;
   private final boolean standardstatus;
 
@@ -80,7 +87,7 @@ class StatusThread extends Thread {
    */
   public StatusThread(CountDownLatch completeLatch, List<ClientThread> clients,
                       String label, boolean standardstatus, int statusIntervalSeconds) {
-    this(completeLatch, clients, label, standardstatus, statusIntervalSeconds, false);
+    this(completeLatch, clients, label, standardstatus, statusIntervalSeconds, false, null);
   }
 
   /**
@@ -93,10 +100,11 @@ class StatusThread extends Thread {
    * @param standardstatus        If true the status is printed to stdout in addition to stderr.
    * @param statusIntervalSeconds The number of seconds between status updates.
    * @param trackJVMStats         Whether or not to track JVM stats.
+   * @param resources             The account of the client's resources to report each interval, or null.
    */
   public StatusThread(CountDownLatch completeLatch, List<ClientThread> clients,
                       String label, boolean standardstatus, int statusIntervalSeconds,
-                      boolean trackJVMStats) {
+                      boolean trackJVMStats, ClientResources resources) {
     this.completeLatch = completeLatch;
     this.clients = clients;
     this.label = label;
@@ -104,6 +112,7 @@ class StatusThread extends Thread {
     sleeptimeNs = TimeUnit.SECONDS.toNanos(statusIntervalSeconds);
     measurements = Measurements.getMeasurements();
     this.trackJVMStats = trackJVMStats;
+    this.resources = resources;
   }
 
   /**
@@ -185,6 +194,9 @@ class StatusThread extends Thread {
       msg.append("est completion in ").append(RemainingFormatter.format(estremaining));
     }
 
+    if (resources != null) {
+      msg.append(resources.sampleInterval(measurements)).append(' ');
+    }
     msg.append(Measurements.getMeasurements().getSummary());
 
     System.err.println(msg);
@@ -359,6 +371,11 @@ final class RemainingFormatter {
  * A thread for executing transactions or data inserts to the database.
  */
 class ClientThread implements Runnable {
+  /**
+   * The phase of an operation spent waiting to start after its scheduled time, when the client is throttled.
+   */
+  static final String QUEUE_PHASE = "QUEUE";
+
   // Counts down each of the clients completing.
   private final CountDownLatch completeLatch;
 
@@ -366,10 +383,11 @@ class ClientThread implements Runnable {
   private DB db;
   private boolean dotransactions;
   private Workload workload;
-  private int opcount;
+  private long opcount;
   private double targetOpsPerMs;
 
-  private int opsdone;
+  /** Only incremented by this thread; volatile so that the status thread reads whole, current values. */
+  private volatile long opsdone;
   private int threadid;
   private int threadcount;
   private Object workloadstate;
@@ -377,6 +395,11 @@ class ClientThread implements Runnable {
   private long targetOpsTickNs;
   private final Measurements measurements;
 
+  /** The id of the thread running this client, and the CPU time and heap it used, saved as it ends. */
+  private volatile long runningThreadId = -1;
+  private volatile long cpuTimeNanos = -1;
+  private volatile long allocatedBytes = -1;
+
   /**
    * Constructor.
    *
@@ -388,7 +411,7 @@ class ClientThread implements Runnable {
    * @param targetperthreadperms target number of operations per thread per ms
    * @param completeLatch        The latch tracking the completion of all clients.
    */
-  public ClientThread(DB db, boolean dotransactions, Workload workload, Properties props, int opcount,
+  public ClientThread(DB db, boolean dotransactions, Workload workload, Properties props, long opcount,
                       double targetperthreadperms, CountDownLatch completeLatch) {
     this.db = db;
     this.dotransactions = dotransactions;
@@ -413,12 +436,28 @@ class ClientThread implements Runnable {
     threadcount = threadCount;
   }
   
-  public int getOpsDone() {
+  public long getOpsDone() {
     return opsdone;
   }
 
+  /**
+   * @return The CPU time used by the thread running this client so far, or -1 if unknown.
+   */
+  long getCpuTimeNanos() {
+    return runningThreadId < 0 || cpuTimeNanos >= 0 ? cpuTimeNanos : Utils.getThreadCpuTime(runningThreadId);
+  }
+
+  /**
+   * @return The bytes allocated by the thread running this client so far, or -1 if unknown.
+   */
+  long getAllocatedBytes() {
+    return runningThreadId < 0 || allocatedBytes >= 0 ?
+        allocatedBytes : Utils.getThreadAllocatedBytes(runningThreadId);
+  }
+
   @Override
   public void run() {
+    runningThreadId = Thread.currentThread().getId();
     try {
       db.init();
     } catch (DBException e) {
@@ -446,32 +485,39 @@ class ClientThread implements Runnable {
       sleepUntil(System.nanoTime() + randomMinorDelay);
     }
     try {
-      if (dotransactions) {
-        long startTimeNanos = System.nanoTime();
+      try {
+        if (dotransactions) {
+          long startTimeNanos = System.nanoTime();
 
-        while (((opcount == 0) || (opsdone < opcount)) && !workload.isStopRequested()) {
+          while (((opcount == 0) || (opsdone < opcount)) && !workload.isStopRequested()) {
 
-          if (!workload.doTransaction(db, workloadstate)) {
-            break;
-          }
+            if (!workload.doTransaction(db, workloadstate)) {
+              break;
+            }
+            measurements.endPhases();
 
-          opsdone++;
+            opsdone++;
 
-          throttleNanos(startTimeNanos);
-        }
-      } else {
-        long startTimeNanos = System.nanoTime();
+            throttleNanos(startTimeNanos);
+          }
+        } else {
+          long startTimeNanos = System.nanoTime();
 
-        while (((opcount == 0) || (opsdone < opcount)) && !workload.isStopRequested()) {
+          while (((opcount == 0) || (opsdone < opcount)) && !workload.isStopRequested()) {
 
-          if (!workload.doInsert(db, workloadstate)) {
-            break;
-          }
+            if (!workload.doInsert(db, workloadstate)) {
+              break;
+            }
+            measurements.endPhases();
 
-          opsdone++;
+            opsdone++;
 
-          throttleNanos(startTimeNanos);
+            throttleNanos(startTimeNanos);
+          }
         }
+      } finally {
+        // complete the operations the workload still buffers, also when the thread stops on an exception
+        workload.cleanupThread(db, workloadstate);
       }
     } catch (Exception e) {
       e.printStackTrace();
@@ -486,6 +532,9 @@ class ClientThread implements Runnable {
       e.printStackTrace();
       e.printStackTrace(System.out);
     } finally {
+      // the JVM stops reporting on a thread once it is gone
+      cpuTimeNanos = Utils.getThreadCpuTime(runningThreadId);
+      allocatedBytes = Utils.getThreadAllocatedBytes(runningThreadId);
       completeLatch.countDown();
     }
   }
@@ -505,14 +554,16 @@ class ClientThread implements Runnable {
       long deadline = startTimeNanos + opsdone * targetOpsTickNs;
       sleepUntil(deadline);
       measurements.setIntendedStartTimeNs(deadline);
+      // how far behind schedule the next operation starts
+      measurements.measurePhase(QUEUE_PHASE, Math.max(System.nanoTime() - deadline, 0));
     }
   }
 
   /**
    * The total amount of work this thread is still expected to do.
    */
-  int getOpsTodo() {
-    int todo = opcount - opsdone;
+  long getOpsTodo() {
+    long todo = opcount - opsdone;
     return todo < 0 ? 0 : todo;
   }
 }
@@ -549,10 +600,20 @@ public final class Client {
 
   /**
    * The exporter class to be used. The default is
-   * com.yahoo.ycsb.measurements.exporter.TextMeasurementsExporter.
+   * com.yahoo.ycsb.measurements.exporter.TextMeasurementsExporter. Exporters of
+   * typed records, such as JSONLinesMeasurementsExporter and
+   * CSVMeasurementsExporter, also receive the metadata and properties of the run
+   * when it starts, and the records that are complete while it is going.
    */
   public static final String EXPORTER_PROPERTY = "exporter";
 
+  /**
+   * The number of seconds between the records streamed to an exporter of typed
+   * records while the run is going.
+   */
+  public static final String EXPORT_INTERVAL_PROPERTY = "exportinterval";
+  public static final String EXPORT_INTERVAL_PROPERTY_DEFAULT = "10";
+
   /**
    * If set to the path of a file, YCSB will write all output to this file
    * instead of STDOUT.
@@ -601,6 +662,21 @@ public final class Client {
    */
   private static StatusThread statusthread = null;
 
+  /**
+   * An optional server exposing the measurements while the run is going.
+   */
+  private static MetricsServer metricsserver = null;
+
+  /**
+   * An optional thread streaming the records that are complete to an exporter of typed records.
+   */
+  private static ExportThread exportthread = null;
+
+  /**
+   * An optional account of the resources the client uses.
+   */
+  private static ClientResources resources = null;
+
   // HTrace integration related constants.
 
   /**
@@ -631,6 +707,8 @@ public final class Client {
     System.out.println("          values in the propertyfile");
     System.out.println("  -s:  show status during run (default: no status)");
     System.out.println("  -l label:  use label for status (e.g. to label one experiment out of a whole batch)");
+    System.out.println("  -p " + MetricsServer.PORT_PROPERTY + "=port:  serve live metrics in the Prometheus text " +
+        "format on\n          http://localhost:port" + MetricsServer.PATH + " during the run");
     System.out.println("");
     System.out.println("Required properties:");
     System.out.println("  " + WORKLOAD_PROPERTY + ": the name of the workload class to use (e.g. " +
@@ -653,38 +731,70 @@ public final class Client {
 
 
   /**
-   * Exports the measurements to either sysout or a file using the exporter
-   * loaded from conf.
-   *
-   * @throws IOException Either failed to write to output stream or failed to close it.
+   * Creates the exporter loaded from conf, writing to either sysout or a file, or exits if the file cannot be opened.
    */
-  private static void exportMeasurements(Properties props, int opcount, long runtime)
-      throws IOException {
-    MeasurementsExporter exporter = null;
-    try {
-      // if no destination file is provided the results will be written to stdout
-      OutputStream out;
-      String exportFile = props.getProperty(EXPORT_FILE_PROPERTY);
-      if (exportFile == null) {
-        out = System.out;
-      } else {
-        out = new FileOutputStream(exportFile);
-      }
-
-      // if no exporter is provided the default text one will be used
-      String exporterStr = props.getProperty(EXPORTER_PROPERTY,
-          "com.yahoo.ycsb.measurements.exporter.TextMeasurementsExporter");
+  private static MeasurementsExporter createExporter(Properties props) {
+    // if no destination file is provided the results will be written to stdout
+    OutputStream out = System.out;
+    String exportFile = props.getProperty(EXPORT_FILE_PROPERTY);
+    if (exportFile != null) {
       try {
-        exporter = (MeasurementsExporter) Class.forName(exporterStr).getConstructor(OutputStream.class)
-            .newInstance(out);
-      } catch (Exception e) {
-        System.err.println("Could not find exporter " + exporterStr
-            + ", will use default text reporter.");
+        out = new FileOutputStream(exportFile);
+      } catch (IOException e) {
+        System.err.println("Could not open the export file, error: " + e.getMessage());
         e.printStackTrace();
-        exporter = new TextMeasurementsExporter(out);
+        System.exit(-1);
       }
+    }
+
+    // if no exporter is provided the default text one will be used
+    String exporterStr = props.getProperty(EXPORTER_PROPERTY,
+        "com.yahoo.ycsb.measurements.exporter.TextMeasurementsExporter");
+    try {
+      return (MeasurementsExporter) Class.forName(exporterStr).getConstructor(OutputStream.class)
+          .newInstance(out);
+    } catch (Exception e) {
+      System.err.println("Could not find exporter " + exporterStr
+          + ", will use default text reporter.");
+      e.printStackTrace();
+      return new TextMeasurementsExporter(out);
+    }
+  }
+
+  /**
+   * Writes the metadata and properties of the run to an exporter of typed records, and starts streaming the records
+   * that are complete to it while the run is going.
+   */
+  private static void startStreaming(Properties props, MeasurementsExporter exporter, long starttime) {
+    if (!(exporter instanceof StructuredMeasurementsExporter)) {
+      return;
+    }
+    StructuredMeasurementsExporter structured = (StructuredMeasurementsExporter) exporter;
+    try {
+      structured.writeRun(getRunMetadata(props, starttime), getRunProperties(props));
+    } catch (IOException e) {
+      System.err.println("Could not export measurements, error: " + e.getMessage());
+      e.printStackTrace();
+      System.exit(-1);
+    }
+    exportthread = new ExportThread(structured, TimeUnit.SECONDS.toMillis(Long.parseLong(
+        props.getProperty(EXPORT_INTERVAL_PROPERTY, EXPORT_INTERVAL_PROPERTY_DEFAULT))));
+    exportthread.start();
+  }
 
+  /**
+   * Exports the measurements to the exporter, which is then closed.
+   *
+   * @throws IOException Either failed to write to output stream or failed to close it.
+   */
+  private static void exportMeasurements(MeasurementsExporter exporter, long opcount, long runtime)
+      throws IOException {
+    try {
       exporter.write("OVERALL", "RunTime(ms)", runtime);
+      if (exporter instanceof StructuredMeasurementsExporter) {
+        // the run was described before it started
+        exporter.write("OVERALL", "Operations", opcount);
+      }
       double throughput = 1000.0 * (opcount) / (runtime);
       exporter.write("OVERALL", "Throughput(ops/sec)", throughput);
 
@@ -711,13 +821,81 @@ public final class Client {
         exporter.write("MAX_SYS_LOAD_AVG", "Load", statusthread.getMaxLoadAvg());
         exporter.write("MIN_SYS_LOAD_AVG", "Load", statusthread.getMinLoadAvg());
       }
+      if (resources != null) {
+        resources.exportMeasurements(exporter);
+      }
 
       Measurements.getMeasurements().exportMeasurements(exporter);
     } finally {
-      if (exporter != null) {
-        exporter.close();
+      exporter.close();
+    }
+  }
+
+  /**
+   * Writes the operations kept by the sampler, if operations are sampled, to the sampling file or stderr.
+   *
+   * @throws IOException Either failed to write to output stream or failed to close it.
+   */
+  private static void exportSamples(Properties props) throws IOException {
+    OperationSampler sampler = Measurements.getMeasurements().getSampler();
+    if (sampler == null) {
+      return;
+    }
+    String file = props.getProperty(OperationSampler.FILE_PROPERTY);
+    if (file == null) {
+      sampler.write(System.err);
+    } else {
+      try (OutputStream out = new FileOutputStream(file)) {
+        sampler.write(out);
+      }
+    }
+  }
+
+  /**
+   * @return What describes a run for exporters of typed records: the binding, workload, phase, threads, host and
+   * version of the client, and when it started. How long it ran and how many operations it did are exported as
+   * OVERALL values once it is over.
+   */
+  private static Map<String, String> getRunMetadata(Properties props, long starttime) {
+    Map<String, String> metadata = new LinkedHashMap<>();
+    metadata.put("binding", props.getProperty(DB_PROPERTY, "com.yahoo.ycsb.BasicDB"));
+    metadata.put("workload", props.getProperty(WORKLOAD_PROPERTY, ""));
+    metadata.put("phase", Boolean.valueOf(props.getProperty(DO_TRANSACTIONS_PROPERTY, String.valueOf(true))) ?
+        "run" : "load");
+    metadata.put("label", props.getProperty(LABEL_PROPERTY, ""));
+    metadata.put("threads", props.getProperty(THREAD_COUNT_PROPERTY, "1"));
+    metadata.put("target", props.getProperty(TARGET_PROPERTY, "0"));
+    SimpleDateFormat iso8601 = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+    iso8601.setTimeZone(TimeZone.getTimeZone("UTC"));
+    metadata.put("starttime", iso8601.format(new Date(starttime)));
+    String version = Client.class.getPackage().getImplementationVersion();
+    if (version != null) {
+      metadata.put("version", version);
+    }
+    try {
+      metadata.put("host", InetAddress.getLocalHost().getHostName());
+    } catch (UnknownHostException e) {
+      // leave it out
+    }
+    metadata.put("java.version", System.getProperty("java.version"));
+    metadata.put("os.name", System.getProperty("os.name"));
+    metadata.put("processors", Integer.toString(Runtime.getRuntime().availableProcessors()));
+    return metadata;
+  }
+
+  /**
+   * @return The properties of the run in order of name, with the values of passwords and other secrets hidden.
+   */
+  private static Map<String, String> getRunProperties(Properties props) {
+    Map<String, String> properties = new TreeMap<>();
+    for (String name : props.stringPropertyNames()) {
+      if (name.toLowerCase().matches(".*(password|passwd|secret|token|credential).*")) {
+        properties.put(name, "<redacted>");
+      } else {
+        properties.put(name, props.getProperty(name));
       }
     }
+    return properties;
   }
 
   @SuppressWarnings("unchecked")
@@ -727,7 +905,7 @@ public final class Client {
     boolean status = Boolean.valueOf(props.getProperty(STATUS_PROPERTY, String.valueOf(false)));
     String label = props.getProperty(LABEL_PROPERTY, "");
 
-    long maxExecutionTime = Integer.parseInt(props.getProperty(MAX_EXECUTION_TIME, "0"));
+    long maxExecutionTime = Long.parseLong(props.getProperty(MAX_EXECUTION_TIME, "0"));
 
     //get number of threads, target and db
     int threadcount = Integer.parseInt(props.getProperty(THREAD_COUNT_PROPERTY, "1"));
@@ -758,6 +936,13 @@ public final class Client {
     final List<ClientThread> clients = initDb(dbname, props, threadcount, targetperthreadperms,
         workload, tracer, completeLatch);
 
+    if (Boolean.parseBoolean(props.getProperty(Measurements.MEASUREMENT_TRACK_RESOURCES_PROPERTY,
+        Measurements.MEASUREMENT_TRACK_RESOURCES_PROPERTY_DEFAULT))) {
+      resources = new ClientResources(clients, Double.parseDouble(props.getProperty(
+          ClientResources.SATURATION_PROPERTY, ClientResources.SATURATION_PROPERTY_DEFAULT)));
+      resources.start(Measurements.getMeasurements());
+    }
+
     if (status) {
       boolean standardstatus = false;
       if (props.getProperty(Measurements.MEASUREMENT_TYPE_PROPERTY, "").compareTo("timeseries") == 0) {
@@ -767,14 +952,17 @@ public final class Client {
       boolean trackJVMStats = props.getProperty(Measurements.MEASUREMENT_TRACK_JVM_PROPERTY,
           Measurements.MEASUREMENT_TRACK_JVM_PROPERTY_DEFAULT).equals("true");
       statusthread = new StatusThread(completeLatch, clients, label, standardstatus, statusIntervalSeconds,
-          trackJVMStats);
+          trackJVMStats, resources);
       statusthread.start();
     }
 
+    startMetricsServer(props, clients);
+    final MeasurementsExporter exporter = createExporter(props);
+
     Thread terminator = null;
     long st;
     long en;
-    int opsDone;
+    long opsDone;
 
     try (final TraceScope span = tracer.newScope(CLIENT_WORKLOAD_SPAN)) {
 
@@ -785,6 +973,8 @@ public final class Client {
 
       st = System.currentTimeMillis();
 
+      startStreaming(props, exporter, st);
+
       for (Thread t : threads.keySet()) {
         t.start();
       }
@@ -826,6 +1016,18 @@ public final class Client {
           }
         }
 
+        if (metricsserver != null) {
+          metricsserver.stop();
+        }
+
+        if (exportthread != null) {
+          exportthread.finish();
+        }
+
+        if (resources != null) {
+          resources.stop();
+        }
+
         workload.cleanup();
       }
     } catch (WorkloadException e) {
@@ -836,7 +1038,8 @@ public final class Client {
 
     try {
       try (final TraceScope span = tracer.newScope(CLIENT_EXPORT_MEASUREMENTS_SPAN)) {
-        exportMeasurements(props, opsDone, en - st);
+        exportMeasurements(exporter, opsDone, en - st);
+        exportSamples(props);
       }
     } catch (IOException e) {
       System.err.println("Could not export measurements, error: " + e.getMessage());
@@ -847,6 +1050,25 @@ public final class Client {
     System.exit(0);
   }
 
+  /**
+   * Starts serving metrics if a port is configured, or exits if the server cannot start.
+   */
+  private static void startMetricsServer(Properties props, List<ClientThread> clients) {
+    String metricsport = props.getProperty(MetricsServer.PORT_PROPERTY);
+    if (metricsport != null) {
+      String metricshost = props.getProperty(MetricsServer.HOST_PROPERTY, MetricsServer.HOST_PROPERTY_DEFAULT);
+      try {
+        metricsserver = new MetricsServer(metricshost, Integer.parseInt(metricsport), clients, resources);
+        metricsserver.start();
+        System.err.println("Serving metrics on http://" + metricshost + ":" + metricsport + MetricsServer.PATH);
+      } catch (IOException e) {
+        System.err.println("Could not start the metrics server, error: " + e.getMessage());
+        e.printStackTrace();
+        System.exit(-1);
+      }
+    }
+  }
+
   private static List<ClientThread> initDb(String dbname, Properties props, int threadcount,
                                            double targetperthreadperms, Workload workload, Tracer tracer,
                                            CountDownLatch completeLatch) {
@@ -855,14 +1077,14 @@ public final class Client {
 
     final List<ClientThread> clients = new ArrayList<>(threadcount);
     try (final TraceScope span = tracer.newScope(CLIENT_INIT_SPAN)) {
-      int opcount;
+      long opcount;
       if (dotransactions) {
-        opcount = Integer.parseInt(props.getProperty(OPERATION_COUNT_PROPERTY, "0"));
+        opcount = Long.parseLong(props.getProperty(OPERATION_COUNT_PROPERTY, "0"));
       } else {
         if (props.containsKey(INSERT_COUNT_PROPERTY)) {
-          opcount = Integer.parseInt(props.getProperty(INSERT_COUNT_PROPERTY, "0"));
+          opcount = Long.parseLong(props.getProperty(INSERT_COUNT_PROPERTY, "0"));
         } else {
-          opcount = Integer.parseInt(props.getProperty(RECORD_COUNT_PROPERTY, DEFAULT_RECORD_COUNT));
+          opcount = Long.parseLong(props.getProperty(RECORD_COUNT_PROPERTY, DEFAULT_RECORD_COUNT));
         }
       }
 
@@ -876,7 +1098,7 @@ public final class Client {
           break;
         }
 
-        int threadopcount = opcount / threadcount;
+        long threadopcount = opcount / threadcount;
 
         // ensure correct number of operations, in case opcount is not a multiple of threadcount
         if (threadid < opcount % threadcount) {
@@ -0,0 +1,255 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import com.yahoo.ycsb.measurements.Measurements;
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Accounts for the resources the client itself uses, to tell whether the load generator rather than the store is
+ * the bottleneck: the CPU time of the process and of the client threads, the bytes the client threads allocate, and
+ * each GC pause as reported by the collectors' notifications.
+ * <p>
+ * The status thread calls {@link #sampleInterval(Measurements)} once per interval, which adds the interval's
+ * ProcessCpuTime(ns), ThreadCpuTime(ns), AllocatedBytes and Operations to the counters of CLIENT_INTERVALS, along
+ * with its Count, and warns when the client looks saturated. GC pauses are recorded as GC_PAUSE as they happen.
+ * Totals over the run are exported under CLIENT, followed by the timeline of pauses under GC_PAUSES.
+ */
+final class ClientResources {
+  /**
+   * The name of the property for the share of the CPUs, or of one client thread's time, above which the client is
+   * reported as saturated.
+   */
+  static final String SATURATION_PROPERTY = "measurement.resources.saturation";
+  static final String SATURATION_PROPERTY_DEFAULT = "0.9";
+
+  /**
+   * The number of pauses kept for the timeline; later ones are only recorded as GC_PAUSE.
+   */
+  static final int MAX_PAUSES = 10000;
+
+  private final List<ClientThread> clients;
+  private final double saturation;
+  private final int processors = Runtime.getRuntime().availableProcessors();
+  private final List<Pause> pauses = new ArrayList<>();
+  private final List<NotificationEmitter> emitters = new ArrayList<>();
+  private NotificationListener listener;
+
+  private long startNanos;
+  private long startProcessCpu;
+  private long lastNanos;
+  private long lastProcessCpu;
+  private long[] lastThreadCpu;
+  private long lastThreadAllocated;
+  private long lastOps;
+  private int saturatedIntervals = 0;
+
+  ClientResources(List<ClientThread> clients, double saturation) {
+    this.clients = clients;
+    this.saturation = saturation;
+    lastThreadCpu = new long[clients.size()];
+  }
+
+  /**
+   * Starts listening for GC pauses and takes the starting point of the first interval.
+   */
+  void start(final Measurements measurements) {
+    listener = new NotificationListener() {
+      @Override
+      public void handleNotification(Notification notification, Object handback) {
+        if (GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+          recordPause(measurements,
+              GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData()));
+        }
+      }
+    };
+    for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+      if (bean instanceof NotificationEmitter) {
+        ((NotificationEmitter) bean).addNotificationListener(listener, null, null);
+        emitters.add((NotificationEmitter) bean);
+      }
+    }
+    startNanos = System.nanoTime();
+    startProcessCpu = Utils.getProcessCpuTime();
+    lastNanos = startNanos;
+    lastProcessCpu = startProcessCpu;
+  }
+
+  /**
+   * Stops listening for GC pauses.
+   */
+  void stop() {
+    for (NotificationEmitter emitter : emitters) {
+      try {
+        emitter.removeNotificationListener(listener);
+      } catch (Exception e) {
+        // already removed
+      }
+    }
+    emitters.clear();
+  }
+
+  private void recordPause(Measurements measurements, GarbageCollectionNotificationInfo info) {
+    // concurrent cycles run alongside the application rather than pausing it
+    if (info.getGcAction().contains("concurrent") || info.getGcName().contains("Concurrent")) {
+      return;
+    }
+    long duration = info.getGcInfo().getDuration();
+    measurements.measureNanos("GC_PAUSE", duration * 1000000L);
+    synchronized (pauses) {
+      if (pauses.size() < MAX_PAUSES) {
+        pauses.add(new Pause(info.getGcInfo().getStartTime() + ":" + info.getGcName().replace(' ', '_') + ":" +
+            info.getGcCause().replace(' ', '_') + "(ms)", duration));
+      }
+    }
+  }
+
+  /**
+   * Records the resources used since the last call, and warns on stderr if the client used most of the CPUs or
+   * one of its threads was busy for most of the interval, since latencies then include time spent waiting for the
+   * client.
+   *
+   * @return A summary for the status line.
+   */
+  synchronized String sampleInterval(Measurements measurements) {
+    long now = System.nanoTime();
+    long wall = Math.max(now - lastNanos, 1);
+    long processCpu = Utils.getProcessCpuTime();
+    long ops = 0;
+    long threadCpu = 0;
+    long busiestCpu = 0;
+    long allocated = 0;
+    for (int i = 0; i < clients.size(); i++) {
+      ClientThread client = clients.get(i);
+      ops += client.getOpsDone();
+      long cpu = client.getCpuTimeNanos();
+      if (cpu >= 0) {
+        threadCpu += cpu - lastThreadCpu[i];
+        busiestCpu = Math.max(busiestCpu, cpu - lastThreadCpu[i]);
+        lastThreadCpu[i] = cpu;
+      }
+      allocated += Math.max(client.getAllocatedBytes(), 0);
+    }
+    long intervalOps = Math.max(ops - lastOps, 1);
+    long intervalAllocated = allocated - lastThreadAllocated;
+    measurements.count("CLIENT_INTERVALS", "Count", 1);
+    measurements.count("CLIENT_INTERVALS", "ThreadCpuTime(ns)", threadCpu);
+    measurements.count("CLIENT_INTERVALS", "AllocatedBytes", intervalAllocated);
+    measurements.count("CLIENT_INTERVALS", "Operations", ops - lastOps);
+
+    StringBuilder summary = new StringBuilder("[CLIENT");
+    DecimalFormat d = new DecimalFormat("#.##");
+    String saturated = null;
+    if (processCpu >= 0 && lastProcessCpu >= 0) {
+      double share = (double) (processCpu - lastProcessCpu) / wall / processors;
+      measurements.count("CLIENT_INTERVALS", "ProcessCpuTime(ns)", processCpu - lastProcessCpu);
+      summary.append(" Cpu(%)=").append(d.format(share * 100));
+      if (share >= saturation) {
+        saturated = "the client used " + d.format(share * 100) + "% of " + processors + " CPUs";
+      }
+    }
+    summary.append(" CpuPerOp(ns)=").append(threadCpu / intervalOps);
+    summary.append(" AllocatedBytesPerOp=").append(intervalAllocated / intervalOps);
+    if (saturated == null && (double) busiestCpu / wall >= saturation) {
+      saturated = "a client thread was on the CPU " + d.format(100.0 * busiestCpu / wall) + "% of the interval";
+    }
+    if (saturated != null) {
+      saturatedIntervals++;
+      System.err.println("WARNING: " + saturated + "; the client may be the bottleneck, so latencies and " +
+          "throughput may reflect it rather than the DB. Consider more client machines or fewer threads per client.");
+    }
+
+    lastNanos = now;
+    lastProcessCpu = processCpu;
+    lastThreadAllocated = allocated;
+    lastOps = ops;
+    return summary.append(']').toString();
+  }
+
+  /**
+   * Exports the resources used since the start of the run.
+   */
+  void exportCurrentMeasurements(MeasurementsExporter exporter) throws IOException {
+    long wall = Math.max(System.nanoTime() - startNanos, 1);
+    long ops = 0;
+    long threadCpu = 0;
+    long busiestCpu = 0;
+    long allocated = 0;
+    for (ClientThread client : clients) {
+      ops += client.getOpsDone();
+      threadCpu += Math.max(client.getCpuTimeNanos(), 0);
+      busiestCpu = Math.max(busiestCpu, client.getCpuTimeNanos());
+      allocated += Math.max(client.getAllocatedBytes(), 0);
+    }
+    long processCpu = Utils.getProcessCpuTime();
+    if (processCpu >= 0 && startProcessCpu >= 0) {
+      exporter.write("CLIENT", "CpuTime(ms)", (processCpu - startProcessCpu) / 1000000);
+      exporter.write("CLIENT", "CpuUtilization(%)", 100.0 * (processCpu - startProcessCpu) / wall / processors);
+    }
+    exporter.write("CLIENT", "ThreadCpuTime(ms)", threadCpu / 1000000);
+    exporter.write("CLIENT", "MaxThreadCpuUtilization(%)", 100.0 * busiestCpu / wall);
+    exporter.write("CLIENT", "AllocatedBytes", allocated);
+    if (ops > 0) {
+      exporter.write("CLIENT", "CpuPerOp(ns)", threadCpu / ops);
+      exporter.write("CLIENT", "AllocatedBytesPerOp", allocated / ops);
+    }
+    synchronized (this) {
+      exporter.write("CLIENT", "SaturatedIntervals", saturatedIntervals);
+    }
+  }
+
+  /**
+   * Exports the resources used over the run, and the start, collector, cause and duration of each GC pause.
+   */
+  void exportMeasurements(MeasurementsExporter exporter) throws IOException {
+    exportCurrentMeasurements(exporter);
+    List<Pause> timeline;
+    synchronized (pauses) {
+      timeline = new ArrayList<>(pauses);
+    }
+    exporter.write("GC_PAUSES", "Count", timeline.size());
+    for (Pause pause : timeline) {
+      exporter.write("GC_PAUSES", pause.name, pause.durationMs);
+    }
+  }
+
+  /**
+   * A GC pause, named by its start in milliseconds since the JVM started, its collector and its cause.
+   */
+  private static final class Pause {
+    private final String name;
+    private final long durationMs;
+
+    Pause(String name, long durationMs) {
+      this.name = name;
+      this.durationMs = durationMs;
+    }
+  }
+}
@@ -17,7 +17,9 @@
 
 package com.yahoo.ycsb;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
@@ -132,4 +134,111 @@ public abstract class DB {
    * @return The result of the operation.
    */
   public abstract Status delete(String table, String key);
+
+  /**
+   * Read a batch of records from the database. The result of each read is appended to the results list in the
+   * order of the keys. Bindings that support multi-key reads should override this; by default each record is read
+   * in turn with {@link #read(String, String, Set, Map)}.
+   *
+   * @param table The name of the table
+   * @param keys The record keys of the records to read.
+   * @param fields The list of fields to read, or null for all of them
+   * @param results A List to which a Map of field/value pairs is appended for each key
+   * @return The result of the operation, the first failure if any record could not be read.
+   */
+  public Status batchRead(String table, List<String> keys, Set<String> fields,
+                          List<Map<String, ByteIterator>> results) {
+    Status status = Status.OK;
+    for (String key : keys) {
+      Map<String, ByteIterator> result = new HashMap<String, ByteIterator>();
+      Status res = read(table, key, fields, result);
+      results.add(result);
+      if (status.isOk() && (res == null || !res.isOk())) {
+        status = res;
+      }
+    }
+    return status;
+  }
+
+  /**
+   * Update a batch of records in the database. The field/value pairs at each index of values are written into the
+   * record with the key at the same index. Bindings that support multi-key writes should override this; by default
+   * each record is updated in turn with {@link #update(String, String, Map)}.
+   *
+   * @param table The name of the table
+   * @param keys The record keys of the records to write.
+   * @param values A List of field/value pairs to update, one Map per key
+   * @return The result of the operation, the first failure if any record could not be updated.
+   */
+  public Status batchUpdate(String table, List<String> keys, List<Map<String, ByteIterator>> values) {
+    Status status = Status.OK;
+    for (int i = 0; i < keys.size(); i++) {
+      Status res = update(table, keys.get(i), values.get(i));
+      if (status.isOk() && (res == null || !res.isOk())) {
+        status = res;
+      }
+    }
+    return status;
+  }
+
+  /**
+   * Insert a batch of records in the database. The field/value pairs at each index of values are inserted as the
+   * record with the key at the same index. Bindings that support multi-key writes should override this; by default
+   * each record is inserted in turn with {@link #insert(String, String, Map)}.
+   * <p>
+   * When some of the records could not be inserted, bindings that know which ones were should remove those from
+   * keys and values before returning the failure, so that retrying the batch only inserts the rest. Bindings that
+   * cannot tell leave both lists as they are.
+   *
+   * @param table The name of the table
+   * @param keys The record keys of the records to insert.
+   * @param values A List of field/value pairs to insert, one Map per key
+   * @return The result of the operation, the first failure if any record could not be inserted.
+   */
+  public Status batchInsert(String table, List<String> keys, List<Map<String, ByteIterator>> values) {
+    Status status = Status.OK;
+    List<String> failedkeys = new ArrayList<>();
+    List<Map<String, ByteIterator>> failedvalues = new ArrayList<>();
+    for (int i = 0; i < keys.size(); i++) {
+      Status res = insert(table, keys.get(i), values.get(i));
+      if (res == null || !res.isOk()) {
+        if (status.isOk()) {
+          status = res;
+        }
+        failedkeys.add(keys.get(i));
+        failedvalues.add(values.get(i));
+      }
+    }
+    if (!failedkeys.isEmpty()) {
+      keys.clear();
+      keys.addAll(failedkeys);
+      values.clear();
+      values.addAll(failedvalues);
+    }
+    return status;
+  }
+
+  /**
+   * Read and then update a set of records as one transaction. All records are read into results, in the order of
+   * the keys, before the values at each index are written into the record with the key at the same index. Bindings
+   * for transactional stores should override this to perform the reads and writes atomically and return
+   * {@link Status#ABORTED} when the transaction could not commit. By default the records are read with
+   * {@link #batchRead(String, List, Set, List)} and written with {@link #batchUpdate(String, List, List)}, which
+   * is not atomic.
+   *
+   * @param table The name of the table
+   * @param keys The record keys of the records to read and write.
+   * @param fields The list of fields to read, or null for all of them
+   * @param results A List to which a Map of field/value pairs is appended for each key
+   * @param values A List of field/value pairs to update, one Map per key
+   * @return The result of the operation.
+   */
+  public Status transaction(String table, List<String> keys, Set<String> fields,
+                            List<Map<String, ByteIterator>> results, List<Map<String, ByteIterator>> values) {
+    Status status = batchRead(table, keys, fields, results);
+    if (status == null || !status.isOk()) {
+      return status;
+    }
+    return batchUpdate(table, keys, values);
+  }
 }
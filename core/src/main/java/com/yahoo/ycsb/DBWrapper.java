@@ -18,11 +18,22 @@
 package com.yahoo.ycsb;
 
 import java.util.Map;
+import com.yahoo.ycsb.measurements.KeySketch;
 import com.yahoo.ycsb.measurements.Measurements;
+import com.yahoo.ycsb.measurements.OperationSampler;
 import org.apache.htrace.core.TraceScope;
 import org.apache.htrace.core.Tracer;
 
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Wrapper around a "real" DB that measures latencies and counts return codes.
@@ -32,6 +43,16 @@ public class DBWrapper extends DB {
   private final DB db;
   private final Measurements measurements;
   private final Tracer tracer;
+  private final OperationSampler sampler;
+  private final KeySketch keySketch;
+  private RetryPolicy retries;
+  private ExecutorService attemptExecutor;
+
+  /**
+   * The last try given up on, while it may still be running on the attemptExecutor, or null.
+   */
+  private Future<Status> abandonedTry;
+  private long abandonedTimeoutNanos;
 
   private boolean reportLatencyForEachError = false;
   private Set<String> latencyTrackedErrors = new HashSet<String>();
@@ -41,25 +62,40 @@ public class DBWrapper extends DB {
 
   private static final String LATENCY_TRACKED_ERRORS_PROPERTY = "latencytrackederrors";
 
+  /**
+   * The phase of an operation spent in calls to the DB, when measurement.phases is enabled.
+   */
+  public static final String DB_PHASE = "DB";
+
+  private final String scopeStringBatchInsert;
+  private final String scopeStringBatchRead;
+  private final String scopeStringBatchUpdate;
   private final String scopeStringCleanup;
   private final String scopeStringDelete;
   private final String scopeStringInit;
   private final String scopeStringInsert;
   private final String scopeStringRead;
   private final String scopeStringScan;
+  private final String scopeStringTransaction;
   private final String scopeStringUpdate;
 
   public DBWrapper(final DB db, final Tracer tracer) {
     this.db = db;
     measurements = Measurements.getMeasurements();
     this.tracer = tracer;
+    sampler = measurements.getSampler();
+    keySketch = measurements.getKeySketch();
     final String simple = db.getClass().getSimpleName();
+    scopeStringBatchInsert = simple + "#batchInsert";
+    scopeStringBatchRead = simple + "#batchRead";
+    scopeStringBatchUpdate = simple + "#batchUpdate";
     scopeStringCleanup = simple + "#cleanup";
     scopeStringDelete = simple + "#delete";
     scopeStringInit = simple + "#init";
     scopeStringInsert = simple + "#insert";
     scopeStringRead = simple + "#read";
     scopeStringScan = simple + "#scan";
+    scopeStringTransaction = simple + "#transaction";
     scopeStringUpdate = simple + "#update";
   }
 
@@ -100,6 +136,8 @@ public class DBWrapper extends DB {
       System.err.println("DBWrapper: report latency for each error is " +
           this.reportLatencyForEachError + " and specific error codes to track" +
           " for latency are: " + this.latencyTrackedErrors.toString());
+
+      retries = RetryPolicy.fromProperties(getProperties());
     }
   }
 
@@ -109,11 +147,27 @@ public class DBWrapper extends DB {
    */
   public void cleanup() throws DBException {
     try (final TraceScope span = tracer.newScope(scopeStringCleanup)) {
+      if (attemptExecutor != null) {
+        // the DB is not cleaned up under a try given up on, which is interrupted and waited for a while
+        attemptExecutor.shutdownNow();
+        if (abandonedTry != null) {
+          try {
+            if (!attemptExecutor.awaitTermination(abandonedTimeoutNanos, TimeUnit.NANOSECONDS)) {
+              System.err.println("WARNING: cleaning up " + db.getClass().getSimpleName() +
+                  " while a try given up on is still running.");
+            }
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          abandonedTry = null;
+        }
+      }
       long ist = measurements.getIntendedtartTimeNs();
       long st = System.nanoTime();
       db.cleanup();
       long en = System.nanoTime();
-      measure("CLEANUP", Status.OK, ist, st, en);
+      // cleanup concerns no key, so it is neither sampled nor sketched
+      record("CLEANUP", Status.OK, ist, st, en);
     }
   }
 
@@ -127,14 +181,34 @@ public class DBWrapper extends DB {
    * @param result A HashMap of field/value pairs for the result
    * @return The result of the operation.
    */
-  public Status read(String table, String key, Set<String> fields,
-                     Map<String, ByteIterator> result) {
-    try (final TraceScope span = tracer.newScope(scopeStringRead)) {
+  public Status read(final String table, final String key, final Set<String> fields,
+                     final Map<String, ByteIterator> result) {
+    try (final TraceScope span = newScope(scopeStringRead)) {
+      if (retries != null) {
+        return attempt("READ", key, null, new Attempt<Map<String, ByteIterator>>() {
+          @Override
+          Map<String, ByteIterator> newResult() {
+            return new HashMap<>();
+          }
+
+          @Override
+          Status call(Map<String, ByteIterator> tryResult) {
+            return db.read(table, key, fields, tryResult);
+          }
+
+          @Override
+          void accept(Map<String, ByteIterator> tryResult, Status status) {
+            if (status.isOk()) {
+              result.putAll(tryResult);
+            }
+          }
+        });
+      }
       long ist = measurements.getIntendedtartTimeNs();
       long st = System.nanoTime();
       Status res = db.read(table, key, fields, result);
       long en = System.nanoTime();
-      measure("READ", res, ist, st, en);
+      measure("READ", key, res, ist, st, en);
       measurements.reportStatus("READ", res);
       return res;
     }
@@ -151,21 +225,64 @@ public class DBWrapper extends DB {
    * @param result A Vector of HashMaps, where each HashMap is a set field/value pairs for one record
    * @return The result of the operation.
    */
-  public Status scan(String table, String startkey, int recordcount,
-                     Set<String> fields, Vector<HashMap<String, ByteIterator>> result) {
-    try (final TraceScope span = tracer.newScope(scopeStringScan)) {
+  public Status scan(final String table, final String startkey, final int recordcount,
+                     final Set<String> fields, final Vector<HashMap<String, ByteIterator>> result) {
+    try (final TraceScope span = newScope(scopeStringScan)) {
+      if (retries != null) {
+        return attempt("SCAN", startkey, null, new Attempt<Vector<HashMap<String, ByteIterator>>>() {
+          @Override
+          Vector<HashMap<String, ByteIterator>> newResult() {
+            return new Vector<>();
+          }
+
+          @Override
+          Status call(Vector<HashMap<String, ByteIterator>> tryResult) {
+            return db.scan(table, startkey, recordcount, fields, tryResult);
+          }
+
+          @Override
+          void accept(Vector<HashMap<String, ByteIterator>> tryResult, Status status) {
+            if (status.isOk()) {
+              result.addAll(tryResult);
+            }
+          }
+        });
+      }
       long ist = measurements.getIntendedtartTimeNs();
       long st = System.nanoTime();
       Status res = db.scan(table, startkey, recordcount, fields, result);
       long en = System.nanoTime();
-      measure("SCAN", res, ist, st, en);
+      measure("SCAN", startkey, res, ist, st, en);
       measurements.reportStatus("SCAN", res);
       return res;
     }
   }
 
-  private void measure(String op, Status result, long intendedStartTimeNanos,
+  /**
+   * Opens an HTrace span, unless operations are sampled instead.
+   */
+  private TraceScope newScope(String description) {
+    return sampler == null ? tracer.newScope(description) : null;
+  }
+
+  /**
+   * Measures an operation, adds its latency to the DB phase of the operation the client thread is performing, and
+   * offers it to the sampler and the key sketch.
+   */
+  private void measure(String op, Object key, Status result, long intendedStartTimeNanos,
                        long startTimeNanos, long endTimeNanos) {
+    record(op, result, intendedStartTimeNanos, startTimeNanos, endTimeNanos);
+    measurements.measurePhase(DB_PHASE, endTimeNanos - startTimeNanos);
+    if (sampler != null) {
+      sampler.offer(op, key, result, intendedStartTimeNanos, startTimeNanos, endTimeNanos);
+    }
+    if (keySketch != null) {
+      keySketch.offer(op, key, endTimeNanos - startTimeNanos);
+    }
+  }
+
+  private void record(String op, Status result, long intendedStartTimeNanos,
+                      long startTimeNanos, long endTimeNanos) {
     String measurementName = op;
     if (result == null || !result.isOk()) {
       if (this.reportLatencyForEachError ||
@@ -175,10 +292,209 @@ public class DBWrapper extends DB {
         measurementName = op + "-FAILED";
       }
     }
-    measurements.measure(measurementName,
-        (int) ((endTimeNanos - startTimeNanos) / 1000));
-    measurements.measureIntended(measurementName,
-        (int) ((endTimeNanos - intendedStartTimeNanos) / 1000));
+    measurements.measureNanos(measurementName, endTimeNanos - startTimeNanos);
+    measurements.measureIntendedNanos(measurementName, endTimeNanos - intendedStartTimeNanos);
+  }
+
+  /**
+   * Measures a batched operation once under op, and counts the records it covered under op's "Items" counter, so
+   * that batched and unbatched runs can be compared per record.
+   *
+   * @param items The number of records in the batch when it was issued.
+   */
+  private void measureBatch(String op, List<String> keys, int items, Status result, long intendedStartTimeNanos,
+                            long startTimeNanos, long endTimeNanos) {
+    measure(op, keys, result, intendedStartTimeNanos, startTimeNanos, endTimeNanos);
+    measurements.reportStatus(op, result);
+    measurements.count(op, "Items", items);
+  }
+
+  /**
+   * One try of an operation, made again as the retry policy allows. Each try fills in a result of its own, which is
+   * handed to the caller's only once the try is over, so a try given up on cannot write into it later.
+   *
+   * @param <R> The type of the result of a try, or Void for operations without one.
+   */
+  private abstract static class Attempt<R> {
+    /**
+     * @return A new, empty result for a try.
+     */
+    R newResult() {
+      return null;
+    }
+
+    abstract Status call(R tryResult);
+
+    /**
+     * Hands the result of a try that ended with status, rather than being given up on, to the caller.
+     */
+    void accept(R tryResult, Status status) {
+    }
+
+    /**
+     * Makes a try on the calling thread.
+     */
+    final Status run() {
+      R tryResult = newResult();
+      Status status = call(tryResult);
+      if (status != null) {
+        accept(tryResult, status);
+      }
+      return status;
+    }
+  }
+
+  /**
+   * Copies of the lists of a batch insert, which the DB trims to the records that failed.
+   */
+  private static final class BatchInsert {
+    private final List<String> keys;
+    private final List<Map<String, ByteIterator>> values;
+
+    BatchInsert(List<String> keys, List<Map<String, ByteIterator>> values) {
+      this.keys = new ArrayList<>(keys);
+      this.values = new ArrayList<>(values);
+    }
+  }
+
+  /**
+   * Tries an operation until it succeeds, fails with a status not worth retrying, runs out of attempts or the thread
+   * is interrupted, backing off between tries. The operation is measured once under op, from its first try to its
+   * last, with the last status. When it may be tried more than once, each try is also measured under op-ATTEMPT,
+   * the time spent after the first try failed under op-RETRY, and the tries are counted under op's "Attempts".
+   *
+   * @param keys The keys of a batch, to measure the operation as a batch, or null.
+   */
+  private <R> Status attempt(String op, Object key, List<String> keys, Attempt<R> attempt) {
+    int items = keys == null ? 0 : keys.size();
+    long ist = measurements.getIntendedtartTimeNs();
+    long st = System.nanoTime();
+    long timeout = retries.getTimeoutNanos(op);
+    boolean retrying = retries.getMaxAttempts(op) > 1;
+    long firstEnd = st;
+    int attempts = 0;
+    Status res;
+    while (true) {
+      long ast = System.nanoTime();
+      res = timeout > 0 ? callWithTimeout(attempt, timeout) : attempt.run();
+      long aen = System.nanoTime();
+      if (++attempts == 1) {
+        firstEnd = aen;
+      }
+      if (retrying) {
+        measurements.measureNanos(op + "-ATTEMPT", aen - ast);
+        measurements.reportStatus(op + "-ATTEMPT", res);
+      }
+      if (!retries.shouldRetry(op, res, attempts) || !backOff(retries.getBackoffNanos(op, attempts))) {
+        break;
+      }
+    }
+    long en = System.nanoTime();
+    if (retrying) {
+      measurements.count(op, "Attempts", attempts);
+      if (attempts > 1) {
+        measurements.measureNanos(op + "-RETRY", en - firstEnd);
+      }
+    }
+    if (keys != null) {
+      measureBatch(op, keys, items, res, ist, st, en);
+    } else {
+      measure(op, key, res, ist, st, en);
+      measurements.reportStatus(op, res);
+    }
+    return res;
+  }
+
+  /**
+   * Waits before the next try.
+   *
+   * @return false if the thread was interrupted, which is left set, so that no more tries are made.
+   */
+  private static boolean backOff(long nanos) {
+    long deadline = System.nanoTime() + nanos;
+    while (System.nanoTime() < deadline) {
+      if (Thread.currentThread().isInterrupted()) {
+        return false;
+      }
+      LockSupport.parkNanos(deadline - System.nanoTime());
+    }
+    return !Thread.currentThread().isInterrupted();
+  }
+
+  /**
+   * Makes a try on a thread of its own, giving up on it after timeoutNanos. The one thread is kept for all the tries
+   * of this client thread, so the DB, which need not be thread-safe, is only ever used by one thread at a time, and
+   * a client thread never has more than one try left running. A try given up on is left to finish on its own,
+   * without being interrupted, and the next try first waits for it, within its own timeout: while the DB is still
+   * busy with it, the next try is not made and ends with TIMEOUT too.
+   *
+   * @return The status of the try, or TIMEOUT if it was given up on or not made, in which case its result is
+   * dropped.
+   */
+  private <R> Status callWithTimeout(final Attempt<R> attempt, long timeoutNanos) {
+    long deadline = System.nanoTime() + timeoutNanos;
+    if (attemptExecutor == null) {
+      final String name = "DBWrapper-" + Thread.currentThread().getName();
+      attemptExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread t = new Thread(r, name);
+          t.setDaemon(true);
+          return t;
+        }
+      });
+    }
+    if (abandonedTry != null) {
+      try {
+        abandonedTry.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+      } catch (TimeoutException e) {
+        return Status.TIMEOUT;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return Status.ERROR;
+      } catch (ExecutionException e) {
+        // the failure of a try given up on is not reported
+      }
+      abandonedTry = null;
+    }
+    final R tryResult = attempt.newResult();
+    Future<Status> future = attemptExecutor.submit(new Callable<Status>() {
+      @Override
+      public Status call() {
+        return attempt.call(tryResult);
+      }
+    });
+    Status status;
+    try {
+      status = future.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+    } catch (TimeoutException e) {
+      abandon(future, timeoutNanos);
+      return Status.TIMEOUT;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      abandon(future, timeoutNanos);
+      return Status.ERROR;
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      if (e.getCause() instanceof Error) {
+        throw (Error) e.getCause();
+      }
+      throw new IllegalStateException(e.getCause());
+    }
+    if (status != null) {
+      attempt.accept(tryResult, status);
+    }
+    return status;
+  }
+
+  /**
+   * Leaves a try to finish on its own, for the next try to wait for.
+   */
+  private void abandon(Future<Status> future, long timeoutNanos) {
+    abandonedTry = future;
+    abandonedTimeoutNanos = timeoutNanos;
   }
 
   /**
@@ -190,14 +506,22 @@ public class DBWrapper extends DB {
    * @param values A HashMap of field/value pairs to update in the record
    * @return The result of the operation.
    */
-  public Status update(String table, String key,
-                       Map<String, ByteIterator> values) {
-    try (final TraceScope span = tracer.newScope(scopeStringUpdate)) {
+  public Status update(final String table, final String key,
+                       final Map<String, ByteIterator> values) {
+    try (final TraceScope span = newScope(scopeStringUpdate)) {
+      if (retries != null) {
+        return attempt("UPDATE", key, null, new Attempt<Void>() {
+          @Override
+          Status call(Void tryResult) {
+            return db.update(table, key, values);
+          }
+        });
+      }
       long ist = measurements.getIntendedtartTimeNs();
       long st = System.nanoTime();
       Status res = db.update(table, key, values);
       long en = System.nanoTime();
-      measure("UPDATE", res, ist, st, en);
+      measure("UPDATE", key, res, ist, st, en);
       measurements.reportStatus("UPDATE", res);
       return res;
     }
@@ -213,14 +537,22 @@ public class DBWrapper extends DB {
    * @param values A HashMap of field/value pairs to insert in the record
    * @return The result of the operation.
    */
-  public Status insert(String table, String key,
-                       Map<String, ByteIterator> values) {
-    try (final TraceScope span = tracer.newScope(scopeStringInsert)) {
+  public Status insert(final String table, final String key,
+                       final Map<String, ByteIterator> values) {
+    try (final TraceScope span = newScope(scopeStringInsert)) {
+      if (retries != null) {
+        return attempt("INSERT", key, null, new Attempt<Void>() {
+          @Override
+          Status call(Void tryResult) {
+            return db.insert(table, key, values);
+          }
+        });
+      }
       long ist = measurements.getIntendedtartTimeNs();
       long st = System.nanoTime();
       Status res = db.insert(table, key, values);
       long en = System.nanoTime();
-      measure("INSERT", res, ist, st, en);
+      measure("INSERT", key, res, ist, st, en);
       measurements.reportStatus("INSERT", res);
       return res;
     }
@@ -233,15 +565,181 @@ public class DBWrapper extends DB {
    * @param key The record key of the record to delete.
    * @return The result of the operation.
    */
-  public Status delete(String table, String key) {
-    try (final TraceScope span = tracer.newScope(scopeStringDelete)) {
+  public Status delete(final String table, final String key) {
+    try (final TraceScope span = newScope(scopeStringDelete)) {
+      if (retries != null) {
+        return attempt("DELETE", key, null, new Attempt<Void>() {
+          @Override
+          Status call(Void tryResult) {
+            return db.delete(table, key);
+          }
+        });
+      }
       long ist = measurements.getIntendedtartTimeNs();
       long st = System.nanoTime();
       Status res = db.delete(table, key);
       long en = System.nanoTime();
-      measure("DELETE", res, ist, st, en);
+      measure("DELETE", key, res, ist, st, en);
       measurements.reportStatus("DELETE", res);
       return res;
     }
   }
+
+  /**
+   * Read a batch of records from the database.
+   *
+   * @param table The name of the table
+   * @param keys The record keys of the records to read.
+   * @param fields The list of fields to read, or null for all of them
+   * @param results A List to which a Map of field/value pairs is appended for each key
+   * @return The result of the operation.
+   */
+  public Status batchRead(final String table, final List<String> keys, final Set<String> fields,
+                          final List<Map<String, ByteIterator>> results) {
+    try (final TraceScope span = newScope(scopeStringBatchRead)) {
+      if (retries != null) {
+        return attempt("BATCH-READ", keys, keys, new Attempt<List<Map<String, ByteIterator>>>() {
+          @Override
+          List<Map<String, ByteIterator>> newResult() {
+            return new ArrayList<>();
+          }
+
+          @Override
+          Status call(List<Map<String, ByteIterator>> tryResult) {
+            return db.batchRead(table, keys, fields, tryResult);
+          }
+
+          @Override
+          void accept(List<Map<String, ByteIterator>> tryResult, Status status) {
+            if (status.isOk()) {
+              results.addAll(tryResult);
+            }
+          }
+        });
+      }
+      int items = keys.size();
+      long ist = measurements.getIntendedtartTimeNs();
+      long st = System.nanoTime();
+      Status res = db.batchRead(table, keys, fields, results);
+      long en = System.nanoTime();
+      measureBatch("BATCH-READ", keys, items, res, ist, st, en);
+      return res;
+    }
+  }
+
+  /**
+   * Update a batch of records in the database.
+   *
+   * @param table The name of the table
+   * @param keys The record keys of the records to write.
+   * @param values A List of field/value pairs to update, one Map per key
+   * @return The result of the operation.
+   */
+  public Status batchUpdate(final String table, final List<String> keys,
+                            final List<Map<String, ByteIterator>> values) {
+    try (final TraceScope span = newScope(scopeStringBatchUpdate)) {
+      if (retries != null) {
+        return attempt("BATCH-UPDATE", keys, keys, new Attempt<Void>() {
+          @Override
+          Status call(Void tryResult) {
+            return db.batchUpdate(table, keys, values);
+          }
+        });
+      }
+      int items = keys.size();
+      long ist = measurements.getIntendedtartTimeNs();
+      long st = System.nanoTime();
+      Status res = db.batchUpdate(table, keys, values);
+      long en = System.nanoTime();
+      measureBatch("BATCH-UPDATE", keys, items, res, ist, st, en);
+      return res;
+    }
+  }
+
+  /**
+   * Insert a batch of records in the database.
+   *
+   * @param table The name of the table
+   * @param keys The record keys of the records to insert.
+   * @param values A List of field/value pairs to insert, one Map per key
+   * @return The result of the operation.
+   */
+  public Status batchInsert(final String table, final List<String> keys,
+                            final List<Map<String, ByteIterator>> values) {
+    try (final TraceScope span = newScope(scopeStringBatchInsert)) {
+      if (retries != null) {
+        // each try is given copies of the lists, which it trims to the records that failed for the next one
+        return attempt("BATCH-INSERT", keys, keys, new Attempt<BatchInsert>() {
+          @Override
+          BatchInsert newResult() {
+            return new BatchInsert(keys, values);
+          }
+
+          @Override
+          Status call(BatchInsert tryResult) {
+            return db.batchInsert(table, tryResult.keys, tryResult.values);
+          }
+
+          @Override
+          void accept(BatchInsert tryResult, Status status) {
+            keys.clear();
+            keys.addAll(tryResult.keys);
+            values.clear();
+            values.addAll(tryResult.values);
+          }
+        });
+      }
+      int items = keys.size();
+      long ist = measurements.getIntendedtartTimeNs();
+      long st = System.nanoTime();
+      Status res = db.batchInsert(table, keys, values);
+      long en = System.nanoTime();
+      measureBatch("BATCH-INSERT", keys, items, res, ist, st, en);
+      return res;
+    }
+  }
+
+  /**
+   * Read and then update a set of records as one transaction.
+   *
+   * @param table The name of the table
+   * @param keys The record keys of the records to read and write.
+   * @param fields The list of fields to read, or null for all of them
+   * @param results A List to which a Map of field/value pairs is appended for each key
+   * @param values A List of field/value pairs to update, one Map per key
+   * @return The result of the operation.
+   */
+  public Status transaction(final String table, final List<String> keys, final Set<String> fields,
+                            final List<Map<String, ByteIterator>> results,
+                            final List<Map<String, ByteIterator>> values) {
+    try (final TraceScope span = newScope(scopeStringTransaction)) {
+      if (retries != null) {
+        return attempt("TRANSACTION", keys, null, new Attempt<List<Map<String, ByteIterator>>>() {
+          @Override
+          List<Map<String, ByteIterator>> newResult() {
+            return new ArrayList<>();
+          }
+
+          @Override
+          Status call(List<Map<String, ByteIterator>> tryResult) {
+            return db.transaction(table, keys, fields, tryResult, values);
+          }
+
+          @Override
+          void accept(List<Map<String, ByteIterator>> tryResult, Status status) {
+            if (status.isOk()) {
+              results.addAll(tryResult);
+            }
+          }
+        });
+      }
+      long ist = measurements.getIntendedtartTimeNs();
+      long st = System.nanoTime();
+      Status res = db.transaction(table, keys, fields, results, values);
+      long en = System.nanoTime();
+      measure("TRANSACTION", keys, res, ist, st, en);
+      measurements.reportStatus("TRANSACTION", res);
+      return res;
+    }
+  }
 }
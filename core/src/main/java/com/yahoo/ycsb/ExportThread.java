@@ -0,0 +1,68 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import com.yahoo.ycsb.measurements.Measurements;
+import com.yahoo.ycsb.measurements.exporter.StructuredMeasurementsExporter;
+
+import java.io.IOException;
+
+/**
+ * A thread that periodically hands the records that are complete, such as the intervals of a series that are over,
+ * to an exporter of typed records, so that they are written while the run is going rather than at its end.
+ */
+class ExportThread extends Thread {
+  private final StructuredMeasurementsExporter exporter;
+  private final long intervalMs;
+
+  ExportThread(StructuredMeasurementsExporter exporter, long intervalMs) {
+    super("ExportThread");
+    this.exporter = exporter;
+    this.intervalMs = intervalMs;
+    setDaemon(true);
+  }
+
+  @Override
+  public void run() {
+    while (true) {
+      try {
+        Thread.sleep(intervalMs);
+      } catch (InterruptedException e) {
+        return;
+      }
+      try {
+        Measurements.getMeasurements().exportCompletedRecords(exporter);
+      } catch (IOException e) {
+        System.err.println("Could not stream measurements, error: " + e.getMessage());
+        return;
+      }
+    }
+  }
+
+  /**
+   * Stops streaming and waits for the records being written, after which the exporter may be used by the caller.
+   */
+  void finish() {
+    interrupt();
+    try {
+      join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,75 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * The keys of each table, in order, for bindings to scan stores that cannot list their keys. It only holds the keys
+ * the binding adds, typically those written or read by this process, so a scan over it sees no records written by
+ * other clients. Safe for use by all the client threads.
+ */
+public final class KeyIndex {
+  private final ConcurrentMap<String, ConcurrentSkipListSet<String>> tables = new ConcurrentHashMap<>();
+
+  public void add(String table, String key) {
+    keys(table).add(key);
+  }
+
+  public void addAll(String table, Collection<String> keys) {
+    keys(table).addAll(keys);
+  }
+
+  public void remove(String table, String key) {
+    keys(table).remove(key);
+  }
+
+  /**
+   * Returns up to count keys of the table from startkey on, in order.
+   */
+  public List<String> range(String table, String startkey, int count) {
+    List<String> range = new ArrayList<>(count);
+    Iterator<String> iterator = keys(table).tailSet(startkey).iterator();
+    while (range.size() < count && iterator.hasNext()) {
+      range.add(iterator.next());
+    }
+    return range;
+  }
+
+  public void clear() {
+    tables.clear();
+  }
+
+  private ConcurrentSkipListSet<String> keys(String table) {
+    ConcurrentSkipListSet<String> keys = tables.get(table);
+    if (keys == null) {
+      ConcurrentSkipListSet<String> created = new ConcurrentSkipListSet<>();
+      keys = tables.putIfAbsent(table, created);
+      if (keys == null) {
+        keys = created;
+      }
+    }
+    return keys;
+  }
+}
@@ -0,0 +1,164 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.yahoo.ycsb.measurements.Measurements;
+import com.yahoo.ycsb.measurements.OperationSampler;
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+import com.yahoo.ycsb.measurements.exporter.PrometheusMeasurementsExporter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Serves the measurements of a running client in the Prometheus text format over HTTP, so that a scraper can poll
+ * them at any frequency. Each scrape reports the operations done and remaining, the measurements accumulated since
+ * the start of the run and a few JVM statistics. Reading the measurements does not take values away from the
+ * status thread's intervals.
+ * <p>
+ * Properties to control the server:
+ * <UL>
+ * <LI><b>metrics.port</b>: the port to listen on (default: none, the server is not started)
+ * <LI><b>metrics.host</b>: the address to listen on (default: localhost)
+ * </ul>
+ * When operations are sampled, the operations kept so far are also served on /samples.
+ */
+public class MetricsServer {
+  public static final String PORT_PROPERTY = "metrics.port";
+
+  public static final String HOST_PROPERTY = "metrics.host";
+  public static final String HOST_PROPERTY_DEFAULT = "localhost";
+
+  /** The path metrics are served on. */
+  public static final String PATH = "/metrics";
+
+  /** The path sampled operations are served on. */
+  public static final String SAMPLES_PATH = "/samples";
+
+  private final HttpServer server;
+  private final List<ClientThread> clients;
+  private final ClientResources resources;
+
+  MetricsServer(String host, int port, List<ClientThread> clients, ClientResources resources) throws IOException {
+    this.clients = clients;
+    this.resources = resources;
+    server = HttpServer.create(new InetSocketAddress(host, port), 0);
+    server.createContext(PATH, new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        scrape(exchange);
+      }
+    });
+    final OperationSampler sampler = Measurements.getMeasurements().getSampler();
+    if (sampler != null) {
+      server.createContext(SAMPLES_PATH, new HttpHandler() {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+          sendSamples(exchange, sampler);
+        }
+      });
+    }
+    server.setExecutor(Executors.newSingleThreadExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, "MetricsServer");
+        t.setDaemon(true);
+        return t;
+      }
+    }));
+  }
+
+  /**
+   * Starts serving in the background.
+   */
+  void start() {
+    server.start();
+  }
+
+  /**
+   * Stops serving, waiting up to a second for a scrape in progress.
+   */
+  void stop() {
+    server.stop(1);
+  }
+
+  private void scrape(HttpExchange exchange) throws IOException {
+    try {
+      ByteArrayOutputStream body = new ByteArrayOutputStream();
+      try (MeasurementsExporter exporter = new PrometheusMeasurementsExporter(body)) {
+        export(exporter);
+      }
+      respond(exchange, PrometheusMeasurementsExporter.CONTENT_TYPE, body);
+    } finally {
+      exchange.close();
+    }
+  }
+
+  private static void sendSamples(HttpExchange exchange, OperationSampler sampler) throws IOException {
+    try {
+      ByteArrayOutputStream body = new ByteArrayOutputStream();
+      sampler.write(body);
+      respond(exchange, "text/plain; charset=utf-8", body);
+    } finally {
+      exchange.close();
+    }
+  }
+
+  private static void respond(HttpExchange exchange, String contentType, ByteArrayOutputStream body)
+      throws IOException {
+    exchange.getResponseHeaders().set("Content-Type", contentType);
+    exchange.sendResponseHeaders(200, body.size());
+    try (OutputStream out = exchange.getResponseBody()) {
+      body.writeTo(out);
+    }
+  }
+
+  void export(MeasurementsExporter exporter) throws IOException {
+    long opsdone = 0;
+    long opstodo = 0;
+    for (ClientThread t : clients) {
+      opsdone += t.getOpsDone();
+      opstodo += t.getOpsTodo();
+    }
+    exporter.write("OVERALL", "OperationsDone", opsdone);
+    exporter.write("OVERALL", "OperationsRemaining", opstodo);
+
+    exporter.write("JVM", "Threads", Utils.getActiveThreadCount());
+    exporter.write("JVM", "UsedMemory(bytes)", Utils.getUsedMemoryBytes());
+    exporter.write("JVM", "SystemLoadAverage", Utils.getSystemLoadAverage());
+    for (Map.Entry<String, Long[]> entry : Utils.getGCStatst().entrySet()) {
+      exporter.write("JVM_GC_" + entry.getKey(), "Count", entry.getValue()[0]);
+      exporter.write("JVM_GC_" + entry.getKey(), "Time(ms)", entry.getValue()[1]);
+    }
+
+    if (resources != null) {
+      resources.exportCurrentMeasurements(exporter);
+    }
+
+    Measurements.getMeasurements().exportCurrentMeasurements(exporter);
+  }
+}
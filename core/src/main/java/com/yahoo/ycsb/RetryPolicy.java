@@ -0,0 +1,178 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.yahoo.ycsb.workloads.CoreWorkload;
+
+/**
+ * When and how {@link DBWrapper} retries operations, so that goodput can be measured under the retries a real
+ * client would make against a store that throttles under overload.
+ * <p>
+ * Properties to control the policy, each of which but retry.statuses can be set for a single operation by inserting
+ * its name, e.g. retry.READ.maxattempts or retry.BATCH-INSERT.timeoutms:
+ * <UL>
+ * <LI><b>retry.maxattempts</b>: the number of times an operation is tried (default: 1, no retries)
+ * <LI><b>retry.statuses</b>: the comma separated statuses worth retrying (default: SERVICE_UNAVAILABLE,TIMEOUT)
+ * <LI><b>retry.backoff.initialms</b>: the most to wait before the first retry; the most doubles with each
+ * retry, and the wait is picked uniformly up to it (default: 10)
+ * <LI><b>retry.backoff.maxms</b>: the most to wait before any retry (default: 1000)
+ * <LI><b>retry.timeoutms</b>: how long to wait for an attempt before giving up on it with TIMEOUT, or 0 to wait
+ * as long as the DB takes (default: 0). An attempt given up on still has the DB until it finishes, and the attempts
+ * of the thread that time out before then are not made
+ * </ul>
+ * For compatibility, core_workload_insertion_retry_limit and core_workload_insertion_retry_interval, when the limit
+ * is above 0, set the defaults of INSERT and BATCH-INSERT: that many retries of any failure, waiting up to the
+ * interval, in seconds, before each.
+ * Each instance caches the settings of the operations it has seen and is meant for a single thread.
+ */
+public class RetryPolicy {
+  public static final String PREFIX = "retry.";
+
+  public static final String MAX_ATTEMPTS_PROPERTY = "maxattempts";
+  public static final String MAX_ATTEMPTS_PROPERTY_DEFAULT = "1";
+
+  public static final String STATUSES_PROPERTY = "retry.statuses";
+  public static final String STATUSES_PROPERTY_DEFAULT = "SERVICE_UNAVAILABLE,TIMEOUT";
+
+  public static final String BACKOFF_INITIAL_PROPERTY = "backoff.initialms";
+  public static final String BACKOFF_INITIAL_PROPERTY_DEFAULT = "10";
+
+  public static final String BACKOFF_MAX_PROPERTY = "backoff.maxms";
+  public static final String BACKOFF_MAX_PROPERTY_DEFAULT = "1000";
+
+  public static final String TIMEOUT_PROPERTY = "timeoutms";
+  public static final String TIMEOUT_PROPERTY_DEFAULT = "0";
+
+  private final Properties props;
+  private final Set<String> retryable;
+  private final int insertionRetryLimit;
+  private final long insertionRetryInterval;
+
+  /**
+   * The settings of each operation seen so far: max attempts, initial backoff, max backoff and timeout, the middle
+   * three in nanoseconds, and 1 if any failure is worth retrying.
+   */
+  private final Map<String, long[]> settings = new HashMap<>();
+
+  RetryPolicy(Properties props) {
+    this.props = props;
+    retryable = new HashSet<>(Arrays.asList(props.getProperty(STATUSES_PROPERTY, STATUSES_PROPERTY_DEFAULT)
+        .split("\\s*,\\s*")));
+    insertionRetryLimit = getInsertionRetryLimit(props);
+    insertionRetryInterval = Long.parseLong(props.getProperty(CoreWorkload.INSERTION_RETRY_INTERVAL,
+        CoreWorkload.INSERTION_RETRY_INTERVAL_DEFAULT));
+  }
+
+  private static int getInsertionRetryLimit(Properties props) {
+    return Integer.parseInt(props.getProperty(CoreWorkload.INSERTION_RETRY_LIMIT,
+        CoreWorkload.INSERTION_RETRY_LIMIT_DEFAULT));
+  }
+
+  /**
+   * @return A policy if any retry property or an insertion retry limit is set, or null if operations are to be
+   * tried once, as long as they take.
+   */
+  static RetryPolicy fromProperties(Properties props) {
+    if (getInsertionRetryLimit(props) > 0) {
+      return new RetryPolicy(props);
+    }
+    for (String name : props.stringPropertyNames()) {
+      if (name.startsWith(PREFIX)) {
+        return new RetryPolicy(props);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return Whether op should be tried again after an attempt, the attempt'th, ended with status.
+   */
+  boolean shouldRetry(String op, Status status, int attempt) {
+    long[] s = getSettings(op);
+    return status != null && attempt < s[0] && (s[4] == 1 ? !status.isOk() : retryable.contains(status.getName()));
+  }
+
+  /**
+   * @return The number of times op is tried at most.
+   */
+  int getMaxAttempts(String op) {
+    return (int) getSettings(op)[0];
+  }
+
+  /**
+   * @return How long to wait before trying op again after attempt failed: up to the initial backoff doubled for
+   * each earlier retry, capped at the maximum, with full jitter so that clients retrying together spread out.
+   */
+  long getBackoffNanos(String op, int attempt) {
+    long[] s = getSettings(op);
+    long ceiling = s[1] << Math.min(attempt - 1, 30);
+    // a ceiling of 0 past a positive initial backoff comes from the doubling overflowing
+    if (s[1] > 0 && ceiling <= 0 || ceiling > s[2]) {
+      ceiling = s[2];
+    }
+    return ceiling <= 0 ? 0 : ThreadLocalRandom.current().nextLong(ceiling + 1);
+  }
+
+  /**
+   * @return How long to wait for an attempt of op, or 0 to wait as long as it takes.
+   */
+  long getTimeoutNanos(String op) {
+    return getSettings(op)[3];
+  }
+
+  private long[] getSettings(String op) {
+    long[] s = settings.get(op);
+    if (s == null) {
+      String maxAttempts = MAX_ATTEMPTS_PROPERTY_DEFAULT;
+      String backoff = null;
+      boolean anyFailure = false;
+      if (insertionRetryLimit > 0 && (op.equals("INSERT") || op.equals("BATCH-INSERT"))
+          && getProperty(op, MAX_ATTEMPTS_PROPERTY, null) == null) {
+        maxAttempts = Integer.toString(insertionRetryLimit + 1);
+        backoff = Long.toString(insertionRetryInterval * 1000);
+        anyFailure = true;
+      }
+      s = new long[]{
+          Long.parseLong(getProperty(op, MAX_ATTEMPTS_PROPERTY, maxAttempts)),
+          Long.parseLong(backoff != null ? backoff :
+              getProperty(op, BACKOFF_INITIAL_PROPERTY, BACKOFF_INITIAL_PROPERTY_DEFAULT)) * 1000000,
+          Long.parseLong(backoff != null ? backoff :
+              getProperty(op, BACKOFF_MAX_PROPERTY, BACKOFF_MAX_PROPERTY_DEFAULT)) * 1000000,
+          Long.parseLong(getProperty(op, TIMEOUT_PROPERTY, TIMEOUT_PROPERTY_DEFAULT)) * 1000000,
+          anyFailure ? 1 : 0};
+      settings.put(op, s);
+    }
+    return s;
+  }
+
+  /**
+   * @return retry.op.name if set, otherwise retry.name, otherwise the default.
+   */
+  private String getProperty(String op, String name, String defaultValue) {
+    String value = props.getProperty(PREFIX + op + "." + name);
+    return value != null ? value : props.getProperty(PREFIX + name, defaultValue);
+  }
+}
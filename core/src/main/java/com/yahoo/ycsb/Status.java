@@ -104,6 +104,9 @@ public class Status {
   public static final Status FORBIDDEN = new Status("FORBIDDEN", "The operation is forbidden.");
   public static final Status SERVICE_UNAVAILABLE = new Status("SERVICE_UNAVAILABLE", "Dependant " +
       "service for the current binding is not available.");
+  public static final Status ABORTED = new Status("ABORTED", "The transaction was aborted and none of its " +
+      "writes were applied.");
+  public static final Status TIMEOUT = new Status("TIMEOUT", "The operation did not complete in time.");
   public static final Status BATCHED_OK = new Status("BATCHED_OK", "The operation has been batched by " +
       "the binding to be executed later.");
 }
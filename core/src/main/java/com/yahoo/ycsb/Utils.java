@@ -20,6 +20,7 @@ package com.yahoo.ycsb;
 import java.lang.management.GarbageCollectorMXBean;
 import java.lang.management.ManagementFactory;
 import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -170,6 +171,37 @@ public final class Utils {
     return osBean.getSystemLoadAverage();
   }
 
+  /** @return The CPU time, in nanoseconds, used by the whole process, or -1
+   * if the JDK does not report it. */
+  public static long getProcessCpuTime() {
+    final OperatingSystemMXBean osBean =
+        ManagementFactory.getOperatingSystemMXBean();
+    if (osBean instanceof com.sun.management.OperatingSystemMXBean) {
+      return ((com.sun.management.OperatingSystemMXBean) osBean).getProcessCpuTime();
+    }
+    return -1;
+  }
+
+  /** @return The CPU time, in nanoseconds, used by the thread with the given
+   * id, or -1 if the thread is gone or the JDK does not report it. */
+  public static long getThreadCpuTime(long threadId) {
+    final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    if (!threadBean.isThreadCpuTimeSupported()) {
+      return -1;
+    }
+    return threadBean.getThreadCpuTime(threadId);
+  }
+
+  /** @return The bytes allocated on the heap by the thread with the given id,
+   * or -1 if the thread is gone or the JDK does not report it. */
+  public static long getThreadAllocatedBytes(long threadId) {
+    final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    if (threadBean instanceof com.sun.management.ThreadMXBean) {
+      return ((com.sun.management.ThreadMXBean) threadBean).getThreadAllocatedBytes(threadId);
+    }
+    return -1;
+  }
+
   /** @return The total number of garbage collections executed for all
    * memory pools. */
   public static long getGCTotalCollectionCount() {
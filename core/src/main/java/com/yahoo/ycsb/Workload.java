@@ -77,6 +77,14 @@ public abstract class Workload {
     return null;
   }
       
+  /**
+   * Cleanup any state for a particular client thread. Called once, in the client thread, after its last call to
+   * doInsert() or doTransaction() and before the DB is cleaned up. Workloads that buffer operations in threadstate
+   * must complete them here.
+   */
+  public void cleanupThread(DB db, Object threadstate) {
+  }
+
   /**
    * Cleanup the scenario. Called once, in the main client thread, after all operations have completed.
    */
@@ -16,31 +16,40 @@
  */
 package com.yahoo.ycsb.generator;
 
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 /**
  * A CounterGenerator that reports generated integers via lastInt()
  * only after they have been acknowledged.
+ * <p>
+ * Acknowledged values are kept in bitset segments of {@link #SEGMENT_SIZE}
+ * values. Segments are created when the first value in them is acknowledged
+ * and dropped once the limit has moved past them, so any number of values may
+ * be outstanding. Acknowledging a value and advancing the limit are lock-free.
  */
 public class AcknowledgedCounterGenerator extends CounterGenerator {
-  /** The size of the window of pending id ack's. 2^20 = {@value} */
-  static final int WINDOW_SIZE = Integer.rotateLeft(1, 20);
+  /** The number of values tracked by one segment. 2^16 = {@value} */
+  static final int SEGMENT_SIZE = Integer.rotateLeft(1, 16);
+
+  /** The shift to use to turn a value into the index of its segment. */
+  private static final int SEGMENT_SHIFT = Integer.numberOfTrailingZeros(SEGMENT_SIZE);
 
-  /** The mask to use to turn an id into a slot in {@link #window}. */
-  private static final int WINDOW_MASK = WINDOW_SIZE - 1;
+  /** The mask to use to turn a value into a bit in its segment. */
+  private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
 
-  private final ReentrantLock lock;
-  private final boolean[] window;
-  private volatile long limit;
+  private final ConcurrentMap<Long, AtomicLongArray> segments;
+  private final AtomicLong limit;
 
   /**
    * Create a counter that starts at countstart.
    */
   public AcknowledgedCounterGenerator(long countstart) {
     super(countstart);
-    lock = new ReentrantLock();
-    window = new boolean[WINDOW_SIZE];
-    limit = countstart - 1;
+    segments = new ConcurrentHashMap<>();
+    limit = new AtomicLong(countstart - 1);
   }
 
   /**
@@ -49,39 +58,71 @@ public class AcknowledgedCounterGenerator extends CounterGenerator {
    */
   @Override
   public Long lastValue() {
-    return limit;
+    return limit.get();
   }
 
   /**
    * Make a generated counter value available via lastInt().
    */
   public void acknowledge(long value) {
-    final int currentSlot = (int)(value & WINDOW_MASK);
-    if (window[currentSlot]) {
-      throw new RuntimeException("Too many unacknowledged insertion keys.");
+    if (value <= limit.get()) {
+      // already acknowledged, its segment may be gone
+      return;
+    }
+
+    final int bit = (int) (value & SEGMENT_MASK);
+    final AtomicLongArray segment = segment(value >> SEGMENT_SHIFT);
+    final int word = bit >>> 6;
+    final long mask = 1L << bit;
+    while (true) {
+      long current = segment.get(word);
+      if ((current & mask) != 0 || segment.compareAndSet(word, current, current | mask)) {
+        break;
+      }
     }
 
-    window[currentSlot] = true;
+    advance();
+  }
+
+  /**
+   * Returns the segment with the given index, creating it if needed.
+   */
+  private AtomicLongArray segment(long index) {
+    AtomicLongArray segment = segments.get(index);
+    if (segment == null) {
+      AtomicLongArray created = new AtomicLongArray(SEGMENT_SIZE / Long.SIZE);
+      segment = segments.putIfAbsent(index, created);
+      if (segment == null) {
+        segment = created;
+      }
+    }
+    return segment;
+  }
 
-    if (lock.tryLock()) {
-      // move a contiguous sequence from the window
-      // over to the "limit" variable
-      try {
-        // Only loop through the entire window at most once.
-        long beforeFirstSlot = (limit & WINDOW_MASK);
-        long index;
-        for (index = limit + 1; index != beforeFirstSlot; ++index) {
-          int slot = (int)(index & WINDOW_MASK);
-          if (!window[slot]) {
-            break;
-          }
+  /**
+   * Moves the limit over the contiguous run of acknowledged values that follows it. Every acknowledging thread
+   * sets its bit before it calls this, so the run is always picked up by at least one of them.
+   */
+  private void advance() {
+    while (true) {
+      final long current = limit.get();
+      final long next = current + 1;
+      final AtomicLongArray segment = segments.get(next >> SEGMENT_SHIFT);
+      if (segment == null) {
+        return;
+      }
 
-          window[slot] = false;
-        }
+      // the number of acknowledged values from next up to the end of its word
+      final int bit = (int) (next & SEGMENT_MASK);
+      final int run = Long.numberOfTrailingZeros(~(segment.get(bit >>> 6) >>> bit));
+      if (run == 0) {
+        return;
+      }
 
-        limit = index - 1;
-      } finally {
-        lock.unlock();
+      final long advanced = current + run;
+      if (limit.compareAndSet(current, advanced) && (advanced & SEGMENT_MASK) == SEGMENT_MASK) {
+        // every value of the segment is acknowledged, nobody will touch it again
+        segments.remove(advanced >> SEGMENT_SHIFT);
       }
     }
   }
@@ -105,6 +105,26 @@ zipfian constant
     return ret;
   }
 
+  /**
+   * Return the next long in the sequence that is no greater than bound, without rejecting values. A value that
+   * falls above bound is scrambled again into [min, bound], so values within the bound keep their popularity as
+   * the bound grows.
+   *
+   * @param bound The largest value to return, at least min.
+   */
+  public long nextValue(long bound) {
+    if (bound < min) {
+      throw new IllegalArgumentException("bound " + bound + " is below the minimum " + min);
+    }
+    long hash = Utils.fnvhash64(gen.nextValue());
+    long ret = min + hash % itemcount;
+    if (ret > bound) {
+      ret = min + hash % (bound - min + 1);
+    }
+    setLastValue(ret);
+    return ret;
+  }
+
   public static void main(String[] args) {
     double newzetan = ZipfianGenerator.zetastatic(ITEM_COUNT, ZipfianGenerator.ZIPFIAN_CONSTANT);
     System.out.println("zetan: " + newzetan);
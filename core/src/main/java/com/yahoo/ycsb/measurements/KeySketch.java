@@ -0,0 +1,324 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.measurements;
+
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Tracks the measurement.keys.topk hottest keys and slowest operations of a run in a fixed amount of memory.
+ * <p>
+ * Hot keys are counted with the Space-Saving algorithm: each of {@link LatencyStripe#STRIPES} stripes keeps
+ * {@link #COUNTERS_PER_KEY} counters per key reported, and a key without a counter takes over the smallest one.
+ * The count of a key is never underestimated, and is overestimated by at most the total number of operations
+ * divided by the number of counters. Slow operations are kept in a bounded min-heap per stripe.
+ * <p>
+ * Each thread reports into the stripe picked by its id, like {@link LatencyStripe}, so threads seldom wait on each
+ * other; the stripes are only merged to report.
+ */
+public class KeySketch {
+  /**
+   * The number of Space-Saving counters kept per key reported.
+   */
+  static final int COUNTERS_PER_KEY = 10;
+
+  /**
+   * The number of hot keys shown in the status output.
+   */
+  private static final int SUMMARY_KEYS = 3;
+
+  private final int topk;
+  private final String unit;
+  private final Stripe[] stripes = new Stripe[LatencyStripe.STRIPES];
+
+  /**
+   * @param topk The number of hot keys and slow operations to report.
+   * @param unit The latency unit slow operations are reported in, "us" or "ns".
+   */
+  public KeySketch(int topk, String unit) {
+    if (topk < 1) {
+      throw new IllegalArgumentException("topk must be positive, not " + topk);
+    }
+    this.topk = topk;
+    this.unit = unit;
+    for (int i = 0; i < stripes.length; i++) {
+      stripes[i] = new Stripe(topk * COUNTERS_PER_KEY, topk);
+    }
+  }
+
+  /**
+   * Count an operation on a key, and keep it if it is among the slowest.
+   *
+   * @param op           The operation, e.g. "READ".
+   * @param key          The key, or the list of keys of a batch, each of which is counted.
+   * @param latencyNanos The latency of the operation.
+   */
+  public void offer(String op, Object key, long latencyNanos) {
+    if (key == null) {
+      return;
+    }
+    Stripe stripe = stripes[LatencyStripe.index()];
+    synchronized (stripe) {
+      if (key instanceof List) {
+        for (Object k : (List<?>) key) {
+          stripe.count(String.valueOf(k));
+        }
+      } else {
+        stripe.count(key.toString());
+      }
+      stripe.offerSlow(op, key, latencyNanos);
+    }
+  }
+
+  /**
+   * @return The total number of keys counted.
+   */
+  public long getOperations() {
+    long total = 0;
+    for (Stripe stripe : stripes) {
+      synchronized (stripe) {
+        total += stripe.operations;
+      }
+    }
+    return total;
+  }
+
+  /**
+   * Merges the counters of the stripes. A key missing from a full stripe may have been counted there up to the
+   * smallest count of that stripe, which is added to its estimate.
+   *
+   * @return The topk hottest keys and their estimated counts, hottest first.
+   */
+  public List<Map.Entry<String, Long>> getHotKeys() {
+    List<Map<String, Long>> counts = new ArrayList<>(stripes.length);
+    long[] floors = new long[stripes.length];
+    Map<String, Long> merged = new HashMap<>();
+    for (int i = 0; i < stripes.length; i++) {
+      synchronized (stripes[i]) {
+        counts.add(stripes[i].getCounts());
+        floors[i] = stripes[i].getFloor();
+      }
+      for (String key : counts.get(i).keySet()) {
+        merged.put(key, 0L);
+      }
+    }
+    for (Map.Entry<String, Long> entry : merged.entrySet()) {
+      long estimate = 0;
+      for (int i = 0; i < stripes.length; i++) {
+        Long count = counts.get(i).get(entry.getKey());
+        estimate += count == null ? floors[i] : count;
+      }
+      entry.setValue(estimate);
+    }
+
+    List<Map.Entry<String, Long>> hot = new ArrayList<>(merged.entrySet());
+    Collections.sort(hot, new Comparator<Map.Entry<String, Long>>() {
+      @Override
+      public int compare(Map.Entry<String, Long> a, Map.Entry<String, Long> b) {
+        return Long.compare(b.getValue(), a.getValue());
+      }
+    });
+    return hot.subList(0, Math.min(topk, hot.size()));
+  }
+
+  /**
+   * @return The topk slowest operations, slowest first.
+   */
+  public List<SlowOperation> getSlowOperations() {
+    List<SlowOperation> slow = new ArrayList<>();
+    for (Stripe stripe : stripes) {
+      synchronized (stripe) {
+        slow.addAll(stripe.slowest);
+      }
+    }
+    Collections.sort(slow, Collections.reverseOrder());
+    return slow.subList(0, Math.min(topk, slow.size()));
+  }
+
+  /**
+   * Exports the number of keys counted as HOTKEYS Operations, then each hot key with its estimated count, and
+   * each slow operation with its latency under SLOWKEYS.
+   */
+  public void exportMeasurements(MeasurementsExporter exporter) throws IOException {
+    exporter.write("HOTKEYS", "Operations", getOperations());
+    for (Map.Entry<String, Long> entry : getHotKeys()) {
+      exporter.write("HOTKEYS", entry.getKey() + " Operations", entry.getValue());
+    }
+    for (SlowOperation operation : getSlowOperations()) {
+      exporter.write("SLOWKEYS", operation.getOperation() + " " + operation.getKey() + " Latency(" + unit + ")",
+          unit.equals("ns") ? operation.getLatencyNanos() : operation.getLatencyNanos() / 1000);
+    }
+  }
+
+  /**
+   * @return The hottest few keys so far, for the status thread.
+   */
+  public String getSummary() {
+    StringBuilder sb = new StringBuilder("[HOTKEYS");
+    List<Map.Entry<String, Long>> hot = getHotKeys();
+    for (Map.Entry<String, Long> entry : hot.subList(0, Math.min(SUMMARY_KEYS, hot.size()))) {
+      sb.append(' ').append(entry.getKey()).append('=').append(entry.getValue());
+    }
+    return sb.append(']').toString();
+  }
+
+  /**
+   * An operation kept for being among the slowest.
+   */
+  public static final class SlowOperation implements Comparable<SlowOperation> {
+    private final String operation;
+    private final String key;
+    private final long latencyNanos;
+
+    SlowOperation(String operation, String key, long latencyNanos) {
+      this.operation = operation;
+      this.key = key;
+      this.latencyNanos = latencyNanos;
+    }
+
+    public String getOperation() {
+      return operation;
+    }
+
+    public String getKey() {
+      return key;
+    }
+
+    public long getLatencyNanos() {
+      return latencyNanos;
+    }
+
+    @Override
+    public int compareTo(SlowOperation o) {
+      return Long.compare(latencyNanos, o.latencyNanos);
+    }
+  }
+
+  /**
+   * The counters and slow operations of some of the threads, guarded by the stripe's monitor. The counters form a
+   * min-heap on their counts, with the position of each key in index, so counting a key and taking over the
+   * smallest counter both take logarithmic time.
+   */
+  private static final class Stripe {
+    private final String[] keys;
+    private final long[] counts;
+    private final Map<String, Integer> index;
+    private int size = 0;
+    private long operations = 0;
+
+    private final int slowCapacity;
+    private final PriorityQueue<SlowOperation> slowest;
+
+    Stripe(int counters, int slowCapacity) {
+      keys = new String[counters];
+      counts = new long[counters];
+      index = new HashMap<>(counters * 2);
+      this.slowCapacity = slowCapacity;
+      slowest = new PriorityQueue<>(slowCapacity);
+    }
+
+    void count(String key) {
+      operations++;
+      Integer i = index.get(key);
+      if (i != null) {
+        counts[i]++;
+        siftDown(i);
+      } else if (size < keys.length) {
+        keys[size] = key;
+        counts[size] = 1;
+        index.put(key, size);
+        siftUp(size++);
+      } else {
+        index.remove(keys[0]);
+        keys[0] = key;
+        counts[0]++;
+        index.put(key, 0);
+        siftDown(0);
+      }
+    }
+
+    void offerSlow(String op, Object key, long latencyNanos) {
+      if (slowest.size() < slowCapacity) {
+        slowest.add(new SlowOperation(op, String.valueOf(key), latencyNanos));
+      } else if (latencyNanos > slowest.peek().getLatencyNanos()) {
+        slowest.poll();
+        slowest.add(new SlowOperation(op, String.valueOf(key), latencyNanos));
+      }
+    }
+
+    Map<String, Long> getCounts() {
+      Map<String, Long> copy = new HashMap<>(size * 2);
+      for (int i = 0; i < size; i++) {
+        copy.put(keys[i], counts[i]);
+      }
+      return copy;
+    }
+
+    /**
+     * @return The most a key without a counter may have been counted.
+     */
+    long getFloor() {
+      return size < keys.length ? 0 : counts[0];
+    }
+
+    private void siftUp(int i) {
+      while (i > 0 && counts[(i - 1) / 2] > counts[i]) {
+        swap(i, (i - 1) / 2);
+        i = (i - 1) / 2;
+      }
+    }
+
+    private void siftDown(int i) {
+      while (true) {
+        int smallest = i;
+        int left = 2 * i + 1;
+        int right = left + 1;
+        if (left < size && counts[left] < counts[smallest]) {
+          smallest = left;
+        }
+        if (right < size && counts[right] < counts[smallest]) {
+          smallest = right;
+        }
+        if (smallest == i) {
+          return;
+        }
+        swap(i, smallest);
+        i = smallest;
+      }
+    }
+
+    private void swap(int i, int j) {
+      String key = keys[i];
+      keys[i] = keys[j];
+      keys[j] = key;
+      long count = counts[i];
+      counts[i] = counts[j];
+      counts[j] = count;
+      index.put(keys[i], i);
+      index.put(keys[j], j);
+    }
+  }
+}
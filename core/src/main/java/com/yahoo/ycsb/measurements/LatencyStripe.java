@@ -0,0 +1,92 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.measurements;
+
+/**
+ * The running statistics of a measurement as recorded by some of the client threads. A measurement keeps
+ * {@link #STRIPES} stripes and each thread records into the one picked by its id, so threads recording the same
+ * operation seldom wait on each other. Readers merge the stripes with {@link #merge(LatencyStripe[], boolean)}.
+ */
+class LatencyStripe {
+  /**
+   * The number of stripes per measurement: a power of two of at least twice the number of processors.
+   */
+  static final int STRIPES =
+      Integer.highestOneBit(Math.max(1, 2 * Runtime.getRuntime().availableProcessors() - 1)) << 1;
+
+  protected long operations;
+  protected long totallatency;
+  protected double totalsquaredlatency;
+  protected long windowoperations;
+  protected long windowtotallatency;
+  protected long min = -1;
+  protected long max = -1;
+
+  /**
+   * @return The index of the stripe the current thread records into.
+   */
+  static int index() {
+    return (int) Thread.currentThread().getId() & (STRIPES - 1);
+  }
+
+  synchronized void measure(long latency) {
+    operations++;
+    totallatency += latency;
+    totalsquaredlatency += ((double) latency) * ((double) latency);
+    windowoperations++;
+    windowtotallatency += latency;
+
+    if ((min < 0) || (latency < min)) {
+      min = latency;
+    }
+
+    if ((max < 0) || (latency > max)) {
+      max = latency;
+    }
+  }
+
+  /**
+   * Sums the statistics of the stripes.
+   *
+   * @param resetWindow Whether to start a new window in each stripe, for the status thread.
+   * @return A stripe holding the totals, not shared with any thread.
+   */
+  static LatencyStripe merge(LatencyStripe[] stripes, boolean resetWindow) {
+    LatencyStripe total = new LatencyStripe();
+    for (LatencyStripe stripe : stripes) {
+      synchronized (stripe) {
+        total.operations += stripe.operations;
+        total.totallatency += stripe.totallatency;
+        total.totalsquaredlatency += stripe.totalsquaredlatency;
+        total.windowoperations += stripe.windowoperations;
+        total.windowtotallatency += stripe.windowtotallatency;
+        if ((stripe.min >= 0) && ((total.min < 0) || (stripe.min < total.min))) {
+          total.min = stripe.min;
+        }
+        if (stripe.max > total.max) {
+          total.max = stripe.max;
+        }
+        if (resetWindow) {
+          stripe.windowoperations = 0;
+          stripe.windowtotallatency = 0;
+        }
+      }
+    }
+    return total;
+  }
+}
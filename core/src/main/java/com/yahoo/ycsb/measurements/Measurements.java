@@ -19,13 +19,20 @@ package com.yahoo.ycsb.measurements;
 
 import com.yahoo.ycsb.Status;
 import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+import com.yahoo.ycsb.measurements.exporter.StructuredMeasurementsExporter;
 
 import java.io.IOException;
+import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * Collects latency measurements, and reports them when requested.
+ * Collects latency measurements, and reports them when requested. Values that are not latencies are kept apart:
+ * distributions of values in their own unit with {@link #measureValue(String, long, String)}, and running totals
+ * with {@link #count(String, String, long)}.
  */
 public class Measurements {
   /**
@@ -36,6 +43,7 @@ public class Measurements {
     HDRHISTOGRAM,
     HDRHISTOGRAM_AND_HISTOGRAM,
     HDRHISTOGRAM_AND_RAW,
+    HDRHISTOGRAM_AND_SERIES,
     TIMESERIES,
     RAW
   }
@@ -46,9 +54,44 @@ public class Measurements {
   public static final String MEASUREMENT_INTERVAL = "measurement.interval";
   private static final String MEASUREMENT_INTERVAL_DEFAULT = "op";
 
+  /**
+   * The unit latencies are recorded in, "us" for microseconds or "ns" for nanoseconds. Nanoseconds are meant for
+   * stores whose operations take about a microsecond or less.
+   */
+  public static final String LATENCY_UNIT_PROPERTY = "measurement.latencyunit";
+  public static final String LATENCY_UNIT_PROPERTY_DEFAULT = "us";
+
+  /**
+   * Whether to record the time operations spend in each phase, such as building values or waiting on the network,
+   * as reported through {@link #startPhase(String)} and {@link #endPhase(String)}.
+   */
+  public static final String MEASUREMENT_PHASES_PROPERTY = "measurement.phases";
+  public static final String MEASUREMENT_PHASES_PROPERTY_DEFAULT = "false";
+
+  /**
+   * The prefix of the names of phase measurements, e.g. PHASE-VALUES.
+   */
+  public static final String PHASE_PREFIX = "PHASE-";
+
+  /**
+   * How operations are traced: "htrace" opens an HTrace span for every operation, and "sampled" keeps the details of
+   * a sample of operations and of the slow ones instead, see {@link OperationSampler}.
+   */
+  public static final String MEASUREMENT_TRACING_PROPERTY = "measurement.tracing";
+  public static final String MEASUREMENT_TRACING_PROPERTY_DEFAULT = "htrace";
+
+  /**
+   * The number of hottest keys and slowest operations to track, see {@link KeySketch}. 0 tracks none.
+   */
+  public static final String MEASUREMENT_KEYS_TOPK_PROPERTY = "measurement.keys.topk";
+  public static final String MEASUREMENT_KEYS_TOPK_PROPERTY_DEFAULT = "0";
+
   public static final String MEASUREMENT_TRACK_JVM_PROPERTY = "measurement.trackjvm";
   public static final String MEASUREMENT_TRACK_JVM_PROPERTY_DEFAULT = "false";
 
+  public static final String MEASUREMENT_TRACK_RESOURCES_PROPERTY = "measurement.trackresources";
+  public static final String MEASUREMENT_TRACK_RESOURCES_PROPERTY_DEFAULT = "false";
+
   private static Measurements singleton = null;
   private static Properties measurementproperties = null;
 
@@ -68,8 +111,16 @@ public class Measurements {
 
   private final ConcurrentHashMap<String, OneMeasurement> opToMesurementMap;
   private final ConcurrentHashMap<String, OneMeasurement> opToIntendedMesurementMap;
+  private final ConcurrentHashMap<String, OneMeasurementValues> valuesMap;
+
+  /** The totals of each metric, by measurement name, in order of name so they export in a stable order. */
+  private final ConcurrentSkipListMap<String, ConcurrentSkipListMap<String, AtomicLong>> counters;
   private final MeasurementType measurementType;
   private final int measurementInterval;
+  private final boolean nanos;
+  private final boolean phases;
+  private final OperationSampler sampler;
+  private final KeySketch keySketch;
   private final Properties props;
 
   /**
@@ -78,6 +129,8 @@ public class Measurements {
   public Measurements(Properties props) {
     opToMesurementMap = new ConcurrentHashMap<>();
     opToIntendedMesurementMap = new ConcurrentHashMap<>();
+    valuesMap = new ConcurrentHashMap<>();
+    counters = new ConcurrentSkipListMap<>();
 
     this.props = props;
 
@@ -95,6 +148,9 @@ public class Measurements {
     case "hdrhistogram+raw":
       measurementType = MeasurementType.HDRHISTOGRAM_AND_RAW;
       break;
+    case "hdrhistogram+series":
+      measurementType = MeasurementType.HDRHISTOGRAM_AND_SERIES;
+      break;
     case "timeseries":
       measurementType = MeasurementType.TIMESERIES;
       break;
@@ -119,6 +175,38 @@ public class Measurements {
     default:
       throw new IllegalArgumentException("unknown " + MEASUREMENT_INTERVAL + "=" + mIntervalString);
     }
+
+    nanos = getLatencyUnit(this.props).equals("ns");
+    phases = Boolean.parseBoolean(this.props.getProperty(MEASUREMENT_PHASES_PROPERTY,
+        MEASUREMENT_PHASES_PROPERTY_DEFAULT));
+
+    String tracing = this.props.getProperty(MEASUREMENT_TRACING_PROPERTY, MEASUREMENT_TRACING_PROPERTY_DEFAULT);
+    switch (tracing) {
+    case "htrace":
+      sampler = null;
+      break;
+    case "sampled":
+      sampler = new OperationSampler(this.props);
+      break;
+    default:
+      throw new IllegalArgumentException("unknown " + MEASUREMENT_TRACING_PROPERTY + "=" + tracing);
+    }
+
+    int topk = Integer.parseInt(this.props.getProperty(MEASUREMENT_KEYS_TOPK_PROPERTY,
+        MEASUREMENT_KEYS_TOPK_PROPERTY_DEFAULT));
+    keySketch = topk > 0 ? new KeySketch(topk, getLatencyUnit(this.props)) : null;
+  }
+
+  /**
+   * @return The unit latencies are recorded in, "us" or "ns", used to label exported latencies.
+   * @throws IllegalArgumentException if the configured unit is not supported.
+   */
+  public static String getLatencyUnit(Properties props) {
+    String unit = props.getProperty(LATENCY_UNIT_PROPERTY, LATENCY_UNIT_PROPERTY_DEFAULT);
+    if (!unit.equals("us") && !unit.equals("ns")) {
+      throw new IllegalArgumentException("unknown " + LATENCY_UNIT_PROPERTY + "=" + unit);
+    }
+    return unit;
   }
 
   private OneMeasurement constructOneMeasurement(String name) {
@@ -135,6 +223,10 @@ public class Measurements {
       return new TwoInOneMeasurement(name,
           new OneMeasurementHdrHistogram("Hdr" + name, props),
           new OneMeasurementRaw("Raw" + name, props));
+    case HDRHISTOGRAM_AND_SERIES:
+      return new TwoInOneMeasurement(name,
+          new OneMeasurementHdrHistogram("Hdr" + name, props),
+          new OneMeasurementHdrHistogramSeries("Series" + name, props));
     case TIMESERIES:
       return new OneMeasurementTimeSeries(name, props);
     case RAW:
@@ -180,7 +272,7 @@ public class Measurements {
    * Report a single value of a single metric. E.g. for read latency, operation="READ" and latency is the measured
    * value.
    */
-  public void measure(String operation, int latency) {
+  public void measure(String operation, long latency) {
     if (measurementInterval == 1) {
       return;
     }
@@ -199,7 +291,7 @@ public class Measurements {
    * Report a single value of a single metric. E.g. for read latency, operation="READ" and latency is the measured
    * value.
    */
-  public void measureIntended(String operation, int latency) {
+  public void measureIntended(String operation, long latency) {
     if (measurementInterval == 0) {
       return;
     }
@@ -214,6 +306,136 @@ public class Measurements {
     }
   }
 
+  /**
+   * Report the latency of a single operation, measured with {@link System#nanoTime()}, in the configured unit.
+   */
+  public void measureNanos(String operation, long latencyNanos) {
+    measure(operation, nanos ? latencyNanos : latencyNanos / 1000);
+  }
+
+  /**
+   * Report the latency of a single operation since its intended start, measured with {@link System#nanoTime()},
+   * in the configured unit.
+   */
+  public void measureIntendedNanos(String operation, long latencyNanos) {
+    measureIntended(operation, nanos ? latencyNanos : latencyNanos / 1000);
+  }
+
+  /**
+   * Report a value that is not a latency, such as the number of versions a read lagged behind, into a distribution
+   * exported with the given unit rather than the latency unit. The unit of a metric is fixed by its first value.
+   */
+  public void measureValue(String metric, long value, String unit) {
+    OneMeasurementValues m = valuesMap.get(metric);
+    if (m == null) {
+      m = new OneMeasurementValues(metric, unit, props);
+      OneMeasurementValues oldM = valuesMap.putIfAbsent(metric, m);
+      if (oldM != null) {
+        m = oldM;
+      }
+    }
+    m.measure(value);
+  }
+
+  /**
+   * Add to a running total, such as the number of attempts of an operation, exported as the measurement of the
+   * metric, e.g. "READ" and "Attempts".
+   */
+  public void count(String metric, String measurement, long delta) {
+    ConcurrentSkipListMap<String, AtomicLong> totals = counters.get(metric);
+    if (totals == null) {
+      totals = new ConcurrentSkipListMap<>();
+      ConcurrentSkipListMap<String, AtomicLong> oldTotals = counters.putIfAbsent(metric, totals);
+      if (oldTotals != null) {
+        totals = oldTotals;
+      }
+    }
+    AtomicLong total = totals.get(measurement);
+    if (total == null) {
+      total = new AtomicLong();
+      AtomicLong oldTotal = totals.putIfAbsent(measurement, total);
+      if (oldTotal != null) {
+        total = oldTotal;
+      }
+    }
+    total.addAndGet(delta);
+  }
+
+  /**
+   * @return The running total of the measurement of the metric, 0 if nothing was counted.
+   */
+  public long getCount(String metric, String measurement) {
+    ConcurrentMap<String, AtomicLong> totals = counters.get(metric);
+    AtomicLong total = totals == null ? null : totals.get(measurement);
+    return total == null ? 0 : total.get();
+  }
+
+  /**
+   * @return The sampler of operations, or null if operations are traced with HTrace.
+   */
+  public OperationSampler getSampler() {
+    return sampler;
+  }
+
+  /**
+   * @return The tracker of hot keys and slow operations, or null if keys are not tracked.
+   */
+  public KeySketch getKeySketch() {
+    return keySketch;
+  }
+
+  private final ThreadLocal<PhaseContext> tlPhases = new ThreadLocal<PhaseContext>() {
+    protected PhaseContext initialValue() {
+      return new PhaseContext();
+    }
+  };
+
+  /**
+   * @return Whether phases are timed, for callers that need to do extra work to report one.
+   */
+  public boolean isPhaseTimingEnabled() {
+    return phases;
+  }
+
+  /**
+   * Start timing a phase of the operation the current thread is performing, e.g. "SERIALIZE" or "CONNECTION".
+   * Phases may nest and may be timed several times in one operation, but a phase must end before it starts again.
+   * Does nothing unless measurement.phases is true.
+   */
+  public void startPhase(String phase) {
+    if (phases) {
+      tlPhases.get().start(phase);
+    }
+  }
+
+  /**
+   * Stop timing a phase of the current operation, adding the time since it started to the phase.
+   */
+  public void endPhase(String phase) {
+    if (phases) {
+      tlPhases.get().end(phase);
+    }
+  }
+
+  /**
+   * Add time measured elsewhere, e.g. by the server, to a phase of the current operation.
+   */
+  public void measurePhase(String phase, long latencyNanos) {
+    if (phases) {
+      tlPhases.get().add(phase, latencyNanos);
+    }
+  }
+
+  /**
+   * Record the time the operation the current thread just completed spent in each phase, under PHASE-name. Called
+   * by the client after every operation.
+   */
+  public void endPhases() {
+    if (phases) {
+      tlPhases.get().flush(this);
+    }
+  }
+
   private OneMeasurement getOpMeasurement(String operation) {
     OneMeasurement m = opToMesurementMap.get(operation);
     if (m == null) {
@@ -250,20 +472,80 @@ public class Measurements {
   }
 
   /**
-   * Export the current measurements to a suitable format.
+   * Export the current measurements to a suitable format. An exporter of typed records receives them from the
+   * measurements that have a structure.
    *
    * @param exporter Exporter representing the type of format to write to.
    * @throws IOException Thrown if the export failed.
    */
   public void exportMeasurements(MeasurementsExporter exporter) throws IOException {
     for (OneMeasurement measurement : opToMesurementMap.values()) {
-      measurement.exportMeasurements(exporter);
+      exportMeasurement(measurement, exporter);
     }
     for (OneMeasurement measurement : opToIntendedMesurementMap.values()) {
+      exportMeasurement(measurement, exporter);
+    }
+    for (OneMeasurement measurement : valuesMap.values()) {
+      exportMeasurement(measurement, exporter);
+    }
+    exportCounters(exporter);
+    if (keySketch != null) {
+      keySketch.exportMeasurements(exporter);
+    }
+  }
+
+  private static void exportMeasurement(OneMeasurement measurement, MeasurementsExporter exporter)
+      throws IOException {
+    if (exporter instanceof StructuredMeasurementsExporter) {
+      measurement.exportRecords((StructuredMeasurementsExporter) exporter);
+    } else {
       measurement.exportMeasurements(exporter);
     }
   }
 
+  /**
+   * Export the typed records that are complete while the run is still going, such as the intervals of a series that
+   * are over. Records exported here are not exported again by {@link #exportMeasurements(MeasurementsExporter)}.
+   *
+   * @param exporter Exporter of typed records.
+   * @throws IOException Thrown if the export failed.
+   */
+  public void exportCompletedRecords(StructuredMeasurementsExporter exporter) throws IOException {
+    for (OneMeasurement measurement : opToMesurementMap.values()) {
+      measurement.exportCompletedRecords(exporter);
+    }
+    for (OneMeasurement measurement : opToIntendedMesurementMap.values()) {
+      measurement.exportCompletedRecords(exporter);
+    }
+  }
+
+  /**
+   * Export the measurements accumulated so far while the run is still going.
+   *
+   * @param exporter Exporter representing the type of format to write to.
+   * @throws IOException Thrown if the export failed.
+   */
+  public void exportCurrentMeasurements(MeasurementsExporter exporter) throws IOException {
+    for (OneMeasurement measurement : opToMesurementMap.values()) {
+      measurement.exportCurrentMeasurements(exporter);
+    }
+    for (OneMeasurement measurement : opToIntendedMesurementMap.values()) {
+      measurement.exportCurrentMeasurements(exporter);
+    }
+    for (OneMeasurement measurement : valuesMap.values()) {
+      measurement.exportCurrentMeasurements(exporter);
+    }
+    exportCounters(exporter);
+  }
+
+  private void exportCounters(MeasurementsExporter exporter) throws IOException {
+    for (Map.Entry<String, ConcurrentSkipListMap<String, AtomicLong>> metric : counters.entrySet()) {
+      for (Map.Entry<String, AtomicLong> total : metric.getValue().entrySet()) {
+        exporter.write(metric.getKey(), total.getKey(), total.getValue().get());
+      }
+    }
+  }
+
   /**
    * Return a one line summary of the measurements.
    */
@@ -275,6 +557,9 @@ public class Measurements {
     for (OneMeasurement m : opToIntendedMesurementMap.values()) {
       ret += m.getSummary() + " ";
     }
+    if (keySketch != null) {
+      ret += keySketch.getSummary() + " ";
+    }
     return ret;
   }
 
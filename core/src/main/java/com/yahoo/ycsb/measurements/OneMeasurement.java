@@ -19,11 +19,12 @@ package com.yahoo.ycsb.measurements;
 
 import com.yahoo.ycsb.Status;
 import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+import com.yahoo.ycsb.measurements.exporter.StructuredMeasurementsExporter;
 
 import java.io.IOException;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A single measured metric (such as READ LATENCY).
@@ -31,7 +32,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 public abstract class OneMeasurement {
 
   private final String name;
-  private final ConcurrentHashMap<Status, AtomicInteger> returncodes;
+  private final ConcurrentHashMap<Status, AtomicLong> returncodes;
 
   public String getName() {
     return name;
@@ -45,7 +46,10 @@ public abstract class OneMeasurement {
     this.returncodes = new ConcurrentHashMap<>();
   }
 
-  public abstract void measure(int latency);
+  /**
+   * Record a value, usually a latency in the unit given by {@link Measurements#getLatencyUnit(java.util.Properties)}.
+   */
+  public abstract void measure(long latency);
 
   public abstract String getSummary();
 
@@ -53,11 +57,11 @@ public abstract class OneMeasurement {
    * No need for synchronization, using CHM to deal with that.
    */
   public void reportStatus(Status status) {
-    AtomicInteger counter = returncodes.get(status);
+    AtomicLong counter = returncodes.get(status);
 
     if (counter == null) {
-      counter = new AtomicInteger();
-      AtomicInteger other = returncodes.putIfAbsent(status, counter);
+      counter = new AtomicLong();
+      AtomicLong other = returncodes.putIfAbsent(status, counter);
       if (other != null) {
         counter = other;
       }
@@ -74,9 +78,51 @@ public abstract class OneMeasurement {
    */
   public abstract void exportMeasurements(MeasurementsExporter exporter) throws IOException;
 
+  /**
+   * Export the measurements accumulated since the start of the run while it is still going, for example to a live
+   * metrics endpoint. Unlike {@link #exportMeasurements(MeasurementsExporter)} this may be called any number of
+   * times and must not disturb the intervals reported by {@link #getSummary()}. By default only the return codes
+   * are exported.
+   *
+   * @param exporter Exporter representing the type of format to write to.
+   * @throws IOException Thrown if the export failed.
+   */
+  public void exportCurrentMeasurements(MeasurementsExporter exporter) throws IOException {
+    exportStatusCounts(exporter);
+  }
+
+  /**
+   * Export the measurements as typed records, on orderly termination like
+   * {@link #exportMeasurements(MeasurementsExporter)}. By default the values it writes are passed on as they are.
+   *
+   * @param exporter Exporter of typed records.
+   * @throws IOException Thrown if the export failed.
+   */
+  public void exportRecords(StructuredMeasurementsExporter exporter) throws IOException {
+    exportMeasurements(exporter);
+  }
+
+  /**
+   * Export the typed records that can no longer change while the run is still going, such as the intervals of a
+   * series that are over, so that they are streamed rather than written at the end. This is called periodically
+   * from a single thread, and records exported here are left out by
+   * {@link #exportRecords(StructuredMeasurementsExporter)}. By default nothing is complete before the end.
+   *
+   * @param exporter Exporter of typed records.
+   * @throws IOException Thrown if the export failed.
+   */
+  public void exportCompletedRecords(StructuredMeasurementsExporter exporter) throws IOException {
+  }
+
   protected final void exportStatusCounts(MeasurementsExporter exporter) throws IOException {
-    for (Map.Entry<Status, AtomicInteger> entry : returncodes.entrySet()) {
+    for (Map.Entry<Status, AtomicLong> entry : returncodes.entrySet()) {
       exporter.write(getName(), "Return=" + entry.getKey().getName(), entry.getValue().get());
     }
   }
+
+  protected final void exportStatusRecords(StructuredMeasurementsExporter exporter) throws IOException {
+    for (Map.Entry<Status, AtomicLong> entry : returncodes.entrySet()) {
+      exporter.writeReturnCode(getName(), entry.getKey().getName(), entry.getValue().get());
+    }
+  }
 }
@@ -17,7 +17,9 @@
 
 package com.yahoo.ycsb.measurements;
 
+import com.yahoo.ycsb.measurements.exporter.HistogramSnapshot;
 import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+import com.yahoo.ycsb.measurements.exporter.StructuredMeasurementsExporter;
 import org.HdrHistogram.Histogram;
 import org.HdrHistogram.HistogramIterationValue;
 import org.HdrHistogram.HistogramLogWriter;
@@ -34,7 +36,11 @@ import java.util.Properties;
 
 /**
  * Take measurements and maintain a HdrHistogram of a given metric, such as READ LATENCY.
- *
+ * <p>
+ * The precision and range of the histogram can be set for all measurements with hdrhistogram.significantdigits
+ * and hdrhistogram.highestvalue, and for a single measurement by inserting its name, e.g.
+ * hdrhistogram.READ.significantdigits. Without a highest value the histogram grows to fit what it records; with
+ * one, larger values are recorded as the highest value.
  */
 public class OneMeasurementHdrHistogram extends OneMeasurement {
 
@@ -45,6 +51,12 @@ public class OneMeasurementHdrHistogram extends OneMeasurement {
   private final Recorder histogram;
   private Histogram totalHistogram;
 
+  /**
+   * Values drained from the recorder since the last summary. The recorder is drained whenever the total is needed,
+   * so the next summary must still include what was drained in between.
+   */
+  private Histogram pendingHistogram;
+
   /**
    * The name of the property for deciding what percentile values to output.
    */
@@ -57,9 +69,34 @@ public class OneMeasurementHdrHistogram extends OneMeasurement {
 
   private final List<Double> percentiles;
 
+  /**
+   * The name of the property for the number of significant decimal digits kept for each value.
+   */
+  public static final String SIGNIFICANT_DIGITS_PROPERTY = "significantdigits";
+
+  /**
+   * The default number of significant decimal digits.
+   */
+  public static final String SIGNIFICANT_DIGITS_PROPERTY_DEFAULT = "3";
+
+  /**
+   * The name of the property for the highest value tracked, in the latency unit. 0 lets the histogram grow.
+   */
+  public static final String HIGHEST_VALUE_PROPERTY = "highestvalue";
+
+  /**
+   * The default highest value tracked.
+   */
+  public static final String HIGHEST_VALUE_PROPERTY_DEFAULT = "0";
+
+  private final String unit;
+  private final long highestValue;
+
   public OneMeasurementHdrHistogram(String name, Properties props) {
     super(name);
-    percentiles = getPercentileValues(props.getProperty(PERCENTILES_PROPERTY, PERCENTILES_PROPERTY_DEFAULT));
+    percentiles = getPercentileValues(props.getProperty(PERCENTILES_PROPERTY, PERCENTILES_PROPERTY_DEFAULT),
+        PERCENTILES_PROPERTY, PERCENTILES_PROPERTY_DEFAULT);
+    unit = Measurements.getLatencyUnit(props);
     boolean shouldLog = Boolean.parseBoolean(props.getProperty("hdrhistogram.fileoutput", "false"));
     if (!shouldLog) {
       log = null;
@@ -79,15 +116,32 @@ public class OneMeasurementHdrHistogram extends OneMeasurement {
       histogramLogWriter.setBaseTime(now);
       histogramLogWriter.outputLegend();
     }
-    histogram = new Recorder(3);
+    int significantDigits = Integer.parseInt(getProperty(props, name, SIGNIFICANT_DIGITS_PROPERTY,
+        SIGNIFICANT_DIGITS_PROPERTY_DEFAULT));
+    highestValue = Long.parseLong(getProperty(props, name, HIGHEST_VALUE_PROPERTY, HIGHEST_VALUE_PROPERTY_DEFAULT));
+    if (highestValue > 0) {
+      histogram = new Recorder(Math.max(highestValue, 2), significantDigits);
+    } else {
+      histogram = new Recorder(significantDigits);
+    }
+  }
+
+  /**
+   * @return The value of hdrhistogram.name.key if set, otherwise of hdrhistogram.key.
+   */
+  static String getProperty(Properties props, String name, String key, String defaultValue) {
+    return props.getProperty("hdrhistogram." + name + "." + key,
+        props.getProperty("hdrhistogram." + key, defaultValue));
   }
 
   /**
-   * It appears latency is reported in micros.
    * Using {@link Recorder} to support concurrent updates to histogram.
    */
-  public void measure(int latencyInMicros) {
-    histogram.recordValue(latencyInMicros);
+  public void measure(long latency) {
+    if (highestValue > 0 && latency > highestValue) {
+      latency = highestValue;
+    }
+    histogram.recordValue(latency);
   }
 
   /**
@@ -95,36 +149,60 @@ public class OneMeasurementHdrHistogram extends OneMeasurement {
    */
   @Override
   public void exportMeasurements(MeasurementsExporter exporter) throws IOException {
-    // accumulate the last interval which was not caught by status thread
+    endLog();
+    exportSummary(exporter, totalHistogram);
+
+    // also export totalHistogram
+    for (HistogramIterationValue v : totalHistogram.recordedValues()) {
+      exporter.write(getName(), Long.toString(v.getValueIteratedTo()), (double)v.getCountAtValueIteratedTo());
+    }
+  }
+
+  /**
+   * This is called from a main thread, on orderly termination. The whole histogram is included, compressed, in
+   * place of its individual values.
+   */
+  @Override
+  public void exportRecords(StructuredMeasurementsExporter exporter) throws IOException {
+    endLog();
+    exporter.writeHistogram(getName(), HistogramSnapshot.of(totalHistogram, unit, percentiles, true));
+    exportStatusRecords(exporter);
+  }
+
+  /**
+   * Accumulates the last interval, which was not caught by the status thread, into the total histogram and writes it
+   * to the histogram log, which is then closed.
+   */
+  private void endLog() {
     Histogram intervalHistogram = getIntervalHistogramAndAccumulate();
     if (histogramLogWriter != null) {
       histogramLogWriter.outputIntervalHistogram(intervalHistogram);
       // we can close now
       log.close();
     }
-    exporter.write(getName(), "Operations", totalHistogram.getTotalCount());
-    exporter.write(getName(), "AverageLatency(us)", totalHistogram.getMean());
-    exporter.write(getName(), "MinLatency(us)", totalHistogram.getMinValue());
-    exporter.write(getName(), "MaxLatency(us)", totalHistogram.getMaxValue());
+  }
+
+  /**
+   * This is called from the live metrics endpoint while the run is going. It includes the values recorded since
+   * the last summary without taking them away from the next one.
+   */
+  @Override
+  public void exportCurrentMeasurements(MeasurementsExporter exporter) throws IOException {
+    exportSummary(exporter, getTotalHistogram());
+  }
+
+  private void exportSummary(MeasurementsExporter exporter, Histogram total) throws IOException {
+    exporter.write(getName(), "Operations", total.getTotalCount());
+    exporter.write(getName(), "AverageLatency(" + unit + ")", total.getMean());
+    exporter.write(getName(), "MinLatency(" + unit + ")", total.getMinValue());
+    exporter.write(getName(), "MaxLatency(" + unit + ")", total.getMaxValue());
 
     for (Double percentile : percentiles) {
-      exporter.write(getName(), ordinal(percentile) + "PercentileLatency(us)",
-          totalHistogram.getValueAtPercentile(percentile));
+      exporter.write(getName(), ordinal(percentile) + "PercentileLatency(" + unit + ")",
+          total.getValueAtPercentile(percentile));
     }
 
     exportStatusCounts(exporter);
-
-    // also export totalHistogram
-    for (HistogramIterationValue v : totalHistogram.recordedValues()) {
-      int value;
-      if (v.getValueIteratedTo() > (long)Integer.MAX_VALUE) {
-        value = Integer.MAX_VALUE;
-      } else {
-        value = (int)v.getValueIteratedTo();
-      }
-
-      exporter.write(getName(), Integer.toString(value), (double)v.getCountAtValueIteratedTo());
-    }
   }
 
   /**
@@ -151,24 +229,51 @@ public class OneMeasurementHdrHistogram extends OneMeasurement {
         + d.format(intervalHistogram.getValueAtPercentile(99.99)) + "]";
   }
 
-  private Histogram getIntervalHistogramAndAccumulate() {
+  /**
+   * Drains the recorder into both the total and the pending histograms.
+   */
+  private synchronized void drain() {
     Histogram intervalHistogram = histogram.getIntervalHistogram();
     // add this to the total time histogram.
     if (totalHistogram == null) {
-      totalHistogram = intervalHistogram;
+      totalHistogram = intervalHistogram.copy();
     } else {
       totalHistogram.add(intervalHistogram);
     }
+    if (pendingHistogram == null) {
+      pendingHistogram = intervalHistogram;
+    } else {
+      pendingHistogram.add(intervalHistogram);
+    }
+  }
+
+  /**
+   * @return The values recorded since the previous call, which are also added to the total.
+   */
+  private synchronized Histogram getIntervalHistogramAndAccumulate() {
+    drain();
+    Histogram intervalHistogram = pendingHistogram;
+    pendingHistogram = null;
     return intervalHistogram;
   }
 
+  /**
+   * @return A copy of all values recorded so far.
+   */
+  private synchronized Histogram getTotalHistogram() {
+    drain();
+    return totalHistogram.copy();
+  }
+
   /**
    * Helper method to parse the given percentile value string.
    *
    * @param percentileString - comma delimited string of Integer values
+   * @param property - the property the string was read from
+   * @param defaultValue - the default of the property, used if the string is unreadable
    * @return An Integer List of percentile values
    */
-  private List<Double> getPercentileValues(String percentileString) {
+  static List<Double> getPercentileValues(String percentileString, String property, String defaultValue) {
     List<Double> percentileValues = new ArrayList<>();
 
     try {
@@ -178,10 +283,10 @@ public class OneMeasurementHdrHistogram extends OneMeasurement {
     } catch (Exception e) {
       // If the given hdrhistogram.percentiles value is unreadable for whatever reason,
       // then calculate and return the default set.
-      System.err.println("[WARN] Couldn't read " + PERCENTILES_PROPERTY + " value: '" + percentileString +
-          "', the default of '" + PERCENTILES_PROPERTY_DEFAULT + "' will be used.");
+      System.err.println("[WARN] Couldn't read " + property + " value: '" + percentileString +
+          "', the default of '" + defaultValue + "' will be used.");
       e.printStackTrace();
-      return getPercentileValues(PERCENTILES_PROPERTY_DEFAULT);
+      return getPercentileValues(defaultValue, property, defaultValue);
     }
 
     return percentileValues;
@@ -192,7 +297,7 @@ public class OneMeasurementHdrHistogram extends OneMeasurement {
    * @param i number
    * @return ordinal string
    */
-  private String ordinal(Double i) {
+  static String ordinal(Double i) {
     String[] suffixes = new String[]{"th", "st", "nd", "rd", "th", "th", "th", "th", "th", "th"};
     Integer j = i.intValue();
     if (i % 1 == 0) {
@@ -0,0 +1,226 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.measurements;
+
+import com.yahoo.ycsb.measurements.exporter.HistogramSnapshot;
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+import com.yahoo.ycsb.measurements.exporter.StructuredMeasurementsExporter;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.zip.DataFormatException;
+
+/**
+ * A series of HdrHistograms of a metric, such as READ LATENCY, one for each time unit of timeseries.granularity
+ * milliseconds. Each unit is exported with its start time, in milliseconds since the measurement was created,
+ * before the statistic, e.g. "2000:Operations", "2000:Throughput(ops/sec)", "2000:99thPercentileLatency(us)" and
+ * "2000:MaxLatency(us)". Units without operations are skipped. The throughput of the last unit, which usually ends
+ * before its full granularity when the run does, is computed over the time it actually lasted.
+ * <p>
+ * The histogram of a unit is compressed as soon as the unit is over, so a long run takes a few kilobytes per unit.
+ * Exporters of typed records receive each unit while the run is going, once it is over, and it is then dropped.
+ */
+public class OneMeasurementHdrHistogramSeries extends OneMeasurement {
+
+  /**
+   * The name of the property for the percentiles exported for each unit.
+   */
+  public static final String PERCENTILES_PROPERTY = "hdrhistogram.series.percentiles";
+
+  /**
+   * The default value for the hdrhistogram.series.percentiles property.
+   */
+  public static final String PERCENTILES_PROPERTY_DEFAULT = "50,95,99,99.9";
+
+  private final int granularity;
+  private final List<Double> percentiles;
+  private final String unit;
+  private final long highestValue;
+  private final long start;
+  private final Recorder histogram;
+
+  /**
+   * The start of the unit being recorded, relative to start.
+   */
+  private volatile long currentunit = 0;
+
+  /**
+   * The unit ended by the export and how long it lasted, relative to start.
+   */
+  private long lastunit = -1;
+  private long lastunitlength;
+
+  /**
+   * The compressed histogram of each unit before the current one, by start.
+   */
+  private final Map<Long, byte[]> intervals = new LinkedHashMap<>();
+
+  private Histogram recycled;
+
+  public OneMeasurementHdrHistogramSeries(String name, Properties props) {
+    super(name);
+    granularity = Integer.parseInt(props.getProperty(OneMeasurementTimeSeries.GRANULARITY,
+        OneMeasurementTimeSeries.GRANULARITY_DEFAULT));
+    percentiles = OneMeasurementHdrHistogram.getPercentileValues(
+        props.getProperty(PERCENTILES_PROPERTY, PERCENTILES_PROPERTY_DEFAULT),
+        PERCENTILES_PROPERTY, PERCENTILES_PROPERTY_DEFAULT);
+    unit = Measurements.getLatencyUnit(props);
+    int significantDigits = Integer.parseInt(OneMeasurementHdrHistogram.getProperty(props, name,
+        OneMeasurementHdrHistogram.SIGNIFICANT_DIGITS_PROPERTY,
+        OneMeasurementHdrHistogram.SIGNIFICANT_DIGITS_PROPERTY_DEFAULT));
+    highestValue = Long.parseLong(OneMeasurementHdrHistogram.getProperty(props, name,
+        OneMeasurementHdrHistogram.HIGHEST_VALUE_PROPERTY,
+        OneMeasurementHdrHistogram.HIGHEST_VALUE_PROPERTY_DEFAULT));
+    if (highestValue > 0) {
+      histogram = new Recorder(Math.max(highestValue, 2), significantDigits);
+    } else {
+      histogram = new Recorder(significantDigits);
+    }
+    start = currentTimeMillis();
+  }
+
+  /**
+   * @return The current time in milliseconds, which tests override to control the units.
+   */
+  protected long currentTimeMillis() {
+    return System.currentTimeMillis();
+  }
+
+  @Override
+  public void measure(long latency) {
+    long time = ((currentTimeMillis() - start) / granularity) * granularity;
+    if (time != currentunit) {
+      endUnit(time);
+    }
+    if (highestValue > 0 && latency > highestValue) {
+      latency = highestValue;
+    }
+    histogram.recordValue(latency);
+  }
+
+  /**
+   * Compresses the histogram of the current unit and starts the unit at time, unless another thread already has.
+   */
+  private synchronized void endUnit(long time) {
+    if (time <= currentunit) {
+      return;
+    }
+    recycled = histogram.getIntervalHistogram(recycled);
+    if (recycled.getTotalCount() > 0) {
+      ByteBuffer buffer = ByteBuffer.allocate(recycled.getNeededByteBufferCapacity());
+      int length = recycled.encodeIntoCompressedByteBuffer(buffer);
+      intervals.put(currentunit, Arrays.copyOf(buffer.array(), length));
+    }
+    currentunit = time;
+  }
+
+  /**
+   * This is called from a main thread, on orderly termination.
+   */
+  @Override
+  public void exportMeasurements(MeasurementsExporter exporter) throws IOException {
+    for (Map.Entry<Long, byte[]> entry : endIntervals().entrySet()) {
+      Histogram interval = decode(entry.getKey(), entry.getValue());
+      String prefix = entry.getKey() + ":";
+      exporter.write(getName(), prefix + "Operations", interval.getTotalCount());
+      exporter.write(getName(), prefix + "Throughput(ops/sec)",
+          interval.getTotalCount() * 1000.0 / length(entry.getKey()));
+      exporter.write(getName(), prefix + "AverageLatency(" + unit + ")", interval.getMean());
+      for (Double percentile : percentiles) {
+        exporter.write(getName(), prefix + OneMeasurementHdrHistogram.ordinal(percentile) +
+            "PercentileLatency(" + unit + ")", interval.getValueAtPercentile(percentile));
+      }
+      exporter.write(getName(), prefix + "MaxLatency(" + unit + ")", interval.getMaxValue());
+    }
+  }
+
+  /**
+   * This is called from a main thread, on orderly termination. Each unit becomes a series record.
+   */
+  @Override
+  public void exportRecords(StructuredMeasurementsExporter exporter) throws IOException {
+    for (Map.Entry<Long, byte[]> entry : endIntervals().entrySet()) {
+      exporter.writeSeries(getName(), entry.getKey(), length(entry.getKey()),
+          HistogramSnapshot.of(decode(entry.getKey(), entry.getValue()), unit, percentiles, false));
+    }
+  }
+
+  /**
+   * Streams the units that are over and drops them.
+   */
+  @Override
+  public void exportCompletedRecords(StructuredMeasurementsExporter exporter) throws IOException {
+    for (Map.Entry<Long, byte[]> entry : takeIntervals().entrySet()) {
+      exporter.writeSeries(getName(), entry.getKey(), granularity,
+          HistogramSnapshot.of(decode(entry.getKey(), entry.getValue()), unit, percentiles, false));
+    }
+  }
+
+  /**
+   * @return The compressed histogram of every unit that is over, by start, which are no longer kept.
+   */
+  private synchronized Map<Long, byte[]> takeIntervals() {
+    Map<Long, byte[]> ended = new LinkedHashMap<>(intervals);
+    intervals.clear();
+    return ended;
+  }
+
+  /**
+   * Ends the current unit for good.
+   *
+   * @return A copy of the compressed histogram of every unit, by start.
+   */
+  private synchronized Map<Long, byte[]> endIntervals() {
+    if (currentunit != Long.MAX_VALUE) {
+      lastunit = currentunit;
+      lastunitlength = Math.max(1, Math.min(granularity, currentTimeMillis() - start - currentunit));
+    }
+    endUnit(Long.MAX_VALUE);
+    return new LinkedHashMap<>(intervals);
+  }
+
+  /**
+   * @return How long the unit starting at time lasted, in milliseconds.
+   */
+  private synchronized long length(long time) {
+    return time == lastunit ? lastunitlength : granularity;
+  }
+
+  private Histogram decode(long time, byte[] interval) throws IOException {
+    try {
+      return Histogram.decodeFromCompressedByteBuffer(ByteBuffer.wrap(interval), 0);
+    } catch (DataFormatException e) {
+      throw new IOException("Failed to decode the histogram of " + getName() + " at " + time, e);
+    }
+  }
+
+  /**
+   * The per-unit values are only exported at the end of the run; the status thread reports nothing for them.
+   */
+  @Override
+  public String getSummary() {
+    return "";
+  }
+}
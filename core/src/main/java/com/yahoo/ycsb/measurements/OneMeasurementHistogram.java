@@ -22,10 +22,13 @@ import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
 import java.io.IOException;
 import java.text.DecimalFormat;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 /**
  * Take measurements and maintain a histogram of a given metric, such as READ LATENCY.
- *
+ * <p>
+ * Recording takes no lock shared by all threads: the buckets are updated atomically and the other statistics are
+ * kept in stripes (see {@link LatencyStripe}) that are merged when read.
  */
 public class OneMeasurementHistogram extends OneMeasurement {
   public static final String BUCKETS = "histogram.buckets";
@@ -37,120 +40,95 @@ public class OneMeasurementHistogram extends OneMeasurement {
   private final int buckets;
 
   /**
-   * Groups operations in discrete blocks of 1ms width.
-   */
-  private long[] histogram;
-
-  /**
-   * Counts all operations outside the histogram's range.
+   * Groups operations in discrete blocks of 1ms width. The last element counts all operations outside the
+   * histogram's range.
    */
-  private long histogramoverflow;
+  private final AtomicLongArray histogram;
 
   /**
-   * The total number of reported operations.
+   * The number of operations, their total and squared total latency, extremes and window, by thread.
    */
-  private long operations;
+  private final LatencyStripe[] stripes;
 
-  /**
-   * The sum of each latency measurement over all operations.
-   * Calculated in ms.
-   */
-  private long totallatency;
+  private final String unit;
 
   /**
-   * The sum of each latency measurement squared over all operations. 
-   * Used to calculate variance of latency.
-   * Calculated in ms. 
+   * The width of a bucket in the latency unit, 1ms.
    */
-  private double totalsquaredlatency;
-
-  //keep a windowed version of these stats for printing status
-  private long windowoperations;
-  private long windowtotallatency;
-
-  private int min;
-  private int max;
+  private final long bucketwidth;
 
   public OneMeasurementHistogram(String name, Properties props) {
     super(name);
     buckets = Integer.parseInt(props.getProperty(BUCKETS, BUCKETS_DEFAULT));
-    histogram = new long[buckets];
-    histogramoverflow = 0;
-    operations = 0;
-    totallatency = 0;
-    totalsquaredlatency = 0;
-    windowoperations = 0;
-    windowtotallatency = 0;
-    min = -1;
-    max = -1;
+    unit = Measurements.getLatencyUnit(props);
+    bucketwidth = unit.equals("ns") ? 1000000 : 1000;
+    histogram = new AtomicLongArray(buckets + 1);
+    stripes = new LatencyStripe[LatencyStripe.STRIPES];
+    for (int i = 0; i < stripes.length; i++) {
+      stripes[i] = new LatencyStripe();
+    }
   }
 
   /* (non-Javadoc)
-   * @see com.yahoo.ycsb.OneMeasurement#measure(int)
+   * @see com.yahoo.ycsb.OneMeasurement#measure(long)
    */
-  public synchronized void measure(int latency) {
-    //latency reported in us and collected in bucket by ms.
-    if (latency / 1000 >= buckets) {
-      histogramoverflow++;
-    } else {
-      histogram[latency / 1000]++;
-    }
-    operations++;
-    totallatency += latency;
-    totalsquaredlatency += ((double) latency) * ((double) latency);
-    windowoperations++;
-    windowtotallatency += latency;
-
-    if ((min < 0) || (latency < min)) {
-      min = latency;
-    }
+  public void measure(long latency) {
+    //latency reported in the latency unit and collected in bucket by ms.
+    histogram.incrementAndGet((int) Math.min(latency / bucketwidth, buckets));
+    stripes[LatencyStripe.index()].measure(latency);
+  }
+
+  @Override
+  public void exportMeasurements(MeasurementsExporter exporter) throws IOException {
+    exportSummary(exporter);
 
-    if ((max < 0) || (latency > max)) {
-      max = latency;
+    for (int i = 0; i < buckets; i++) {
+      exporter.write(getName(), Integer.toString(i), histogram.get(i));
     }
+    exporter.write(getName(), ">" + buckets, histogram.get(buckets));
   }
 
   @Override
-  public void exportMeasurements(MeasurementsExporter exporter) throws IOException {
-    double mean = totallatency / ((double) operations);
-    double variance = totalsquaredlatency / ((double) operations) - (mean * mean);
+  public void exportCurrentMeasurements(MeasurementsExporter exporter) throws IOException {
+    exportSummary(exporter);
+  }
+
+  private void exportSummary(MeasurementsExporter exporter) throws IOException {
+    LatencyStripe total = LatencyStripe.merge(stripes, false);
+    long operations = total.operations;
+    double mean = total.totallatency / ((double) operations);
+    double variance = total.totalsquaredlatency / ((double) operations) - (mean * mean);
     exporter.write(getName(), "Operations", operations);
-    exporter.write(getName(), "AverageLatency(us)", mean);
-    exporter.write(getName(), "LatencyVariance(us)", variance);
-    exporter.write(getName(), "MinLatency(us)", min);
-    exporter.write(getName(), "MaxLatency(us)", max);
+    exporter.write(getName(), "AverageLatency(" + unit + ")", mean);
+    exporter.write(getName(), "LatencyVariance(" + unit + ")", variance);
+    exporter.write(getName(), "MinLatency(" + unit + ")", total.min);
+    exporter.write(getName(), "MaxLatency(" + unit + ")", total.max);
 
     long opcounter=0;
     boolean done95th = false;
     for (int i = 0; i < buckets; i++) {
-      opcounter += histogram[i];
+      opcounter += histogram.get(i);
       if ((!done95th) && (((double) opcounter) / ((double) operations) >= 0.95)) {
-        exporter.write(getName(), "95thPercentileLatency(us)", i * 1000);
+        exporter.write(getName(), "95thPercentileLatency(" + unit + ")", i * bucketwidth);
         done95th = true;
       }
       if (((double) opcounter) / ((double) operations) >= 0.99) {
-        exporter.write(getName(), "99thPercentileLatency(us)", i * 1000);
+        exporter.write(getName(), "99thPercentileLatency(" + unit + ")", i * bucketwidth);
         break;
       }
     }
 
     exportStatusCounts(exporter);
-
-    for (int i = 0; i < buckets; i++) {
-      exporter.write(getName(), Integer.toString(i), histogram[i]);
-    }
-    exporter.write(getName(), ">" + buckets, histogramoverflow);
   }
 
   @Override
   public String getSummary() {
-    if (windowoperations == 0) {
+    LatencyStripe window = LatencyStripe.merge(stripes, true);
+    if (window.windowoperations == 0) {
       return "";
     }
     DecimalFormat d = new DecimalFormat("#.##");
-    double report = ((double) windowtotallatency) / ((double) windowoperations);
-    windowtotallatency = 0;
-    windowoperations = 0;
-    return "[" + getName() + " AverageLatency(us)=" + d.format(report) + "]";
+    double report = ((double) window.windowtotallatency) / ((double) window.windowoperations);
+    return "[" + getName() + " AverageLatency(" + unit + ")=" + d.format(report) + "]";
   }
 }
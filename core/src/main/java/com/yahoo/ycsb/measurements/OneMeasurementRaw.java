@@ -40,9 +40,9 @@ public class OneMeasurementRaw extends OneMeasurement {
    */
   class RawDataPoint {
     private final long timestamp;
-    private final int value;
+    private final long value;
 
-    public RawDataPoint(int value) {
+    public RawDataPoint(long value) {
       this.timestamp = System.currentTimeMillis();
       this.value = value;
     }
@@ -51,7 +51,7 @@ public class OneMeasurementRaw extends OneMeasurement {
       return timestamp;
     }
 
-    public int value() {
+    public long value() {
       return value;
     }
   }
@@ -101,8 +101,11 @@ public class OneMeasurementRaw extends OneMeasurement {
   private int windowOperations = 0;
   private long windowTotalLatency = 0;
 
+  private final String unit;
+
   public OneMeasurementRaw(String name, Properties props) {
     super(name);
+    unit = Measurements.getLatencyUnit(props);
 
     String outputFilePath = props.getProperty(OUTPUT_FILE_PATH, OUTPUT_FILE_PATH_DEFAULT);
     if (!outputFilePath.isEmpty()) {
@@ -130,7 +133,7 @@ public class OneMeasurementRaw extends OneMeasurement {
   }
 
   @Override
-  public synchronized void measure(int latency) {
+  public synchronized void measure(long latency) {
     totalLatency += latency;
     windowTotalLatency += latency;
     windowOperations++;
@@ -145,7 +148,7 @@ public class OneMeasurementRaw extends OneMeasurement {
     // stdout.
 
     outputStream.println(getName() +
-        " latency raw data: op, timestamp(ms), latency(us)");
+        " latency raw data: op, timestamp(ms), latency(" + unit + ")");
     for (RawDataPoint point : measurements) {
       outputStream.println(
           String.format("%s,%d,%d", getName(), point.timeStamp(),
@@ -159,7 +162,7 @@ public class OneMeasurementRaw extends OneMeasurement {
     exporter.write(getName(), "Total Operations", totalOps);
     if (totalOps > 0 && !noSummaryStats) {
       exporter.write(getName(),
-          "Below is a summary of latency in microseconds:", -1);
+          "Below is a summary of latency in " + (unit.equals("ns") ? "nanoseconds:" : "microseconds:"), -1);
       exporter.write(getName(), "Average",
           (double) totalLatency / (double) totalOps);
 
@@ -195,7 +198,7 @@ public class OneMeasurementRaw extends OneMeasurement {
       return "";
     }
 
-    String toReturn = String.format("%s count: %d, average latency(us): %.2f",
+    String toReturn = String.format("%s count: %d, average latency(" + unit + "): %.2f",
         getName(), windowOperations,
         (double) windowTotalLatency / (double) windowOperations);
 
@@ -17,12 +17,18 @@
 
 package com.yahoo.ycsb.measurements;
 
+import com.yahoo.ycsb.measurements.exporter.HistogramSnapshot;
 import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+import com.yahoo.ycsb.measurements.exporter.StructuredMeasurementsExporter;
 
 import java.io.IOException;
 import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
-import java.util.Vector;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 class SeriesUnit {
   /**
@@ -40,6 +46,11 @@ class SeriesUnit {
 
 /**
  * A time series measurement of a metric, such as READ LATENCY.
+ * <p>
+ * Each thread records into a stripe (see {@link LatencyStripe}) that keeps its own time units, and the stripes
+ * are merged unit by unit when the measurement is exported, so recording takes no lock shared by all threads.
+ * Exporters of typed records receive each unit while the run is going, once the unit after it is over too, since a
+ * thread may still record into a unit for a moment after it ended.
  */
 public class OneMeasurementTimeSeries extends OneMeasurement {
 
@@ -50,78 +61,119 @@ public class OneMeasurementTimeSeries extends OneMeasurement {
   public static final String GRANULARITY_DEFAULT = "1000";
 
   private final int granularity;
-  private final Vector<SeriesUnit> measurements;
+  private final long start;
+  private final SeriesStripe[] stripes;
 
-  private long start = -1;
-  private long currentunit = -1;
-  private long count = 0;
-  private long sum = 0;
-  private long operations = 0;
-  private long totallatency = 0;
+  private final String latencyunit;
 
-  //keep a windowed version of these stats for printing status
-  private int windowoperations = 0;
-  private long windowtotallatency = 0;
+  /**
+   * The start of the last unit streamed to an exporter of typed records.
+   */
+  private long streamed = -1;
 
-  private int min = -1;
-  private int max = -1;
+  /**
+   * A stripe that also sums the latencies of each time unit.
+   */
+  private static final class SeriesStripe extends LatencyStripe {
+    /**
+     * The time, count and sum of latencies of each unit before the current one.
+     */
+    private final List<long[]> units = new ArrayList<>();
+    private long currentunit = -1;
+    private long count = 0;
+    private long sum = 0;
+
+    synchronized void measure(long unit, long latency) {
+      if (unit != currentunit) {
+        if (count > 0) {
+          units.add(new long[] {currentunit, count, sum});
+        }
+        currentunit = unit;
+        count = 0;
+        sum = 0;
+      }
+      count++;
+      sum += latency;
+      measure(latency);
+    }
+
+    /**
+     * Adds the count and sum of latencies of each unit to those in series.
+     */
+    synchronized void addTo(Map<Long, long[]> series) {
+      for (long[] unit : units) {
+        add(series, unit[0], unit[1], unit[2]);
+      }
+      if (count > 0) {
+        add(series, currentunit, count, sum);
+      }
+    }
+
+    private static void add(Map<Long, long[]> series, long time, long count, long sum) {
+      long[] unit = series.get(time);
+      if (unit == null) {
+        series.put(time, new long[] {count, sum});
+      } else {
+        unit[0] += count;
+        unit[1] += sum;
+      }
+    }
+  }
 
   public OneMeasurementTimeSeries(String name, Properties props) {
     super(name);
+    latencyunit = Measurements.getLatencyUnit(props);
     granularity = Integer.parseInt(props.getProperty(GRANULARITY, GRANULARITY_DEFAULT));
-    measurements = new Vector<>();
-  }
-
-  private synchronized void checkEndOfUnit(boolean forceend) {
-    long now = System.currentTimeMillis();
-
-    if (start < 0) {
-      currentunit = 0;
-      start = now;
+    start = System.currentTimeMillis();
+    stripes = new SeriesStripe[LatencyStripe.STRIPES];
+    for (int i = 0; i < stripes.length; i++) {
+      stripes[i] = new SeriesStripe();
     }
+  }
 
-    long unit = ((now - start) / granularity) * granularity;
-
-    if ((unit > currentunit) || (forceend)) {
-      double avg = ((double) sum) / ((double) count);
-      measurements.add(new SeriesUnit(currentunit, avg));
+  @Override
+  public void measure(long latency) {
+    stripes[LatencyStripe.index()].measure(currentUnit(), latency);
+  }
 
-      currentunit = unit;
+  private long currentUnit() {
+    return ((System.currentTimeMillis() - start) / granularity) * granularity;
+  }
 
-      count = 0;
-      sum = 0;
-    }
+  /**
+   * @return The mean of the latencies summed up to sum, or 0 if there are none.
+   */
+  private static double mean(long sum, long count) {
+    return count == 0 ? 0 : ((double) sum) / ((double) count);
   }
 
-  @Override
-  public void measure(int latency) {
-    checkEndOfUnit(false);
-
-    count++;
-    sum += latency;
-    totallatency += latency;
-    operations++;
-    windowoperations++;
-    windowtotallatency += latency;
-
-    if (latency > max) {
-      max = latency;
-    }
 
-    if ((latency < min) || (min < 0)) {
-      min = latency;
+  /**
+   * @return The time, count and sum of latencies of each unit, in order of time.
+   */
+  private Map<Long, long[]> getSeries() {
+    Map<Long, long[]> series = new TreeMap<>();
+    for (SeriesStripe stripe : stripes) {
+      stripe.addTo(series);
     }
+    return series;
   }
 
-
   @Override
   public void exportMeasurements(MeasurementsExporter exporter) throws IOException {
-    checkEndOfUnit(true);
+    Map<Long, long[]> series = getSeries();
+    List<SeriesUnit> measurements = new ArrayList<>(series.size());
+    for (Map.Entry<Long, long[]> entry : series.entrySet()) {
+      long[] unit = entry.getValue();
+      measurements.add(new SeriesUnit(entry.getKey(), ((double) unit[1]) / ((double) unit[0])));
+    }
+    LatencyStripe total = LatencyStripe.merge(stripes, false);
 
-    exporter.write(getName(), "Operations", operations);
-    exporter.write(getName(), "AverageLatency(us)", (((double) totallatency) / ((double) operations)));
-    exporter.write(getName(), "MinLatency(us)", min);
-    exporter.write(getName(), "MaxLatency(us)", max);
+    exporter.write(getName(), "Operations", total.operations);
+    exporter.write(getName(), "AverageLatency(" + latencyunit + ")",
+        (((double) total.totallatency) / ((double) total.operations)));
+    exporter.write(getName(), "MinLatency(" + latencyunit + ")", total.min);
+    exporter.write(getName(), "MaxLatency(" + latencyunit + ")", total.max);
 
     // TODO: 95th and 99th percentile latency
 
@@ -131,16 +183,49 @@ public class OneMeasurementTimeSeries extends OneMeasurement {
     }
   }
 
+  /**
+   * Only the count and mean are kept for each unit, so the series records have no percentiles.
+   */
+  @Override
+  public void exportRecords(StructuredMeasurementsExporter exporter) throws IOException {
+    SortedMap<Double, Long> none = new TreeMap<>();
+    LatencyStripe total = LatencyStripe.merge(stripes, false);
+    exporter.writeHistogram(getName(), new HistogramSnapshot(latencyunit, total.operations,
+        mean(total.totallatency, total.operations), total.min, total.max, none, null));
+    exportStatusRecords(exporter);
+    exportSeries(exporter, Long.MAX_VALUE);
+  }
+
+  @Override
+  public void exportCompletedRecords(StructuredMeasurementsExporter exporter) throws IOException {
+    exportSeries(exporter, currentUnit() - granularity);
+  }
+
+  /**
+   * Writes the units not streamed yet that start before end, skipping those without operations.
+   */
+  private synchronized void exportSeries(StructuredMeasurementsExporter exporter, long end) throws IOException {
+    SortedMap<Double, Long> none = new TreeMap<>();
+    for (Map.Entry<Long, long[]> entry : getSeries().entrySet()) {
+      long[] unit = entry.getValue();
+      if (entry.getKey() <= streamed || entry.getKey() >= end || unit[0] == 0) {
+        continue;
+      }
+      exporter.writeSeries(getName(), entry.getKey(), granularity, new HistogramSnapshot(latencyunit, unit[0],
+          mean(unit[1], unit[0]), -1, -1, none, null));
+      streamed = entry.getKey();
+    }
+  }
+
   @Override
   public String getSummary() {
-    if (windowoperations == 0) {
+    LatencyStripe window = LatencyStripe.merge(stripes, true);
+    if (window.windowoperations == 0) {
       return "";
     }
     DecimalFormat d = new DecimalFormat("#.##");
-    double report = ((double) windowtotallatency) / ((double) windowoperations);
-    windowtotallatency = 0;
-    windowoperations = 0;
-    return "[" + getName() + " AverageLatency(us)=" + d.format(report) + "]";
+    double report = ((double) window.windowtotallatency) / ((double) window.windowoperations);
+    return "[" + getName() + " AverageLatency(" + latencyunit + ")=" + d.format(report) + "]";
   }
 
 }
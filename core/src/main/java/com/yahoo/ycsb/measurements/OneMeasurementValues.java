@@ -0,0 +1,106 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.measurements;
+
+import com.yahoo.ycsb.measurements.exporter.HistogramSnapshot;
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+import com.yahoo.ycsb.measurements.exporter.StructuredMeasurementsExporter;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * The distribution of a value that is not a latency, such as how many versions a read lagged behind, kept in an
+ * HdrHistogram and exported with the value's own unit, e.g. "Count", "Average(versions)", "Min(versions)",
+ * "Max(versions)" and "99thPercentile(versions)". Negative values are recorded as 0. Values are only exported, the
+ * status thread reports nothing for them.
+ */
+public class OneMeasurementValues extends OneMeasurement {
+  private final String unit;
+  private final List<Double> percentiles;
+  private final Recorder recorder = new Recorder(3);
+  private Histogram total;
+
+  public OneMeasurementValues(String name, String unit, Properties props) {
+    super(name);
+    this.unit = unit;
+    percentiles = OneMeasurementHdrHistogram.getPercentileValues(
+        props.getProperty(OneMeasurementHdrHistogram.PERCENTILES_PROPERTY,
+            OneMeasurementHdrHistogram.PERCENTILES_PROPERTY_DEFAULT),
+        OneMeasurementHdrHistogram.PERCENTILES_PROPERTY, OneMeasurementHdrHistogram.PERCENTILES_PROPERTY_DEFAULT);
+  }
+
+  /**
+   * @return The unit the values are exported with.
+   */
+  public String getUnit() {
+    return unit;
+  }
+
+  @Override
+  public void measure(long value) {
+    recorder.recordValue(Math.max(value, 0));
+  }
+
+  @Override
+  public void exportMeasurements(MeasurementsExporter exporter) throws IOException {
+    Histogram histogram = getTotal();
+    exporter.write(getName(), "Count", histogram.getTotalCount());
+    if (histogram.getTotalCount() == 0) {
+      return;
+    }
+    exporter.write(getName(), "Average(" + unit + ")", histogram.getMean());
+    exporter.write(getName(), "Min(" + unit + ")", histogram.getMinValue());
+    exporter.write(getName(), "Max(" + unit + ")", histogram.getMaxValue());
+    for (Double percentile : percentiles) {
+      exporter.write(getName(), OneMeasurementHdrHistogram.ordinal(percentile) + "Percentile(" + unit + ")",
+          histogram.getValueAtPercentile(percentile));
+    }
+  }
+
+  @Override
+  public void exportCurrentMeasurements(MeasurementsExporter exporter) throws IOException {
+    exportMeasurements(exporter);
+  }
+
+  @Override
+  public void exportRecords(StructuredMeasurementsExporter exporter) throws IOException {
+    exporter.writeHistogram(getName(), HistogramSnapshot.of(getTotal(), unit, percentiles, true));
+  }
+
+  @Override
+  public String getSummary() {
+    return "";
+  }
+
+  /**
+   * @return A copy of all values recorded so far.
+   */
+  private synchronized Histogram getTotal() {
+    Histogram interval = recorder.getIntervalHistogram();
+    if (total == null) {
+      total = interval;
+    } else {
+      total.add(interval);
+    }
+    return total.copy();
+  }
+}
@@ -0,0 +1,183 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.measurements;
+
+import com.yahoo.ycsb.Status;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Keeps the details of a few operations: one in every measurement.sampling.rate operations, and every operation
+ * slower than measurement.sampling.thresholdus microseconds. The last measurement.sampling.buffersize of each are
+ * kept, in separate buffers so that a high sampling rate does not push out the slow outliers, so a long run costs a
+ * bounded amount of memory, and the slow outliers behind the highest percentiles can be traced back to their keys.
+ * <p>
+ * Deciding to skip an operation takes a comparison and, when sampling by rate, a thread local random number, so
+ * unlike an HTrace span per operation it allocates nothing.
+ */
+public class OperationSampler {
+  /**
+   * The name of the property for the rate of operations to keep, one in this many. 0 keeps none by rate.
+   */
+  public static final String RATE_PROPERTY = "measurement.sampling.rate";
+  public static final String RATE_PROPERTY_DEFAULT = "0";
+
+  /**
+   * The name of the property for the latency in microseconds above which every operation is kept. 0 keeps none by
+   * latency.
+   */
+  public static final String THRESHOLD_PROPERTY = "measurement.sampling.thresholdus";
+  public static final String THRESHOLD_PROPERTY_DEFAULT = "10000";
+
+  /**
+   * The name of the property for the number of operations kept for each reason; older ones are dropped.
+   */
+  public static final String BUFFER_SIZE_PROPERTY = "measurement.sampling.buffersize";
+  public static final String BUFFER_SIZE_PROPERTY_DEFAULT = "1024";
+
+  /**
+   * The name of the property for the file the operations are written to at the end of the run, instead of stderr.
+   */
+  public static final String FILE_PROPERTY = "measurement.sampling.file";
+
+  private static final String HEADER = "time(ms)\toperation\tkey\tstatus\tlatency(ns)\tqueue(ns)\tthread\treason";
+
+  private final int rate;
+  private final long thresholdNanos;
+  private final Ring slow;
+  private final Ring sampled;
+
+  /**
+   * The number of samples ever kept, which orders the samples of both buffers.
+   */
+  private long count = 0;
+
+  /**
+   * The last samples kept for one reason, with the order in which each was kept.
+   */
+  private static final class Ring {
+    private final String[] lines;
+    private final long[] order;
+    private int kept = 0;
+    private int next = 0;
+
+    Ring(int size) {
+      lines = new String[size];
+      order = new long[size];
+    }
+
+    void add(String line, long position) {
+      lines[next] = line;
+      order[next] = position;
+      next = (next + 1) % lines.length;
+      kept = Math.min(kept + 1, lines.length);
+    }
+
+    /**
+     * @return The index of the i-th oldest sample.
+     */
+    int index(int i) {
+      return (next - kept + i + lines.length) % lines.length;
+    }
+  }
+
+  public OperationSampler(Properties props) {
+    rate = Integer.parseInt(props.getProperty(RATE_PROPERTY, RATE_PROPERTY_DEFAULT));
+    thresholdNanos = Long.parseLong(props.getProperty(THRESHOLD_PROPERTY, THRESHOLD_PROPERTY_DEFAULT)) * 1000;
+    int size = Integer.parseInt(props.getProperty(BUFFER_SIZE_PROPERTY, BUFFER_SIZE_PROPERTY_DEFAULT));
+    if (size < 1) {
+      throw new IllegalArgumentException(BUFFER_SIZE_PROPERTY + " must be positive, not " + size);
+    }
+    slow = new Ring(size);
+    sampled = new Ring(size);
+  }
+
+  /**
+   * Keep an operation if it is slow or picked by the rate.
+   *
+   * @param op                     The operation, e.g. "READ".
+   * @param key                    The key, or the list of keys of a batch.
+   * @param status                 The result of the operation.
+   * @param intendedStartTimeNanos When the operation should have started, or 0 if the client is not throttled.
+   * @param startTimeNanos         When the operation started.
+   * @param endTimeNanos           When the operation ended.
+   */
+  public void offer(String op, Object key, Status status, long intendedStartTimeNanos,
+                    long startTimeNanos, long endTimeNanos) {
+    long latency = endTimeNanos - startTimeNanos;
+    Ring ring;
+    String reason;
+    if (thresholdNanos > 0 && latency >= thresholdNanos) {
+      ring = slow;
+      reason = "SLOW";
+    } else if (rate > 0 && ThreadLocalRandom.current().nextInt(rate) == 0) {
+      ring = sampled;
+      reason = "SAMPLED";
+    } else {
+      return;
+    }
+    long time = System.currentTimeMillis() - (System.nanoTime() - startTimeNanos) / 1000000;
+    long queue = intendedStartTimeNanos == 0 ? 0 : startTimeNanos - intendedStartTimeNanos;
+    add(ring, time + "\t" + op + "\t" + key + "\t" + (status == null ? null : status.getName()) + "\t" + latency +
+        "\t" + queue + "\t" + Thread.currentThread().getName() + "\t" + reason);
+  }
+
+  private synchronized void add(Ring ring, String sample) {
+    ring.add(sample, count++);
+  }
+
+  /**
+   * @return The operations kept for either reason, oldest first.
+   */
+  public synchronized List<String> getSamples() {
+    List<String> lines = new ArrayList<>(slow.kept + sampled.kept);
+    int s = 0;
+    int r = 0;
+    while (s < slow.kept || r < sampled.kept) {
+      if (r == sampled.kept || (s < slow.kept && slow.order[slow.index(s)] < sampled.order[sampled.index(r)])) {
+        lines.add(slow.lines[slow.index(s++)]);
+      } else {
+        lines.add(sampled.lines[sampled.index(r++)]);
+      }
+    }
+    return lines;
+  }
+
+  /**
+   * Write the operations kept, one per line with tab separated columns after a header line. The stream is not
+   * closed.
+   */
+  public void write(OutputStream out) throws IOException {
+    BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    bw.write(HEADER);
+    bw.newLine();
+    for (String line : getSamples()) {
+      bw.write(line);
+      bw.newLine();
+    }
+    bw.flush();
+  }
+}
@@ -0,0 +1,87 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.measurements;
+
+import java.util.Arrays;
+
+/**
+ * The time a client thread has spent in each phase of its current operation. Phases are found by a linear scan,
+ * comparing references first since callers pass constants, and the arrays only grow the first time a thread sees
+ * a phase, so timing a phase allocates nothing.
+ */
+final class PhaseContext {
+  private String[] phases = new String[8];
+  private String[] names = new String[8];
+  private long[] starts = new long[8];
+  private long[] totals = new long[8];
+  private boolean[] timed = new boolean[8];
+  private int size = 0;
+
+  void start(String phase) {
+    starts[slot(phase)] = System.nanoTime();
+  }
+
+  void end(String phase) {
+    long now = System.nanoTime();
+    int slot = slot(phase);
+    totals[slot] += now - starts[slot];
+    timed[slot] = true;
+  }
+
+  void add(String phase, long nanos) {
+    int slot = slot(phase);
+    totals[slot] += nanos;
+    timed[slot] = true;
+  }
+
+  /**
+   * Records the time of each phase timed since the last call, and starts the next operation.
+   */
+  void flush(Measurements measurements) {
+    for (int i = 0; i < size; i++) {
+      if (timed[i]) {
+        measurements.measureNanos(names[i], totals[i]);
+        totals[i] = 0;
+        timed[i] = false;
+      }
+    }
+  }
+
+  private int slot(String phase) {
+    for (int i = 0; i < size; i++) {
+      if (phases[i] == phase) {
+        return i;
+      }
+    }
+    for (int i = 0; i < size; i++) {
+      if (phases[i].equals(phase)) {
+        return i;
+      }
+    }
+    if (size == phases.length) {
+      phases = Arrays.copyOf(phases, size * 2);
+      names = Arrays.copyOf(names, size * 2);
+      starts = Arrays.copyOf(starts, size * 2);
+      totals = Arrays.copyOf(totals, size * 2);
+      timed = Arrays.copyOf(timed, size * 2);
+    }
+    phases[size] = phase;
+    names[size] = Measurements.PHASE_PREFIX + phase;
+    return size++;
+  }
+}
@@ -19,6 +19,7 @@ package com.yahoo.ycsb.measurements;
 
 import com.yahoo.ycsb.Status;
 import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+import com.yahoo.ycsb.measurements.exporter.StructuredMeasurementsExporter;
 
 import java.io.IOException;
 
@@ -44,13 +45,12 @@ public class TwoInOneMeasurement extends OneMeasurement {
   }
 
   /**
-   * It appears latency is reported in micros.
-   * Using {@link org.HdrHistogram.Recorder} to support concurrent updates to histogram.
+   * Records the value in both measurements.
    */
   @Override
-  public void measure(int latencyInMicros) {
-    thing1.measure(latencyInMicros);
-    thing2.measure(latencyInMicros);
+  public void measure(long latency) {
+    thing1.measure(latency);
+    thing2.measure(latency);
   }
 
   /**
@@ -62,6 +62,26 @@ public class TwoInOneMeasurement extends OneMeasurement {
     thing2.exportMeasurements(exporter);
   }
 
+  @Override
+  public void exportRecords(StructuredMeasurementsExporter exporter) throws IOException {
+    thing1.exportRecords(exporter);
+    thing2.exportRecords(exporter);
+  }
+
+  @Override
+  public void exportCompletedRecords(StructuredMeasurementsExporter exporter) throws IOException {
+    thing1.exportCompletedRecords(exporter);
+    thing2.exportCompletedRecords(exporter);
+  }
+
+  /**
+   * Only the first measurement receives the return codes, so it alone is exported.
+   */
+  @Override
+  public void exportCurrentMeasurements(MeasurementsExporter exporter) throws IOException {
+    thing1.exportCurrentMeasurements(exporter);
+  }
+
   /**
    * This is called periodically from the StatusThread. There's a single StatusThread per Client process.
    * We optionally serialize the interval to log on this opportunity.
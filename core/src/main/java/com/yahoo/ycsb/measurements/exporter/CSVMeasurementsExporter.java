@@ -0,0 +1,177 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.measurements.exporter;
+
+import org.codehaus.jackson.Base64Variants;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Export measurements as CSV with one fixed set of columns for every record, so that each column holds one kind of
+ * value and files from many runs can be loaded into the same table:
+ * <p>
+ * record,metric,name,text,time,duration,unit,count,value,mean,min,max,p50,p90,p95,p99,p99.9,p99.99,hdr
+ * <p>
+ * The record column is "metadata" or "property" (name and text), "value" (metric, name and value), "histogram"
+ * (metric and the statistics), "series" (the same with time and duration) or "returncode" (metric, the status in
+ * name and count). Cells that do not apply are empty. The hdr column holds the base64 compressed HdrHistogram when
+ * available. Each row is flushed as soon as it is written.
+ */
+public class CSVMeasurementsExporter implements StructuredMeasurementsExporter {
+  private static final String[] COLUMNS = {"record", "metric", "name", "text", "time", "duration", "unit", "count",
+      "value", "mean", "min", "max", "p50", "p90", "p95", "p99", "p99.9", "p99.99", "hdr"};
+  private static final int METRIC = 1;
+  private static final int NAME = 2;
+  private static final int TEXT = 3;
+  private static final int TIME = 4;
+  private static final int DURATION = 5;
+  private static final int UNIT = 6;
+  private static final int COUNT = 7;
+  private static final int VALUE = 8;
+  private static final int MEAN = 9;
+  private static final int MIN = 10;
+  private static final int MAX = 11;
+  private static final int PERCENTILES = 12;
+  private static final int HDR = 18;
+
+  private final BufferedWriter bw;
+
+  public CSVMeasurementsExporter(OutputStream os) throws IOException {
+    bw = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8));
+    writeRow(COLUMNS);
+  }
+
+  public void write(String metric, String measurement, int i) throws IOException {
+    write(metric, measurement, (long) i);
+  }
+
+  public void write(String metric, String measurement, long i) throws IOException {
+    String[] row = row("value", metric);
+    row[NAME] = measurement;
+    row[VALUE] = Long.toString(i);
+    writeRow(row);
+  }
+
+  public void write(String metric, String measurement, double d) throws IOException {
+    String[] row = row("value", metric);
+    row[NAME] = measurement;
+    row[VALUE] = format(d);
+    writeRow(row);
+  }
+
+  @Override
+  public void writeRun(Map<String, String> metadata, Map<String, String> properties) throws IOException {
+    for (Map.Entry<String, String> entry : metadata.entrySet()) {
+      String[] row = row("metadata", null);
+      row[NAME] = entry.getKey();
+      row[TEXT] = entry.getValue();
+      writeRow(row);
+    }
+    for (Map.Entry<String, String> entry : properties.entrySet()) {
+      String[] row = row("property", null);
+      row[NAME] = entry.getKey();
+      row[TEXT] = entry.getValue();
+      writeRow(row);
+    }
+  }
+
+  @Override
+  public void writeHistogram(String metric, HistogramSnapshot snapshot) throws IOException {
+    String[] row = row("histogram", metric);
+    setSnapshot(row, snapshot);
+    writeRow(row);
+  }
+
+  @Override
+  public void writeSeries(String metric, long time, long duration, HistogramSnapshot snapshot) throws IOException {
+    String[] row = row("series", metric);
+    row[TIME] = Long.toString(time);
+    row[DURATION] = Long.toString(duration);
+    setSnapshot(row, snapshot);
+    writeRow(row);
+  }
+
+  @Override
+  public void writeReturnCode(String metric, String status, long count) throws IOException {
+    String[] row = row("returncode", metric);
+    row[NAME] = status;
+    row[COUNT] = Long.toString(count);
+    writeRow(row);
+  }
+
+  private static String[] row(String record, String metric) {
+    String[] row = new String[COLUMNS.length];
+    row[0] = record;
+    row[METRIC] = metric;
+    return row;
+  }
+
+  private static void setSnapshot(String[] row, HistogramSnapshot snapshot) {
+    row[UNIT] = snapshot.getUnit();
+    row[COUNT] = Long.toString(snapshot.getCount());
+    row[MEAN] = format(snapshot.getMean());
+    row[MIN] = snapshot.getMin() < 0 ? null : Long.toString(snapshot.getMin());
+    row[MAX] = snapshot.getMax() < 0 ? null : Long.toString(snapshot.getMax());
+    for (int i = 0; i < HistogramSnapshot.PERCENTILES.length; i++) {
+      Long v = snapshot.getPercentiles().get(HistogramSnapshot.PERCENTILES[i]);
+      row[PERCENTILES + i] = v == null ? null : v.toString();
+    }
+    if (snapshot.getEncoded() != null) {
+      row[HDR] = Base64Variants.getDefaultVariant().encode(snapshot.getEncoded());
+    }
+  }
+
+  private void writeRow(String[] row) throws IOException {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < row.length; i++) {
+      if (i > 0) {
+        sb.append(',');
+      }
+      sb.append(escape(row[i]));
+    }
+    bw.write(sb.toString());
+    bw.newLine();
+    bw.flush();
+  }
+
+  /**
+   * Quotes a cell holding a comma, quote or line break.
+   */
+  private static String escape(String cell) {
+    if (cell == null) {
+      return "";
+    }
+    if (cell.indexOf(',') < 0 && cell.indexOf('"') < 0 && cell.indexOf('\n') < 0 && cell.indexOf('\r') < 0) {
+      return cell;
+    }
+    return '"' + cell.replace("\"", "\"\"") + '"';
+  }
+
+  private static String format(double d) {
+    return Double.isNaN(d) || Double.isInfinite(d) ? null : Double.toString(d);
+  }
+
+  public void close() throws IOException {
+    bw.close();
+  }
+}
@@ -0,0 +1,124 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.measurements.exporter;
+
+import org.HdrHistogram.Histogram;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * The distribution of a latency, or of another value, over a run or an interval of it, as handed to a
+ * {@link StructuredMeasurementsExporter}. Statistics a measurement does not keep are -1, NaN or absent.
+ */
+public final class HistogramSnapshot {
+  /**
+   * The percentiles every snapshot of an HdrHistogram includes.
+   */
+  public static final double[] PERCENTILES = {50, 90, 95, 99, 99.9, 99.99};
+
+  private final String unit;
+  private final long count;
+  private final double mean;
+  private final long min;
+  private final long max;
+  private final SortedMap<Double, Long> percentiles;
+  private final byte[] encoded;
+
+  /**
+   * @param unit        The unit of the values, "us" or "ns" for latencies.
+   * @param count       The number of values.
+   * @param mean        The mean value, NaN if unknown.
+   * @param min         The smallest value, -1 if unknown.
+   * @param max         The largest value, -1 if unknown.
+   * @param percentiles The value at each percentile, from 0 to 100.
+   * @param encoded     The compressed HdrHistogram, or null.
+   */
+  public HistogramSnapshot(String unit, long count, double mean, long min, long max,
+                           SortedMap<Double, Long> percentiles, byte[] encoded) {
+    this.unit = unit;
+    this.count = count;
+    this.mean = mean;
+    this.min = min;
+    this.max = max;
+    this.percentiles = Collections.unmodifiableSortedMap(percentiles);
+    this.encoded = encoded;
+  }
+
+  /**
+   * Summarizes an HdrHistogram at {@link #PERCENTILES} and the extra percentiles.
+   *
+   * @param encode Whether to keep the whole histogram, compressed, so that other statistics can be computed later.
+   */
+  public static HistogramSnapshot of(Histogram histogram, String unit, Collection<Double> extraPercentiles,
+                                     boolean encode) {
+    SortedMap<Double, Long> percentiles = new TreeMap<>();
+    for (double percentile : PERCENTILES) {
+      percentiles.put(percentile, histogram.getValueAtPercentile(percentile));
+    }
+    for (Double percentile : extraPercentiles) {
+      percentiles.put(percentile, histogram.getValueAtPercentile(percentile));
+    }
+    byte[] encoded = null;
+    if (encode) {
+      ByteBuffer buffer = ByteBuffer.allocate(histogram.getNeededByteBufferCapacity());
+      int length = histogram.encodeIntoCompressedByteBuffer(buffer);
+      encoded = Arrays.copyOf(buffer.array(), length);
+    }
+    return new HistogramSnapshot(unit, histogram.getTotalCount(), histogram.getMean(), histogram.getMinValue(),
+        histogram.getMaxValue(), percentiles, encoded);
+  }
+
+  public String getUnit() {
+    return unit;
+  }
+
+  public long getCount() {
+    return count;
+  }
+
+  public double getMean() {
+    return mean;
+  }
+
+  public long getMin() {
+    return min;
+  }
+
+  public long getMax() {
+    return max;
+  }
+
+  /**
+   * @return The value at each percentile, from 0 to 100, in ascending order of percentile.
+   */
+  public SortedMap<Double, Long> getPercentiles() {
+    return percentiles;
+  }
+
+  /**
+   * @return The compressed HdrHistogram, which {@link Histogram#decodeFromCompressedByteBuffer} reads back, or null.
+   */
+  public byte[] getEncoded() {
+    return encoded;
+  }
+}
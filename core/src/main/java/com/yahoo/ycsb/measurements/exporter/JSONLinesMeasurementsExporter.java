@@ -0,0 +1,163 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.measurements.exporter;
+
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.util.MinimalPrettyPrinter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Export measurements as newline delimited JSON, one typed record per line. The "record" field of each line is
+ * one of:
+ * <UL>
+ * <LI><b>run</b>: the "metadata" and "properties" of the run
+ * <LI><b>value</b>: a single "value" of a "metric" and "measurement", such as the overall runtime
+ * <LI><b>histogram</b>: the "count", "mean", "min", "max" and "percentiles" of a "metric" over the run, in "unit",
+ * with the base64 compressed HdrHistogram as "hdr" when available
+ * <LI><b>series</b>: the same statistics over the interval of "duration" ms starting at "time"
+ * <LI><b>returncode</b>: the "count" of operations of a "metric" that returned a "status"
+ * </UL>
+ * Each line is flushed as soon as it is written.
+ */
+public class JSONLinesMeasurementsExporter implements StructuredMeasurementsExporter {
+  private final JsonFactory factory = new JsonFactory();
+  private final BufferedWriter bw;
+  private final JsonGenerator g;
+
+  public JSONLinesMeasurementsExporter(OutputStream os) throws IOException {
+    bw = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8));
+    g = factory.createJsonGenerator(bw);
+    g.setPrettyPrinter(new MinimalPrettyPrinter(""));
+  }
+
+  public void write(String metric, String measurement, int i) throws IOException {
+    write(metric, measurement, (long) i);
+  }
+
+  public void write(String metric, String measurement, long i) throws IOException {
+    startRecord("value");
+    g.writeStringField("metric", metric);
+    g.writeStringField("measurement", measurement);
+    g.writeNumberField("value", i);
+    endRecord();
+  }
+
+  public void write(String metric, String measurement, double d) throws IOException {
+    startRecord("value");
+    g.writeStringField("metric", metric);
+    g.writeStringField("measurement", measurement);
+    writeNumberField("value", d);
+    endRecord();
+  }
+
+  @Override
+  public void writeRun(Map<String, String> metadata, Map<String, String> properties) throws IOException {
+    startRecord("run");
+    writeMapField("metadata", metadata);
+    writeMapField("properties", properties);
+    endRecord();
+  }
+
+  @Override
+  public void writeHistogram(String metric, HistogramSnapshot snapshot) throws IOException {
+    startRecord("histogram");
+    g.writeStringField("metric", metric);
+    writeSnapshot(snapshot);
+    endRecord();
+  }
+
+  @Override
+  public void writeSeries(String metric, long time, long duration, HistogramSnapshot snapshot) throws IOException {
+    startRecord("series");
+    g.writeStringField("metric", metric);
+    g.writeNumberField("time", time);
+    g.writeNumberField("duration", duration);
+    writeSnapshot(snapshot);
+    endRecord();
+  }
+
+  @Override
+  public void writeReturnCode(String metric, String status, long count) throws IOException {
+    startRecord("returncode");
+    g.writeStringField("metric", metric);
+    g.writeStringField("status", status);
+    g.writeNumberField("count", count);
+    endRecord();
+  }
+
+  private void startRecord(String record) throws IOException {
+    g.writeStartObject();
+    g.writeStringField("record", record);
+  }
+
+  private void endRecord() throws IOException {
+    g.writeEndObject();
+    g.writeRaw('\n');
+    g.flush();
+  }
+
+  private void writeSnapshot(HistogramSnapshot snapshot) throws IOException {
+    g.writeStringField("unit", snapshot.getUnit());
+    g.writeNumberField("count", snapshot.getCount());
+    writeNumberField("mean", snapshot.getMean());
+    if (snapshot.getMin() >= 0) {
+      g.writeNumberField("min", snapshot.getMin());
+    }
+    if (snapshot.getMax() >= 0) {
+      g.writeNumberField("max", snapshot.getMax());
+    }
+    if (!snapshot.getPercentiles().isEmpty()) {
+      g.writeObjectFieldStart("percentiles");
+      for (Map.Entry<Double, Long> entry : snapshot.getPercentiles().entrySet()) {
+        g.writeNumberField(entry.getKey().toString(), entry.getValue());
+      }
+      g.writeEndObject();
+    }
+    if (snapshot.getEncoded() != null) {
+      g.writeBinaryField("hdr", snapshot.getEncoded());
+    }
+  }
+
+  /**
+   * Leaves out values JSON cannot represent.
+   */
+  private void writeNumberField(String name, double d) throws IOException {
+    if (!Double.isNaN(d) && !Double.isInfinite(d)) {
+      g.writeNumberField(name, d);
+    }
+  }
+
+  private void writeMapField(String name, Map<String, String> map) throws IOException {
+    g.writeObjectFieldStart(name);
+    for (Map.Entry<String, String> entry : map.entrySet()) {
+      g.writeStringField(entry.getKey(), entry.getValue());
+    }
+    g.writeEndObject();
+  }
+
+  public void close() throws IOException {
+    g.close();
+  }
+}
@@ -0,0 +1,189 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.measurements.exporter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Write the Prometheus text exposition format (version 0.0.4), which OpenMetrics scrapers also accept.
+ * <p>
+ * The count, average and percentiles of each measurement become the ycsb_operation_latency_seconds summary,
+ * labelled with the operation, and return codes become the ycsb_operation_returns_total counter. Latencies are
+ * converted to seconds from the unit in their label, (us) or (ns), as Prometheus expects. Histogram buckets
+ * and time series points are skipped. Anything else becomes a gauge named after the metric and measurement, for
+ * example ycsb_overall_runtime_ms. Samples must be grouped by metric name, so nothing is written before
+ * {@link #close()}.
+ */
+public class PrometheusMeasurementsExporter implements MeasurementsExporter {
+  /** The content type of the format, for HTTP responses. */
+  public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+  private static final String PREFIX = "ycsb_";
+  private static final String LATENCY = PREFIX + "operation_latency_seconds";
+  private static final String PERCENTILE_SUFFIX = "PercentileLatency";
+
+  private final BufferedWriter bw;
+
+  /** The samples of each metric, in order of first appearance. */
+  private final Map<String, Family> families = new LinkedHashMap<>();
+
+  /** The count and average latency of each operation, combined into the sum of the summary. */
+  private final Map<String, double[]> countAndAverage = new LinkedHashMap<>();
+
+  public PrometheusMeasurementsExporter(OutputStream os) {
+    this.bw = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8));
+  }
+
+  /**
+   * The samples of one metric.
+   */
+  private static final class Family {
+    private final String type;
+    private final StringBuilder samples = new StringBuilder();
+
+    private Family(String type) {
+      this.type = type;
+    }
+  }
+
+  public void write(String metric, String measurement, int i) throws IOException {
+    write(metric, measurement, Long.toString(i), i);
+  }
+
+  public void write(String metric, String measurement, long i) throws IOException {
+    write(metric, measurement, Long.toString(i), i);
+  }
+
+  public void write(String metric, String measurement, double d) throws IOException {
+    write(metric, measurement, format(d), d);
+  }
+
+  private void write(String metric, String measurement, String text, double value) {
+    if (measurement.matches(">?[0-9]+")) {
+      // a histogram bucket or time series point
+      return;
+    }
+
+    String operation = "operation=\"" + escape(metric) + "\"";
+    double perSecond = latencyUnitsPerSecond(measurement);
+    String latency = Double.isNaN(perSecond) ? null : measurement.substring(0, measurement.lastIndexOf('('));
+    if (measurement.equals("Operations")) {
+      sample(LATENCY, "summary", LATENCY + "_count{" + operation + "}", text);
+      countAndAverage(metric)[0] = value;
+    } else if ("AverageLatency".equals(latency)) {
+      countAndAverage(metric)[1] = value / perSecond;
+    } else if (latency != null && latency.endsWith(PERCENTILE_SUFFIX)) {
+      String percentile = latency.substring(0, latency.length() - PERCENTILE_SUFFIX.length())
+          .replaceAll("[a-z]+$", "");
+      try {
+        double quantile = Double.parseDouble(percentile) / 100;
+        sample(LATENCY, "summary", LATENCY + "{" + operation + ",quantile=\"" + quantile + "\"}",
+            format(value / perSecond));
+      } catch (NumberFormatException e) {
+        // not a percentile after all
+        sample(gaugeName(metric, measurement), "gauge", gaugeName(metric, measurement), text);
+      }
+    } else if ("MinLatency".equals(latency)) {
+      sample(PREFIX + "operation_min_latency_seconds", "gauge",
+          PREFIX + "operation_min_latency_seconds{" + operation + "}", format(value / perSecond));
+    } else if ("MaxLatency".equals(latency)) {
+      sample(PREFIX + "operation_max_latency_seconds", "gauge",
+          PREFIX + "operation_max_latency_seconds{" + operation + "}", format(value / perSecond));
+    } else if (measurement.startsWith("Return=")) {
+      String status = measurement.substring("Return=".length());
+      sample(PREFIX + "operation_returns_total", "counter",
+          PREFIX + "operation_returns_total{" + operation + ",status=\"" + escape(status) + "\"}", text);
+    } else {
+      String name = gaugeName(metric, measurement);
+      sample(name, "gauge", name, text);
+    }
+  }
+
+  /**
+   * @return The number of units in a second for a latency labelled (us) or (ns), or NaN for anything else.
+   */
+  private static double latencyUnitsPerSecond(String measurement) {
+    if (measurement.endsWith("Latency(us)")) {
+      return 1e6;
+    } else if (measurement.endsWith("Latency(ns)")) {
+      return 1e9;
+    }
+    return Double.NaN;
+  }
+
+  private double[] countAndAverage(String metric) {
+    double[] values = countAndAverage.get(metric);
+    if (values == null) {
+      values = new double[] {Double.NaN, Double.NaN};
+      countAndAverage.put(metric, values);
+    }
+    return values;
+  }
+
+  private void sample(String family, String type, String sample, String value) {
+    Family f = families.get(family);
+    if (f == null) {
+      f = new Family(type);
+      families.put(family, f);
+    }
+    f.samples.append(sample).append(' ').append(value).append('\n');
+  }
+
+  public void close() throws IOException {
+    for (Map.Entry<String, double[]> entry : countAndAverage.entrySet()) {
+      double[] values = entry.getValue();
+      if (!Double.isNaN(values[0]) && !Double.isNaN(values[1])) {
+        sample(LATENCY, "summary", LATENCY + "_sum{operation=\"" + escape(entry.getKey()) + "\"}",
+            format(values[0] * values[1]));
+      }
+    }
+    for (Map.Entry<String, Family> entry : families.entrySet()) {
+      bw.write("# TYPE " + entry.getKey() + " " + entry.getValue().type);
+      bw.newLine();
+      bw.write(entry.getValue().samples.toString());
+    }
+    bw.close();
+  }
+
+  /**
+   * Turns a metric and measurement into a metric name, e.g. "OVERALL" and "RunTime(ms)" into ycsb_overall_runtime_ms.
+   */
+  static String gaugeName(String metric, String measurement) {
+    String name = (metric + "_" + measurement).toLowerCase().replaceAll("[^a-z0-9]+", "_");
+    return PREFIX + name.replaceAll("^_+|_+$", "");
+  }
+
+  private static String escape(String label) {
+    return label.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+  }
+
+  private static String format(double d) {
+    if (Double.isNaN(d)) {
+      return "NaN";
+    } else if (Double.isInfinite(d)) {
+      return d > 0 ? "+Inf" : "-Inf";
+    }
+    return Double.toString(d);
+  }
+}
@@ -0,0 +1,69 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.measurements.exporter;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * An exporter of typed records, for formats meant to be loaded by other programs rather than read. Measurements
+ * that know their structure write histograms, series and return codes through the methods here; anything else,
+ * such as the overall runtime, arrives through the plain write methods as a single value.
+ * <p>
+ * Implementations write each record as it arrives, so a partial file is still usable.
+ */
+public interface StructuredMeasurementsExporter extends MeasurementsExporter {
+  /**
+   * Write what describes the run, once, before any measurement.
+   *
+   * @param metadata   Facts about the run, for example the binding, host and thread count.
+   * @param properties The properties the run was configured with.
+   * @throws IOException if writing failed
+   */
+  void writeRun(Map<String, String> metadata, Map<String, String> properties) throws IOException;
+
+  /**
+   * Write the distribution of a metric over the whole run.
+   *
+   * @param metric   Metric name, for example "READ".
+   * @param snapshot The distribution.
+   * @throws IOException if writing failed
+   */
+  void writeHistogram(String metric, HistogramSnapshot snapshot) throws IOException;
+
+  /**
+   * Write the distribution of a metric over one interval of the run.
+   *
+   * @param metric   Metric name, for example "READ".
+   * @param time     The start of the interval, in milliseconds since the measurement started.
+   * @param duration The length of the interval in milliseconds.
+   * @param snapshot The distribution.
+   * @throws IOException if writing failed
+   */
+  void writeSeries(String metric, long time, long duration, HistogramSnapshot snapshot) throws IOException;
+
+  /**
+   * Write the number of operations of a metric that returned a status.
+   *
+   * @param metric Metric name, for example "READ".
+   * @param status Status name, for example "OK".
+   * @param count  The number of operations.
+   * @throws IOException if writing failed
+   */
+  void writeReturnCode(String metric, String status, long count) throws IOException;
+}
@@ -0,0 +1,344 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.workloads;
+
+import com.yahoo.ycsb.ByteIterator;
+import com.yahoo.ycsb.Client;
+import com.yahoo.ycsb.DB;
+import com.yahoo.ycsb.Status;
+import com.yahoo.ycsb.StringByteIterator;
+import com.yahoo.ycsb.Utils;
+import com.yahoo.ycsb.WorkloadException;
+import com.yahoo.ycsb.measurements.Measurements;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A workload that checks the consistency of reads against the writes issued by
+ * this client. It behaves like {@link CoreWorkload} but every value written
+ * carries a per-key version number, and the client remembers the highest
+ * acknowledged version of every key in primitive arrays indexed by key number.
+ * <p>
+ * Each read is classified into one of the following statuses, and the reads
+ * of each status are counted under the "CONSISTENCY" metric:
+ * <UL>
+ * <LI><b>FRESH</b>: the read returned a version at least as new as the newest
+ * write acknowledged before the read started.
+ * <LI><b>STALE</b>: the read returned an older version than a write that had
+ * already been acknowledged. The distribution of the lag is recorded in
+ * versions under "STALENESS-VERSIONS" and in ms under "STALENESS-MS". The
+ * millisecond lag is measured from the acknowledgement of the newest write and
+ * is therefore a lower bound.
+ * <LI><b>NON_MONOTONIC</b>: the read returned an older version than a read of
+ * the same key that had already completed, i.e. the store went back in time.
+ * <LI><b>LOST</b>: the record or its version could not be found although it
+ * was written.
+ * </ul>
+ * <p>
+ * Updates always write every field so that any field carries the record
+ * version. The load phase must be run with this workload so that stored
+ * values can be parsed; the version tracking starts over at zero for each run.
+ * <p>
+ * Properties to control the client (in addition to those of {@link CoreWorkload}):
+ * <UL>
+ * <LI><b>consistency.trackedrecordcount</b>: the number of key numbers, starting
+ * at insertstart, whose versions are tracked (default: insertcount plus the
+ * expected number of inserts of the run)
+ * </ul>
+ */
+public class ConsistencyWorkload extends CoreWorkload {
+  /**
+   * The name of the property for the number of records whose versions are tracked.
+   */
+  public static final String TRACKED_RECORD_COUNT_PROPERTY = "consistency.trackedrecordcount";
+
+  public static final Status FRESH = new Status("FRESH", "The read observed the newest acknowledged write.");
+  public static final Status STALE = new Status("STALE", "The read observed a version older than an " +
+      "acknowledged write.");
+  public static final Status NON_MONOTONIC = new Status("NON_MONOTONIC", "The read observed a version older " +
+      "than a previously completed read.");
+  public static final Status LOST = new Status("LOST", "The record or its version was missing.");
+
+  /** Separates the version and write time from the payload of a value. */
+  private static final char VERSION_DELIMITER = ':';
+
+  private static final String PADDING_CHARS = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+
+  private final Measurements measurements = Measurements.getMeasurements();
+
+  private long trackedstart;
+
+  /** The last version issued for each tracked key. */
+  private AtomicLongArray issued;
+
+  /** The newest acknowledged version for each tracked key. */
+  private AtomicLongArray acknowledged;
+
+  /** The time (ms) the newest acknowledged version was acknowledged. */
+  private AtomicLongArray acknowledgedtime;
+
+  /**
+   * Guards the acknowledged version and time of each tracked key, so they are read as a pair: odd while a writer
+   * updates them, and advanced past it once it is done.
+   */
+  private AtomicLongArray acknowledgedseq;
+
+  /** The newest version returned by a completed read for each tracked key. */
+  private AtomicLongArray observed;
+
+  @Override
+  public void init(Properties p) throws WorkloadException {
+    super.init(p);
+    if (operationbatchsize > 1) {
+      throw new WorkloadException("Batched operations are not checked for consistency; remove " +
+          OPERATION_BATCH_SIZE_PROPERTY);
+    }
+
+    trackedstart = Long.parseLong(p.getProperty(INSERT_START_PROPERTY, INSERT_START_PROPERTY_DEFAULT));
+    boolean dotransactions = Boolean.valueOf(p.getProperty(Client.DO_TRANSACTIONS_PROPERTY, String.valueOf(true)));
+    if (!dotransactions) {
+      // versions are only tracked during the run phase
+      return;
+    }
+
+    long insertcount =
+        Long.parseLong(p.getProperty(INSERT_COUNT_PROPERTY, String.valueOf(recordcount - trackedstart)));
+    double insertproportion = Double.parseDouble(
+        p.getProperty(INSERT_PROPORTION_PROPERTY, INSERT_PROPORTION_PROPERTY_DEFAULT));
+    long opcount = Long.parseLong(p.getProperty(Client.OPERATION_COUNT_PROPERTY, "0"));
+    long trackedcount = Long.parseLong(p.getProperty(TRACKED_RECORD_COUNT_PROPERTY,
+        String.valueOf(insertcount + (long) (opcount * insertproportion))));
+    if (trackedcount <= 0 || trackedcount > Integer.MAX_VALUE) {
+      throw new WorkloadException("Cannot track the versions of " + trackedcount + " records; set " +
+          Client.RECORD_COUNT_PROPERTY + " or " + TRACKED_RECORD_COUNT_PROPERTY + ".");
+    }
+
+    issued = new AtomicLongArray((int) trackedcount);
+    acknowledged = new AtomicLongArray((int) trackedcount);
+    acknowledgedtime = new AtomicLongArray((int) trackedcount);
+    acknowledgedseq = new AtomicLongArray((int) trackedcount);
+    observed = new AtomicLongArray((int) trackedcount);
+  }
+
+  /**
+   * Builds the values for a newly inserted record, which always start at version 0.
+   */
+  @Override
+  protected HashMap<String, ByteIterator> buildValues(String key) {
+    return buildVersionedValues(0);
+  }
+
+  /**
+   * Builds values for all fields with the given version encoded at the front of each value.
+   */
+  private HashMap<String, ByteIterator> buildVersionedValues(long version) {
+    String header = Long.toString(version) + VERSION_DELIMITER + System.currentTimeMillis() + VERSION_DELIMITER;
+    HashMap<String, ByteIterator> values = new HashMap<>();
+    for (String fieldkey : fieldnames) {
+      int size = fieldlengthgenerator.nextValue().intValue();
+      StringBuilder sb = new StringBuilder(Math.max(size, header.length()));
+      sb.append(header);
+      while (sb.length() < size) {
+        sb.append(PADDING_CHARS.charAt(Utils.random().nextInt(PADDING_CHARS.length())));
+      }
+      values.put(fieldkey, new StringByteIterator(sb.toString()));
+    }
+    return values;
+  }
+
+  /**
+   * Parses the version out of a value written by this workload.
+   *
+   * @return The version, or -1 if the value does not carry one.
+   */
+  static long parseVersion(String value) {
+    int end = value.indexOf(VERSION_DELIMITER);
+    if (end <= 0) {
+      return -1;
+    }
+    try {
+      return Long.parseLong(value.substring(0, end));
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * @return The slot in the tracking arrays for the key number, or -1 if it is not tracked.
+   */
+  private int slot(long keynum) {
+    long slot = keynum - trackedstart;
+    if (slot < 0 || slot >= acknowledged.length()) {
+      return -1;
+    }
+    return (int) slot;
+  }
+
+  /**
+   * Records a successfully written version and its time together, keeping only the newest one.
+   */
+  private void acknowledge(int slot, long version) {
+    long now = System.currentTimeMillis();
+    if (acknowledged.get(slot) >= version) {
+      return;
+    }
+    long seq;
+    do {
+      seq = acknowledgedseq.get(slot);
+    } while ((seq & 1) != 0 || !acknowledgedseq.compareAndSet(slot, seq, seq + 1));
+    try {
+      if (acknowledged.get(slot) < version) {
+        acknowledged.set(slot, version);
+        acknowledgedtime.set(slot, now);
+      }
+    } finally {
+      acknowledgedseq.set(slot, seq + 2);
+    }
+  }
+
+  private void observe(int slot, long version) {
+    while (true) {
+      long current = observed.get(slot);
+      if (current >= version || observed.compareAndSet(slot, current, version)) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Classifies a version returned by a read.
+   *
+   * @param version The version read, or -1 if none was found.
+   * @param acknowledgedbefore The newest version acknowledged before the read started.
+   * @param observedbefore The newest version returned by reads completed before the read started.
+   * @return One of {@link #FRESH}, {@link #STALE}, {@link #NON_MONOTONIC} or {@link #LOST}.
+   */
+  static Status classify(long version, long acknowledgedbefore, long observedbefore) {
+    if (version < 0) {
+      return LOST;
+    } else if (version < observedbefore) {
+      return NON_MONOTONIC;
+    } else if (version < acknowledgedbefore) {
+      return STALE;
+    }
+    return FRESH;
+  }
+
+  /**
+   * Classifies the result of a read of a tracked key. The acknowledged and
+   * observed versions must have been sampled before the read was issued.
+   */
+  private void checkConsistency(int slot, Status readstatus, Map<String, ByteIterator> cells,
+                                long acknowledgedbefore, long acknowledgedat, long observedbefore,
+                                long readstartms) {
+    if (readstatus == null || (!readstatus.isOk() && !Status.NOT_FOUND.equals(readstatus))) {
+      // a failed read says nothing about consistency, DBWrapper already counted it
+      return;
+    }
+
+    long version = -1;
+    for (ByteIterator value : cells.values()) {
+      version = Math.max(version, parseVersion(value.toString()));
+    }
+
+    Status result = classify(version, acknowledgedbefore, observedbefore);
+    if (result == STALE) {
+      measurements.measureValue("STALENESS-VERSIONS", acknowledgedbefore - version, "versions");
+      measurements.measureValue("STALENESS-MS", Math.max(readstartms - acknowledgedat, 0), "ms");
+    }
+    if (version >= 0) {
+      observe(slot, version);
+    }
+    measurements.count("CONSISTENCY", result.getName(), 1);
+  }
+
+  /**
+   * Reads the key and checks the result against the tracked versions.
+   */
+  private void readAndCheck(DB db, long keynum, String keyname, Map<String, ByteIterator> cells) {
+    HashSet<String> fields = null;
+    if (!readallfields) {
+      // read a random field, any field carries the version
+      fields = new HashSet<String>();
+      fields.add(fieldnames.get(fieldchooser.nextValue().intValue()));
+    }
+
+    int slot = slot(keynum);
+    if (slot < 0) {
+      db.read(table, keyname, fields, cells);
+      return;
+    }
+
+    // the version and time of one acknowledgement, retried while a writer is between updating the two
+    long acknowledgedbefore;
+    long acknowledgedat;
+    long seq;
+    do {
+      seq = acknowledgedseq.get(slot);
+      acknowledgedbefore = acknowledged.get(slot);
+      acknowledgedat = acknowledgedtime.get(slot);
+    } while ((seq & 1) != 0 || acknowledgedseq.get(slot) != seq);
+    long observedbefore = observed.get(slot);
+    long readstartms = System.currentTimeMillis();
+    Status status = db.read(table, keyname, fields, cells);
+    checkConsistency(slot, status, cells, acknowledgedbefore, acknowledgedat, observedbefore, readstartms);
+  }
+
+  /**
+   * Writes the next version of the key and acknowledges it once the write succeeded.
+   */
+  private void writeNextVersion(DB db, long keynum, String keyname) {
+    int slot = slot(keynum);
+    long version = slot < 0 ? 0 : issued.incrementAndGet(slot);
+    Status status = db.update(table, keyname, buildVersionedValues(version));
+    if (slot >= 0 && status != null && status.isOk()) {
+      acknowledge(slot, version);
+    }
+  }
+
+  @Override
+  public void doTransactionRead(DB db) {
+    long keynum = nextKeynum();
+    readAndCheck(db, keynum, buildKeyName(keynum), new HashMap<String, ByteIterator>());
+  }
+
+  @Override
+  public void doTransactionUpdate(DB db) {
+    long keynum = nextKeynum();
+    writeNextVersion(db, keynum, buildKeyName(keynum));
+  }
+
+  @Override
+  public void doTransactionReadModifyWrite(DB db) {
+    long keynum = nextKeynum();
+    String keyname = buildKeyName(keynum);
+
+    long ist = measurements.getIntendedtartTimeNs();
+    long st = System.nanoTime();
+    readAndCheck(db, keynum, keyname, new HashMap<String, ByteIterator>());
+    writeNextVersion(db, keynum, keyname);
+    long en = System.nanoTime();
+
+    measurements.measureNanos("READ-MODIFY-WRITE", en - st);
+    measurements.measureIntendedNanos("READ-MODIFY-WRITE", en - ist);
+  }
+}
@@ -59,6 +59,8 @@ import java.util.*;
  * digits in the record number.
  * <LI><b>insertorder</b>: should records be inserted in order by key ("ordered"), or in hashed
  * order ("hashed") (default: hashed)
+ * <LI><b>operationbatchsize</b>: the number of reads, updates or inserts each client thread buffers and then
+ * performs in a single batchRead, batchUpdate or batchInsert call (default: 1, no batching)
  * </ul>
  */
 public class CoreWorkload extends Workload {
@@ -84,7 +86,7 @@ public class CoreWorkload extends Workload {
    */
   public static final String FIELD_COUNT_PROPERTY_DEFAULT = "10";
   
-  private List<String> fieldnames;
+  protected List<String> fieldnames;
 
   /**
    * The name of the property for the field length distribution. Options are "uniform", "zipfian"
@@ -296,17 +298,38 @@ public class CoreWorkload extends Workload {
   public static final String HOTSPOT_OPN_FRACTION_DEFAULT = "0.8";
 
   /**
-   * How many times to retry when insertion of a single item to a DB fails.
+   * How many times to retry when insertion of a single item to a DB fails. The retries are made by
+   * {@link com.yahoo.ycsb.RetryPolicy} unless retry.INSERT.maxattempts or retry.maxattempts is set.
    */
   public static final String INSERTION_RETRY_LIMIT = "core_workload_insertion_retry_limit";
   public static final String INSERTION_RETRY_LIMIT_DEFAULT = "0";
 
   /**
-   * On average, how long to wait between the retries, in seconds.
+   * At most, how long to wait between the retries, in seconds.
    */
   public static final String INSERTION_RETRY_INTERVAL = "core_workload_insertion_retry_interval";
   public static final String INSERTION_RETRY_INTERVAL_DEFAULT = "3";
 
+  /**
+   * The name of the property for the number of operations of the same type grouped into one call to the DB.
+   */
+  public static final String OPERATION_BATCH_SIZE_PROPERTY = "operationbatchsize";
+
+  /**
+   * The default number of operations grouped into one call to the DB.
+   */
+  public static final String OPERATION_BATCH_SIZE_PROPERTY_DEFAULT = "1";
+
+  /**
+   * The phase spent choosing keys and building their names, when measurement.phases is on.
+   */
+  public static final String KEY_PHASE = "KEY";
+
+  /**
+   * The phase spent building the values written by inserts and updates, when measurement.phases is on.
+   */
+  public static final String VALUES_PHASE = "VALUES";
+
   protected NumberGenerator keysequence;
   protected DiscreteGenerator operationchooser;
   protected NumberGenerator keychooser;
@@ -316,9 +339,9 @@ public class CoreWorkload extends Workload {
   protected boolean orderedinserts;
   protected long fieldcount;
   protected long recordcount;
+  protected long insertstart;
   protected int zeropadding;
-  protected int insertionRetryLimit;
-  protected int insertionRetryInterval;
+  protected int operationbatchsize;
 
   private Measurements measurements = Measurements.getMeasurements();
 
@@ -378,10 +401,10 @@ public class CoreWorkload extends Workload {
     String scanlengthdistrib =
         p.getProperty(SCAN_LENGTH_DISTRIBUTION_PROPERTY, SCAN_LENGTH_DISTRIBUTION_PROPERTY_DEFAULT);
 
-    long insertstart =
+    insertstart =
         Long.parseLong(p.getProperty(INSERT_START_PROPERTY, INSERT_START_PROPERTY_DEFAULT));
-    long insertcount=
-        Integer.parseInt(p.getProperty(INSERT_COUNT_PROPERTY, String.valueOf(recordcount - insertstart)));
+    long insertcount =
+        Long.parseLong(p.getProperty(INSERT_COUNT_PROPERTY, String.valueOf(recordcount - insertstart)));
     // Confirm valid values for insertstart and insertcount in relation to recordcount
     if (recordcount < (insertstart + insertcount)) {
       System.err.println("Invalid combination of insertstart, insertcount and recordcount.");
@@ -441,8 +464,8 @@ public class CoreWorkload extends Workload {
       // the keyspace doesn't change from the perspective of the scrambled zipfian generator
       final double insertproportion = Double.parseDouble(
           p.getProperty(INSERT_PROPORTION_PROPERTY, INSERT_PROPORTION_PROPERTY_DEFAULT));
-      int opcount = Integer.parseInt(p.getProperty(Client.OPERATION_COUNT_PROPERTY));
-      int expectednewkeys = (int) ((opcount) * insertproportion * 2.0); // 2 is fudge factor
+      long opcount = Long.parseLong(p.getProperty(Client.OPERATION_COUNT_PROPERTY));
+      long expectednewkeys = (long) ((opcount) * insertproportion * 2.0); // 2 is fudge factor
 
       keychooser = new ScrambledZipfianGenerator(insertstart, insertstart + insertcount + expectednewkeys);
     } else if (requestdistrib.compareTo("latest") == 0) {
@@ -469,13 +492,52 @@ public class CoreWorkload extends Workload {
           "Distribution \"" + scanlengthdistrib + "\" not allowed for scan length");
     }
 
-    insertionRetryLimit = Integer.parseInt(p.getProperty(
-        INSERTION_RETRY_LIMIT, INSERTION_RETRY_LIMIT_DEFAULT));
-    insertionRetryInterval = Integer.parseInt(p.getProperty(
-        INSERTION_RETRY_INTERVAL, INSERTION_RETRY_INTERVAL_DEFAULT));
+    operationbatchsize = Integer.parseInt(p.getProperty(
+        OPERATION_BATCH_SIZE_PROPERTY, OPERATION_BATCH_SIZE_PROPERTY_DEFAULT));
+    if (operationbatchsize < 1) {
+      throw new WorkloadException(OPERATION_BATCH_SIZE_PROPERTY + " must be at least 1");
+    }
+  }
+
+  /**
+   * The operations a client thread has buffered when operationbatchsize is greater than one. Each thread only
+   * performs transaction inserts or load inserts, so both share the insert lists; only transaction inserts record
+   * their key numbers.
+   */
+  protected static class OperationBatch {
+    private final List<String> readkeys = new ArrayList<>();
+    private final List<String> updatekeys = new ArrayList<>();
+    private final List<Map<String, ByteIterator>> updatevalues = new ArrayList<>();
+    private final List<String> insertkeys = new ArrayList<>();
+    private final List<Map<String, ByteIterator>> insertvalues = new ArrayList<>();
+    private final List<Long> insertkeynums = new ArrayList<>();
+  }
+
+  @Override
+  public Object initThread(Properties p, int mythreadid, int threadcount) throws WorkloadException {
+    return operationbatchsize > 1 ? new OperationBatch() : null;
+  }
+
+  /**
+   * Performs the operations still buffered by the thread.
+   */
+  @Override
+  public void cleanupThread(DB db, Object threadstate) {
+    if (operationbatchsize <= 1) {
+      return;
+    }
+    OperationBatch batch = (OperationBatch) threadstate;
+    flushReads(db, batch);
+    flushUpdates(db, batch);
+    if (!batch.insertkeynums.isEmpty()) {
+      flushTransactionInserts(db, batch);
+    } else if (!batch.insertkeys.isEmpty()) {
+      insertRecords(db, null, null, batch);
+    }
   }
 
   protected String buildKeyName(long keynum) {
+    measurements.startPhase(KEY_PHASE);
     if (!orderedinserts) {
       keynum = Utils.hash(keynum);
     }
@@ -485,13 +547,15 @@ public class CoreWorkload extends Workload {
     for (int i = 0; i < fill; i++) {
       prekey += '0';
     }
+    measurements.endPhase(KEY_PHASE);
     return prekey + value;
   }
 
   /**
    * Builds a value for a randomly chosen field.
    */
-  private HashMap<String, ByteIterator> buildSingleValue(String key) {
+  protected HashMap<String, ByteIterator> buildSingleValue(String key) {
+    measurements.startPhase(VALUES_PHASE);
     HashMap<String, ByteIterator> value = new HashMap<>();
 
     String fieldkey = fieldnames.get(fieldchooser.nextValue().intValue());
@@ -504,13 +568,15 @@ public class CoreWorkload extends Workload {
     }
     value.put(fieldkey, data);
 
+    measurements.endPhase(VALUES_PHASE);
     return value;
   }
 
   /**
    * Builds values for all fields.
    */
-  private HashMap<String, ByteIterator> buildValues(String key) {
+  protected HashMap<String, ByteIterator> buildValues(String key) {
+    measurements.startPhase(VALUES_PHASE);
     HashMap<String, ByteIterator> values = new HashMap<>();
 
     for (String fieldkey : fieldnames) {
@@ -523,6 +589,7 @@ public class CoreWorkload extends Workload {
       }
       values.put(fieldkey, data);
     }
+    measurements.endPhase(VALUES_PHASE);
     return values;
   }
 
@@ -552,39 +619,40 @@ public class CoreWorkload extends Workload {
    */
   @Override
   public boolean doInsert(DB db, Object threadstate) {
-    int keynum = keysequence.nextValue().intValue();
+    long keynum = keysequence.nextValue().longValue();
     String dbkey = buildKeyName(keynum);
     HashMap<String, ByteIterator> values = buildValues(dbkey);
 
-    Status status;
-    int numOfRetries = 0;
-    do {
-      status = db.insert(table, dbkey, values);
-      if (null != status && status.isOk()) {
-        break;
+    OperationBatch batch = null;
+    if (operationbatchsize > 1) {
+      batch = (OperationBatch) threadstate;
+      batch.insertkeys.add(dbkey);
+      batch.insertvalues.add(values);
+      if (batch.insertkeys.size() < operationbatchsize) {
+        return true;
       }
-      // Retry if configured. Without retrying, the load process will fail
-      // even if one single insertion fails. User can optionally configure
-      // an insertion retry limit (default is 0) to enable retry.
-      if (++numOfRetries <= insertionRetryLimit) {
-        System.err.println("Retrying insertion, retry count: " + numOfRetries);
-        try {
-          // Sleep for a random number between [0.8, 1.2)*insertionRetryInterval.
-          int sleepTime = (int) (1000 * insertionRetryInterval * (0.8 + 0.4 * Math.random()));
-          Thread.sleep(sleepTime);
-        } catch (InterruptedException e) {
-          break;
-        }
-
-      } else {
-        System.err.println("Error inserting, not retrying any more. number of attempts: " + numOfRetries +
-            "Insertion Retry Limit: " + insertionRetryLimit);
-        break;
-
-      }
-    } while (true);
+    }
+    return insertRecords(db, dbkey, values, batch);
+  }
 
-    return null != status && status.isOk();
+  /**
+   * Inserts the record, or all records buffered in batch if it is not null. Failed inserts are retried by
+   * {@link com.yahoo.ycsb.DBWrapper}, as {@link #INSERTION_RETRY_LIMIT} and the retry properties allow.
+   */
+  private boolean insertRecords(DB db, String dbkey, Map<String, ByteIterator> values, OperationBatch batch) {
+    Status status;
+    if (batch == null) {
+      status = db.insert(table, dbkey, values);
+    } else {
+      status = db.batchInsert(table, batch.insertkeys, batch.insertvalues);
+      batch.insertkeys.clear();
+      batch.insertvalues.clear();
+    }
+    if (null == status || !status.isOk()) {
+      System.err.println("Error inserting, status: " + status);
+      return false;
+    }
+    return true;
   }
 
   /**
@@ -600,15 +668,28 @@ public class CoreWorkload extends Workload {
       return false;
     }
 
+    OperationBatch batch = operationbatchsize > 1 ? (OperationBatch) threadstate : null;
     switch (operation) {
     case "READ":
-      doTransactionRead(db);
+      if (batch == null) {
+        doTransactionRead(db);
+      } else {
+        doTransactionBatchedRead(db, batch);
+      }
       break;
     case "UPDATE":
-      doTransactionUpdate(db);
+      if (batch == null) {
+        doTransactionUpdate(db);
+      } else {
+        doTransactionBatchedUpdate(db, batch);
+      }
       break;
     case "INSERT":
-      doTransactionInsert(db);
+      if (batch == null) {
+        doTransactionInsert(db);
+      } else {
+        doTransactionBatchedInsert(db, batch);
+      }
       break;
     case "SCAN":
       doTransactionScan(db);
@@ -627,7 +708,7 @@ public class CoreWorkload extends Workload {
    * Bucket 1 means incorrect data was returned.
    * Bucket 2 means null data was returned when some data was expected.
    */
-  protected void verifyRow(String key, HashMap<String, ByteIterator> cells) {
+  protected void verifyRow(String key, Map<String, ByteIterator> cells) {
     Status verifyStatus = Status.OK;
     long startTime = System.nanoTime();
     if (!cells.isEmpty()) {
@@ -642,20 +723,35 @@ public class CoreWorkload extends Workload {
       verifyStatus = Status.ERROR;
     }
     long endTime = System.nanoTime();
-    measurements.measure("VERIFY", (int) (endTime - startTime) / 1000);
+    measurements.measureNanos("VERIFY", endTime - startTime);
     measurements.reportStatus("VERIFY", verifyStatus);
   }
 
+  /**
+   * Chooses the key number of the next operation among the keys whose insertion has been acknowledged. Keys are
+   * sampled directly within that range rather than rejected and drawn again, which used to spin while most of a
+   * zipfian keyspace sized for the expected inserts was not inserted yet.
+   */
   long nextKeynum() {
-    long keynum;
+    measurements.startPhase(KEY_PHASE);
+    try {
+      return chooseKeynum();
+    } finally {
+      measurements.endPhase(KEY_PHASE);
+    }
+  }
+
+  private long chooseKeynum() {
+    long limit = transactioninsertkeysequence.lastValue();
     if (keychooser instanceof ExponentialGenerator) {
-      do {
-        keynum = transactioninsertkeysequence.lastValue() - keychooser.nextValue().intValue();
-      } while (keynum < 0);
-    } else {
-      do {
-        keynum = keychooser.nextValue().intValue();
-      } while (keynum > transactioninsertkeysequence.lastValue());
+      // count back from the newest key, wrapping the rare draws that reach past the oldest one
+      return limit - keychooser.nextValue().longValue() % (limit + 1);
+    } else if (keychooser instanceof ScrambledZipfianGenerator) {
+      return ((ScrambledZipfianGenerator) keychooser).nextValue(limit);
+    }
+    long keynum = keychooser.nextValue().longValue();
+    if (keynum > limit) {
+      keynum = insertstart + (keynum - insertstart) % (limit - insertstart + 1);
     }
     return keynum;
   }
@@ -730,8 +826,8 @@ public class CoreWorkload extends Workload {
       verifyRow(keyname, cells);
     }
 
-    measurements.measure("READ-MODIFY-WRITE", (int) ((en - st) / 1000));
-    measurements.measureIntended("READ-MODIFY-WRITE", (int) ((en - ist) / 1000));
+    measurements.measureNanos("READ-MODIFY-WRITE", en - st);
+    measurements.measureIntendedNanos("READ-MODIFY-WRITE", en - ist);
   }
 
   public void doTransactionScan(DB db) {
@@ -789,6 +885,92 @@ public class CoreWorkload extends Workload {
     }
   }
 
+  /**
+   * Buffers a read of a random key, reading all buffered keys with one batchRead once the batch is full.
+   */
+  public void doTransactionBatchedRead(DB db, OperationBatch batch) {
+    batch.readkeys.add(buildKeyName(nextKeynum()));
+    if (batch.readkeys.size() >= operationbatchsize) {
+      flushReads(db, batch);
+    }
+  }
+
+  private void flushReads(DB db, OperationBatch batch) {
+    if (batch.readkeys.isEmpty()) {
+      return;
+    }
+
+    HashSet<String> fields = null;
+    if (!readallfields) {
+      // read a random field, the same one for every record of the batch
+      fields = new HashSet<String>();
+      fields.add(fieldnames.get(fieldchooser.nextValue().intValue()));
+    } else if (dataintegrity) {
+      // pass the full field list if dataintegrity is on for verification
+      fields = new HashSet<String>(fieldnames);
+    }
+
+    List<Map<String, ByteIterator>> results = new ArrayList<>(batch.readkeys.size());
+    db.batchRead(table, batch.readkeys, fields, results);
+
+    if (dataintegrity) {
+      for (int i = 0; i < batch.readkeys.size(); i++) {
+        verifyRow(batch.readkeys.get(i),
+            i < results.size() ? results.get(i) : new HashMap<String, ByteIterator>());
+      }
+    }
+    batch.readkeys.clear();
+  }
+
+  /**
+   * Buffers an update of a random key, writing all buffered records with one batchUpdate once the batch is full.
+   */
+  public void doTransactionBatchedUpdate(DB db, OperationBatch batch) {
+    String keyname = buildKeyName(nextKeynum());
+    batch.updatekeys.add(keyname);
+    batch.updatevalues.add(writeallfields ? buildValues(keyname) : buildSingleValue(keyname));
+    if (batch.updatekeys.size() >= operationbatchsize) {
+      flushUpdates(db, batch);
+    }
+  }
+
+  private void flushUpdates(DB db, OperationBatch batch) {
+    if (batch.updatekeys.isEmpty()) {
+      return;
+    }
+    db.batchUpdate(table, batch.updatekeys, batch.updatevalues);
+    batch.updatekeys.clear();
+    batch.updatevalues.clear();
+  }
+
+  /**
+   * Buffers an insert of the next key, inserting all buffered records with one batchInsert once the batch is full.
+   * The key numbers are acknowledged once the batch completed, so reads do not choose them before.
+   */
+  public void doTransactionBatchedInsert(DB db, OperationBatch batch) {
+    long keynum = transactioninsertkeysequence.nextValue();
+    String dbkey = buildKeyName(keynum);
+    batch.insertkeynums.add(keynum);
+    batch.insertkeys.add(dbkey);
+    batch.insertvalues.add(buildValues(dbkey));
+    if (batch.insertkeys.size() >= operationbatchsize) {
+      flushTransactionInserts(db, batch);
+    }
+  }
+
+  private void flushTransactionInserts(DB db, OperationBatch batch) {
+    try {
+      db.batchInsert(table, batch.insertkeys, batch.insertvalues);
+    } finally {
+      for (long keynum : batch.insertkeynums) {
+        transactioninsertkeysequence.acknowledge(keynum);
+      }
+      batch.insertkeynums.clear();
+      batch.insertkeys.clear();
+      batch.insertvalues.clear();
+    }
+  }
+
   /**
    * Creates a weighted discrete values with database operations for a workload to perform.
    * Weights/proportions are read from the properties list and defaults are used
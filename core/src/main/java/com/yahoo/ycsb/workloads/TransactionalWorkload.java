@@ -0,0 +1,210 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.workloads;
+
+import com.yahoo.ycsb.ByteIterator;
+import com.yahoo.ycsb.DB;
+import com.yahoo.ycsb.Utils;
+import com.yahoo.ycsb.WorkloadException;
+import com.yahoo.ycsb.generator.DiscreteGenerator;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * A workload of multi-key read-modify-write transactions. It behaves like
+ * {@link CoreWorkload} with an additional "TRANSACTION" operation that reads a
+ * set of records and writes all of them back with
+ * {@link DB#transaction(String, List, java.util.Set, List, List)}. Commits and
+ * aborts are reported as the OK and ABORTED return codes of the TRANSACTION
+ * measurement.
+ * <p>
+ * Contention between transactions is controlled with a hot set of records
+ * shared by all client threads: each key of a transaction is taken from the hot
+ * set with probability transactionhotproportion, and otherwise chosen with the
+ * configured requestdistribution.
+ * <p>
+ * Properties to control the client (in addition to those of {@link CoreWorkload}):
+ * <UL>
+ * <LI><b>transactionproportion</b>: what proportion of operations should be transactions (default: 1.0)
+ * <LI><b>transactionkeycount</b>: the number of distinct records read and written by each transaction
+ * (default: 4)
+ * <LI><b>transactionhotkeycount</b>: the number of records, starting at insertstart, in the hot set
+ * (default: 0)
+ * <LI><b>transactionhotproportion</b>: the probability that a key is chosen from the hot set (default: 0)
+ * </ul>
+ */
+public class TransactionalWorkload extends CoreWorkload {
+  /**
+   * The name of the property for the proportion of operations that are transactions.
+   */
+  public static final String TRANSACTION_PROPORTION_PROPERTY = "transactionproportion";
+
+  /**
+   * The default proportion of operations that are transactions.
+   */
+  public static final String TRANSACTION_PROPORTION_PROPERTY_DEFAULT = "1.0";
+
+  /**
+   * The name of the property for the number of records touched by a transaction.
+   */
+  public static final String TRANSACTION_KEY_COUNT_PROPERTY = "transactionkeycount";
+
+  /**
+   * The default number of records touched by a transaction.
+   */
+  public static final String TRANSACTION_KEY_COUNT_PROPERTY_DEFAULT = "4";
+
+  /**
+   * The name of the property for the number of records in the hot set.
+   */
+  public static final String TRANSACTION_HOT_KEY_COUNT_PROPERTY = "transactionhotkeycount";
+
+  /**
+   * The default number of records in the hot set.
+   */
+  public static final String TRANSACTION_HOT_KEY_COUNT_PROPERTY_DEFAULT = "0";
+
+  /**
+   * The name of the property for the probability that a key is chosen from the hot set.
+   */
+  public static final String TRANSACTION_HOT_PROPORTION_PROPERTY = "transactionhotproportion";
+
+  /**
+   * The default probability that a key is chosen from the hot set.
+   */
+  public static final String TRANSACTION_HOT_PROPORTION_PROPERTY_DEFAULT = "0";
+
+  private int transactionkeycount;
+  private long hotstart;
+  private long hotkeycount;
+  private double hotproportion;
+
+  @Override
+  public void init(Properties p) throws WorkloadException {
+    super.init(p);
+
+    operationchooser = createOperationGenerator(p);
+    transactionkeycount = Integer.parseInt(
+        p.getProperty(TRANSACTION_KEY_COUNT_PROPERTY, TRANSACTION_KEY_COUNT_PROPERTY_DEFAULT));
+    if (transactionkeycount < 1 || transactionkeycount > recordcount) {
+      throw new WorkloadException(TRANSACTION_KEY_COUNT_PROPERTY + " must be between 1 and the record count");
+    }
+    hotstart = Long.parseLong(p.getProperty(INSERT_START_PROPERTY, INSERT_START_PROPERTY_DEFAULT));
+    hotkeycount = Long.parseLong(
+        p.getProperty(TRANSACTION_HOT_KEY_COUNT_PROPERTY, TRANSACTION_HOT_KEY_COUNT_PROPERTY_DEFAULT));
+    hotproportion = Double.parseDouble(
+        p.getProperty(TRANSACTION_HOT_PROPORTION_PROPERTY, TRANSACTION_HOT_PROPORTION_PROPERTY_DEFAULT));
+    if (hotkeycount > 0 && hotkeycount < transactionkeycount && hotproportion >= 1.0) {
+      throw new WorkloadException("The hot set must hold at least " + TRANSACTION_KEY_COUNT_PROPERTY +
+          " records when all keys are chosen from it");
+    }
+  }
+
+  /**
+   * Creates the operation generator of {@link CoreWorkload} with the additional "TRANSACTION" operation.
+   *
+   * @param p The properties list to pull weights from.
+   * @return A generator that can be used to determine the next operation to perform.
+   * @throws IllegalArgumentException if the properties object was null.
+   */
+  protected static DiscreteGenerator createOperationGenerator(final Properties p) {
+    final DiscreteGenerator operationchooser = CoreWorkload.createOperationGenerator(p);
+    final double transactionproportion = Double.parseDouble(
+        p.getProperty(TRANSACTION_PROPORTION_PROPERTY, TRANSACTION_PROPORTION_PROPERTY_DEFAULT));
+    if (transactionproportion > 0) {
+      operationchooser.addValue(transactionproportion, "TRANSACTION");
+    }
+    return operationchooser;
+  }
+
+  @Override
+  public boolean doTransaction(DB db, Object threadstate) {
+    String operation = operationchooser.nextString();
+    if (operation == null) {
+      return false;
+    }
+
+    switch (operation) {
+    case "READ":
+      doTransactionRead(db);
+      break;
+    case "UPDATE":
+      doTransactionUpdate(db);
+      break;
+    case "INSERT":
+      doTransactionInsert(db);
+      break;
+    case "SCAN":
+      doTransactionScan(db);
+      break;
+    case "TRANSACTION":
+      doTransactionMultiKey(db);
+      break;
+    default:
+      doTransactionReadModifyWrite(db);
+    }
+
+    return true;
+  }
+
+  /**
+   * Chooses the distinct key numbers of one transaction.
+   */
+  Set<Long> nextKeynums() {
+    Set<Long> keynums = new HashSet<>();
+    while (keynums.size() < transactionkeycount) {
+      if (hotkeycount > 0 && Utils.random().nextDouble() < hotproportion) {
+        keynums.add(hotstart + (long) (Utils.random().nextDouble() * hotkeycount));
+      } else {
+        keynums.add(nextKeynum());
+      }
+    }
+    return keynums;
+  }
+
+  /**
+   * Reads and writes back transactionkeycount records in one transaction.
+   */
+  public void doTransactionMultiKey(DB db) {
+    // keys are sorted so that stores locking records in key order do not deadlock
+    TreeSet<String> keynames = new TreeSet<>();
+    for (long keynum : nextKeynums()) {
+      keynames.add(buildKeyName(keynum));
+    }
+    List<String> keys = new ArrayList<>(keynames);
+    List<Map<String, ByteIterator>> values = new ArrayList<>(transactionkeycount);
+    for (String keyname : keys) {
+      values.add(writeallfields ? buildValues(keyname) : buildSingleValue(keyname));
+    }
+
+    HashSet<String> fields = null;
+    if (!readallfields) {
+      // read a random field
+      fields = new HashSet<String>();
+      fields.add(fieldnames.get(fieldchooser.nextValue().intValue()));
+    }
+
+    db.transaction(table, keys, fields, new ArrayList<Map<String, ByteIterator>>(transactionkeycount), values);
+  }
+}
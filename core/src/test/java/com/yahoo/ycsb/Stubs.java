@@ -0,0 +1,211 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Vector;
+
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+
+/**
+ * Stand-ins for a DB and a measurements exporter shared by the tests.
+ */
+public final class Stubs {
+  private Stubs() {
+  }
+
+  /**
+   * Succeeds at everything, recording the keys read, updated and inserted in order, whether alone or in a batch, and
+   * the type and size of each batch, e.g. "READ 4".
+   */
+  public static class RecordingDB extends DB {
+    public final List<String> reads = new ArrayList<String>();
+    public final List<String> updates = new ArrayList<String>();
+    public final List<String> inserts = new ArrayList<String>();
+    public final List<String> batches = new ArrayList<String>();
+
+    @Override
+    public Status read(String table, String key, Set<String> fields, Map<String, ByteIterator> result) {
+      reads.add(key);
+      return Status.OK;
+    }
+
+    @Override
+    public Status scan(String table, String startkey, int recordcount, Set<String> fields,
+                       Vector<HashMap<String, ByteIterator>> result) {
+      return Status.OK;
+    }
+
+    @Override
+    public Status update(String table, String key, Map<String, ByteIterator> values) {
+      updates.add(key);
+      return Status.OK;
+    }
+
+    @Override
+    public Status insert(String table, String key, Map<String, ByteIterator> values) {
+      inserts.add(key);
+      return Status.OK;
+    }
+
+    @Override
+    public Status delete(String table, String key) {
+      return Status.OK;
+    }
+
+    @Override
+    public Status batchRead(String table, List<String> keys, Set<String> fields,
+                            List<Map<String, ByteIterator>> results) {
+      batches.add("READ " + keys.size());
+      reads.addAll(keys);
+      return Status.OK;
+    }
+
+    @Override
+    public Status batchUpdate(String table, List<String> keys, List<Map<String, ByteIterator>> values) {
+      batches.add("UPDATE " + keys.size());
+      updates.addAll(keys);
+      return Status.OK;
+    }
+
+    @Override
+    public Status batchInsert(String table, List<String> keys, List<Map<String, ByteIterator>> values) {
+      batches.add("INSERT " + keys.size());
+      inserts.addAll(keys);
+      return Status.OK;
+    }
+  }
+
+  /**
+   * A single record store keeping values as strings so they can be read repeatedly.
+   */
+  public static class MapDB extends DB {
+    public final Map<String, String> record = new HashMap<String, String>();
+
+    @Override
+    public Status read(String table, String key, Set<String> fields, Map<String, ByteIterator> result) {
+      StringByteIterator.putAllAsByteIterators(result, record);
+      return Status.OK;
+    }
+
+    @Override
+    public Status scan(String table, String startkey, int recordcount, Set<String> fields,
+                       Vector<HashMap<String, ByteIterator>> result) {
+      return Status.OK;
+    }
+
+    @Override
+    public Status update(String table, String key, Map<String, ByteIterator> values) {
+      StringByteIterator.putAllAsStrings(record, values);
+      return Status.OK;
+    }
+
+    @Override
+    public Status insert(String table, String key, Map<String, ByteIterator> values) {
+      return update(table, key, values);
+    }
+
+    @Override
+    public Status delete(String table, String key) {
+      record.clear();
+      return Status.OK;
+    }
+  }
+
+  /**
+   * Fails a number of times with a status, then reads one field or inserts a record.
+   */
+  public static class FlakyDB extends DB {
+    private final Status failure;
+    private int failures;
+    public int calls = 0;
+    public long sleepMs = 0;
+    public final List<String> inserted = new ArrayList<>();
+
+    public FlakyDB(Status failure, int failures) {
+      this.failure = failure;
+      this.failures = failures;
+    }
+
+    @Override
+    public Status read(String table, String key, Set<String> fields, Map<String, ByteIterator> result) {
+      calls++;
+      result.put("field" + calls, new StringByteIterator("value"));
+      if (sleepMs > 0) {
+        try {
+          Thread.sleep(sleepMs);
+        } catch (InterruptedException e) {
+          return Status.ERROR;
+        }
+      }
+      return failures-- > 0 ? failure : Status.OK;
+    }
+
+    @Override
+    public Status scan(String table, String startkey, int recordcount, Set<String> fields,
+                       Vector<HashMap<String, ByteIterator>> result) {
+      return Status.NOT_IMPLEMENTED;
+    }
+
+    @Override
+    public Status update(String table, String key, Map<String, ByteIterator> values) {
+      return Status.NOT_IMPLEMENTED;
+    }
+
+    @Override
+    public Status insert(String table, String key, Map<String, ByteIterator> values) {
+      inserted.add(key);
+      return failures-- > 0 ? failure : Status.OK;
+    }
+
+    @Override
+    public Status delete(String table, String key) {
+      return Status.NOT_IMPLEMENTED;
+    }
+  }
+
+  /**
+   * @return An exporter putting each value into values, by name or by metric:name.
+   */
+  public static MeasurementsExporter collect(final Map<String, Double> values, final boolean byMetric) {
+    return new MeasurementsExporter() {
+      @Override
+      public void write(String metric, String name, int i) {
+        write(metric, name, (double) i);
+      }
+
+      @Override
+      public void write(String metric, String name, long i) {
+        write(metric, name, (double) i);
+      }
+
+      @Override
+      public void write(String metric, String name, double d) {
+        values.put(byMetric ? metric + ":" + name : name, d);
+      }
+
+      @Override
+      public void close() {
+      }
+    };
+  }
+}
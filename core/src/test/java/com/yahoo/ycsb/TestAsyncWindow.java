@@ -0,0 +1,95 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import static com.yahoo.ycsb.Stubs.collect;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import com.yahoo.ycsb.measurements.Measurements;
+import org.testng.annotations.Test;
+
+public class TestAsyncWindow {
+  @Test
+  public void testDrainIsBounded() throws Exception {
+    Measurements.setProperties(new Properties());
+    AsyncWindow window = new AsyncWindow(2, 10);
+    long first = window.acquire();
+    long second = window.acquireUninterruptibly();
+    window.complete("INSERT", first, Status.OK);
+    assertEquals(window.getOutstanding(), 1);
+
+    // the second is still outstanding, so the drain gives up after the timeout
+    long start = System.nanoTime();
+    assertFalse(window.drain());
+    assertTrue(System.nanoTime() - start >= 10000000L);
+    assertEquals(window.getOutstanding(), 1);
+
+    window.complete("INSERT", second, Status.ERROR);
+    assertTrue(window.drain());
+    assertEquals(window.getOutstanding(), 0);
+
+    // a place given back unsent is not measured
+    window.acquire();
+    window.abandon();
+
+    Map<String, Double> values = new LinkedHashMap<>();
+    Measurements.getMeasurements().exportMeasurements(collect(values, true));
+    assertEquals(values.get("INSERT-ASYNC:Operations"), 2.0);
+    assertEquals(values.get("INSERT-ASYNC:Return=OK"), 1.0);
+    assertEquals(values.get("INSERT-ASYNC:Return=ERROR"), 1.0);
+  }
+
+  @Test
+  public void testUnboundedWindowOnlyMeasures() throws Exception {
+    Measurements.setProperties(new Properties());
+    AsyncWindow window = new AsyncWindow(0, 10);
+    long[] starts = new long[1000];
+    for (int i = 0; i < starts.length; i++) {
+      starts[i] = window.acquire();
+    }
+    assertEquals(window.getOutstanding(), starts.length);
+    for (long start : starts) {
+      window.complete("UPDATE", start, Status.OK);
+    }
+    assertTrue(window.drain());
+
+    Map<String, Double> values = new LinkedHashMap<>();
+    Measurements.getMeasurements().exportMeasurements(collect(values, true));
+    assertEquals(values.get("UPDATE-ASYNC:Operations"), 1000.0);
+  }
+
+  @Test
+  public void testInterruptedDrainGivesUp() throws Exception {
+    Measurements.setProperties(new Properties());
+    AsyncWindow window = new AsyncWindow(1, 60000);
+    window.acquire();
+    Thread.currentThread().interrupt();
+    try {
+      assertFalse(window.drain());
+      assertTrue(Thread.currentThread().isInterrupted());
+    } finally {
+      Thread.interrupted();
+    }
+  }
+}
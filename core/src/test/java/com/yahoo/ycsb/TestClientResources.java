@@ -0,0 +1,75 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import com.yahoo.ycsb.measurements.Measurements;
+import org.testng.annotations.Test;
+
+public class TestClientResources {
+
+  @Test
+  public void testThreadAccounting() {
+    long id = Thread.currentThread().getId();
+    long cpu = Utils.getThreadCpuTime(id);
+    long allocated = Utils.getThreadAllocatedBytes(id);
+    byte[][] garbage = new byte[100][];
+    for (int i = 0; i < garbage.length; i++) {
+      garbage[i] = new byte[10000];
+    }
+    assertTrue(Utils.getThreadCpuTime(id) >= cpu);
+    assertTrue(Utils.getThreadAllocatedBytes(id) >= allocated + 100 * 10000);
+    assertTrue(Utils.getProcessCpuTime() > 0);
+  }
+
+  @Test
+  public void testGCPausesAreExported() throws Exception {
+    Measurements measurements = new Measurements(new Properties());
+    ClientResources resources = new ClientResources(Collections.<ClientThread>emptyList(), 0.9);
+    resources.start(measurements);
+    try {
+      System.gc();
+      Map<String, Double> values = export(resources);
+      // notifications are delivered asynchronously
+      for (int i = 0; i < 50 && values.get("GC_PAUSES:Count") == 0; i++) {
+        Thread.sleep(100);
+        values = export(resources);
+      }
+      assertTrue(values.get("GC_PAUSES:Count") >= 1, values.toString());
+      assertTrue(values.containsKey("CLIENT:CpuTime(ms)"));
+      assertEquals(values.get("CLIENT:SaturatedIntervals"), 0.0);
+      assertTrue(resources.sampleInterval(measurements).startsWith("[CLIENT"));
+      assertEquals(measurements.getCount("CLIENT_INTERVALS", "Count"), 1);
+    } finally {
+      resources.stop();
+    }
+  }
+
+  private static Map<String, Double> export(ClientResources resources) throws Exception {
+    final Map<String, Double> values = new LinkedHashMap<>();
+    resources.exportMeasurements(Stubs.collect(values, true));
+    return values;
+  }
+}
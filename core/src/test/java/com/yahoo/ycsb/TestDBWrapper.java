@@ -0,0 +1,174 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import com.yahoo.ycsb.Stubs.FlakyDB;
+import com.yahoo.ycsb.measurements.Measurements;
+import org.apache.htrace.core.HTraceConfiguration;
+import org.apache.htrace.core.Tracer;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+public class TestDBWrapper {
+
+  @BeforeClass
+  public void setUp() {
+    Measurements.setProperties(new Properties());
+  }
+
+  @Test
+  public void testRetriesRetryableStatuses() throws Exception {
+    Properties props = new Properties();
+    props.setProperty("retry.maxattempts", "3");
+    props.setProperty("retry.backoff.initialms", "1");
+    FlakyDB flaky = new FlakyDB(Status.SERVICE_UNAVAILABLE, 2);
+    DBWrapper db = wrap(flaky, props);
+
+    Map<String, ByteIterator> result = new HashMap<>();
+    assertEquals(db.read("usertable", "user1", null, result), Status.OK);
+    assertEquals(flaky.calls, 3);
+    // only the last try's result is kept
+    assertEquals(result.size(), 1);
+
+    // errors not worth retrying are returned at once
+    flaky = new FlakyDB(Status.ERROR, 2);
+    db = wrap(flaky, props);
+    assertEquals(db.read("usertable", "user1", null, result), Status.ERROR);
+    assertEquals(flaky.calls, 1);
+
+    // and retries stop after the last attempt
+    props.setProperty("retry.READ.maxattempts", "2");
+    flaky = new FlakyDB(Status.SERVICE_UNAVAILABLE, 5);
+    db = wrap(flaky, props);
+    assertEquals(db.read("usertable", "user1", null, result), Status.SERVICE_UNAVAILABLE);
+    assertEquals(flaky.calls, 2);
+  }
+
+  @Test
+  public void testBatchRetryInsertsOnlyFailedRecords() throws Exception {
+    Properties props = new Properties();
+    props.setProperty("retry.maxattempts", "3");
+    props.setProperty("retry.backoff.initialms", "1");
+    FlakyDB flaky = new FlakyDB(Status.SERVICE_UNAVAILABLE, 1);
+    DBWrapper db = wrap(flaky, props);
+    long items = Measurements.getMeasurements().getCount("BATCH-INSERT", "Items");
+
+    List<Map<String, ByteIterator>> values = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      values.add(new HashMap<String, ByteIterator>());
+    }
+    assertEquals(db.batchInsert("usertable", new ArrayList<>(Arrays.asList("user1", "user2", "user3")), values),
+        Status.OK);
+    // the first insert failed and is the only one made again
+    assertEquals(flaky.inserted, Arrays.asList("user1", "user2", "user3", "user1"));
+    assertEquals(Measurements.getMeasurements().getCount("BATCH-INSERT", "Items"), items + 3);
+  }
+
+  @Test
+  public void testTimeout() throws Exception {
+    Properties props = new Properties();
+    props.setProperty("retry.timeoutms", "50");
+    FlakyDB slow = new FlakyDB(Status.OK, 0);
+    slow.sleepMs = 1000;
+    DBWrapper db = wrap(slow, props);
+
+    long start = System.nanoTime();
+    assertEquals(db.read("usertable", "user1", null, new HashMap<String, ByteIterator>()), Status.TIMEOUT);
+    assertTrue(System.nanoTime() - start < 900000000L);
+    db.cleanup();
+  }
+
+  @Test
+  public void testTriesWaitForTheTryGivenUpOn() throws Exception {
+    Properties props = new Properties();
+    props.setProperty("retry.timeoutms", "50");
+    props.setProperty("retry.maxattempts", "3");
+    props.setProperty("retry.backoff.initialms", "0");
+    FlakyDB slow = new FlakyDB(Status.OK, 0);
+    slow.sleepMs = 1000;
+    DBWrapper db = wrap(slow, props);
+    long attempts = Measurements.getMeasurements().getCount("READ", "Attempts");
+
+    Map<String, ByteIterator> result = new HashMap<>();
+    long start = System.nanoTime();
+    assertEquals(db.read("usertable", "user1", null, result), Status.TIMEOUT);
+    assertTrue(System.nanoTime() - start < 900000000L);
+    assertEquals(Measurements.getMeasurements().getCount("READ", "Attempts"), attempts + 3);
+    // the retries were not made on the DB while the first try was still using it
+    assertEquals(slow.calls, 1);
+    Thread.sleep(1100);
+    // and the try that finished late did not fill in the result
+    assertTrue(result.isEmpty());
+
+    // once it is over, the DB is tried again
+    slow.sleepMs = 0;
+    assertEquals(db.read("usertable", "user1", null, result), Status.OK);
+    assertEquals(slow.calls, 2);
+    db.cleanup();
+  }
+
+  @Test
+  public void testInterruptStopsRetries() throws Exception {
+    Properties props = new Properties();
+    props.setProperty("retry.maxattempts", "3");
+    props.setProperty("retry.backoff.initialms", "10000");
+    FlakyDB flaky = new FlakyDB(Status.SERVICE_UNAVAILABLE, 5);
+    DBWrapper db = wrap(flaky, props);
+
+    Thread.currentThread().interrupt();
+    try {
+      assertEquals(db.read("usertable", "user1", null, new HashMap<String, ByteIterator>()),
+          Status.SERVICE_UNAVAILABLE);
+      assertEquals(flaky.calls, 1);
+    } finally {
+      assertTrue(Thread.interrupted());
+    }
+  }
+
+  @Test
+  public void testInsertionRetryLimitRetriesAnyFailure() throws Exception {
+    Properties props = new Properties();
+    props.setProperty("core_workload_insertion_retry_limit", "2");
+    props.setProperty("core_workload_insertion_retry_interval", "0");
+    FlakyDB flaky = new FlakyDB(Status.ERROR, 2);
+    DBWrapper db = wrap(flaky, props);
+
+    assertEquals(db.insert("usertable", "user1", new HashMap<String, ByteIterator>()), Status.OK);
+    assertEquals(flaky.inserted, Arrays.asList("user1", "user1", "user1"));
+    // other operations keep the defaults
+    assertEquals(db.read("usertable", "user1", null, new HashMap<String, ByteIterator>()), Status.OK);
+    assertEquals(flaky.calls, 1);
+  }
+
+  private static DBWrapper wrap(DB db, Properties props) throws DBException {
+    db.setProperties(props);
+    DBWrapper wrapper = new DBWrapper(db, new Tracer.Builder("test").conf(HTraceConfiguration.EMPTY).build());
+    wrapper.init();
+    return wrapper;
+  }
+}
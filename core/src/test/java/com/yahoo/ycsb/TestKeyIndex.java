@@ -0,0 +1,44 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.testng.AssertJUnit.*;
+
+public class TestKeyIndex {
+  @Test
+  public void testRangeIsOrderedPerTable() {
+    KeyIndex index = new KeyIndex();
+    index.addAll("usertable", Arrays.asList("user3", "user1", "user4"));
+    index.add("usertable", "user2");
+    index.add("other", "user0");
+    index.remove("usertable", "user3");
+
+    assertEquals(Arrays.asList("user2", "user4"), index.range("usertable", "user2", 3));
+    assertEquals(Arrays.asList("user1", "user2"), index.range("usertable", "user0", 2));
+    assertEquals(Collections.singletonList("user0"), index.range("other", "user0", 10));
+    assertTrue(index.range("missing", "user0", 10).isEmpty());
+
+    index.clear();
+    assertTrue(index.range("usertable", "user0", 10).isEmpty());
+  }
+}
@@ -30,6 +30,7 @@ public class TestStatus {
   public void testAcceptableStatus() {
     assertTrue(Status.OK.isOk());
     assertTrue(Status.BATCHED_OK.isOk());
+    assertFalse(Status.ABORTED.isOk());
     assertFalse(Status.BAD_REQUEST.isOk());
     assertFalse(Status.ERROR.isOk());
     assertFalse(Status.FORBIDDEN.isOk());
@@ -37,5 +38,6 @@ public class TestStatus {
     assertFalse(Status.NOT_IMPLEMENTED.isOk());
     assertFalse(Status.SERVICE_UNAVAILABLE.isOk());
     assertFalse(Status.UNEXPECTED_STATE.isOk());
+    assertFalse(Status.TIMEOUT.isOk());
   }
 }
@@ -16,6 +16,8 @@
  */
 package com.yahoo.ycsb.generator;
 
+import static org.testng.Assert.assertEquals;
+
 import java.util.Random;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
@@ -32,7 +34,7 @@ public class AcknowledgedCounterGeneratorTest {
    */
   @Test
   public void testIncrementPastIntegerMaxValue() {
-    final long toTry = AcknowledgedCounterGenerator.WINDOW_SIZE * 3;
+    final long toTry = AcknowledgedCounterGenerator.SEGMENT_SIZE * 48L;
 
     AcknowledgedCounterGenerator generator =
         new AcknowledgedCounterGenerator(Integer.MAX_VALUE - 1000);
@@ -58,4 +60,50 @@ public class AcknowledgedCounterGeneratorTest {
     }
 
   }
+
+  /**
+   * Test that the limit waits for an unacknowledged value however many values after it are acknowledged.
+   */
+  @Test
+  public void testManyOutstandingValues() {
+    final long toTry = AcknowledgedCounterGenerator.SEGMENT_SIZE * 3L + 5;
+
+    AcknowledgedCounterGenerator generator = new AcknowledgedCounterGenerator(0);
+    long first = generator.nextValue();
+    for (long i = 1; i < toTry; ++i) {
+      generator.acknowledge(generator.nextValue());
+    }
+    assertEquals(generator.lastValue().longValue(), -1L);
+
+    generator.acknowledge(first);
+    assertEquals(generator.lastValue().longValue(), toTry - 1);
+  }
+
+  /**
+   * Test that concurrent acknowledgements all end up below the limit.
+   */
+  @Test
+  public void testConcurrentAcknowledgements() throws Exception {
+    final int threadCount = 4;
+    final int perThread = 100000;
+    final AcknowledgedCounterGenerator generator = new AcknowledgedCounterGenerator(0);
+
+    Thread[] threads = new Thread[threadCount];
+    for (int t = 0; t < threadCount; ++t) {
+      threads[t] = new Thread() {
+        @Override
+        public void run() {
+          for (int i = 0; i < perThread; ++i) {
+            generator.acknowledge(generator.nextValue());
+          }
+        }
+      };
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertEquals(generator.lastValue().longValue(), (long) threadCount * perThread - 1);
+  }
 }
@@ -0,0 +1,48 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb.generator;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import org.testng.annotations.Test;
+
+/**
+ * Tests for the ScrambledZipfianGenerator class.
+ */
+public class TestScrambledZipfianGenerator {
+
+  @Test
+  public void testBoundedValuesStayWithinBound() {
+    ScrambledZipfianGenerator generator = new ScrambledZipfianGenerator(100, 100000);
+    for (int i = 0; i < 10000; i++) {
+      long value = generator.nextValue(199);
+      assertTrue(value >= 100 && value <= 199);
+    }
+  }
+
+  @Test
+  public void testSingleValueBound() {
+    ScrambledZipfianGenerator generator = new ScrambledZipfianGenerator(100, 100000);
+    assertEquals(generator.nextValue(100), 100);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testBoundBelowMinimum() {
+    new ScrambledZipfianGenerator(100, 100000).nextValue(99);
+  }
+}
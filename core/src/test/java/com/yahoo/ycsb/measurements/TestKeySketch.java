@@ -0,0 +1,81 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.measurements;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.annotations.Test;
+
+public class TestKeySketch {
+
+  @Test
+  public void testHotKeys() throws Exception {
+    final KeySketch sketch = new KeySketch(3, "us");
+    Thread[] threads = new Thread[4];
+    for (int t = 0; t < threads.length; t++) {
+      final int offset = t;
+      threads[t] = new Thread() {
+        @Override
+        public void run() {
+          for (int i = 0; i < 10000; i++) {
+            // user0 is a tenth of the operations, user1 a twentieth, and the rest are spread over 20000 keys
+            String key = i % 10 == 0 ? "user0" : i % 20 == 1 ? "user1" : "user" + (2 + offset * 10000 + i);
+            sketch.offer("READ", key, 1000);
+          }
+        }
+      };
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertEquals(sketch.getOperations(), 40000);
+    List<Map.Entry<String, Long>> hot = sketch.getHotKeys();
+    assertEquals(hot.size(), 3);
+    assertEquals(hot.get(0).getKey(), "user0");
+    assertEquals(hot.get(1).getKey(), "user1");
+    // never underestimated, and overestimated by at most the operations of each stripe over its counters
+    long bound = 40000 / (3 * KeySketch.COUNTERS_PER_KEY);
+    assertTrue(hot.get(0).getValue() >= 4000 && hot.get(0).getValue() <= 4000 + bound, "" + hot.get(0));
+    assertTrue(hot.get(1).getValue() >= 2000 && hot.get(1).getValue() <= 2000 + bound, "" + hot.get(1));
+    assertTrue(sketch.getSummary().startsWith("[HOTKEYS user0="));
+  }
+
+  @Test
+  public void testSlowOperations() {
+    KeySketch sketch = new KeySketch(2, "us");
+    sketch.offer("READ", "user1", 5000);
+    sketch.offer("UPDATE", "user2", 9000);
+    sketch.offer("READ", "user3", 1000);
+    sketch.offer("BATCH-READ", Arrays.asList("user4", "user5"), 7000);
+
+    assertEquals(sketch.getOperations(), 5);
+    List<KeySketch.SlowOperation> slow = sketch.getSlowOperations();
+    assertEquals(slow.size(), 2);
+    assertEquals(slow.get(0).getKey(), "user2");
+    assertEquals(slow.get(0).getLatencyNanos(), 9000);
+    assertEquals(slow.get(1).getOperation(), "BATCH-READ");
+    assertEquals(slow.get(1).getKey(), "[user4, user5]");
+  }
+}
@@ -0,0 +1,273 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.measurements;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static com.yahoo.ycsb.Stubs.collect;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import com.yahoo.ycsb.Status;
+import com.yahoo.ycsb.measurements.exporter.JSONLinesMeasurementsExporter;
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+import org.testng.annotations.Test;
+
+/**
+ * Tests that measurements recorded from many threads add up.
+ */
+public class TestOneMeasurement {
+  private static final int THREADS = 8;
+  private static final int PER_THREAD = 20000;
+
+  @Test
+  public void testConcurrentHistogram() throws Exception {
+    OneMeasurementHistogram histogram = new OneMeasurementHistogram("READ", new Properties());
+    record(histogram);
+
+    Map<String, Double> values = export(histogram);
+    assertEquals(values.get("Operations"), (double) THREADS * PER_THREAD);
+    assertEquals(values.get("MinLatency(us)"), 0.0);
+    assertEquals(values.get("MaxLatency(us)"), 1919988.0);
+    assertEquals(values.get("AverageLatency(us)"), 959994.0);
+    assertEquals(values.get("0"), 84.0);
+    assertEquals(values.get(">1000"), 76666.0);
+    assertEquals(histogram.getSummary(), "[READ AverageLatency(us)=959994]");
+    assertEquals(histogram.getSummary(), "");
+  }
+
+  @Test
+  public void testConcurrentTimeSeries() throws Exception {
+    Properties props = new Properties();
+    props.setProperty(OneMeasurementTimeSeries.GRANULARITY, "60000");
+    OneMeasurementTimeSeries series = new OneMeasurementTimeSeries("READ", props);
+    record(series);
+
+    Map<String, Double> values = export(series);
+    assertEquals(values.get("Operations"), (double) THREADS * PER_THREAD);
+    assertEquals(values.get("MinLatency(us)"), 0.0);
+    assertEquals(values.get("MaxLatency(us)"), 1919988.0);
+    // the run is shorter than one unit
+    assertEquals(values.get("0"), 959994.0);
+    assertEquals(series.getSummary(), "[READ AverageLatency(us)=959994]");
+    assertEquals(series.getSummary(), "");
+  }
+
+  @Test
+  public void testHdrHistogramSeries() throws Exception {
+    Properties props = new Properties();
+    props.setProperty(OneMeasurementTimeSeries.GRANULARITY, "200");
+    ManualClockSeries series = new ManualClockSeries("READ", props);
+    for (int i = 1; i <= 100; ++i) {
+      series.measure(i);
+    }
+    series.now = 250;
+    for (int i = 0; i < 10; ++i) {
+      series.measure(1000);
+    }
+    series.now = 300;
+
+    Map<String, Double> values = export(series);
+    assertEquals(values.get("0:Operations"), 100.0);
+    assertEquals(values.get("0:Throughput(ops/sec)"), 500.0);
+    assertEquals(values.get("0:50thPercentileLatency(us)"), 50.0);
+    assertEquals(values.get("0:99.9PercentileLatency(us)"), 100.0);
+    assertEquals(values.get("0:MaxLatency(us)"), 100.0);
+    assertEquals(values.get("200:Operations"), 10.0);
+    assertEquals(values.get("200:MaxLatency(us)"), 1000.0);
+    // the last unit only lasted 100ms
+    assertEquals(values.get("200:Throughput(ops/sec)"), 100.0);
+  }
+
+  @Test
+  public void testStreamedSeries() throws Exception {
+    Properties props = new Properties();
+    props.setProperty(OneMeasurementTimeSeries.GRANULARITY, "200");
+    ManualClockSeries series = new ManualClockSeries("READ", props);
+    series.measure(10);
+    series.now = 250;
+    series.measure(20);
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    JSONLinesMeasurementsExporter exporter = new JSONLinesMeasurementsExporter(out);
+    series.exportCompletedRecords(exporter);
+    assertEquals(out.toString("UTF-8").split("\n").length, 1);
+    assertTrue(out.toString("UTF-8").contains("\"time\":0,"));
+    // the unit still going is not streamed
+    series.exportCompletedRecords(exporter);
+    assertEquals(out.toString("UTF-8").split("\n").length, 1);
+
+    series.now = 300;
+    series.exportRecords(exporter);
+    exporter.close();
+    String[] lines = out.toString("UTF-8").split("\n");
+    assertEquals(lines.length, 2);
+    assertTrue(lines[1].contains("\"time\":200,\"duration\":100,"), lines[1]);
+  }
+
+  @Test
+  public void testTimeSeriesWithoutOperations() throws Exception {
+    OneMeasurementTimeSeries series = new OneMeasurementTimeSeries("READ", new Properties());
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    JSONLinesMeasurementsExporter exporter = new JSONLinesMeasurementsExporter(out);
+    series.exportRecords(exporter);
+    exporter.close();
+    String record = out.toString("UTF-8");
+    assertTrue(record.contains("\"count\":0,\"mean\":0.0"), record);
+  }
+
+  @Test
+  public void testPhases() throws Exception {
+    Properties props = new Properties();
+    props.setProperty(Measurements.MEASUREMENT_TYPE_PROPERTY, "histogram");
+    props.setProperty(Measurements.LATENCY_UNIT_PROPERTY, "ns");
+    props.setProperty(Measurements.MEASUREMENT_PHASES_PROPERTY, "true");
+    Measurements measurements = new Measurements(props);
+
+    // a phase timed twice in one operation is one sample
+    measurements.measurePhase("DB", 3000);
+    measurements.measurePhase("DB", 2000);
+    measurements.startPhase("VALUES");
+    measurements.endPhase("VALUES");
+    measurements.endPhases();
+    measurements.measurePhase("DB", 7000);
+    measurements.endPhases();
+    // nothing was timed since the last operation
+    measurements.endPhases();
+
+    Map<String, Double> values = new LinkedHashMap<>();
+    measurements.exportMeasurements(collect(values, true));
+    assertEquals(values.get("PHASE-DB:Operations"), 2.0);
+    assertEquals(values.get("PHASE-DB:MinLatency(ns)"), 5000.0);
+    assertEquals(values.get("PHASE-DB:MaxLatency(ns)"), 7000.0);
+    assertEquals(values.get("PHASE-VALUES:Operations"), 1.0);
+
+    props.setProperty(Measurements.MEASUREMENT_PHASES_PROPERTY, "false");
+    measurements = new Measurements(props);
+    measurements.measurePhase("DB", 3000);
+    measurements.endPhases();
+    values.clear();
+    measurements.exportMeasurements(collect(values, true));
+    assertTrue(values.isEmpty());
+  }
+
+  @Test
+  public void testValuesAndCounters() throws Exception {
+    Measurements measurements = new Measurements(new Properties());
+    for (int i = 1; i <= 100; ++i) {
+      measurements.measureValue("STALENESS", i, "versions");
+    }
+    measurements.count("READ", "Attempts", 3);
+    measurements.count("READ", "Attempts", 2);
+    assertEquals(measurements.getCount("READ", "Attempts"), 5);
+    assertEquals(measurements.getCount("READ", "Retries"), 0);
+
+    Map<String, Double> values = new LinkedHashMap<>();
+    measurements.exportMeasurements(collect(values, true));
+    assertEquals(values.get("STALENESS:Count"), 100.0);
+    assertEquals(values.get("STALENESS:Average(versions)"), 50.5);
+    assertEquals(values.get("STALENESS:Max(versions)"), 100.0);
+    assertEquals(values.get("STALENESS:99thPercentile(versions)"), 99.0);
+    assertEquals(values.get("READ:Attempts"), 5.0);
+    // neither is a latency
+    assertTrue(!values.containsKey("STALENESS:Operations"));
+    assertTrue(!values.containsKey("READ:Operations"));
+  }
+
+  @Test
+  public void testStatusCountsAreExportedAsLongs() throws Exception {
+    OneMeasurementHistogram histogram = new OneMeasurementHistogram("READ", new Properties());
+    for (int i = 0; i < 3; ++i) {
+      histogram.reportStatus(Status.OK);
+    }
+    histogram.reportStatus(Status.NOT_FOUND);
+
+    // the counts would wrap past 2^31 operations as ints
+    final Map<String, Long> counts = new LinkedHashMap<>();
+    histogram.exportCurrentMeasurements(new MeasurementsExporter() {
+      @Override
+      public void write(String metric, String measurement, int i) {
+        assertTrue(!measurement.startsWith("Return="), measurement + " exported as an int");
+      }
+
+      @Override
+      public void write(String metric, String measurement, long i) {
+        counts.put(measurement, i);
+      }
+
+      @Override
+      public void write(String metric, String measurement, double d) {
+        assertTrue(!measurement.startsWith("Return="), measurement + " exported as a double");
+      }
+
+      @Override
+      public void close() {
+      }
+    });
+    assertEquals(counts.get("Return=OK"), Long.valueOf(3));
+    assertEquals(counts.get("Return=NOT_FOUND"), Long.valueOf(1));
+  }
+
+  /**
+   * A series whose time only moves when the test sets it.
+   */
+  private static final class ManualClockSeries extends OneMeasurementHdrHistogramSeries {
+    private long now;
+
+    ManualClockSeries(String name, Properties props) {
+      super(name, props);
+    }
+
+    @Override
+    protected long currentTimeMillis() {
+      return now;
+    }
+  }
+
+  /**
+   * Records the latencies 0, 12, 24, ... up to about 1.9s, spread over several threads.
+   */
+  private static void record(final OneMeasurement measurement) throws InterruptedException {
+    Thread[] threads = new Thread[THREADS];
+    for (int t = 0; t < THREADS; ++t) {
+      final int offset = t;
+      threads[t] = new Thread() {
+        @Override
+        public void run() {
+          for (int i = 0; i < PER_THREAD; ++i) {
+            measurement.measure(12L * (i * THREADS + offset));
+          }
+        }
+      };
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+  }
+
+  private static Map<String, Double> export(OneMeasurement measurement) throws IOException {
+    Map<String, Double> values = new LinkedHashMap<>();
+    measurement.exportMeasurements(collect(values, false));
+    return values;
+  }
+}
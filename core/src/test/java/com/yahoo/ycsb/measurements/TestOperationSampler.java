@@ -0,0 +1,103 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.measurements;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import com.yahoo.ycsb.Status;
+import org.testng.annotations.Test;
+
+public class TestOperationSampler {
+
+  @Test
+  public void testSlowOperationsAreKept() {
+    Properties props = new Properties();
+    props.setProperty(OperationSampler.THRESHOLD_PROPERTY, "1000");
+    props.setProperty(OperationSampler.BUFFER_SIZE_PROPERTY, "2");
+    OperationSampler sampler = new OperationSampler(props);
+
+    long now = System.nanoTime();
+    sampler.offer("READ", "user1", Status.OK, 0, now, now + 999999);
+    sampler.offer("READ", "user2", Status.OK, 0, now, now + 1000000);
+    sampler.offer("UPDATE", "user3", Status.ERROR, now - 500, now, now + 2000000);
+    sampler.offer("BATCH-READ", Arrays.asList("user4", "user5"), Status.OK, 0, now, now + 3000000);
+
+    // the buffer only holds the last two
+    List<String> samples = sampler.getSamples();
+    assertEquals(samples.size(), 2);
+    String[] update = samples.get(0).split("\t");
+    assertEquals(Arrays.asList(update).subList(1, 6), Arrays.asList("UPDATE", "user3", "ERROR", "2000000", "500"));
+    assertEquals(update[7], "SLOW");
+    assertEquals(samples.get(1).split("\t")[2], "[user4, user5]");
+  }
+
+  @Test
+  public void testSampledOperations() throws Exception {
+    Properties props = new Properties();
+    props.setProperty(OperationSampler.THRESHOLD_PROPERTY, "0");
+    props.setProperty(OperationSampler.RATE_PROPERTY, "10");
+    props.setProperty(OperationSampler.BUFFER_SIZE_PROPERTY, "10000");
+    OperationSampler sampler = new OperationSampler(props);
+    for (int i = 0; i < 10000; i++) {
+      sampler.offer("READ", "user" + i, Status.OK, 0, 0, 1);
+    }
+    int kept = sampler.getSamples().size();
+    assertTrue(kept > 850 && kept < 1150, "kept " + kept);
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    sampler.write(out);
+    String[] lines = out.toString("UTF-8").split("\n");
+    assertEquals(lines.length, kept + 1);
+    assertTrue(lines[0].startsWith("time(ms)\toperation\tkey"));
+    assertTrue(lines[1].endsWith("\tSAMPLED"));
+  }
+
+  @Test
+  public void testSlowOperationsOutlastSampledOnes() {
+    Properties props = new Properties();
+    props.setProperty(OperationSampler.THRESHOLD_PROPERTY, "1000");
+    props.setProperty(OperationSampler.RATE_PROPERTY, "1");
+    props.setProperty(OperationSampler.BUFFER_SIZE_PROPERTY, "2");
+    OperationSampler sampler = new OperationSampler(props);
+
+    sampler.offer("READ", "slow", Status.OK, 0, 0, 2000000);
+    for (int i = 0; i < 5; i++) {
+      sampler.offer("READ", "user" + i, Status.OK, 0, 0, 1);
+    }
+
+    List<String> samples = sampler.getSamples();
+    assertEquals(samples.size(), 3);
+    assertEquals(samples.get(0).split("\t")[2], "slow");
+    assertEquals(samples.get(1).split("\t")[2], "user3");
+    assertEquals(samples.get(2).split("\t")[2], "user4");
+  }
+
+  @Test
+  public void testSamplerIsOffByDefault() {
+    assertEquals(new Measurements(new Properties()).getSampler(), null);
+    Properties props = new Properties();
+    props.setProperty(Measurements.MEASUREMENT_TRACING_PROPERTY, "sampled");
+    assertTrue(new Measurements(props).getSampler() != null);
+  }
+}
@@ -16,14 +16,18 @@
  */
 package com.yahoo.ycsb.measurements.exporter;
 
+import com.yahoo.ycsb.Status;
 import com.yahoo.ycsb.generator.ZipfianGenerator;
 import com.yahoo.ycsb.measurements.Measurements;
+import org.HdrHistogram.Histogram;
 import org.codehaus.jackson.JsonNode;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.testng.annotations.Test;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
 import java.util.Properties;
 
 import static org.testng.AssertJUnit.assertEquals;
@@ -55,4 +59,143 @@ public class TestMeasurementsExporter {
         assertEquals(json.get(4).get("measurement").asText(), "MaxLatency(us)");
         assertEquals(json.get(11).get("measurement").asText(), "4");
     }
+
+    @Test
+    public void testPrometheusMeasurementsExporter() throws IOException {
+        Properties props = new Properties();
+        props.put(Measurements.MEASUREMENT_TYPE_PROPERTY, "hdrhistogram");
+        Measurements mm = new Measurements(props);
+        for (int i = 1; i <= 1000; i++) {
+            mm.measure("READ", i);
+            mm.reportStatus("READ", Status.OK);
+        }
+
+        String first = exportCurrent(mm);
+        assertTrue(first, first.contains("# TYPE ycsb_operation_latency_seconds summary\n"));
+        assertTrue(first, first.contains("ycsb_operation_latency_seconds_count{operation=\"READ\"} 1000\n"));
+        assertTrue(first, first.contains("ycsb_operation_latency_seconds{operation=\"READ\",quantile=\"0.99\"}"));
+        assertTrue(first, first.contains("ycsb_operation_latency_seconds_sum{operation=\"READ\"}"));
+        assertTrue(first, first.contains("ycsb_operation_returns_total{operation=\"READ\",status=\"OK\"} 1000\n"));
+
+        // scraping again reports the same totals, and the status interval still sees every value
+        assertEquals(first, exportCurrent(mm));
+        String summary = mm.getSummary();
+        assertTrue(summary, summary.contains("Count=1000"));
+    }
+
+    @Test
+    public void testNanosecondLatencies() throws IOException {
+        Properties props = new Properties();
+        props.put(Measurements.MEASUREMENT_TYPE_PROPERTY, "hdrhistogram");
+        props.put(Measurements.LATENCY_UNIT_PROPERTY, "ns");
+        props.put("hdrhistogram.READ.highestvalue", "10000");
+        Measurements mm = new Measurements(props);
+        mm.measureNanos("READ", 500);
+        mm.measureNanos("READ", 1000000);
+        mm.reportStatus("READ", Status.OK);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JSONArrayMeasurementsExporter json = new JSONArrayMeasurementsExporter(out);
+        mm.exportMeasurements(json);
+        json.close();
+        JsonNode array = new ObjectMapper().readTree(out.toString("UTF-8"));
+        assertEquals(array.get(2).get("measurement").asText(), "MinLatency(ns)");
+        assertEquals(array.get(2).get("value").asLong(), 500);
+        // values above the highest value of READ are clamped to it
+        assertEquals(array.get(3).get("measurement").asText(), "MaxLatency(ns)");
+        assertTrue(array.get(3).get("value").asLong() < 10100);
+
+        String prometheus = exportCurrent(mm);
+        assertTrue(prometheus, prometheus.contains("ycsb_operation_min_latency_seconds{operation=\"READ\"} 5.0E-7\n"));
+    }
+
+    @Test
+    public void testJSONLinesMeasurementsExporter() throws Exception {
+        Properties props = new Properties();
+        props.put(Measurements.MEASUREMENT_TYPE_PROPERTY, "hdrhistogram");
+        Measurements mm = new Measurements(props);
+        for (int i = 1; i <= 1000; i++) {
+            mm.measure("READ", i);
+        }
+        mm.reportStatus("READ", Status.OK);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JSONLinesMeasurementsExporter export = new JSONLinesMeasurementsExporter(out);
+        export.writeRun(Collections.singletonMap("binding", "basic"), Collections.singletonMap("threadcount", "4"));
+        export.write("OVERALL", "RunTime(ms)", 10);
+        mm.exportMeasurements(export);
+        export.close();
+
+        String[] lines = out.toString("UTF-8").split("\n");
+        assertEquals(4, lines.length);
+        ObjectMapper mapper = new ObjectMapper();
+        JsonNode run = mapper.readTree(lines[0]);
+        assertEquals("run", run.get("record").asText());
+        assertEquals("basic", run.get("metadata").get("binding").asText());
+        assertEquals("4", run.get("properties").get("threadcount").asText());
+        assertEquals("value", mapper.readTree(lines[1]).get("record").asText());
+
+        JsonNode histogram = mapper.readTree(lines[2]);
+        assertEquals("histogram", histogram.get("record").asText());
+        assertEquals("READ", histogram.get("metric").asText());
+        assertEquals("us", histogram.get("unit").asText());
+        assertEquals(1000, histogram.get("count").asLong());
+        assertEquals(1000, histogram.get("max").asLong());
+        assertEquals(500, histogram.get("percentiles").get("50.0").asLong());
+        Histogram decoded = Histogram.decodeFromCompressedByteBuffer(
+            ByteBuffer.wrap(histogram.get("hdr").getBinaryValue()), 0);
+        assertEquals(1000, decoded.getTotalCount());
+
+        JsonNode returncode = mapper.readTree(lines[3]);
+        assertEquals("returncode", returncode.get("record").asText());
+        assertEquals("OK", returncode.get("status").asText());
+        assertEquals(1, returncode.get("count").asLong());
+    }
+
+    @Test
+    public void testCSVMeasurementsExporter() throws IOException {
+        Properties props = new Properties();
+        props.put(Measurements.MEASUREMENT_TYPE_PROPERTY, "hdrhistogram+series");
+        Measurements mm = new Measurements(props);
+        for (int i = 1; i <= 1000; i++) {
+            mm.measure("READ", i);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CSVMeasurementsExporter export = new CSVMeasurementsExporter(out);
+        export.writeRun(Collections.singletonMap("label", "a, \"quoted\" label"),
+            Collections.<String, String>emptyMap());
+        mm.exportMeasurements(export);
+        export.close();
+
+        String[] lines = out.toString("UTF-8").split("\n");
+        assertEquals(4, lines.length);
+        assertTrue(lines[0], lines[0].startsWith("record,metric,name,text,time,duration,unit,count,value,mean,"));
+        assertEquals("metadata,,label,\"a, \"\"quoted\"\" label\",,,,,,,,,,,,,,,", lines[1]);
+        String[] histogram = lines[2].split(",", -1);
+        assertEquals(19, histogram.length);
+        assertEquals("histogram", histogram[0]);
+        assertEquals("HdrREAD", histogram[1]);
+        assertEquals("1000", histogram[7]);
+        assertEquals("500", histogram[12]);
+        assertTrue(lines[2], !histogram[18].isEmpty());
+        String[] series = lines[3].split(",", -1);
+        assertEquals(19, series.length);
+        assertEquals("series", series[0]);
+        assertEquals("SeriesREAD", series[1]);
+        assertEquals("0", series[4]);
+        // the run ended within the first unit, which lasted as long as the run
+        long duration = Long.parseLong(series[5]);
+        assertTrue(series[5], duration > 0 && duration <= 1000);
+        assertEquals("1000", series[7]);
+        assertEquals("", series[18]);
+    }
+
+    private static String exportCurrent(Measurements mm) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PrometheusMeasurementsExporter export = new PrometheusMeasurementsExporter(out);
+        mm.exportCurrentMeasurements(export);
+        export.close();
+        return out.toString("UTF-8");
+    }
 }
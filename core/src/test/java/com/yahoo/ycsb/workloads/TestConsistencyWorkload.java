@@ -0,0 +1,115 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb.workloads;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Map;
+import java.util.Properties;
+
+import org.testng.annotations.Test;
+
+import com.yahoo.ycsb.ByteIterator;
+import com.yahoo.ycsb.Client;
+import com.yahoo.ycsb.Status;
+import com.yahoo.ycsb.Stubs.MapDB;
+import com.yahoo.ycsb.measurements.Measurements;
+
+public class TestConsistencyWorkload {
+
+  @Test
+  public void classify() {
+    assertEquals(ConsistencyWorkload.classify(3, 3, 2), ConsistencyWorkload.FRESH);
+    assertEquals(ConsistencyWorkload.classify(4, 3, 2), ConsistencyWorkload.FRESH);
+    assertEquals(ConsistencyWorkload.classify(2, 3, 2), ConsistencyWorkload.STALE);
+    assertEquals(ConsistencyWorkload.classify(1, 3, 2), ConsistencyWorkload.NON_MONOTONIC);
+    assertEquals(ConsistencyWorkload.classify(-1, 3, 2), ConsistencyWorkload.LOST);
+  }
+
+  @Test
+  public void parseVersion() {
+    assertEquals(ConsistencyWorkload.parseVersion("42:1514764800000:abc"), 42);
+    assertEquals(ConsistencyWorkload.parseVersion("no version here"), -1);
+    assertEquals(ConsistencyWorkload.parseVersion(":abc"), -1);
+  }
+
+  @Test
+  public void versionsAdvanceOnUpdate() throws Exception {
+    final Properties p = new Properties();
+    p.setProperty(Client.RECORD_COUNT_PROPERTY, "1");
+    p.setProperty(Client.OPERATION_COUNT_PROPERTY, "10");
+    p.setProperty(CoreWorkload.FIELD_COUNT_PROPERTY, "2");
+    p.setProperty(CoreWorkload.FIELD_LENGTH_PROPERTY, "32");
+    Measurements.setProperties(p);
+
+    final ConsistencyWorkload workload = new ConsistencyWorkload();
+    workload.init(p);
+    final MapDB db = new MapDB();
+
+    assertTrue(workload.doInsert(db, null));
+    assertEquals(versionOf(db.record), 0);
+
+    workload.doTransactionUpdate(db);
+    workload.doTransactionUpdate(db);
+    assertEquals(versionOf(db.record), 2);
+    for (String value : db.record.values()) {
+      assertEquals(value.length(), 32);
+    }
+  }
+
+  @Test
+  public void staleReadsAreCounted() throws Exception {
+    final Properties p = new Properties();
+    p.setProperty(Client.RECORD_COUNT_PROPERTY, "1");
+    p.setProperty(Client.OPERATION_COUNT_PROPERTY, "10");
+    Measurements.setProperties(p);
+    Measurements measurements = Measurements.getMeasurements();
+    long stale = measurements.getCount("CONSISTENCY", "STALE");
+    long fresh = measurements.getCount("CONSISTENCY", "FRESH");
+
+    final ConsistencyWorkload workload = new ConsistencyWorkload();
+    workload.init(p);
+    // acknowledges updates without applying them
+    final MapDB db = new MapDB() {
+      @Override
+      public Status update(String table, String key, Map<String, ByteIterator> values) {
+        return Status.OK;
+      }
+
+      @Override
+      public Status insert(String table, String key, Map<String, ByteIterator> values) {
+        return super.update(table, key, values);
+      }
+    };
+
+    assertTrue(workload.doInsert(db, null));
+    workload.doTransactionRead(db);
+    workload.doTransactionUpdate(db);
+    workload.doTransactionRead(db);
+    assertEquals(measurements.getCount("CONSISTENCY", "FRESH"), fresh + 1);
+    assertEquals(measurements.getCount("CONSISTENCY", "STALE"), stale + 1);
+  }
+
+  private static long versionOf(Map<String, String> record) {
+    long version = -1;
+    for (String value : record.values()) {
+      version = Math.max(version, ConsistencyWorkload.parseVersion(value));
+    }
+    return version;
+  }
+}
@@ -16,13 +16,18 @@
  */
 package com.yahoo.ycsb.workloads;
 
+import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertTrue;
 
+import java.util.Arrays;
 import java.util.Properties;
 
 import org.testng.annotations.Test;
 
+import com.yahoo.ycsb.Client;
+import com.yahoo.ycsb.Stubs.RecordingDB;
 import com.yahoo.ycsb.generator.DiscreteGenerator;
+import com.yahoo.ycsb.measurements.Measurements;
 
 public class TestCoreWorkload {
 
@@ -67,4 +72,28 @@ public class TestCoreWorkload {
   public void createOperationChooserNullProperties() {
     CoreWorkload.createOperationGenerator(null);
   }
-}
\ No newline at end of file
+
+  @Test
+  public void batchedOperations() throws Exception {
+    final Properties p = new Properties();
+    p.setProperty(Client.RECORD_COUNT_PROPERTY, "100");
+    p.setProperty(Client.OPERATION_COUNT_PROPERTY, "10");
+    p.setProperty(CoreWorkload.READ_PROPORTION_PROPERTY, "1");
+    p.setProperty(CoreWorkload.UPDATE_PROPORTION_PROPERTY, "0");
+    p.setProperty(CoreWorkload.OPERATION_BATCH_SIZE_PROPERTY, "4");
+    Measurements.setProperties(p);
+    final CoreWorkload workload = new CoreWorkload();
+    workload.init(p);
+    final Object threadstate = workload.initThread(p, 0, 1);
+    final RecordingDB db = new RecordingDB();
+
+    for (int i = 0; i < 10; i++) {
+      assertTrue(workload.doTransaction(db, threadstate));
+      assertTrue(workload.doInsert(db, threadstate));
+    }
+    assertEquals(db.batches, Arrays.asList("READ 4", "INSERT 4", "READ 4", "INSERT 4"));
+
+    workload.cleanupThread(db, threadstate);
+    assertEquals(db.batches, Arrays.asList("READ 4", "INSERT 4", "READ 4", "INSERT 4", "READ 2", "INSERT 2"));
+  }
+}
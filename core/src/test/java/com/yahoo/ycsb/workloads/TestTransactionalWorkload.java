@@ -0,0 +1,92 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb.workloads;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+import org.testng.annotations.Test;
+
+import com.yahoo.ycsb.Client;
+import com.yahoo.ycsb.Stubs.RecordingDB;
+import com.yahoo.ycsb.WorkloadException;
+import com.yahoo.ycsb.measurements.Measurements;
+
+public class TestTransactionalWorkload {
+
+  @Test
+  public void transactionTouchesDistinctSortedKeys() throws Exception {
+    final Properties p = getProperties("100", "4");
+    Measurements.setProperties(p);
+    final TransactionalWorkload workload = new TransactionalWorkload();
+    workload.init(p);
+    final RecordingDB db = new RecordingDB();
+
+    for (int i = 0; i < 50; i++) {
+      assertTrue(workload.doTransaction(db, null));
+    }
+
+    assertEquals(db.reads.size(), 50 * 4);
+    assertEquals(db.updates.size(), 50 * 4);
+    for (int i = 0; i < db.reads.size(); i += 4) {
+      final List<String> keys = db.reads.subList(i, i + 4);
+      assertEquals(new HashSet<String>(keys).size(), 4);
+      for (int j = 1; j < keys.size(); j++) {
+        assertTrue(keys.get(j - 1).compareTo(keys.get(j)) < 0);
+      }
+      // the default transaction reads every key before writing any of them
+      assertEquals(db.updates.subList(i, i + 4), keys);
+    }
+  }
+
+  @Test
+  public void hotSetOnly() throws Exception {
+    final Properties p = getProperties("100", "2");
+    p.setProperty(TransactionalWorkload.TRANSACTION_HOT_KEY_COUNT_PROPERTY, "2");
+    p.setProperty(TransactionalWorkload.TRANSACTION_HOT_PROPORTION_PROPERTY, "1");
+    Measurements.setProperties(p);
+    final TransactionalWorkload workload = new TransactionalWorkload();
+    workload.init(p);
+
+    for (int i = 0; i < 10; i++) {
+      final Set<Long> keynums = workload.nextKeynums();
+      assertEquals(keynums, new HashSet<Long>(Arrays.asList(0L, 1L)));
+    }
+  }
+
+  @Test (expectedExceptions = WorkloadException.class)
+  public void moreKeysThanRecords() throws Exception {
+    final Properties p = getProperties("2", "3");
+    Measurements.setProperties(p);
+    new TransactionalWorkload().init(p);
+  }
+
+  private static Properties getProperties(String recordcount, String keycount) {
+    final Properties p = new Properties();
+    p.setProperty(Client.RECORD_COUNT_PROPERTY, recordcount);
+    p.setProperty(CoreWorkload.READ_PROPORTION_PROPERTY, "0");
+    p.setProperty(CoreWorkload.UPDATE_PROPORTION_PROPERTY, "0");
+    p.setProperty(TransactionalWorkload.TRANSACTION_KEY_COUNT_PROPERTY, keycount);
+    return p;
+  }
+}
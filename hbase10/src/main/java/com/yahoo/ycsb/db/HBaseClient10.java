@@ -37,8 +37,11 @@ import org.apache.hadoop.hbase.client.ConnectionFactory;
 import org.apache.hadoop.hbase.client.Delete;
 import org.apache.hadoop.hbase.client.Durability;
 import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Mutation;
 import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.RegionLocator;
 import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.Row;
 import org.apache.hadoop.hbase.client.ResultScanner;
 import org.apache.hadoop.hbase.client.Scan;
 import org.apache.hadoop.hbase.client.Table;
@@ -46,8 +49,10 @@ import org.apache.hadoop.hbase.filter.PageFilter;
 import org.apache.hadoop.hbase.util.Bytes;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.ConcurrentModificationException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Vector;
@@ -64,6 +69,11 @@ import static com.yahoo.ycsb.workloads.CoreWorkload.TABLENAME_PROPERTY_DEFAULT;
  *
  * This client also adds toggleable client-side buffering and configurable write
  * durability.
+ *
+ * Batches of reads are sent as a single multi-get, and batches of writes as a
+ * single multi-put. With client-side buffering, the client flushes the
+ * BufferedMutator itself and measures each flush as FLUSH, so that the time
+ * spent writing is not hidden in buffered writes reported as ~0 us.
  */
 public class HBaseClient10 extends com.yahoo.ycsb.DB {
   private static final AtomicInteger THREAD_COUNT = new AtomicInteger(0);
@@ -107,6 +117,31 @@ public class HBaseClient10 extends com.yahoo.ycsb.DB {
   private boolean clientSideBuffering = false;
   private long writeBufferSize = 1024 * 1024 * 12;
 
+  /** The estimated size of the mutations buffered since the last flush. */
+  private long bufferedSize = 0;
+
+  /**
+   * The rows fetched per scanner RPC, or 0 to fetch the records of a scan in
+   * one call.
+   */
+  private int scanCaching = 0;
+
+  /** The most cells of a row returned per Result, or -1 for all of them. */
+  private int scanBatch = -1;
+
+  /** Whether scanned blocks are kept in the region servers' block cache. */
+  private boolean scanCacheBlocks = true;
+
+  /**
+   * Whether each operation is also measured per region, as op-REGION-name, to
+   * show how requests are spread across regions. The records of a batch are
+   * counted per region instead, as the Items of op-REGION-name.
+   */
+  private boolean regionMetrics = false;
+  private RegionLocator regionLocator = null;
+
+  private Measurements measurements = null;
+
   /**
    * Initialize any state for this DB. Called once per DB instance; there is one
    * DB instance per client thread.
@@ -172,6 +207,18 @@ public class HBaseClient10 extends com.yahoo.ycsb.DB {
       usePageFilter = false;
     }
 
+    scanCaching = Integer.parseInt(
+        getProperties().getProperty("hbase.scan.caching", "0"));
+    scanBatch = Integer.parseInt(
+        getProperties().getProperty("hbase.scan.batch", "-1"));
+    scanCacheBlocks = Boolean.parseBoolean(
+        getProperties().getProperty("hbase.scan.cacheblocks", "true"));
+    regionMetrics = Boolean.parseBoolean(
+        getProperties().getProperty("hbase.regionmetrics", "false"));
+    if (clientSideBuffering || regionMetrics) {
+      measurements = Measurements.getMeasurements();
+    }
+
     columnFamily = getProperties().getProperty("columnfamily");
     if (columnFamily == null) {
       System.err.println("Error, must specify a columnfamily for HBase table");
@@ -187,9 +234,9 @@ public class HBaseClient10 extends com.yahoo.ycsb.DB {
   @Override
   public void cleanup() throws DBException {
     // Get the measurements instance as this is the only client that should
-    // count clean up time like an update if client-side buffering is
+    // count clean up time as the final flush if client-side buffering is
     // enabled.
-    Measurements measurements = Measurements.getMeasurements();
+    measurements = Measurements.getMeasurements();
     try {
       long st = System.nanoTime();
       if (bufferedMutator != null) {
@@ -198,9 +245,12 @@ public class HBaseClient10 extends com.yahoo.ycsb.DB {
       if (currentTable != null) {
         currentTable.close();
       }
+      if (regionLocator != null) {
+        regionLocator.close();
+      }
       long en = System.nanoTime();
-      final String type = clientSideBuffering ? "UPDATE" : "CLEANUP";
-      measurements.measure(type, (int) ((en - st) / 1000));
+      final String type = clientSideBuffering ? "FLUSH" : "CLEANUP";
+      measurements.measureNanos(type, en - st);
       int threadCount = THREAD_COUNT.decrementAndGet();
       if (threadCount <= 0) {
         // Means we are done so ok to shut down the Connection.
@@ -223,7 +273,31 @@ public class HBaseClient10 extends com.yahoo.ycsb.DB {
       final BufferedMutatorParams p = new BufferedMutatorParams(tName);
       p.writeBufferSize(writeBufferSize);
       this.bufferedMutator = connection.getBufferedMutator(p);
+      this.bufferedSize = 0;
+    }
+    if (regionMetrics) {
+      this.regionLocator = connection.getRegionLocator(tName);
+    }
+  }
+
+  /**
+   * Switches to the table if it is not the current one.
+   *
+   * @return false if the table could not be accessed.
+   */
+  private boolean useTable(String table) {
+    // if this is a "new" table, init HTable object. Else, use existing one
+    if (!tableName.equals(table)) {
+      currentTable = null;
+      try {
+        getHTable(table);
+        tableName = table;
+      } catch (IOException e) {
+        System.err.println("Error accessing HBase table: " + e);
+        return false;
+      }
     }
+    return true;
   }
 
   /**
@@ -242,34 +316,21 @@ public class HBaseClient10 extends com.yahoo.ycsb.DB {
    */
   public Status read(String table, String key, Set<String> fields,
       Map<String, ByteIterator> result) {
-    // if this is a "new" table, init HTable object. Else, use existing one
-    if (!tableName.equals(table)) {
-      currentTable = null;
-      try {
-        getHTable(table);
-        tableName = table;
-      } catch (IOException e) {
-        System.err.println("Error accessing HBase table: " + e);
-        return Status.ERROR;
-      }
+    if (!useTable(table)) {
+      return Status.ERROR;
     }
 
     Result r = null;
+    long st = System.nanoTime();
     try {
       if (debug) {
         System.out
             .println("Doing read from HBase columnfamily " + columnFamily);
         System.out.println("Doing read for key: " + key);
       }
-      Get g = new Get(Bytes.toBytes(key));
-      if (fields == null) {
-        g.addFamily(columnFamilyBytes);
-      } else {
-        for (String field : fields) {
-          g.addColumn(columnFamilyBytes, Bytes.toBytes(field));
-        }
-      }
+      Get g = newGet(key, fields);
       r = currentTable.get(g);
+      measureRegion("READ", g.getRow(), st);
     } catch (IOException e) {
       if (debug) {
         System.err.println("Error doing get: " + e);
@@ -284,6 +345,74 @@ public class HBaseClient10 extends com.yahoo.ycsb.DB {
       return Status.NOT_FOUND;
     }
 
+    fillMap(result, r);
+    return Status.OK;
+  }
+
+  /**
+   * Read a batch of records from the database with a single multi-get.
+   *
+   * @param table
+   *          The name of the table
+   * @param keys
+   *          The record keys of the records to read.
+   * @param fields
+   *          The list of fields to read, or null for all of them
+   * @param results
+   *          A List to which a HashMap of field/value pairs is appended for
+   *          each key
+   * @return Zero on success, NOT_FOUND if any record is missing, a non-zero
+   *         error code on error
+   */
+  @Override
+  public Status batchRead(String table, List<String> keys, Set<String> fields,
+      List<Map<String, ByteIterator>> results) {
+    if (!useTable(table)) {
+      return Status.ERROR;
+    }
+
+    List<Get> gets = new ArrayList<Get>(keys.size());
+    for (String key : keys) {
+      gets.add(newGet(key, fields));
+    }
+
+    Result[] rs;
+    try {
+      rs = currentTable.get(gets);
+      countRegions("BATCH-READ", gets);
+    } catch (IOException e) {
+      if (debug) {
+        System.err.println("Error doing multi-get: " + e);
+      }
+      return Status.ERROR;
+    }
+
+    Status status = Status.OK;
+    for (Result r : rs) {
+      Map<String, ByteIterator> result = new HashMap<String, ByteIterator>();
+      if (r == null || r.isEmpty()) {
+        status = Status.NOT_FOUND;
+      } else {
+        fillMap(result, r);
+      }
+      results.add(result);
+    }
+    return status;
+  }
+
+  private Get newGet(String key, Set<String> fields) {
+    Get g = new Get(Bytes.toBytes(key));
+    if (fields == null) {
+      g.addFamily(columnFamilyBytes);
+    } else {
+      for (String field : fields) {
+        g.addColumn(columnFamilyBytes, Bytes.toBytes(field));
+      }
+    }
+    return g;
+  }
+
+  private void fillMap(Map<String, ByteIterator> result, Result r) {
     while (r.advance()) {
       final Cell c = r.current();
       result.put(Bytes.toString(CellUtil.cloneQualifier(c)),
@@ -294,7 +423,6 @@ public class HBaseClient10 extends com.yahoo.ycsb.DB {
                 + " is: " + Bytes.toString(CellUtil.cloneValue(c)));
       }
     }
-    return Status.OK;
   }
 
   /**
@@ -317,23 +445,17 @@ public class HBaseClient10 extends com.yahoo.ycsb.DB {
   @Override
   public Status scan(String table, String startkey, int recordcount,
       Set<String> fields, Vector<HashMap<String, ByteIterator>> result) {
-    // if this is a "new" table, init HTable object. Else, use existing one
-    if (!tableName.equals(table)) {
-      currentTable = null;
-      try {
-        getHTable(table);
-        tableName = table;
-      } catch (IOException e) {
-        System.err.println("Error accessing HBase table: " + e);
-        return Status.ERROR;
-      }
+    if (!useTable(table)) {
+      return Status.ERROR;
     }
 
     Scan s = new Scan(Bytes.toBytes(startkey));
-    // HBase has no record limit. Here, assume recordcount is small enough to
-    // bring back in one call.
+    // HBase has no record limit. Unless hbase.scan.caching is set, assume
+    // recordcount is small enough to bring back in one call.
     // We get back recordcount records
-    s.setCaching(recordcount);
+    s.setCaching(scanCaching > 0 ? Math.min(scanCaching, recordcount) : recordcount);
+    s.setBatch(scanBatch);
+    s.setCacheBlocks(scanCacheBlocks);
     if (this.usePageFilter) {
       s.setFilter(new PageFilter(recordcount));
     }
@@ -349,37 +471,46 @@ public class HBaseClient10 extends com.yahoo.ycsb.DB {
 
     // get results
     ResultScanner scanner = null;
+    long st = System.nanoTime();
     try {
       scanner = currentTable.getScanner(s);
       int numResults = 0;
+      byte[] row = null;
+      HashMap<String, ByteIterator> rowResult = null;
       for (Result rr = scanner.next(); rr != null; rr = scanner.next()) {
-        // get row key
-        String key = Bytes.toString(rr.getRow());
-
-        if (debug) {
-          System.out.println("Got scan result for key: " + key);
+        // With hbase.scan.batch set, a row with more cells than the batch
+        // comes back as several results, which make up one record.
+        if (row == null || !Bytes.equals(row, rr.getRow())) {
+          if (numResults >= recordcount) {
+            break;
+          }
+          row = rr.getRow();
+
+          if (debug) {
+            System.out.println("Got scan result for key: "
+                + Bytes.toString(row));
+          }
+
+          // add rowResult to result vector
+          rowResult = new HashMap<String, ByteIterator>();
+          result.add(rowResult);
+          numResults++;
         }
 
-        HashMap<String, ByteIterator> rowResult =
-            new HashMap<String, ByteIterator>();
-
         while (rr.advance()) {
           final Cell cell = rr.current();
           rowResult.put(Bytes.toString(CellUtil.cloneQualifier(cell)),
               new ByteArrayByteIterator(CellUtil.cloneValue(cell)));
         }
 
-        // add rowResult to result vector
-        result.add(rowResult);
-        numResults++;
-
         // PageFilter does not guarantee that the number of results is <=
-        // pageSize, so this
-        // break is required.
-        if (numResults >= recordcount) {// if hit recordcount, bail out
+        // pageSize, so this break is required. Without a batch a row is a
+        // single result, so the next need not be fetched to end the record.
+        if (scanBatch <= 0 && numResults >= recordcount) {
           break;
         }
       } // done with row
+      measureRegion("SCAN", s.getStartRow(), st);
     } catch (IOException e) {
       if (debug) {
         System.out.println("Error in getting/parsing scan result: " + e);
@@ -410,39 +541,23 @@ public class HBaseClient10 extends com.yahoo.ycsb.DB {
   @Override
   public Status update(String table, String key,
       Map<String, ByteIterator> values) {
-    // if this is a "new" table, init HTable object. Else, use existing one
-    if (!tableName.equals(table)) {
-      currentTable = null;
-      try {
-        getHTable(table);
-        tableName = table;
-      } catch (IOException e) {
-        System.err.println("Error accessing HBase table: " + e);
-        return Status.ERROR;
-      }
+    if (!useTable(table)) {
+      return Status.ERROR;
     }
 
     if (debug) {
       System.out.println("Setting up put for key: " + key);
     }
-    Put p = new Put(Bytes.toBytes(key));
-    p.setDurability(durability);
-    for (Map.Entry<String, ByteIterator> entry : values.entrySet()) {
-      byte[] value = entry.getValue().toArray();
-      if (debug) {
-        System.out.println("Adding field/value " + entry.getKey() + "/"
-            + Bytes.toStringBinary(value) + " to put request");
-      }
-      p.addColumn(columnFamilyBytes, Bytes.toBytes(entry.getKey()), value);
-    }
+    Put p = newPut(key, values);
 
+    long st = System.nanoTime();
     try {
       if (clientSideBuffering) {
-        Preconditions.checkNotNull(bufferedMutator);
-        bufferedMutator.mutate(p);
+        buffer(p);
       } else {
         currentTable.put(p);
       }
+      measureRegion("UPDATE", p.getRow(), st);
     } catch (IOException e) {
       if (debug) {
         System.err.println("Error doing put: " + e);
@@ -475,6 +590,141 @@ public class HBaseClient10 extends com.yahoo.ycsb.DB {
     return update(table, key, values);
   }
 
+  /**
+   * Update a batch of records in the database with a single multi-put, or
+   * buffer them with client-side buffering.
+   *
+   * @param table
+   *          The name of the table
+   * @param keys
+   *          The record keys of the records to write.
+   * @param values
+   *          A List of field/value pairs to update, one HashMap per key
+   * @return Zero on success, a non-zero error code on error
+   */
+  @Override
+  public Status batchUpdate(String table, List<String> keys,
+      List<Map<String, ByteIterator>> values) {
+    if (!useTable(table)) {
+      return Status.ERROR;
+    }
+
+    List<Put> puts = new ArrayList<Put>(keys.size());
+    for (int i = 0; i < keys.size(); i++) {
+      puts.add(newPut(keys.get(i), values.get(i)));
+    }
+
+    try {
+      if (clientSideBuffering) {
+        for (Put p : puts) {
+          buffer(p);
+        }
+      } else {
+        currentTable.put(puts);
+      }
+      countRegions("BATCH-UPDATE", puts);
+    } catch (IOException e) {
+      if (debug) {
+        System.err.println("Error doing multi-put: " + e);
+      }
+      return Status.ERROR;
+    }
+    return Status.OK;
+  }
+
+  /**
+   * Insert a batch of records in the database, as {@link #batchUpdate}.
+   *
+   * @param table
+   *          The name of the table
+   * @param keys
+   *          The record keys of the records to insert.
+   * @param values
+   *          A List of field/value pairs to insert, one HashMap per key
+   * @return Zero on success, a non-zero error code on error
+   */
+  @Override
+  public Status batchInsert(String table, List<String> keys,
+      List<Map<String, ByteIterator>> values) {
+    return batchUpdate(table, keys, values);
+  }
+
+  private Put newPut(String key, Map<String, ByteIterator> values) {
+    Put p = new Put(Bytes.toBytes(key));
+    p.setDurability(durability);
+    for (Map.Entry<String, ByteIterator> entry : values.entrySet()) {
+      byte[] value = entry.getValue().toArray();
+      if (debug) {
+        System.out.println("Adding field/value " + entry.getKey() + "/"
+            + Bytes.toStringBinary(value) + " to put request");
+      }
+      p.addColumn(columnFamilyBytes, Bytes.toBytes(entry.getKey()), value);
+    }
+    return p;
+  }
+
+  /**
+   * Adds a mutation to the BufferedMutator. When the mutation would take the
+   * buffer over writebuffersize, the buffer is flushed first, which the
+   * BufferedMutator would otherwise do inside the mutate call, and the flush
+   * is measured as FLUSH.
+   */
+  private void buffer(Mutation m) throws IOException {
+    Preconditions.checkNotNull(bufferedMutator);
+    long size = m.heapSize();
+    if (bufferedSize > 0 && bufferedSize + size > writeBufferSize) {
+      long st = System.nanoTime();
+      Status status = Status.OK;
+      try {
+        bufferedMutator.flush();
+      } catch (IOException e) {
+        status = Status.ERROR;
+        throw e;
+      } finally {
+        bufferedSize = 0;
+        measurements.measureNanos("FLUSH", System.nanoTime() - st);
+        measurements.reportStatus("FLUSH", status);
+      }
+    }
+    bufferedMutator.mutate(m);
+    bufferedSize += size;
+  }
+
+  /**
+   * Measures an operation on a row as op-REGION-name, after the region
+   * holding the row, if hbase.regionmetrics is set.
+   */
+  private void measureRegion(String op, byte[] row, long st) throws IOException {
+    if (regionLocator != null) {
+      String region = regionLocator.getRegionLocation(row).getRegionInfo()
+          .getEncodedName();
+      measurements.measureNanos(op + "-REGION-" + region,
+          System.nanoTime() - st);
+    }
+  }
+
+  /**
+   * Counts the rows of a batch per region as the Items of op-REGION-name, if
+   * hbase.regionmetrics is set. The batch is a single call, so its latency is
+   * not attributed to any one region.
+   */
+  private void countRegions(String op, List<? extends Row> rows)
+      throws IOException {
+    if (regionLocator != null) {
+      Map<String, Integer> counts = new HashMap<String, Integer>();
+      for (Row row : rows) {
+        String region = regionLocator.getRegionLocation(row.getRow())
+            .getRegionInfo().getEncodedName();
+        Integer count = counts.get(region);
+        counts.put(region, count == null ? 1 : count + 1);
+      }
+      for (Map.Entry<String, Integer> count : counts.entrySet()) {
+        measurements.count(op + "-REGION-" + count.getKey(), "Items",
+            count.getValue());
+      }
+    }
+  }
+
   /**
    * Delete a record from the database.
    *
@@ -486,16 +736,8 @@ public class HBaseClient10 extends com.yahoo.ycsb.DB {
    */
   @Override
   public Status delete(String table, String key) {
-    // if this is a "new" table, init HTable object. Else, use existing one
-    if (!tableName.equals(table)) {
-      currentTable = null;
-      try {
-        getHTable(table);
-        tableName = table;
-      } catch (IOException e) {
-        System.err.println("Error accessing HBase table: " + e);
-        return Status.ERROR;
-      }
+    if (!useTable(table)) {
+      return Status.ERROR;
     }
 
     if (debug) {
@@ -504,13 +746,14 @@ public class HBaseClient10 extends com.yahoo.ycsb.DB {
 
     final Delete d = new Delete(Bytes.toBytes(key));
     d.setDurability(durability);
+    long st = System.nanoTime();
     try {
       if (clientSideBuffering) {
-        Preconditions.checkNotNull(bufferedMutator);
-        bufferedMutator.mutate(d);
+        buffer(d);
       } else {
         currentTable.delete(d);
       }
+      measureRegion("DELETE", d.getRow(), st);
     } catch (IOException e) {
       if (debug) {
         System.err.println("Error doing delete: " + e);
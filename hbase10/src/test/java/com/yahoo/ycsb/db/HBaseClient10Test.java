@@ -34,6 +34,7 @@ import org.apache.hadoop.hbase.HBaseTestingUtility;
 import org.apache.hadoop.hbase.TableName;
 import org.apache.hadoop.hbase.client.Get;
 import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.RegionLocator;
 import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.client.Table;
 import org.apache.hadoop.hbase.util.Bytes;
@@ -46,6 +47,8 @@ import org.junit.Test;
 
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.List;
@@ -123,6 +126,23 @@ public class HBaseClient10Test {
     testingUtil.deleteTable(tableName);
   }
 
+  /**
+   * Creates a client with the given properties in addition to the column
+   * family, for the caller to clean up.
+   */
+  private HBaseClient10 newClient(String... properties) throws Exception {
+    HBaseClient10 other = new HBaseClient10();
+    other.setConfiguration(new Configuration(testingUtil.getConfiguration()));
+    Properties p = new Properties();
+    p.setProperty("columnfamily", COLUMN_FAMILY);
+    for (int i = 0; i + 1 < properties.length; i += 2) {
+      p.setProperty(properties[i], properties[i + 1]);
+    }
+    other.setProperties(p);
+    other.init();
+    return other;
+  }
+
   @Test
   public void testRead() throws Exception {
     final String rowKey = "row1";
@@ -184,6 +204,76 @@ public class HBaseClient10Test {
     }
   }
 
+  @Test
+  public void testScanMergesBatchedRows() throws Exception {
+    // Rows of 5 cells, returned 2 cells at a time
+    final List<Put> puts = new ArrayList<Put>();
+    for (int i = 0; i < 4; i++) {
+      final Put p = new Put(Bytes.toBytes("row" + i));
+      for (int j = 0; j < 5; j++) {
+        p.addColumn(Bytes.toBytes(COLUMN_FAMILY), Bytes.toBytes("column" + j),
+            Bytes.toBytes("value" + i + j));
+      }
+      puts.add(p);
+    }
+    table.put(puts);
+
+    final HBaseClient10 batching = newClient("hbase.scan.batch", "2");
+    try {
+      final Vector<HashMap<String, ByteIterator>> result =
+          new Vector<HashMap<String, ByteIterator>>();
+      assertEquals(Status.OK, batching.scan(tableName, "row1", 2, null, result));
+      assertEquals(2, result.size());
+      for (int i = 0; i < 2; i++) {
+        assertEquals(5, result.get(i).size());
+        for (int j = 0; j < 5; j++) {
+          assertEquals("value" + (i + 1) + j,
+              result.get(i).get("column" + j).toString());
+        }
+      }
+    } finally {
+      batching.cleanup();
+    }
+  }
+
+  @Test
+  public void testBatchesAreCountedPerRegion() throws Exception {
+    // Two regions, split at key5
+    table.close();
+    testingUtil.deleteTable(tableName);
+    table = testingUtil.createTable(TableName.valueOf(tableName),
+        Bytes.toBytes(COLUMN_FAMILY), new byte[][] {Bytes.toBytes("key5")});
+    final RegionLocator locator = testingUtil.getConnection()
+        .getRegionLocator(TableName.valueOf(tableName));
+    final String first = locator.getRegionLocation(Bytes.toBytes("key0"))
+        .getRegionInfo().getEncodedName();
+    final String second = locator.getRegionLocation(Bytes.toBytes("key7"))
+        .getRegionInfo().getEncodedName();
+    locator.close();
+
+    final HBaseClient10 counting = newClient("hbase.regionmetrics", "true");
+    try {
+      final List<String> keys = Arrays.asList("key0", "key1", "key7");
+      final List<Map<String, ByteIterator>> values =
+          new ArrayList<Map<String, ByteIterator>>();
+      for (int i = 0; i < keys.size(); i++) {
+        values.add(StringByteIterator.getByteIteratorMap(
+            Collections.singletonMap("column1", "value" + i)));
+      }
+      assertEquals(Status.OK, counting.batchUpdate(tableName, keys, values));
+      assertEquals(Status.OK, counting.batchRead(tableName, keys, null,
+          new ArrayList<Map<String, ByteIterator>>()));
+
+      final Measurements measurements = Measurements.getMeasurements();
+      assertEquals(2, measurements.getCount("BATCH-UPDATE-REGION-" + first, "Items"));
+      assertEquals(1, measurements.getCount("BATCH-UPDATE-REGION-" + second, "Items"));
+      assertEquals(2, measurements.getCount("BATCH-READ-REGION-" + first, "Items"));
+      assertEquals(1, measurements.getCount("BATCH-READ-REGION-" + second, "Items"));
+    } finally {
+      counting.cleanup();
+    }
+  }
+
   @Test
   public void testUpdate() throws Exception{
     final String key = "key";
@@ -205,6 +295,46 @@ public class HBaseClient10Test {
     }
   }
 
+  @Test
+  public void testBatchRead() throws Exception {
+    final List<Put> puts = new ArrayList<Put>();
+    for (int i = 0; i < 3; i++) {
+      final Put p = new Put(Bytes.toBytes("row" + i));
+      p.addColumn(Bytes.toBytes(COLUMN_FAMILY),
+          Bytes.toBytes("column1"), Bytes.toBytes("value" + i));
+      puts.add(p);
+    }
+    table.put(puts);
+
+    final List<Map<String, ByteIterator>> results = new ArrayList<Map<String, ByteIterator>>();
+    final Status status = client.batchRead(tableName,
+        Arrays.asList("row2", "Missing row", "row0"), null, results);
+    assertEquals(Status.NOT_FOUND, status);
+    assertEquals(3, results.size());
+    assertEquals("value2", results.get(0).get("column1").toString());
+    assertEquals(0, results.get(1).size());
+    assertEquals("value0", results.get(2).get("column1").toString());
+  }
+
+  @Test
+  public void testBatchUpdate() throws Exception {
+    final List<Map<String, ByteIterator>> values = new ArrayList<Map<String, ByteIterator>>();
+    for (int i = 0; i < 2; i++) {
+      final Map<String, String> input = new HashMap<String, String>();
+      input.put("column1", "value" + i);
+      values.add(StringByteIterator.getByteIteratorMap(input));
+    }
+    final Status status = client.batchUpdate(tableName, Arrays.asList("key0", "key1"), values);
+    assertEquals(Status.OK, status);
+
+    // Verify result
+    for (int i = 0; i < 2; i++) {
+      final Result result = this.table.get(new Get(Bytes.toBytes("key" + i)));
+      assertEquals("value" + i, new String(result.getValue(Bytes.toBytes(COLUMN_FAMILY),
+          Bytes.toBytes("column1"))));
+    }
+  }
+
   @Test
   @Ignore("Not yet implemented")
   public void testDelete() {
@@ -46,8 +46,10 @@ import org.junit.Test;
 
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Vector;
 
@@ -204,6 +206,46 @@ public class HBaseClient12Test {
     }
   }
 
+  @Test
+  public void testBatchRead() throws Exception {
+    final List<Put> puts = new ArrayList<Put>();
+    for (int i = 0; i < 3; i++) {
+      final Put p = new Put(Bytes.toBytes("row" + i));
+      p.addColumn(Bytes.toBytes(COLUMN_FAMILY),
+          Bytes.toBytes("column1"), Bytes.toBytes("value" + i));
+      puts.add(p);
+    }
+    table.put(puts);
+
+    final List<Map<String, ByteIterator>> results = new ArrayList<Map<String, ByteIterator>>();
+    final Status status = client.batchRead(tableName,
+        Arrays.asList("row2", "Missing row", "row0"), null, results);
+    assertEquals(Status.NOT_FOUND, status);
+    assertEquals(3, results.size());
+    assertEquals("value2", results.get(0).get("column1").toString());
+    assertEquals(0, results.get(1).size());
+    assertEquals("value0", results.get(2).get("column1").toString());
+  }
+
+  @Test
+  public void testBatchUpdate() throws Exception {
+    final List<Map<String, ByteIterator>> values = new ArrayList<Map<String, ByteIterator>>();
+    for (int i = 0; i < 2; i++) {
+      final Map<String, String> input = new HashMap<String, String>();
+      input.put("column1", "value" + i);
+      values.add(StringByteIterator.getByteIteratorMap(input));
+    }
+    final Status status = client.batchUpdate(tableName, Arrays.asList("key0", "key1"), values);
+    assertEquals(Status.OK, status);
+
+    // Verify result
+    for (int i = 0; i < 2; i++) {
+      final Result result = this.table.get(new Get(Bytes.toBytes("key" + i)));
+      assertEquals("value" + i, new String(result.getValue(Bytes.toBytes(COLUMN_FAMILY),
+          Bytes.toBytes("column1"))));
+    }
+  }
+
   @Test
   @Ignore("Not yet implemented")
   public void testDelete() {
@@ -0,0 +1,96 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb.db;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A fixed number of connections to each shard, shared by all client threads,
+ * so that the number of connections the database serves does not grow with
+ * the number of threads. Each operation borrows a connection to the shard of
+ * its key and returns it when done, waiting if all are in use.
+ */
+final class ConnectionPool {
+  private final List<BlockingQueue<ShardConnection>> idle;
+  private final List<ShardConnection> all = new ArrayList<ShardConnection>();
+
+  ConnectionPool(String[] urls, String user, String passwd, int size, boolean autoCommit)
+      throws SQLException {
+    idle = new ArrayList<BlockingQueue<ShardConnection>>(urls.length);
+    try {
+      for (int shard = 0; shard < urls.length; shard++) {
+        System.out.println("Adding " + size + " pooled connections to shard node URL: " + urls[shard]);
+        BlockingQueue<ShardConnection> connections = new ArrayBlockingQueue<ShardConnection>(size);
+        for (int i = 0; i < size; i++) {
+          Connection conn = DriverManager.getConnection(urls[shard], user, passwd);
+          conn.setAutoCommit(autoCommit);
+          ShardConnection shardConnection = new ShardConnection(conn, shard);
+          all.add(shardConnection);
+          connections.add(shardConnection);
+        }
+        idle.add(connections);
+      }
+    } catch (SQLException e) {
+      close(false);
+      throw e;
+    }
+  }
+
+  /**
+   * Borrows a connection to a shard, waiting for one to be returned if all
+   * are in use.
+   */
+  ShardConnection acquire(int shardIndex) throws SQLException {
+    try {
+      return idle.get(shardIndex).take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SQLException("Interrupted while waiting for a connection to shard " + shardIndex, e);
+    }
+  }
+
+  void release(ShardConnection conn) {
+    idle.get(conn.getShardIndex()).add(conn);
+  }
+
+  /**
+   * Closes every connection, committing first if commit is set, as it must
+   * be for connections that do not auto commit.
+   */
+  void close(boolean commit) throws SQLException {
+    SQLException failure = null;
+    for (ShardConnection conn : all) {
+      try {
+        if (commit) {
+          conn.getConnection().commit();
+        }
+        conn.getConnection().close();
+      } catch (SQLException e) {
+        failure = failure == null ? e : failure;
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+}
@@ -21,11 +21,12 @@ import com.yahoo.ycsb.DBException;
 import com.yahoo.ycsb.ByteIterator;
 import com.yahoo.ycsb.Status;
 import com.yahoo.ycsb.StringByteIterator;
+import com.yahoo.ycsb.measurements.Measurements;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.sql.*;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 import com.yahoo.ycsb.db.flavors.DBFlavor;
 
 /**
@@ -62,11 +63,35 @@ public class JdbcDBClient extends DB {
   /** The JDBC fetch size hinted to the driver. */
   public static final String JDBC_FETCH_SIZE = "jdbc.fetchsize";
 
+  /**
+   * The number of rows each query of a scan reads, continuing after the last key read (keyset pagination), or 0
+   * to read a whole scan with one query.
+   */
+  public static final String JDBC_SCAN_PAGE_SIZE = "jdbc.scan.pagesize";
+
+  /**
+   * Whether scans only read the characters of each row, counted as the Chars of SCAN, rather than returning the
+   * rows as maps.
+   */
+  public static final String JDBC_SCAN_CONSUME = "jdbc.scan.consume";
+
   /** The JDBC connection auto-commit property for the driver. */
   public static final String JDBC_AUTO_COMMIT = "jdbc.autocommit";
 
   public static final String JDBC_BATCH_UPDATES = "jdbc.batchupdateapi";
 
+  /**
+   * The number of connections to each shard shared by all client threads, or 0 for each thread to open its own.
+   */
+  public static final String JDBC_POOL_SIZE = "jdbc.poolsize";
+
+  /** How keys are assigned to the shards in db.url: modulo, consistent or range. See {@link Sharding}. */
+  public static final String SHARDING = "db.sharding";
+  public static final String SHARDING_DEFAULT = "modulo";
+
+  /** The first key of each shard but the first, in order, for range sharding. */
+  public static final String SHARD_RANGES = "db.shardranges";
+
   /** The name of the property for the number of fields in a record. */
   public static final String FIELD_COUNT_PROPERTY = "fieldcount";
 
@@ -82,16 +107,28 @@ public class JdbcDBClient extends DB {
   /** The field name prefix in the table. */
   public static final String COLUMN_PREFIX = "FIELD";
 
-  private List<Connection> conns;
+  /** The connections of this thread, one per shard, or null when connections are pooled. */
+  private List<ShardConnection> conns;
   private boolean initialized = false;
   private Properties props;
   private int jdbcFetchSize;
+  private int scanPageSize;
+  private boolean scanConsume;
+  private final char[] consumeBuffer = new char[4096];
   private int batchSize;
   private boolean autoCommit;
   private boolean batchUpdates;
   private static final String DEFAULT_PROP = "";
-  private ConcurrentMap<StatementType, PreparedStatement> cachedStatements;
   private long numRowsInBatch = 0;
+  private int shardCount;
+  private Sharding sharding;
+  /** Where per-shard latencies and consumed scan characters are recorded, when either is. */
+  private Measurements measurements;
+
+  /** The pool shared by the client threads when jdbc.poolsize is set, and the number of threads using it. */
+  private static ConnectionPool pool = null;
+  private static int poolUsers = 0;
+  private boolean pooled = false;
   /** DB flavor defines DB-specific syntax and behavior for the
    * particular database. Current database flavors are: {default, phoenix} */
   private DBFlavor dbFlavor;
@@ -124,27 +161,43 @@ public class JdbcDBClient extends DB {
    * @return Shard index
    */
   private int getShardIndexByKey(String key) {
-    int ret = Math.abs(key.hashCode()) % conns.size();
-    return ret;
+    return sharding.getShardIndex(key);
   }
 
   /**
-   * For the given key, returns Connection object that holds connection to the
-   * shard that contains this key.
+   * Returns a connection to a shard: this thread's own, or one borrowed from
+   * the pool, which must be given back with {@link #release(ShardConnection)}.
    *
-   * @param key Data key to get information for
-   * @return Connection object
+   * @param shardIndex The shard to connect to
+   * @return ShardConnection object
    */
-  private Connection getShardConnectionByKey(String key) {
-    return conns.get(getShardIndexByKey(key));
+  private ShardConnection acquire(int shardIndex) throws SQLException {
+    return pooled ? pool.acquire(shardIndex) : conns.get(shardIndex);
+  }
+
+  private void release(ShardConnection conn) {
+    if (pooled) {
+      pool.release(conn);
+    }
+  }
+
+  /**
+   * Records the latency of an operation on a shard as op-SHARDn, when there
+   * is more than one shard, to tell an overloaded shard from a skewed key
+   * distribution.
+   */
+  private void measureShard(String op, int shardIndex, long startNanos) {
+    if (shardCount > 1) {
+      measurements.measureNanos(op + "-SHARD" + shardIndex, System.nanoTime() - startNanos);
+    }
   }
 
   private void cleanupAllConnections() throws SQLException {
-    for (Connection conn : conns) {
+    for (ShardConnection conn : conns) {
       if (!autoCommit) {
-        conn.commit();
+        conn.getConnection().commit();
       }
-      conn.close();
+      conn.getConnection().close();
     }
   }
 
@@ -188,32 +241,52 @@ public class JdbcDBClient extends DB {
 
     this.autoCommit = getBoolProperty(props, JDBC_AUTO_COMMIT, true);
     this.batchUpdates = getBoolProperty(props, JDBC_BATCH_UPDATES, false);
+    this.scanPageSize = getIntProperty(props, JDBC_SCAN_PAGE_SIZE);
+    this.scanConsume = getBoolProperty(props, JDBC_SCAN_CONSUME, false);
+
+    int poolSize = getIntProperty(props, JDBC_POOL_SIZE);
+    this.pooled = poolSize > 0;
+    if (pooled && (batchUpdates || (!autoCommit && batchSize > 0))) {
+      throw new DBException("Batching with " + JDBC_BATCH_UPDATES + " or " + JDBC_AUTO_COMMIT + "=false and "
+          + DB_BATCH_SIZE + " is not possible with " + JDBC_POOL_SIZE
+          + ", as a batch must stay on one connection; use operationbatchsize for multi-row statements instead");
+    }
 
     try {
       if (driver != null) {
         Class.forName(driver);
       }
-      int shardCount = 0;
-      conns = new ArrayList<Connection>(3);
       final String[] urlArr = urls.split(",");
-      for (String url : urlArr) {
-        System.out.println("Adding shard node URL: " + url);
-        Connection conn = DriverManager.getConnection(url, user, passwd);
-
-        // Since there is no explicit commit method in the DB interface, all
-        // operations should auto commit, except when explicitly told not to
-        // (this is necessary in cases such as for PostgreSQL when running a
-        // scan workload with fetchSize)
-        conn.setAutoCommit(autoCommit);
-
-        shardCount++;
-        conns.add(conn);
+      shardCount = urlArr.length;
+      sharding = Sharding.fromProperties(props, urlArr);
+      if (shardCount > 1 || scanConsume) {
+        measurements = Measurements.getMeasurements();
+      }
+      if (pooled) {
+        synchronized (JdbcDBClient.class) {
+          if (pool == null) {
+            pool = new ConnectionPool(urlArr, user, passwd, poolSize, autoCommit);
+          }
+          poolUsers++;
+        }
+      } else {
+        conns = new ArrayList<ShardConnection>(3);
+        for (String url : urlArr) {
+          System.out.println("Adding shard node URL: " + url);
+          Connection conn = DriverManager.getConnection(url, user, passwd);
+
+          // Since there is no explicit commit method in the DB interface, all
+          // operations should auto commit, except when explicitly told not to
+          // (this is necessary in cases such as for PostgreSQL when running a
+          // scan workload with fetchSize)
+          conn.setAutoCommit(autoCommit);
+
+          conns.add(new ShardConnection(conn, conns.size()));
+        }
       }
 
       System.out.println("Using shards: " + shardCount + ", batchSize:" + batchSize + ", fetchSize: " + jdbcFetchSize);
 
-      cachedStatements = new ConcurrentHashMap<StatementType, PreparedStatement>();
-
       this.dbFlavor = DBFlavor.fromJdbcUrl(urlArr[0]);
     } catch (ClassNotFoundException e) {
       System.err.println("Error in initializing the JDBS driver: " + e);
@@ -231,12 +304,30 @@ public class JdbcDBClient extends DB {
 
   @Override
   public void cleanup() throws DBException {
+    if (pooled) {
+      synchronized (JdbcDBClient.class) {
+        if (--poolUsers == 0) {
+          try {
+            pool.close(!autoCommit);
+          } catch (SQLException e) {
+            System.err.println("Error in closing the connection. " + e);
+            throw new DBException(e);
+          } finally {
+            pool = null;
+          }
+        }
+      }
+      return;
+    }
+
     if (batchSize > 0) {
       try {
         // commit un-finished batches
-        for (PreparedStatement st : cachedStatements.values()) {
-          if (!st.getConnection().isClosed() && !st.isClosed() && (numRowsInBatch % batchSize != 0)) {
-            st.executeBatch();
+        for (ShardConnection conn : conns) {
+          for (PreparedStatement st : conn.getStatements().values()) {
+            if (!st.getConnection().isClosed() && !st.isClosed() && (numRowsInBatch % batchSize != 0)) {
+              st.executeBatch();
+            }
           }
         }
       } catch (SQLException e) {
@@ -253,115 +344,208 @@ public class JdbcDBClient extends DB {
     }
   }
 
-  private PreparedStatement createAndCacheInsertStatement(StatementType insertType, String key)
+  /**
+   * Returns the statement of the given type prepared on a connection,
+   * preparing and caching it the first time, or null if the flavor has no
+   * such statement.
+   */
+  private PreparedStatement getStatement(ShardConnection conn, StatementType type, String key)
       throws SQLException {
-    String insert = dbFlavor.createInsertStatement(insertType, key);
-    PreparedStatement insertStatement = getShardConnectionByKey(key).prepareStatement(insert);
-    PreparedStatement stmt = cachedStatements.putIfAbsent(insertType, insertStatement);
-    if (stmt == null) {
-      return insertStatement;
+    PreparedStatement stmt = conn.getStatements().get(type);
+    if (stmt != null) {
+      return stmt;
     }
-    return stmt;
-  }
-
-  private PreparedStatement createAndCacheReadStatement(StatementType readType, String key)
-      throws SQLException {
-    String read = dbFlavor.createReadStatement(readType, key);
-    PreparedStatement readStatement = getShardConnectionByKey(key).prepareStatement(read);
-    PreparedStatement stmt = cachedStatements.putIfAbsent(readType, readStatement);
-    if (stmt == null) {
-      return readStatement;
+    String sql;
+    switch (type.getType()) {
+    case INSERT:
+      sql = dbFlavor.createInsertStatement(type, key);
+      break;
+    case READ:
+      sql = dbFlavor.createReadStatement(type, key);
+      break;
+    case DELETE:
+      sql = dbFlavor.createDeleteStatement(type, key);
+      break;
+    case UPDATE:
+      sql = dbFlavor.createUpdateStatement(type, key);
+      break;
+    case SCAN:
+      sql = dbFlavor.createScanStatement(type, key);
+      break;
+    case KEYSET_SCAN:
+      sql = dbFlavor.createKeysetScanStatement(type, key);
+      break;
+    case MULTI_READ:
+      sql = dbFlavor.createMultiReadStatement(type, key);
+      break;
+    case MULTI_INSERT:
+      sql = dbFlavor.createMultiInsertStatement(type, key);
+      break;
+    default:
+      throw new IllegalArgumentException("Unknown statement type " + type.getType());
     }
-    return stmt;
-  }
-
-  private PreparedStatement createAndCacheDeleteStatement(StatementType deleteType, String key)
-      throws SQLException {
-    String delete = dbFlavor.createDeleteStatement(deleteType, key);
-    PreparedStatement deleteStatement = getShardConnectionByKey(key).prepareStatement(delete);
-    PreparedStatement stmt = cachedStatements.putIfAbsent(deleteType, deleteStatement);
-    if (stmt == null) {
-      return deleteStatement;
+    if (sql == null) {
+      return null;
     }
-    return stmt;
-  }
-
-  private PreparedStatement createAndCacheUpdateStatement(StatementType updateType, String key)
-      throws SQLException {
-    String update = dbFlavor.createUpdateStatement(updateType, key);
-    PreparedStatement insertStatement = getShardConnectionByKey(key).prepareStatement(update);
-    PreparedStatement stmt = cachedStatements.putIfAbsent(updateType, insertStatement);
-    if (stmt == null) {
-      return insertStatement;
+    if (type.getType() == StatementType.Type.SCAN || type.getType() == StatementType.Type.KEYSET_SCAN) {
+      // forward only and read only, which drivers need to stream rows rather than buffer them all
+      stmt = conn.getConnection().prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+      if (this.jdbcFetchSize > 0) {
+        stmt.setFetchSize(this.jdbcFetchSize);
+      } else if (this.scanPageSize > 0) {
+        stmt.setFetchSize(dbFlavor.getScanFetchSize(this.scanPageSize));
+      }
+    } else {
+      stmt = conn.getConnection().prepareStatement(sql);
     }
+    conn.getStatements().put(type, stmt);
     return stmt;
   }
 
-  private PreparedStatement createAndCacheScanStatement(StatementType scanType, String key)
-      throws SQLException {
-    String select = dbFlavor.createScanStatement(scanType, key);
-    PreparedStatement scanStatement = getShardConnectionByKey(key).prepareStatement(select);
-    if (this.jdbcFetchSize > 0) {
-      scanStatement.setFetchSize(this.jdbcFetchSize);
-    }
-    PreparedStatement stmt = cachedStatements.putIfAbsent(scanType, scanStatement);
-    if (stmt == null) {
-      return scanStatement;
+  @Override
+  public Status read(String tableName, String key, Set<String> fields, Map<String, ByteIterator> result) {
+    try {
+      long start = System.nanoTime();
+      int shardIndex = getShardIndexByKey(key);
+      StatementType type = new StatementType(StatementType.Type.READ, tableName, 1, "", shardIndex);
+      ShardConnection conn = acquire(shardIndex);
+      try {
+        PreparedStatement readStatement = getStatement(conn, type, key);
+        readStatement.setString(1, key);
+        ResultSet resultSet = readStatement.executeQuery();
+        if (!resultSet.next()) {
+          resultSet.close();
+          return Status.NOT_FOUND;
+        }
+        if (result != null && fields != null) {
+          for (String field : fields) {
+            String value = resultSet.getString(field);
+            result.put(field, new StringByteIterator(value));
+          }
+        }
+        resultSet.close();
+      } finally {
+        release(conn);
+      }
+      measureShard("READ", shardIndex, start);
+      return Status.OK;
+    } catch (SQLException e) {
+      System.err.println("Error in processing read of table " + tableName + ": " + e);
+      return Status.ERROR;
     }
-    return stmt;
   }
 
+  /**
+   * Reads the records of each shard with a single SELECT ... WHERE YCSB_KEY IN (...) statement.
+   */
   @Override
-  public Status read(String tableName, String key, Set<String> fields, Map<String, ByteIterator> result) {
+  public Status batchRead(String tableName, List<String> keys, Set<String> fields,
+                          List<Map<String, ByteIterator>> results) {
     try {
-      StatementType type = new StatementType(StatementType.Type.READ, tableName, 1, "", getShardIndexByKey(key));
-      PreparedStatement readStatement = cachedStatements.get(type);
-      if (readStatement == null) {
-        readStatement = createAndCacheReadStatement(type, key);
-      }
-      readStatement.setString(1, key);
-      ResultSet resultSet = readStatement.executeQuery();
-      if (!resultSet.next()) {
-        resultSet.close();
-        return Status.NOT_FOUND;
+      Map<String, Map<String, ByteIterator>> rows = new HashMap<String, Map<String, ByteIterator>>();
+      for (Map.Entry<Integer, List<Integer>> shard : groupByShard(keys).entrySet()) {
+        long start = System.nanoTime();
+        List<String> shardKeys = new ArrayList<String>(new LinkedHashSet<String>(select(keys, shard.getValue())));
+        StatementType type = new StatementType(StatementType.Type.MULTI_READ, tableName, 1, "", shard.getKey(),
+            shardKeys.size());
+        ShardConnection conn = acquire(shard.getKey());
+        try {
+          PreparedStatement readStatement = getStatement(conn, type, shardKeys.get(0));
+          int index = 1;
+          for (String key : shardKeys) {
+            readStatement.setString(index++, key);
+          }
+          ResultSet resultSet = readStatement.executeQuery();
+          while (resultSet.next()) {
+            Map<String, ByteIterator> row = new HashMap<String, ByteIterator>();
+            if (fields != null) {
+              for (String field : fields) {
+                row.put(field, new StringByteIterator(resultSet.getString(field)));
+              }
+            }
+            rows.put(resultSet.getString(PRIMARY_KEY), row);
+          }
+          resultSet.close();
+        } finally {
+          release(conn);
+        }
+        measureShard("BATCH-READ", shard.getKey(), start);
       }
-      if (result != null && fields != null) {
-        for (String field : fields) {
-          String value = resultSet.getString(field);
-          result.put(field, new StringByteIterator(value));
+
+      Status status = Status.OK;
+      for (String key : keys) {
+        Map<String, ByteIterator> row = rows.get(key);
+        if (row == null) {
+          row = new HashMap<String, ByteIterator>();
+          if (status.isOk()) {
+            status = Status.NOT_FOUND;
+          }
         }
+        results.add(row);
       }
-      resultSet.close();
-      return Status.OK;
+      return status;
     } catch (SQLException e) {
-      System.err.println("Error in processing read of table " + tableName + ": " + e);
+      System.err.println("Error in processing batch read of table " + tableName + ": " + e);
       return Status.ERROR;
     }
   }
 
+  /**
+   * Scans from startKey. With jdbc.scan.pagesize, the scan reads a page of rows at a time, each page starting after
+   * the last key of the one before, so the database never has to produce or skip more rows than one page. With
+   * jdbc.scan.consume, rows are read without being copied into result.
+   */
   @Override
   public Status scan(String tableName, String startKey, int recordcount, Set<String> fields,
                      Vector<HashMap<String, ByteIterator>> result) {
     try {
-      StatementType type = new StatementType(StatementType.Type.SCAN, tableName, 1, "", getShardIndexByKey(startKey));
-      PreparedStatement scanStatement = cachedStatements.get(type);
-      if (scanStatement == null) {
-        scanStatement = createAndCacheScanStatement(type, startKey);
-      }
-      scanStatement.setString(1, startKey);
-      scanStatement.setInt(2, recordcount);
-      ResultSet resultSet = scanStatement.executeQuery();
-      for (int i = 0; i < recordcount && resultSet.next(); i++) {
-        if (result != null && fields != null) {
-          HashMap<String, ByteIterator> values = new HashMap<String, ByteIterator>();
-          for (String field : fields) {
-            String value = resultSet.getString(field);
-            values.put(field, new StringByteIterator(value));
+      long start = System.nanoTime();
+      int shardIndex = getShardIndexByKey(startKey);
+      long chars = 0;
+      ShardConnection conn = acquire(shardIndex);
+      try {
+        StatementType.Type type = StatementType.Type.SCAN;
+        String from = startKey;
+        int remaining = recordcount;
+        while (remaining > 0) {
+          int limit = scanPageSize > 0 ? Math.min(scanPageSize, remaining) : remaining;
+          PreparedStatement scanStatement = getStatement(conn,
+              new StatementType(type, tableName, 1, "", shardIndex), startKey);
+          scanStatement.setString(1, from);
+          scanStatement.setInt(2, limit);
+          ResultSet resultSet = scanStatement.executeQuery();
+          int rows = 0;
+          for (; rows < limit && resultSet.next(); rows++) {
+            // only the last row of a full page is followed by another page, which starts after its key
+            boolean last = scanPageSize > 0 && rows == limit - 1;
+            if (last) {
+              from = resultSet.getString(PRIMARY_KEY);
+            }
+            if (scanConsume) {
+              chars += consumeRow(resultSet, fields, last ? from : null);
+            } else if (result != null && fields != null) {
+              HashMap<String, ByteIterator> values = new HashMap<String, ByteIterator>();
+              for (String field : fields) {
+                String value = resultSet.getString(field);
+                values.put(field, new StringByteIterator(value));
+              }
+              result.add(values);
+            }
           }
-          result.add(values);
+          resultSet.close();
+          remaining -= rows;
+          if (scanPageSize <= 0 || rows < limit) {
+            break;
+          }
+          type = StatementType.Type.KEYSET_SCAN;
         }
+      } finally {
+        release(conn);
+      }
+      if (scanConsume) {
+        measurements.count("SCAN", "Chars", chars);
       }
-      resultSet.close();
+      measureShard("SCAN", shardIndex, start);
       return Status.OK;
     } catch (SQLException e) {
       System.err.println("Error in processing scan of table: " + tableName + e);
@@ -369,23 +553,67 @@ public class JdbcDBClient extends DB {
     }
   }
 
+  /**
+   * Reads the given fields of the current row, or all its columns if fields is null, only to count their
+   * characters. Values are streamed through one buffer, so drivers that stream columns need not build strings.
+   *
+   * @param key The key of the row if it was already read, so that its column is not read again, or null.
+   */
+  private long consumeRow(ResultSet resultSet, Set<String> fields, String key) throws SQLException {
+    long chars = 0;
+    if (fields == null) {
+      int columns = resultSet.getMetaData().getColumnCount();
+      int keyColumn = key == null ? 0 : resultSet.findColumn(PRIMARY_KEY);
+      for (int i = 1; i <= columns; i++) {
+        chars += i == keyColumn ? key.length() : consume(resultSet.getCharacterStream(i));
+      }
+    } else {
+      for (String field : fields) {
+        chars += consume(resultSet.getCharacterStream(field));
+      }
+    }
+    return chars;
+  }
+
+  private long consume(Reader value) throws SQLException {
+    if (value == null) {
+      return 0;
+    }
+    long chars = 0;
+    try {
+      for (int n = value.read(consumeBuffer); n >= 0; n = value.read(consumeBuffer)) {
+        chars += n;
+      }
+      value.close();
+    } catch (IOException e) {
+      throw new SQLException(e);
+    }
+    return chars;
+  }
+
   @Override
   public Status update(String tableName, String key, Map<String, ByteIterator> values) {
     try {
+      long start = System.nanoTime();
       int numFields = values.size();
       OrderedFieldInfo fieldInfo = getFieldInfo(values);
+      int shardIndex = getShardIndexByKey(key);
       StatementType type = new StatementType(StatementType.Type.UPDATE, tableName,
-          numFields, fieldInfo.getFieldKeys(), getShardIndexByKey(key));
-      PreparedStatement updateStatement = cachedStatements.get(type);
-      if (updateStatement == null) {
-        updateStatement = createAndCacheUpdateStatement(type, key);
-      }
-      int index = 1;
-      for (String value: fieldInfo.getFieldValues()) {
-        updateStatement.setString(index++, value);
+          numFields, fieldInfo.getFieldKeys(), shardIndex);
+      int result;
+      ShardConnection conn = acquire(shardIndex);
+      try {
+        PreparedStatement updateStatement = getStatement(conn, type, key);
+        int index = 1;
+        for (String value: fieldInfo.getFieldValues()) {
+          updateStatement.setString(index++, value);
+        }
+        updateStatement.setString(index, key);
+        result = updateStatement.executeUpdate();
+      } finally {
+        release(conn);
       }
-      updateStatement.setString(index, key);
-      int result = updateStatement.executeUpdate();
+      measureShard("UPDATE", shardIndex, start);
       if (result == 1) {
         return Status.OK;
       }
@@ -399,66 +627,141 @@ public class JdbcDBClient extends DB {
   @Override
   public Status insert(String tableName, String key, Map<String, ByteIterator> values) {
     try {
-      int numFields = values.size();
-      OrderedFieldInfo fieldInfo = getFieldInfo(values);
-      StatementType type = new StatementType(StatementType.Type.INSERT, tableName,
-          numFields, fieldInfo.getFieldKeys(), getShardIndexByKey(key));
-      PreparedStatement insertStatement = cachedStatements.get(type);
-      if (insertStatement == null) {
-        insertStatement = createAndCacheInsertStatement(type, key);
-      }
-      insertStatement.setString(1, key);
-      int index = 2;
-      for (String value: fieldInfo.getFieldValues()) {
-        insertStatement.setString(index++, value);
+      long start = System.nanoTime();
+      int shardIndex = getShardIndexByKey(key);
+      ShardConnection conn = acquire(shardIndex);
+      try {
+        Status status = insert(conn, tableName, key, values);
+        measureShard("INSERT", shardIndex, start);
+        return status;
+      } finally {
+        release(conn);
       }
-      // Using the batch insert API
-      if (batchUpdates) {
-        insertStatement.addBatch();
-        // Check for a sane batch size
+    } catch (SQLException e) {
+      System.err.println("Error in processing insert to table: " + tableName + e);
+      return Status.ERROR;
+    }
+  }
+
+  private Status insert(ShardConnection conn, String tableName, String key, Map<String, ByteIterator> values)
+      throws SQLException {
+    int numFields = values.size();
+    OrderedFieldInfo fieldInfo = getFieldInfo(values);
+    StatementType type = new StatementType(StatementType.Type.INSERT, tableName,
+        numFields, fieldInfo.getFieldKeys(), conn.getShardIndex());
+    PreparedStatement insertStatement = getStatement(conn, type, key);
+    insertStatement.setString(1, key);
+    int index = 2;
+    for (String value: fieldInfo.getFieldValues()) {
+      insertStatement.setString(index++, value);
+    }
+    // Using the batch insert API
+    if (batchUpdates) {
+      insertStatement.addBatch();
+      // Check for a sane batch size
+      if (batchSize > 0) {
+        // Commit the batch after it grows beyond the configured size
+        if (++numRowsInBatch % batchSize == 0) {
+          int[] results = insertStatement.executeBatch();
+          for (int r : results) {
+            if (r != 1) {
+              return Status.ERROR;
+            }
+          }
+          // If autoCommit is off, make sure we commit the batch
+          if (!autoCommit) {
+            conn.getConnection().commit();
+          }
+          return Status.OK;
+        } // else, the default value of -1 or a nonsense. Treat it as an infinitely large batch.
+      } // else, we let the batch accumulate
+      // Added element to the batch, potentially committing the batch too.
+      return Status.BATCHED_OK;
+    } else {
+      // Normal update
+      int result = insertStatement.executeUpdate();
+      // If we are not autoCommit, we might have to commit now
+      if (!autoCommit) {
+        // Let updates be batcher locally
         if (batchSize > 0) {
-          // Commit the batch after it grows beyond the configured size
           if (++numRowsInBatch % batchSize == 0) {
-            int[] results = insertStatement.executeBatch();
-            for (int r : results) {
-              if (r != 1) {
-                return Status.ERROR;
+            // Send the batch of updates
+            conn.getConnection().commit();
+          }
+          // uhh
+          return Status.OK;
+        } else {
+          // Commit each update
+          conn.getConnection().commit();
+        }
+      }
+      if (result == 1) {
+        return Status.OK;
+      }
+    }
+    return Status.UNEXPECTED_STATE;
+  }
+
+  /**
+   * Inserts the records of each shard with a single multi-row INSERT ... VALUES (...),(...) statement, when the
+   * flavor supports one and the records have the same fields. Otherwise, or with jdbc.batchupdateapi, each record
+   * is inserted in turn.
+   */
+  @Override
+  public Status batchInsert(String tableName, List<String> keys, List<Map<String, ByteIterator>> values) {
+    if (batchUpdates) {
+      return super.batchInsert(tableName, keys, values);
+    }
+    List<OrderedFieldInfo> fieldInfos = new ArrayList<OrderedFieldInfo>(values.size());
+    for (Map<String, ByteIterator> value : values) {
+      OrderedFieldInfo fieldInfo = getFieldInfo(value);
+      if (!fieldInfos.isEmpty() && !fieldInfo.getFieldKeys().equals(fieldInfos.get(0).getFieldKeys())) {
+        return super.batchInsert(tableName, keys, values);
+      }
+      fieldInfos.add(fieldInfo);
+    }
+
+    try {
+      Status status = Status.OK;
+      for (Map.Entry<Integer, List<Integer>> shard : groupByShard(keys).entrySet()) {
+        long start = System.nanoTime();
+        List<Integer> rows = shard.getValue();
+        StatementType type = new StatementType(StatementType.Type.MULTI_INSERT, tableName,
+            values.get(0).size(), fieldInfos.get(0).getFieldKeys(), shard.getKey(), rows.size());
+        ShardConnection conn = acquire(shard.getKey());
+        try {
+          PreparedStatement insertStatement = getStatement(conn, type, keys.get(rows.get(0)));
+          if (insertStatement == null) {
+            for (int row : rows) {
+              Status res = insert(conn, tableName, keys.get(row), values.get(row));
+              if (status.isOk() && !res.isOk()) {
+                status = res;
               }
             }
-            // If autoCommit is off, make sure we commit the batch
+          } else {
+            int index = 1;
+            for (int row : rows) {
+              insertStatement.setString(index++, keys.get(row));
+              for (String value : fieldInfos.get(row).getFieldValues()) {
+                insertStatement.setString(index++, value);
+              }
+            }
+            int result = insertStatement.executeUpdate();
             if (!autoCommit) {
-              getShardConnectionByKey(key).commit();
+              conn.getConnection().commit();
             }
-            return Status.OK;
-          } // else, the default value of -1 or a nonsense. Treat it as an infinitely large batch.
-        } // else, we let the batch accumulate
-        // Added element to the batch, potentially committing the batch too.
-        return Status.BATCHED_OK;
-      } else {
-        // Normal update
-        int result = insertStatement.executeUpdate();
-        // If we are not autoCommit, we might have to commit now
-        if (!autoCommit) {
-          // Let updates be batcher locally
-          if (batchSize > 0) {
-            if (++numRowsInBatch % batchSize == 0) {
-              // Send the batch of updates
-              getShardConnectionByKey(key).commit();
+            if (result != rows.size() && status.isOk()) {
+              status = Status.UNEXPECTED_STATE;
             }
-            // uhh
-            return Status.OK;
-          } else {
-            // Commit each update
-            getShardConnectionByKey(key).commit();
           }
+        } finally {
+          release(conn);
         }
-        if (result == 1) {
-          return Status.OK;
-        }
+        measureShard("BATCH-INSERT", shard.getKey(), start);
       }
-      return Status.UNEXPECTED_STATE;
+      return status;
     } catch (SQLException e) {
-      System.err.println("Error in processing insert to table: " + tableName + e);
+      System.err.println("Error in processing batch insert to table: " + tableName + e);
       return Status.ERROR;
     }
   }
@@ -466,13 +769,19 @@ public class JdbcDBClient extends DB {
   @Override
   public Status delete(String tableName, String key) {
     try {
-      StatementType type = new StatementType(StatementType.Type.DELETE, tableName, 1, "", getShardIndexByKey(key));
-      PreparedStatement deleteStatement = cachedStatements.get(type);
-      if (deleteStatement == null) {
-        deleteStatement = createAndCacheDeleteStatement(type, key);
+      long start = System.nanoTime();
+      int shardIndex = getShardIndexByKey(key);
+      StatementType type = new StatementType(StatementType.Type.DELETE, tableName, 1, "", shardIndex);
+      int result;
+      ShardConnection conn = acquire(shardIndex);
+      try {
+        PreparedStatement deleteStatement = getStatement(conn, type, key);
+        deleteStatement.setString(1, key);
+        result = deleteStatement.executeUpdate();
+      } finally {
+        release(conn);
       }
-      deleteStatement.setString(1, key);
-      int result = deleteStatement.executeUpdate();
+      measureShard("DELETE", shardIndex, start);
       if (result == 1) {
         return Status.OK;
       }
@@ -483,6 +792,31 @@ public class JdbcDBClient extends DB {
     }
   }
 
+  /**
+   * @return The positions in keys of the keys of each shard, in order.
+   */
+  private Map<Integer, List<Integer>> groupByShard(List<String> keys) {
+    Map<Integer, List<Integer>> shards = new TreeMap<Integer, List<Integer>>();
+    for (int i = 0; i < keys.size(); i++) {
+      int shardIndex = getShardIndexByKey(keys.get(i));
+      List<Integer> positions = shards.get(shardIndex);
+      if (positions == null) {
+        positions = new ArrayList<Integer>();
+        shards.put(shardIndex, positions);
+      }
+      positions.add(i);
+    }
+    return shards;
+  }
+
+  private static List<String> select(List<String> keys, List<Integer> positions) {
+    List<String> selected = new ArrayList<String>(positions.size());
+    for (int i : positions) {
+      selected.add(keys.get(i));
+    }
+    return selected;
+  }
+
   private OrderedFieldInfo getFieldInfo(Map<String, ByteIterator> values) {
     String fieldKeys = "";
     List<String> fieldValues = new ArrayList<>();
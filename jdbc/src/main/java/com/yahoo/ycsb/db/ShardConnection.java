@@ -0,0 +1,51 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A connection to one shard and the statements prepared on it. It is used by
+ * one thread at a time: either it belongs to a single client thread, or it is
+ * borrowed from a {@link ConnectionPool} for one operation.
+ */
+final class ShardConnection {
+  private final Connection connection;
+  private final int shardIndex;
+  private final Map<StatementType, PreparedStatement> statements =
+      new HashMap<StatementType, PreparedStatement>();
+
+  ShardConnection(Connection connection, int shardIndex) {
+    this.connection = connection;
+    this.shardIndex = shardIndex;
+  }
+
+  Connection getConnection() {
+    return connection;
+  }
+
+  int getShardIndex() {
+    return shardIndex;
+  }
+
+  Map<StatementType, PreparedStatement> getStatements() {
+    return statements;
+  }
+}
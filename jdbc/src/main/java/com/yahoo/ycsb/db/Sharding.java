@@ -0,0 +1,151 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb.db;
+
+import com.yahoo.ycsb.DBException;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Properties;
+
+/**
+ * Decides which shard holds each key. Shards are numbered in the order of
+ * their URLs in db.url. The db.sharding property picks the scheme:
+ *
+ * <ul>
+ * <li>modulo (the default): the hash code of the key modulo the number of
+ * shards. Adding a shard moves almost every key.</li>
+ * <li>consistent: each shard owns {@link #VIRTUAL_NODES} points on a hash
+ * ring placed by its URL, and a key belongs to the shard owning the next
+ * point after its hash. Adding a shard only moves the keys it takes over.</li>
+ * <li>range: db.shardranges lists, in order, the first key of every shard
+ * but the first, and each key belongs to the shard whose range contains it.
+ * Keys are compared as strings.</li>
+ * </ul>
+ */
+abstract class Sharding {
+  /** The number of points each shard owns on the ring of consistent hashing. */
+  static final int VIRTUAL_NODES = 128;
+
+  /**
+   * @return The index of the shard holding key.
+   */
+  abstract int getShardIndex(String key);
+
+  static Sharding fromProperties(Properties props, String[] urls) throws DBException {
+    String scheme = props.getProperty(JdbcDBClient.SHARDING, JdbcDBClient.SHARDING_DEFAULT);
+    if (scheme.equals("modulo")) {
+      return new Modulo(urls.length);
+    } else if (scheme.equals("consistent")) {
+      return new Consistent(urls);
+    } else if (scheme.equals("range")) {
+      String ranges = props.getProperty(JdbcDBClient.SHARD_RANGES, "");
+      String[] firstKeys = ranges.isEmpty() ? new String[0] : ranges.split(",");
+      if (firstKeys.length != urls.length - 1) {
+        throw new DBException(JdbcDBClient.SHARD_RANGES + " must list " + (urls.length - 1)
+            + " keys for " + urls.length + " shards, not " + firstKeys.length);
+      }
+      for (int i = 1; i < firstKeys.length; i++) {
+        if (firstKeys[i - 1].compareTo(firstKeys[i]) >= 0) {
+          throw new DBException(JdbcDBClient.SHARD_RANGES + " must be in increasing order");
+        }
+      }
+      return new Range(firstKeys);
+    }
+    throw new DBException("Unknown " + JdbcDBClient.SHARDING + ": " + scheme);
+  }
+
+  /**
+   * 64 bit FNV-1a hash of the characters of a string.
+   */
+  static long hash(String s) {
+    long hash = 0xCBF29CE484222325L;
+    for (int i = 0; i < s.length(); i++) {
+      hash ^= s.charAt(i);
+      hash *= 0x100000001B3L;
+    }
+    // FNV mixes the last characters poorly, and keys often differ only there
+    hash ^= hash >>> 33;
+    hash *= 0xFF51AFD7ED558CCDL;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+
+  private static final class Modulo extends Sharding {
+    private final int shards;
+
+    Modulo(int shards) {
+      this.shards = shards;
+    }
+
+    @Override
+    int getShardIndex(String key) {
+      return Math.abs(key.hashCode()) % shards;
+    }
+  }
+
+  private static final class Consistent extends Sharding {
+    /** The points on the ring, in increasing order, and the shard owning each. */
+    private final long[] points;
+    private final int[] owners;
+
+    Consistent(String[] urls) {
+      long[][] ring = new long[urls.length * VIRTUAL_NODES][];
+      for (int shard = 0; shard < urls.length; shard++) {
+        for (int v = 0; v < VIRTUAL_NODES; v++) {
+          ring[shard * VIRTUAL_NODES + v] = new long[]{hash(urls[shard] + "#" + v), shard};
+        }
+      }
+      Arrays.sort(ring, new Comparator<long[]>() {
+        @Override
+        public int compare(long[] a, long[] b) {
+          return Long.compare(a[0], b[0]);
+        }
+      });
+      points = new long[ring.length];
+      owners = new int[ring.length];
+      for (int i = 0; i < ring.length; i++) {
+        points[i] = ring[i][0];
+        owners[i] = (int) ring[i][1];
+      }
+    }
+
+    @Override
+    int getShardIndex(String key) {
+      int i = Arrays.binarySearch(points, hash(key));
+      if (i < 0) {
+        i = -i - 1;
+      }
+      return owners[i == points.length ? 0 : i];
+    }
+  }
+
+  private static final class Range extends Sharding {
+    private final String[] firstKeys;
+
+    Range(String[] firstKeys) {
+      this.firstKeys = firstKeys;
+    }
+
+    @Override
+    int getShardIndex(String key) {
+      int i = Arrays.binarySearch(firstKeys, key);
+      // a first key belongs to the shard it starts; any other key to the shard of the first key before it
+      return i >= 0 ? i + 1 : -i - 1;
+    }
+  }
+}
@@ -22,7 +22,7 @@ package com.yahoo.ycsb.db;
 public class StatementType {
 
   enum Type {
-    INSERT(1), DELETE(2), READ(3), UPDATE(4), SCAN(5);
+    INSERT(1), DELETE(2), READ(3), UPDATE(4), SCAN(5), MULTI_READ(6), MULTI_INSERT(7), KEYSET_SCAN(8);
 
     private final int internalType;
 
@@ -43,13 +43,27 @@ public class StatementType {
   private int numFields;
   private String tableName;
   private String fieldString;
+  private int numRows;
 
   public StatementType(Type type, String tableName, int numFields, String fieldString, int shardIndex) {
+    this(type, tableName, numFields, fieldString, shardIndex, 1);
+  }
+
+  /**
+   * @param numRows The number of rows a multi-row statement reads or writes.
+   */
+  public StatementType(Type type, String tableName, int numFields, String fieldString, int shardIndex,
+                       int numRows) {
     this.type = type;
     this.tableName = tableName;
     this.numFields = numFields;
     this.fieldString = fieldString;
     this.shardIndex = shardIndex;
+    this.numRows = numRows;
+  }
+
+  Type getType() {
+    return type;
   }
 
   public String getTableName() {
@@ -64,11 +78,16 @@ public class StatementType {
     return numFields;
   }
 
+  public int getNumRows() {
+    return numRows;
+  }
+
   @Override
   public int hashCode() {
     final int prime = 31;
     int result = 1;
     result = prime * result + numFields + 100 * shardIndex;
+    result = prime * result + numRows;
     result = prime * result + ((tableName == null) ? 0 : tableName.hashCode());
     result = prime * result + ((type == null) ? 0 : type.getHashCode());
     return result;
@@ -92,6 +111,9 @@ public class StatementType {
     if (shardIndex != other.shardIndex) {
       return false;
     }
+    if (numRows != other.numRows) {
+      return false;
+    }
     if (tableName == null) {
       if (other.tableName != null) {
         return false;
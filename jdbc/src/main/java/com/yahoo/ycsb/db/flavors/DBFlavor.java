@@ -66,4 +66,28 @@ public abstract class DBFlavor {
    * Create and return a SQL statement for scanning data.
    */
   public abstract String createScanStatement(StatementType scanType, String key);
+
+  /**
+   * Create and return a SQL statement for scanning data after a key, for the pages of a scan after the first.
+   */
+  public abstract String createKeysetScanStatement(StatementType scanType, String key);
+
+  /**
+   * Return the fetch size to hint for the queries of a scan reading pages of pageSize rows, when jdbc.fetchsize is
+   * not set. By default a page is fetched in one round trip.
+   */
+  public int getScanFetchSize(int pageSize) {
+    return pageSize;
+  }
+
+  /**
+   * Create and return a SQL statement for reading readType.getNumRows() rows by key at once.
+   */
+  public abstract String createMultiReadStatement(StatementType readType, String key);
+
+  /**
+   * Create and return a SQL statement for inserting insertType.getNumRows() rows at once, or null if the database
+   * cannot insert several rows in one statement.
+   */
+  public abstract String createMultiInsertStatement(StatementType insertType, String key);
 }
@@ -95,4 +95,47 @@ public class DefaultDBFlavor extends DBFlavor {
     select.append(" LIMIT ?");
     return select.toString();
   }
+
+  @Override
+  public String createKeysetScanStatement(StatementType scanType, String key) {
+    StringBuilder select = new StringBuilder("SELECT * FROM ");
+    select.append(scanType.getTableName());
+    select.append(" WHERE ");
+    select.append(JdbcDBClient.PRIMARY_KEY);
+    select.append(" > ?");
+    select.append(" ORDER BY ");
+    select.append(JdbcDBClient.PRIMARY_KEY);
+    select.append(" LIMIT ?");
+    return select.toString();
+  }
+
+  @Override
+  public String createMultiReadStatement(StatementType readType, String key) {
+    StringBuilder read = new StringBuilder("SELECT * FROM ");
+    read.append(readType.getTableName());
+    read.append(" WHERE ");
+    read.append(JdbcDBClient.PRIMARY_KEY);
+    read.append(" IN (?");
+    for (int i = 1; i < readType.getNumRows(); i++) {
+      read.append(",?");
+    }
+    read.append(")");
+    return read.toString();
+  }
+
+  @Override
+  public String createMultiInsertStatement(StatementType insertType, String key) {
+    StringBuilder insert = new StringBuilder("INSERT INTO ");
+    insert.append(insertType.getTableName());
+    insert.append(" (" + JdbcDBClient.PRIMARY_KEY + "," + insertType.getFieldString() + ")");
+    insert.append(" VALUES");
+    for (int row = 0; row < insertType.getNumRows(); row++) {
+      insert.append(row == 0 ? "(?" : ",(?");
+      for (int i = 0; i < insertType.getNumFields(); i++) {
+        insert.append(",?");
+      }
+      insert.append(")");
+    }
+    return insert.toString();
+  }
 }
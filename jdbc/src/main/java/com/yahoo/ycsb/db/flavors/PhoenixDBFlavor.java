@@ -23,6 +23,12 @@ import com.yahoo.ycsb.db.StatementType;
  * Database flavor for Apache Phoenix. Captures syntax differences used by Phoenix.
  */
 public class PhoenixDBFlavor extends DefaultDBFlavor {
+  /**
+   * The most rows fetched per round trip. Phoenix passes the fetch size on as the HBase scanner caching, and a
+   * region server that must gather too many rows for one call risks the scanner timing out.
+   */
+  private static final int MAX_SCAN_FETCH_SIZE = 1000;
+
   public PhoenixDBFlavor() {
     super(DBName.PHOENIX);
   }
@@ -62,4 +68,15 @@ public class PhoenixDBFlavor extends DefaultDBFlavor {
     update.append("?)");
     return update.toString();
   }
+
+  @Override
+  public int getScanFetchSize(int pageSize) {
+    return Math.min(pageSize, MAX_SCAN_FETCH_SIZE);
+  }
+
+  @Override
+  public String createMultiInsertStatement(StatementType insertType, String key) {
+    // UPSERT VALUES takes a single row
+    return null;
+  }
 }
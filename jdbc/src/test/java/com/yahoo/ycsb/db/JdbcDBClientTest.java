@@ -21,11 +21,15 @@ import static org.junit.Assert.*;
 
 import com.yahoo.ycsb.ByteIterator;
 import com.yahoo.ycsb.DBException;
+import com.yahoo.ycsb.Status;
 import com.yahoo.ycsb.StringByteIterator;
+import com.yahoo.ycsb.measurements.Measurements;
 import org.junit.*;
 
 import java.sql.*;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.HashSet;
 import java.util.Set;
@@ -390,4 +394,105 @@ public class JdbcDBClientTest {
 
       resultSet.close();
     }
+
+    @Test
+    public void pooledBatchTest() throws Exception {
+      Properties p = new Properties();
+      p.setProperty(JdbcDBClient.CONNECTION_URL, TEST_DB_URL);
+      p.setProperty(JdbcDBClient.DRIVER_CLASS, TEST_DB_DRIVER);
+      p.setProperty(JdbcDBClient.CONNECTION_USER, TEST_DB_USER);
+      p.setProperty(JdbcDBClient.JDBC_POOL_SIZE, "2");
+
+      JdbcDBClient first = new JdbcDBClient();
+      first.setProperties(p);
+      first.init();
+      JdbcDBClient second = new JdbcDBClient();
+      second.setProperties(p);
+      second.init();
+      try {
+        List<String> keys = new ArrayList<String>();
+        List<Map<String, ByteIterator>> values = new ArrayList<Map<String, ByteIterator>>();
+        for (int i = 0; i < 5; i++) {
+          HashMap<String, ByteIterator> row = new HashMap<String, ByteIterator>();
+          for (int j = 0; j < NUM_FIELDS; j++) {
+            row.put(FIELD_PREFIX + j, new StringByteIterator(buildDeterministicValue(KEY_PREFIX + i, FIELD_PREFIX + j)));
+          }
+          keys.add(KEY_PREFIX + i);
+          values.add(row);
+        }
+        // a single multi-row insert
+        assertEquals(Status.OK, first.batchInsert(TABLE_NAME, keys, values));
+        assertNumRows(5);
+
+        Set<String> fields = new HashSet<String>();
+        fields.add("FIELD1");
+        List<String> readKeys = new ArrayList<String>();
+        readKeys.add(KEY_PREFIX + 3);
+        readKeys.add(KEY_PREFIX + 9);
+        readKeys.add(KEY_PREFIX + 0);
+        List<Map<String, ByteIterator>> results = new ArrayList<Map<String, ByteIterator>>();
+        assertEquals(Status.NOT_FOUND, second.batchRead(TABLE_NAME, readKeys, fields, results));
+        assertEquals(3, results.size());
+        assertEquals(values.get(3).get("FIELD1").toString(), results.get(0).get("FIELD1").toString());
+        assertTrue(results.get(1).isEmpty());
+        assertEquals(values.get(0).get("FIELD1").toString(), results.get(2).get("FIELD1").toString());
+      } finally {
+        first.cleanup();
+        second.cleanup();
+      }
+    }
+
+    @Test
+    public void pagedScanTest() throws Exception {
+      for (int i = 0; i < 10; i++) {
+        insertRow(KEY_PREFIX + i);
+      }
+      Measurements.setProperties(new Properties());
+      Properties p = new Properties();
+      p.setProperty(JdbcDBClient.CONNECTION_URL, TEST_DB_URL);
+      p.setProperty(JdbcDBClient.DRIVER_CLASS, TEST_DB_DRIVER);
+      p.setProperty(JdbcDBClient.CONNECTION_USER, TEST_DB_USER);
+      p.setProperty(JdbcDBClient.JDBC_SCAN_PAGE_SIZE, "3");
+
+      JdbcDBClient paged = new JdbcDBClient();
+      paged.setProperties(p);
+      paged.init();
+      p.setProperty(JdbcDBClient.JDBC_SCAN_CONSUME, "true");
+      JdbcDBClient consuming = new JdbcDBClient();
+      consuming.setProperties(p);
+      consuming.init();
+      try {
+        Set<String> fieldSet = new HashSet<String>();
+        fieldSet.add("FIELD0");
+        // pages of 3, 3 and 2 rows
+        Vector<HashMap<String, ByteIterator>> resultVector = new Vector<HashMap<String, ByteIterator>>();
+        assertEquals(Status.OK, paged.scan(TABLE_NAME, KEY_PREFIX + 1, 8, fieldSet, resultVector));
+        assertEquals(8, resultVector.size());
+        for (int i = 0; i < 8; i++) {
+          assertEquals(buildDeterministicValue(KEY_PREFIX + (i + 1), "FIELD0"),
+              resultVector.get(i).get("FIELD0").toString());
+        }
+
+        // a scan past the last key ends early
+        resultVector.clear();
+        assertEquals(Status.OK, paged.scan(TABLE_NAME, KEY_PREFIX + 5, 20, fieldSet, resultVector));
+        assertEquals(5, resultVector.size());
+
+        // consumed rows are only counted, by their characters, across the pages as well
+        Measurements measurements = Measurements.getMeasurements();
+        resultVector.clear();
+        assertEquals(Status.OK, consuming.scan(TABLE_NAME, KEY_PREFIX + 1, 8, fieldSet, resultVector));
+        assertTrue(resultVector.isEmpty());
+        assertEquals(8 * FIELD_LENGTH, measurements.getCount("SCAN", "Chars"));
+
+        // every column of the rows, the key of each page's last row read only once
+        assertEquals(Status.OK, consuming.scan(TABLE_NAME, KEY_PREFIX + 1, 8, null, resultVector));
+        assertTrue(resultVector.isEmpty());
+        assertEquals(8 * FIELD_LENGTH + 8 * (KEY_PREFIX.length() + 1 + NUM_FIELDS * FIELD_LENGTH),
+            measurements.getCount("SCAN", "Chars"));
+      } finally {
+        paged.cleanup();
+        consuming.cleanup();
+      }
+    }
 }
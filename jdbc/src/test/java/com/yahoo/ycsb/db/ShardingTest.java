@@ -0,0 +1,91 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.db;
+
+import static org.junit.Assert.*;
+
+import com.yahoo.ycsb.DBException;
+import org.junit.Test;
+
+import java.util.Properties;
+
+public class ShardingTest {
+  private static final String[] URLS = {"jdbc:a", "jdbc:b", "jdbc:c", "jdbc:d"};
+  private static final String[] MORE_URLS = {"jdbc:a", "jdbc:b", "jdbc:c", "jdbc:d", "jdbc:e"};
+  private static final int KEYS = 10000;
+
+  private static Sharding sharding(String scheme, String ranges, String[] urls) throws DBException {
+    Properties p = new Properties();
+    p.setProperty(JdbcDBClient.SHARDING, scheme);
+    if (ranges != null) {
+      p.setProperty(JdbcDBClient.SHARD_RANGES, ranges);
+    }
+    return Sharding.fromProperties(p, urls);
+  }
+
+  @Test
+  public void consistentHashingMovesFewKeys() throws DBException {
+    Sharding before = sharding("consistent", null, URLS);
+    Sharding after = sharding("consistent", null, MORE_URLS);
+    int[] counts = new int[URLS.length];
+    int moved = 0;
+    for (int i = 0; i < KEYS; i++) {
+      String key = "user" + i;
+      counts[before.getShardIndex(key)]++;
+      int shard = after.getShardIndex(key);
+      if (shard != before.getShardIndex(key)) {
+        // keys only move to the new shard
+        assertEquals(URLS.length, shard);
+        moved++;
+      }
+    }
+    // the new shard takes about a fifth of the keys
+    assertTrue("moved " + moved, moved > KEYS / 10 && moved < KEYS * 3 / 10);
+    for (int count : counts) {
+      assertTrue("shard holds " + count, count > KEYS / URLS.length / 2);
+    }
+  }
+
+  @Test
+  public void moduloMovesMostKeys() throws DBException {
+    Sharding before = sharding("modulo", null, URLS);
+    Sharding after = sharding("modulo", null, MORE_URLS);
+    int moved = 0;
+    for (int i = 0; i < KEYS; i++) {
+      if (before.getShardIndex("user" + i) != after.getShardIndex("user" + i)) {
+        moved++;
+      }
+    }
+    assertTrue("moved " + moved, moved > KEYS / 2);
+  }
+
+  @Test
+  public void rangeSharding() throws DBException {
+    Sharding range = sharding("range", "user2,user5,user8", URLS);
+    assertEquals(0, range.getShardIndex("user1"));
+    assertEquals(1, range.getShardIndex("user2"));
+    assertEquals(1, range.getShardIndex("user49"));
+    assertEquals(2, range.getShardIndex("user5"));
+    assertEquals(3, range.getShardIndex("user9"));
+  }
+
+  @Test(expected = DBException.class)
+  public void rangeShardingNeedsAKeyPerShard() throws DBException {
+    sharding("range", "user2,user5", URLS);
+  }
+}
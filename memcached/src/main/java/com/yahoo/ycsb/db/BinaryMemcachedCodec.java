@@ -0,0 +1,83 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.db;
+
+import com.yahoo.ycsb.ByteArrayByteIterator;
+import com.yahoo.ycsb.ByteIterator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Stores each record as a byte[] of its fields, each the length prefixed
+ * UTF-8 name followed by the length prefixed value. The memcached client
+ * stores a byte[] as is, and decoding only slices the values out of it, so
+ * this costs far less CPU than JSON.
+ */
+public class BinaryMemcachedCodec implements MemcachedCodec {
+
+  @Override
+  public Object encode(Map<String, ByteIterator> values) throws IOException {
+    byte[][] names = new byte[values.size()][];
+    byte[][] bytes = new byte[values.size()][];
+    int length = 0;
+    int i = 0;
+    for (Map.Entry<String, ByteIterator> value : values.entrySet()) {
+      names[i] = value.getKey().getBytes(StandardCharsets.UTF_8);
+      bytes[i] = value.getValue().toArray();
+      length += 8 + names[i].length + bytes[i].length;
+      i++;
+    }
+
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+    for (i = 0; i < names.length; i++) {
+      buffer.putInt(names[i].length).put(names[i]);
+      buffer.putInt(bytes[i].length).put(bytes[i]);
+    }
+    return buffer.array();
+  }
+
+  @Override
+  public void decode(Object value, Set<String> fields,
+      Map<String, ByteIterator> result) throws IOException {
+    if (!(value instanceof byte[])) {
+      throw new IOException("Not a binary encoded record: " + value);
+    }
+    byte[] bytes = (byte[]) value;
+    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    try {
+      while (buffer.hasRemaining()) {
+        int nameLength = buffer.getInt();
+        String name = new String(bytes, buffer.position(), nameLength,
+            StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + nameLength);
+        int valueLength = buffer.getInt();
+        if (fields == null || fields.contains(name)) {
+          result.put(name, new ByteArrayByteIterator(bytes, buffer.position(),
+              valueLength));
+        }
+        buffer.position(buffer.position() + valueLength);
+      }
+    } catch (RuntimeException e) {
+      throw new IOException("Corrupt binary encoded record", e);
+    }
+  }
+}
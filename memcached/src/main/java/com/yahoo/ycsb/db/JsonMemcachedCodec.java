@@ -0,0 +1,42 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.db;
+
+import com.yahoo.ycsb.ByteIterator;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Stores each record as a JSON object of its fields, readable by other
+ * memcached clients.
+ */
+public class JsonMemcachedCodec implements MemcachedCodec {
+
+  @Override
+  public Object encode(Map<String, ByteIterator> values) throws IOException {
+    return MemcachedClient.toJson(values);
+  }
+
+  @Override
+  public void decode(Object value, Set<String> fields,
+      Map<String, ByteIterator> result) throws IOException {
+    MemcachedClient.fromJson((String) value, fields, result);
+  }
+}
@@ -17,9 +17,11 @@
 
 package com.yahoo.ycsb.db;
 
+import com.yahoo.ycsb.AsyncWindow;
 import com.yahoo.ycsb.ByteIterator;
 import com.yahoo.ycsb.DB;
 import com.yahoo.ycsb.DBException;
+import com.yahoo.ycsb.KeyIndex;
 import com.yahoo.ycsb.Status;
 import com.yahoo.ycsb.StringByteIterator;
 
@@ -35,14 +37,18 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.Callable;
 
 import net.spy.memcached.ConnectionFactoryBuilder;
 import net.spy.memcached.FailureMode;
 // We also use `net.spy.memcached.MemcachedClient`; it is not imported
 // explicitly and referred to with its full path to avoid conflicts with the
 // class of the same name in this file.
+import net.spy.memcached.internal.GetCompletionListener;
 import net.spy.memcached.internal.GetFuture;
+import net.spy.memcached.internal.OperationCompletionListener;
 import net.spy.memcached.internal.OperationFuture;
+import net.spy.memcached.ops.OperationStatus;
 
 import org.codehaus.jackson.JsonFactory;
 import org.codehaus.jackson.JsonGenerator;
@@ -56,6 +62,11 @@ import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
 /**
  * Concrete Memcached client implementation.
+ *
+ * <p>Records are stored through a {@link MemcachedCodec}, JSON by default.
+ * Batched reads and scans fetch all their records with a single multi-get.
+ * With memcached.maxInFlight set, reads and writes return as soon as they
+ * are sent, and are measured as op-ASYNC when their futures complete.
  */
 public class MemcachedClient extends DB {
 
@@ -102,6 +113,30 @@ public class MemcachedClient extends DB {
   public static final ConnectionFactoryBuilder.Protocol DEFAULT_PROTOCOL =
       ConnectionFactoryBuilder.Protocol.TEXT;
 
+  public static final String CODEC_PROPERTY = "memcached.codec";
+  public static final String DEFAULT_CODEC = "json";
+
+  public static final String MAX_IN_FLIGHT_PROPERTY = "memcached.maxInFlight";
+  public static final String DEFAULT_MAX_IN_FLIGHT = "0";
+
+  public static final String SCAN_PROPERTY = "memcached.scan";
+  public static final String DEFAULT_SCAN = "false";
+
+  /**
+   * The keys of each table written or read by this process when scans are
+   * enabled, since memcached cannot list its keys.
+   */
+  private static final KeyIndex INDEX = new KeyIndex();
+
+  private MemcachedCodec codec;
+  private boolean scans;
+
+  /**
+   * The window of this thread's operations outstanding at a time, or null
+   * for operations to wait for their results.
+   */
+  private AsyncWindow window;
+
   /**
    * The MemcachedClient implementation that will be used to communicate
    * with the memcached server.
@@ -129,11 +164,36 @@ public class MemcachedClient extends DB {
       shutdownTimeoutMillis = Integer.parseInt(
           getProperties().getProperty(SHUTDOWN_TIMEOUT_MILLIS_PROPERTY,
                                       DEFAULT_SHUTDOWN_TIMEOUT_MILLIS));
+      codec = createCodec(
+          getProperties().getProperty(CODEC_PROPERTY, DEFAULT_CODEC));
+      scans = Boolean.parseBoolean(
+          getProperties().getProperty(SCAN_PROPERTY, DEFAULT_SCAN));
+      int maxInFlight = Integer.parseInt(
+          getProperties().getProperty(MAX_IN_FLIGHT_PROPERTY,
+                                      DEFAULT_MAX_IN_FLIGHT));
+      if (maxInFlight > 0) {
+        // the outstanding operations have timed out by the end of an op timeout
+        window = new AsyncWindow(maxInFlight, Long.parseLong(
+            getProperties().getProperty(OP_TIMEOUT_PROPERTY,
+                                        DEFAULT_OP_TIMEOUT)));
+      }
     } catch (Exception e) {
       throw new DBException(e);
     }
   }
 
+  /**
+   * @param name json, binary, or the name of a {@link MemcachedCodec} class.
+   */
+  protected MemcachedCodec createCodec(String name) throws Exception {
+    if ("json".equalsIgnoreCase(name)) {
+      return new JsonMemcachedCodec();
+    } else if ("binary".equalsIgnoreCase(name)) {
+      return new BinaryMemcachedCodec();
+    }
+    return Class.forName(name).asSubclass(MemcachedCodec.class).newInstance();
+  }
+
   protected net.spy.memcached.MemcachedClient createMemcachedClient()
       throws Exception {
     ConnectionFactoryBuilder connectionFactoryBuilder =
@@ -181,37 +241,99 @@ public class MemcachedClient extends DB {
   public Status read(
       String table, String key, Set<String> fields,
       Map<String, ByteIterator> result) {
-    key = createQualifiedKey(table, key);
+    String qualifiedKey = createQualifiedKey(table, key);
     try {
-      GetFuture<Object> future = memcachedClient().asyncGet(key);
+      if (window != null) {
+        // The record is only decoded to be measured, not returned.
+        return submitRead(table, key, qualifiedKey, fields);
+      }
+      GetFuture<Object> future = memcachedClient().asyncGet(qualifiedKey);
       Object document = future.get();
       if (document != null) {
-        fromJson((String) document, fields, result);
+        codec.decode(document, fields, result);
+        index(table, key);
       }
       return Status.OK;
     } catch (Exception e) {
-      logger.error("Error encountered for key: " + key, e);
+      logger.error("Error encountered for key: " + qualifiedKey, e);
       return Status.ERROR;
     }
   }
 
+  /**
+   * Reads all the records with a single multi-get. A record that does not
+   * exist reads as no fields, as with {@link #read}.
+   */
+  @Override
+  public Status batchRead(
+      String table, List<String> keys, Set<String> fields,
+      List<Map<String, ByteIterator>> results) {
+    List<String> qualifiedKeys = new ArrayList<String>(keys.size());
+    for (String key : keys) {
+      qualifiedKeys.add(createQualifiedKey(table, key));
+    }
+    try {
+      Map<String, Object> documents =
+          memcachedClient().asyncGetBulk(qualifiedKeys).get();
+      for (int i = 0; i < keys.size(); i++) {
+        Map<String, ByteIterator> result = new HashMap<String, ByteIterator>();
+        Object document = documents.get(qualifiedKeys.get(i));
+        if (document != null) {
+          codec.decode(document, fields, result);
+          index(table, keys.get(i));
+        }
+        results.add(result);
+      }
+      return Status.OK;
+    } catch (Exception e) {
+      logger.error("Error encountered for keys: " + qualifiedKeys, e);
+      return Status.ERROR;
+    }
+  }
+
+  /**
+   * Reads the records from startkey on among the keys this process has
+   * written or read, since memcached cannot list its keys. Only supported
+   * with memcached.scan set.
+   */
   @Override
   public Status scan(
       String table, String startkey, int recordcount, Set<String> fields,
       Vector<HashMap<String, ByteIterator>> result){
-    return Status.NOT_IMPLEMENTED;
+    if (!scans) {
+      return Status.NOT_IMPLEMENTED;
+    }
+    List<String> keys = INDEX.range(table, startkey, recordcount);
+    if (keys.isEmpty()) {
+      return Status.OK;
+    }
+
+    List<Map<String, ByteIterator>> records =
+        new ArrayList<Map<String, ByteIterator>>(keys.size());
+    Status status = batchRead(table, keys, fields, records);
+    for (Map<String, ByteIterator> record : records) {
+      if (!record.isEmpty()) {
+        result.add(new HashMap<String, ByteIterator>(record));
+      }
+    }
+    return status;
   }
 
   @Override
   public Status update(
       String table, String key, Map<String, ByteIterator> values) {
-    key = createQualifiedKey(table, key);
+    final String qualifiedKey = createQualifiedKey(table, key);
     try {
-      OperationFuture<Boolean> future =
-          memcachedClient().replace(key, objectExpirationTime, toJson(values));
-      return getReturnCode(future);
+      final Object document = codec.encode(values);
+      return write("UPDATE", table, key, true, new Callable<OperationFuture<Boolean>>() {
+        @Override
+        public OperationFuture<Boolean> call() {
+          return memcachedClient().replace(
+              qualifiedKey, objectExpirationTime, document);
+        }
+      });
     } catch (Exception e) {
-      logger.error("Error updating value with key: " + key, e);
+      logger.error("Error updating value with key: " + qualifiedKey, e);
       return Status.ERROR;
     }
   }
@@ -219,11 +341,16 @@ public class MemcachedClient extends DB {
   @Override
   public Status insert(
       String table, String key, Map<String, ByteIterator> values) {
-    key = createQualifiedKey(table, key);
+    final String qualifiedKey = createQualifiedKey(table, key);
     try {
-      OperationFuture<Boolean> future =
-          memcachedClient().add(key, objectExpirationTime, toJson(values));
-      return getReturnCode(future);
+      final Object document = codec.encode(values);
+      return write("INSERT", table, key, true, new Callable<OperationFuture<Boolean>>() {
+        @Override
+        public OperationFuture<Boolean> call() {
+          return memcachedClient().add(
+              qualifiedKey, objectExpirationTime, document);
+        }
+      });
     } catch (Exception e) {
       logger.error("Error inserting value", e);
       return Status.ERROR;
@@ -232,10 +359,17 @@ public class MemcachedClient extends DB {
 
   @Override
   public Status delete(String table, String key) {
-    key = createQualifiedKey(table, key);
+    final String qualifiedKey = createQualifiedKey(table, key);
     try {
-      OperationFuture<Boolean> future = memcachedClient().delete(key);
-      return getReturnCode(future);
+      if (scans) {
+        INDEX.remove(table, key);
+      }
+      return write("DELETE", table, key, false, new Callable<OperationFuture<Boolean>>() {
+        @Override
+        public OperationFuture<Boolean> call() {
+          return memcachedClient().delete(qualifiedKey);
+        }
+      });
     } catch (Exception e) {
       logger.error("Error deleting value", e);
       return Status.ERROR;
@@ -246,18 +380,110 @@ public class MemcachedClient extends DB {
     if (!checkOperationStatus) {
       return Status.OK;
     }
-    if (future.getStatus().isSuccess()) {
+    return getReturnCode(future.getStatus());
+  }
+
+  private static Status getReturnCode(OperationStatus status) {
+    if (status.isSuccess()) {
       return Status.OK;
-    } else if (TEMPORARY_FAILURE_MSG.equals(future.getStatus().getMessage())) {
+    } else if (TEMPORARY_FAILURE_MSG.equals(status.getMessage())) {
       return new Status("TEMPORARY_FAILURE", TEMPORARY_FAILURE_MSG);
-    } else if (CANCELLED_MSG.equals(future.getStatus().getMessage())) {
+    } else if (CANCELLED_MSG.equals(status.getMessage())) {
       return new Status("CANCELLED_MSG", CANCELLED_MSG);
     }
-    return new Status("ERROR", future.getStatus().getMessage());
+    return new Status("ERROR", status.getMessage());
+  }
+
+  /**
+   * Sends a write and waits for it, or with memcached.maxInFlight set sends
+   * it once there is a place in the window and returns BATCHED_OK, measuring
+   * it as op-ASYNC when it completes.
+   *
+   * @param indexed Whether to index the key once the write succeeds, so a
+   *     failed insert or update is not scanned.
+   */
+  private Status write(final String op, final String table, final String key,
+      final boolean indexed, Callable<OperationFuture<Boolean>> send)
+      throws Exception {
+    if (window == null) {
+      Status status = getReturnCode(send.call());
+      if (indexed && status.isOk()) {
+        index(table, key);
+      }
+      return status;
+    }
+    final long start = window.acquire();
+    OperationFuture<Boolean> future;
+    try {
+      future = send.call();
+    } catch (Exception e) {
+      window.abandon();
+      throw e;
+    }
+    future.addListener(new OperationCompletionListener() {
+      @Override
+      public void onComplete(OperationFuture<?> completed) {
+        Status status = checkOperationStatus
+            ? getReturnCode(completed.getStatus()) : Status.OK;
+        if (indexed && status.isOk()) {
+          index(table, key);
+        }
+        window.complete(op, start, status);
+      }
+    });
+    return Status.BATCHED_OK;
+  }
+
+  /**
+   * Sends a read once there is a place in the window for it, and measures it
+   * as READ-ASYNC when it completes.
+   */
+  private Status submitRead(final String table, final String key,
+      String qualifiedKey, final Set<String> fields)
+      throws InterruptedException {
+    final long start = window.acquire();
+    try {
+      memcachedClient().asyncGet(qualifiedKey).addListener(
+          new GetCompletionListener() {
+            @Override
+            public void onComplete(GetFuture<?> completed) {
+              Status status;
+              try {
+                Object document = completed.get();
+                if (document != null) {
+                  codec.decode(document, fields,
+                      new HashMap<String, ByteIterator>());
+                  index(table, key);
+                  status = Status.OK;
+                } else {
+                  status = Status.NOT_FOUND;
+                }
+              } catch (Exception e) {
+                status = Status.ERROR;
+              }
+              window.complete("READ", start, status);
+            }
+          });
+    } catch (RuntimeException e) {
+      window.abandon();
+      throw e;
+    }
+    return Status.BATCHED_OK;
+  }
+
+  private void index(String table, String key) {
+    if (scans) {
+      INDEX.add(table, key);
+    }
   }
 
   @Override
   public void cleanup() throws DBException {
+    if (window != null) {
+      // Wait for this thread's outstanding operations so they are measured,
+      // up to the op timeout.
+      window.drain();
+    }
     if (client != null) {
       memcachedClient().shutdown(shutdownTimeoutMillis, MILLISECONDS);
     }
@@ -277,7 +503,7 @@ public class MemcachedClient extends DB {
          /* increment in loop body */) {
       Map.Entry<String, JsonNode> jsonField = jsonFields.next();
       String name = jsonField.getKey();
-      if (checkFields && fields.contains(name)) {
+      if (checkFields && !fields.contains(name)) {
         continue;
       }
       JsonNode jsonValue = jsonField.getValue();
@@ -0,0 +1,48 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.db;
+
+import com.yahoo.ycsb.ByteIterator;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Turns records into the values {@link MemcachedClient} stores, and back.
+ * Implementations need a public no-argument constructor to be named by
+ * the {@code memcached.codec} property, and must be safe to share between
+ * threads.
+ */
+public interface MemcachedCodec {
+
+  /**
+   * @return The value to store for a record, which the memcached client's
+   *     transcoder must be able to store, e.g. a String or a byte[].
+   */
+  Object encode(Map<String, ByteIterator> values) throws IOException;
+
+  /**
+   * Puts the fields of a stored value into result.
+   *
+   * @param value A value returned by {@link #encode(Map)}.
+   * @param fields The fields to decode, or null for all of them.
+   */
+  void decode(Object value, Set<String> fields,
+      Map<String, ByteIterator> result) throws IOException;
+}
@@ -0,0 +1,145 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.yahoo.ycsb.ByteIterator;
+import com.yahoo.ycsb.StringByteIterator;
+
+/**
+ * Encodes records with the {@link MemcachedCodec}s and decodes them back.
+ */
+public class MemcachedCodecTest {
+
+  private static Map<String, ByteIterator> record() {
+    Map<String, ByteIterator> values = new HashMap<String, ByteIterator>();
+    values.put("FIELD0", new StringByteIterator("a value"));
+    values.put("FIELD1", new StringByteIterator(""));
+    values.put("FIELD\u00e9", new StringByteIterator("a \"quoted\" value"));
+    return values;
+  }
+
+  private static Map<String, String> decode(MemcachedCodec codec,
+      Object value, String... fields) throws IOException {
+    Map<String, ByteIterator> result = new HashMap<String, ByteIterator>();
+    codec.decode(value,
+        fields.length == 0 ? null : new HashSet<String>(Arrays.asList(fields)),
+        result);
+    return StringByteIterator.getStringMap(result);
+  }
+
+  private static void assertRoundTrip(MemcachedCodec codec)
+      throws IOException {
+    Object value = codec.encode(record());
+    assertEquals(StringByteIterator.getStringMap(record()),
+        decode(codec, value));
+  }
+
+  private static void assertFiltersFields(MemcachedCodec codec)
+      throws IOException {
+    Object value = codec.encode(record());
+    Map<String, String> expected = new HashMap<String, String>();
+    expected.put("FIELD1", "");
+    expected.put("FIELD\u00e9", "a \"quoted\" value");
+    assertEquals(expected, decode(codec, value, "FIELD1", "FIELD\u00e9",
+        "MISSING"));
+    assertTrue(decode(codec, value, "MISSING").isEmpty());
+  }
+
+  @Test
+  public void testBinaryRoundTrip() throws Exception {
+    assertRoundTrip(new BinaryMemcachedCodec());
+  }
+
+  @Test
+  public void testBinaryFiltersFields() throws Exception {
+    assertFiltersFields(new BinaryMemcachedCodec());
+  }
+
+  @Test
+  public void testBinaryEmptyRecord() throws Exception {
+    MemcachedCodec codec = new BinaryMemcachedCodec();
+    Object value =
+        codec.encode(Collections.<String, ByteIterator>emptyMap());
+    assertTrue(decode(codec, value).isEmpty());
+  }
+
+  @Test
+  public void testBinaryRejectsCorruptRecord() throws Exception {
+    MemcachedCodec codec = new BinaryMemcachedCodec();
+    byte[] value = (byte[]) codec.encode(record());
+    try {
+      decode(codec, Arrays.copyOf(value, value.length - 1));
+      fail("decoded a truncated record");
+    } catch (IOException e) {
+      // expected
+    }
+    try {
+      decode(codec, "not binary");
+      fail("decoded a string");
+    } catch (IOException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testJsonRoundTrip() throws Exception {
+    assertRoundTrip(new JsonMemcachedCodec());
+  }
+
+  @Test
+  public void testJsonFiltersFields() throws Exception {
+    assertFiltersFields(new JsonMemcachedCodec());
+  }
+
+  /**
+   * fromJson returns the requested fields, not all the others.
+   */
+  @Test
+  public void testFromJsonKeepsRequestedFields() throws Exception {
+    String json = "{\"FIELD0\":\"a\",\"FIELD1\":\"b\",\"FIELD2\":null}";
+
+    Map<String, ByteIterator> result = new HashMap<String, ByteIterator>();
+    MemcachedClient.fromJson(json, Collections.singleton("FIELD1"), result);
+    assertEquals(Collections.singletonMap("FIELD1", "b"),
+        StringByteIterator.getStringMap(result));
+
+    // no fields, or an empty set of them, read them all, skipping nulls
+    Map<String, String> expected = new HashMap<String, String>();
+    expected.put("FIELD0", "a");
+    expected.put("FIELD1", "b");
+    result.clear();
+    MemcachedClient.fromJson(json, null, result);
+    assertEquals(expected, StringByteIterator.getStringMap(result));
+    result.clear();
+    MemcachedClient.fromJson(json, Collections.<String>emptySet(), result);
+    assertEquals(expected, StringByteIterator.getStringMap(result));
+  }
+}
@@ -19,6 +19,7 @@ package com.yahoo.ycsb.db;
 import static com.allanbank.mongodb.builder.QueryBuilder.where;
 
 import com.allanbank.mongodb.Durability;
+import com.allanbank.mongodb.ListenableFuture;
 import com.allanbank.mongodb.LockType;
 import com.allanbank.mongodb.MongoClient;
 import com.allanbank.mongodb.MongoClientConfiguration;
@@ -33,11 +34,14 @@ import com.allanbank.mongodb.bson.Element;
 import com.allanbank.mongodb.bson.ElementType;
 import com.allanbank.mongodb.bson.builder.BuilderFactory;
 import com.allanbank.mongodb.bson.builder.DocumentBuilder;
+import com.allanbank.mongodb.bson.builder.ArrayBuilder;
 import com.allanbank.mongodb.bson.element.BinaryElement;
+import com.allanbank.mongodb.bson.element.StringElement;
 import com.allanbank.mongodb.builder.BatchedWrite;
 import com.allanbank.mongodb.builder.BatchedWriteMode;
 import com.allanbank.mongodb.builder.Find;
 import com.allanbank.mongodb.builder.Sort;
+import com.yahoo.ycsb.AsyncWindow;
 import com.yahoo.ycsb.ByteIterator;
 import com.yahoo.ycsb.DB;
 import com.yahoo.ycsb.DBException;
@@ -45,10 +49,13 @@ import com.yahoo.ycsb.Status;
 
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -68,6 +75,14 @@ public class AsyncMongoDbClient extends DB {
   /** Used to include a field in a response. */
   protected static final int INCLUDE = 1;
 
+  /** Runs the completion of an asynchronous write on the driver's thread. */
+  private static final Executor DIRECT = new Executor() {
+    @Override
+    public void execute(final Runnable command) {
+      command.run();
+    }
+  };
+
   /** The database to use. */
   private static String databaseName;
 
@@ -101,9 +116,17 @@ public class AsyncMongoDbClient extends DB {
   /** If true then use updates with the upsert option for inserts. */
   private static boolean useUpsert;
 
+  /** The mode of batched writes, ordered or not. */
+  private static BatchedWriteMode batchedWriteMode;
+
   /** The bulk inserts pending for the thread. */
-  private final BatchedWrite.Builder batchedWrite = BatchedWrite.builder()
-      .mode(BatchedWriteMode.REORDERED);
+  private final BatchedWrite.Builder batchedWrite = BatchedWrite.builder();
+
+  /**
+   * The window of asynchronous writes of this thread, or null if writes wait
+   * for completion.
+   */
+  private AsyncWindow window = null;
 
   /** The number of writes in the batchedWrite. */
   private int batchedWriteCount = 0;
@@ -114,6 +137,10 @@ public class AsyncMongoDbClient extends DB {
    */
   @Override
   public final void cleanup() throws DBException {
+    if (window != null) {
+      // Wait for the asynchronous writes to complete, for a while.
+      window.drain();
+    }
     if (INIT_COUNT.decrementAndGet() == 0) {
       try {
         mongoClient.close();
@@ -144,6 +171,14 @@ public class AsyncMongoDbClient extends DB {
     try {
       final MongoCollection collection = database.getCollection(table);
       final Document q = BuilderFactory.start().add("_id", key).build();
+      if (window != null) {
+        return submit("DELETE", 1, new Callable<ListenableFuture<Long>>() {
+          @Override
+          public ListenableFuture<Long> call() {
+            return collection.deleteAsync(q, true, writeConcern);
+          }
+        });
+      }
       final long res = collection.delete(q, writeConcern);
       if (res == 0) {
         System.err.println("Nothing deleted for key " + key);
@@ -167,6 +202,14 @@ public class AsyncMongoDbClient extends DB {
     synchronized (AsyncMongoDbClient.class) {
       final Properties props = getProperties();
 
+      // Set the window of asynchronous writes, default 0 - wait for each
+      final int maxInFlight = Integer.parseInt(
+          props.getProperty("mongodb.async.maxinflight", "0"));
+      if (maxInFlight > 0) {
+        window = new AsyncWindow(maxInFlight, Long.parseLong(
+            props.getProperty("mongodb.async.draintimeoutms", "30000")));
+      }
+
       if (mongoClient != null) {
         database = mongoClient.getDatabase(databaseName);
 
@@ -186,6 +229,12 @@ public class AsyncMongoDbClient extends DB {
       // Set is inserts are done as upserts. Defaults to false.
       useUpsert = Boolean.parseBoolean(
           props.getProperty("mongodb.upsert", "false"));
+
+      // Set if batched writes stop at the first error. Defaults to false,
+      // which lets the server apply them in any order.
+      batchedWriteMode = Boolean.parseBoolean(
+          props.getProperty("mongodb.bulk.ordered", "false"))
+          ? BatchedWriteMode.SERIALIZE_AND_STOP : BatchedWriteMode.REORDERED;
       
       // Just use the standard connection format URL
       // http://docs.mongodb.org/manual/reference/connection-string/
@@ -263,6 +312,22 @@ public class AsyncMongoDbClient extends DB {
 
       // Do an upsert.
       if (batchSize <= 1) {
+        if (window != null) {
+          // The thread's builder is reused by the next insert, so the
+          // document is built before it is sent.
+          final Document document = toInsert.build();
+          return submit("INSERT", 0, new Callable<ListenableFuture<?>>() {
+            @Override
+            public ListenableFuture<?> call() {
+              if (useUpsert) {
+                return collection.updateAsync(query, document,
+                    /* multi= */false, /* upsert= */true, writeConcern);
+              }
+              return collection.insertAsync(writeConcern, document);
+            }
+          });
+        }
+
         long result;
         if (useUpsert) {
           result = collection.update(query, toInsert,
@@ -289,16 +354,16 @@ public class AsyncMongoDbClient extends DB {
           return Status.BATCHED_OK;
         }
 
-        long count = collection.write(batchedWrite);
+        long count = collection.write(batchedWrite.mode(batchedWriteMode));
         if (count == batchedWriteCount) {
-          batchedWrite.reset().mode(BatchedWriteMode.REORDERED);
+          batchedWrite.reset();
           batchedWriteCount = 0;
           return Status.OK;
         }
 
         System.err.println("Number of inserted documents doesn't match the "
             + "number sent, " + count + " inserted, sent " + batchedWriteCount);
-        batchedWrite.reset().mode(BatchedWriteMode.REORDERED);
+        batchedWrite.reset();
         batchedWriteCount = 0;
         return Status.ERROR;
       } catch (Exception e) {
@@ -460,6 +525,15 @@ public class AsyncMongoDbClient extends DB {
       for (final Map.Entry<String, ByteIterator> entry : values.entrySet()) {
         fieldsToSet.add(entry.getKey(), entry.getValue().toArray());
       }
+      if (window != null) {
+        return submit("UPDATE", 1, new Callable<ListenableFuture<Long>>() {
+          @Override
+          public ListenableFuture<Long> call() {
+            return collection.updateAsync(query, update, false, false,
+                writeConcern);
+          }
+        });
+      }
       final long res =
           collection.update(query, update, false, false, writeConcern);
       return writeConcern == Durability.NONE || res == 1 ? Status.OK : Status.NOT_FOUND;
@@ -469,6 +543,203 @@ public class AsyncMongoDbClient extends DB {
     }
   }
 
+  /**
+   * Read a batch of records from the database with a single query for all of
+   * their ids.
+   *
+   * @param table
+   *          The name of the table
+   * @param keys
+   *          The record keys of the records to read.
+   * @param fields
+   *          The list of fields to read, or null for all of them
+   * @param results
+   *          A List to which a HashMap of field/value pairs is appended for
+   *          each key
+   * @return Zero on success, {@link Status#NOT_FOUND} if any record is
+   *         missing, a non-zero error code on error.
+   */
+  @Override
+  public final Status batchRead(final String table, final List<String> keys,
+      final Set<String> fields, final List<Map<String, ByteIterator>> results) {
+    try {
+      final MongoCollection collection = database.getCollection(table);
+      final DocumentBuilder query = BuilderFactory.start();
+      final ArrayBuilder ids = query.push("_id").pushArray("$in");
+      for (final String key : keys) {
+        ids.add(key);
+      }
+
+      final Find.Builder find = Find.builder().query(query)
+          .batchSize(keys.size()).readPreference(readPreference);
+      if (fields != null) {
+        // The id is returned as well, to match the documents to their keys.
+        final DocumentBuilder fieldsDoc = BuilderFactory.start();
+        for (final String field : fields) {
+          fieldsDoc.add(field, INCLUDE);
+        }
+        find.projection(fieldsDoc);
+      }
+
+      final Map<String, Map<String, ByteIterator>> found =
+          new HashMap<String, Map<String, ByteIterator>>(keys.size() * 2);
+      final MongoIterator<Document> cursor = collection.find(find);
+      try {
+        while (cursor.hasNext()) {
+          final Document doc = cursor.next();
+          final Element id = doc.get("_id");
+          if (id instanceof StringElement) {
+            final Map<String, ByteIterator> docAsMap =
+                new HashMap<String, ByteIterator>();
+            fillMap(docAsMap, doc);
+            found.put(((StringElement) id).getValue(), docAsMap);
+          }
+        }
+      } finally {
+        cursor.close();
+      }
+
+      Status status = Status.OK;
+      for (final String key : keys) {
+        Map<String, ByteIterator> docAsMap = found.get(key);
+        if (docAsMap == null) {
+          docAsMap = new HashMap<String, ByteIterator>();
+          status = Status.NOT_FOUND;
+        }
+        results.add(docAsMap);
+      }
+      return status;
+    } catch (final Exception e) {
+      System.err.println(e.toString());
+      return Status.ERROR;
+    }
+  }
+
+  /**
+   * Update a batch of records in the database with a single batched write,
+   * which is ordered if <code>mongodb.bulk.ordered</code> is set.
+   *
+   * @param table
+   *          The name of the table
+   * @param keys
+   *          The record keys of the records to write.
+   * @param values
+   *          A List of field/value pairs to update, one Map per key
+   * @return Zero on success, {@link Status#NOT_FOUND} if any record is
+   *         missing, a non-zero error code on error.
+   */
+  @Override
+  public final Status batchUpdate(final String table, final List<String> keys,
+      final List<Map<String, ByteIterator>> values) {
+    final BatchedWrite.Builder write = BatchedWrite.builder()
+        .mode(batchedWriteMode);
+    for (int i = 0; i < keys.size(); i++) {
+      final DocumentBuilder update = BuilderFactory.start();
+      final DocumentBuilder fieldsToSet = update.push("$set");
+      for (final Map.Entry<String, ByteIterator> entry
+          : values.get(i).entrySet()) {
+        fieldsToSet.add(entry.getKey(), entry.getValue().toArray());
+      }
+      write.update(BuilderFactory.start().add("_id", keys.get(i)), update,
+          /* multi= */false, /* upsert= */false);
+    }
+    return write(table, "BATCH-UPDATE", write, keys.size());
+  }
+
+  /**
+   * Insert a batch of records in the database with a single batched write,
+   * regardless of <code>mongodb.batchsize</code>.
+   *
+   * @param table
+   *          The name of the table
+   * @param keys
+   *          The record keys of the records to insert.
+   * @param values
+   *          A List of field/value pairs to insert, one Map per key
+   * @return Zero on success, a non-zero error code on error.
+   */
+  @Override
+  public final Status batchInsert(final String table, final List<String> keys,
+      final List<Map<String, ByteIterator>> values) {
+    final BatchedWrite.Builder write = BatchedWrite.builder()
+        .mode(batchedWriteMode);
+    for (int i = 0; i < keys.size(); i++) {
+      final DocumentBuilder toInsert =
+          BuilderFactory.start().add("_id", keys.get(i));
+      final Document query = toInsert.build();
+      for (final Map.Entry<String, ByteIterator> entry
+          : values.get(i).entrySet()) {
+        toInsert.add(entry.getKey(), entry.getValue().toArray());
+      }
+      if (useUpsert) {
+        write.update(query, toInsert, /* multi= */false, /* upsert= */true);
+      } else {
+        write.insert(toInsert);
+      }
+    }
+    return write(table, "BATCH-INSERT", write, keys.size());
+  }
+
+  /**
+   * Sends a batched write of count documents, asynchronously if
+   * <code>mongodb.async.maxinflight</code> is set.
+   */
+  private Status write(final String table, final String op,
+      final BatchedWrite.Builder write, final int count) {
+    try {
+      final MongoCollection collection = database.getCollection(table);
+      if (window != null) {
+        return submit(op, count, new Callable<ListenableFuture<Long>>() {
+          @Override
+          public ListenableFuture<Long> call() {
+            return collection.writeAsync(write);
+          }
+        });
+      }
+      final long res = collection.write(write);
+      return writeConcern == Durability.NONE || res == count ? Status.OK
+          : Status.NOT_FOUND;
+    } catch (final Exception e) {
+      System.err.println(e.toString());
+      return Status.ERROR;
+    }
+  }
+
+  /**
+   * Sends a write once the window of asynchronous writes has room, and
+   * returns without waiting for it. On completion the write's latency and
+   * status are measured as op-ASYNC; it is NOT_FOUND if it changed fewer than
+   * expected documents.
+   */
+  private Status submit(final String op, final long expected,
+      final Callable<? extends ListenableFuture<?>> send) throws Exception {
+    final long start = window.acquire();
+    final ListenableFuture<?> future;
+    try {
+      future = send.call();
+    } catch (final Exception e) {
+      window.abandon();
+      throw e;
+    }
+    future.addListener(new Runnable() {
+      @Override
+      public void run() {
+        Status status;
+        try {
+          final Object result = future.get();
+          final long count =
+              (result instanceof Number) ? ((Number) result).longValue() : 0;
+          status = writeConcern == Durability.NONE || count >= expected
+              ? Status.OK : Status.NOT_FOUND;
+        } catch (final Exception e) {
+          status = Status.ERROR;
+        }
+        window.complete(op, start, status);
+      }
+    }, DIRECT);
+    return Status.BATCHED_OK;
+  }
+
   /**
    * Fills the map with the ByteIterators from the document.
    * 
@@ -28,13 +28,17 @@ import com.mongodb.MongoClient;
 import com.mongodb.MongoClientURI;
 import com.mongodb.ReadPreference;
 import com.mongodb.WriteConcern;
+import com.mongodb.bulk.BulkWriteResult;
 import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoCursor;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.BulkWriteOptions;
 import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.model.ReplaceOneModel;
 import com.mongodb.client.model.UpdateOneModel;
 import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
 import com.mongodb.client.result.DeleteResult;
 import com.mongodb.client.result.UpdateResult;
 import com.yahoo.ycsb.ByteArrayByteIterator;
@@ -43,9 +47,15 @@ import com.yahoo.ycsb.DB;
 import com.yahoo.ycsb.DBException;
 import com.yahoo.ycsb.Status;
 
+import org.bson.BsonBinaryReader;
+import org.bson.BsonType;
 import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.RawBsonDocumentCodec;
+import org.bson.codecs.configuration.CodecRegistries;
 import org.bson.types.Binary;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -72,8 +82,10 @@ public class MongoDbClient extends DB {
   private static final Integer INCLUDE = Integer.valueOf(1);
 
   /** The options to use for inserting many documents. */
-  private static final InsertManyOptions INSERT_UNORDERED =
-      new InsertManyOptions().ordered(false);
+  private static InsertManyOptions insertManyOptions;
+
+  /** The options to use for bulk writes. */
+  private static BulkWriteOptions bulkWriteOptions;
 
   /** The options to use for inserting a single document. */
   private static final UpdateOptions UPDATE_WITH_UPSERT = new UpdateOptions()
@@ -182,6 +194,13 @@ public class MongoDbClient extends DB {
       useUpsert = Boolean.parseBoolean(
           props.getProperty("mongodb.upsert", "false"));
 
+      // Set if bulk writes stop at the first error. Defaults to false, which
+      // lets the server apply them in any order.
+      boolean ordered = Boolean.parseBoolean(
+          props.getProperty("mongodb.bulk.ordered", "false"));
+      insertManyOptions = new InsertManyOptions().ordered(ordered);
+      bulkWriteOptions = new BulkWriteOptions().ordered(ordered);
+
       // Just use the standard connection format URL
       // http://docs.mongodb.org/manual/reference/connection-string/
       // to configure the client.
@@ -222,7 +241,10 @@ public class MongoDbClient extends DB {
         database =
             mongoClient.getDatabase(databaseName)
                 .withReadPreference(readPreference)
-                .withWriteConcern(writeConcern);
+                .withWriteConcern(writeConcern)
+                .withCodecRegistry(CodecRegistries.fromRegistries(
+                    CodecRegistries.fromCodecs(new RawBsonDocumentCodec()),
+                    MongoClient.getDefaultCodecRegistry()));
 
         System.out.println("mongo client connection created with " + url);
       } catch (Exception e1) {
@@ -272,18 +294,7 @@ public class MongoDbClient extends DB {
       } else {
         bulkInserts.add(toInsert);
         if (bulkInserts.size() == batchSize) {
-          if (useUpsert) {
-            List<UpdateOneModel<Document>> updates = 
-                new ArrayList<UpdateOneModel<Document>>(bulkInserts.size());
-            for (Document doc : bulkInserts) {
-              updates.add(new UpdateOneModel<Document>(
-                  new Document("_id", doc.get("_id")),
-                  doc, UPDATE_WITH_UPSERT));
-            }
-            collection.bulkWrite(updates);
-          } else {
-            collection.insertMany(bulkInserts, INSERT_UNORDERED);
-          }
+          insertMany(collection, bulkInserts);
           bulkInserts.clear();
         } else {
           return Status.BATCHED_OK;
@@ -317,20 +328,17 @@ public class MongoDbClient extends DB {
   public Status read(String table, String key, Set<String> fields,
       Map<String, ByteIterator> result) {
     try {
-      MongoCollection<Document> collection = database.getCollection(table);
+      MongoCollection<RawBsonDocument> collection =
+          database.getCollection(table, RawBsonDocument.class);
       Document query = new Document("_id", key);
 
-      FindIterable<Document> findIterable = collection.find(query);
+      FindIterable<RawBsonDocument> findIterable = collection.find(query);
 
       if (fields != null) {
-        Document projection = new Document();
-        for (String field : fields) {
-          projection.put(field, INCLUDE);
-        }
-        findIterable.projection(projection);
+        findIterable.projection(projection(fields));
       }
 
-      Document queryResult = findIterable.first();
+      RawBsonDocument queryResult = findIterable.first();
 
       if (queryResult != null) {
         fillMap(result, queryResult);
@@ -363,23 +371,20 @@ public class MongoDbClient extends DB {
   @Override
   public Status scan(String table, String startkey, int recordcount,
       Set<String> fields, Vector<HashMap<String, ByteIterator>> result) {
-    MongoCursor<Document> cursor = null;
+    MongoCursor<RawBsonDocument> cursor = null;
     try {
-      MongoCollection<Document> collection = database.getCollection(table);
+      MongoCollection<RawBsonDocument> collection =
+          database.getCollection(table, RawBsonDocument.class);
 
       Document scanRange = new Document("$gte", startkey);
       Document query = new Document("_id", scanRange);
       Document sort = new Document("_id", INCLUDE);
 
-      FindIterable<Document> findIterable =
+      FindIterable<RawBsonDocument> findIterable =
           collection.find(query).sort(sort).limit(recordcount);
 
       if (fields != null) {
-        Document projection = new Document();
-        for (String fieldName : fields) {
-          projection.put(fieldName, INCLUDE);
-        }
-        findIterable.projection(projection);
+        findIterable.projection(projection(fields));
       }
 
       cursor = findIterable.iterator();
@@ -395,7 +400,7 @@ public class MongoDbClient extends DB {
         HashMap<String, ByteIterator> resultMap =
             new HashMap<String, ByteIterator>();
 
-        Document obj = cursor.next();
+        RawBsonDocument obj = cursor.next();
         fillMap(resultMap, obj);
 
         result.add(resultMap);
@@ -433,13 +438,7 @@ public class MongoDbClient extends DB {
       MongoCollection<Document> collection = database.getCollection(table);
 
       Document query = new Document("_id", key);
-      Document fieldsToSet = new Document();
-      for (Map.Entry<String, ByteIterator> entry : values.entrySet()) {
-        fieldsToSet.put(entry.getKey(), entry.getValue().toArray());
-      }
-      Document update = new Document("$set", fieldsToSet);
-
-      UpdateResult result = collection.updateOne(query, update);
+      UpdateResult result = collection.updateOne(query, setDocument(values));
       if (result.wasAcknowledged() && result.getMatchedCount() == 0) {
         System.err.println("Nothing updated for key " + key);
         return Status.NOT_FOUND;
@@ -451,6 +450,228 @@ public class MongoDbClient extends DB {
     }
   }
 
+  /**
+   * Read a batch of records from the database with a single query for all of
+   * their ids.
+   *
+   * @param table
+   *          The name of the table
+   * @param keys
+   *          The record keys of the records to read.
+   * @param fields
+   *          The list of fields to read, or null for all of them
+   * @param results
+   *          A List to which a HashMap of field/value pairs is appended for
+   *          each key
+   * @return Zero on success, {@link Status#NOT_FOUND} if any record is
+   *         missing, a non-zero error code on error.
+   */
+  @Override
+  public Status batchRead(String table, List<String> keys, Set<String> fields,
+      List<Map<String, ByteIterator>> results) {
+    MongoCursor<RawBsonDocument> cursor = null;
+    try {
+      MongoCollection<RawBsonDocument> collection =
+          database.getCollection(table, RawBsonDocument.class);
+      Document query = new Document("_id", new Document("$in", keys));
+
+      FindIterable<RawBsonDocument> findIterable =
+          collection.find(query).batchSize(keys.size());
+      if (fields != null) {
+        // The id is returned as well, to match the documents to their keys.
+        findIterable.projection(projection(fields));
+      }
+
+      Map<String, Map<String, ByteIterator>> found =
+          new HashMap<String, Map<String, ByteIterator>>(keys.size() * 2);
+      cursor = findIterable.iterator();
+      while (cursor.hasNext()) {
+        Map<String, ByteIterator> resultMap =
+            new HashMap<String, ByteIterator>();
+        String id = fillMap(resultMap, cursor.next());
+        if (id != null) {
+          found.put(id, resultMap);
+        }
+      }
+
+      Status status = Status.OK;
+      for (String key : keys) {
+        Map<String, ByteIterator> resultMap = found.get(key);
+        if (resultMap == null) {
+          resultMap = new HashMap<String, ByteIterator>();
+          status = Status.NOT_FOUND;
+        }
+        results.add(resultMap);
+      }
+      return status;
+    } catch (Exception e) {
+      System.err.println(e.toString());
+      return Status.ERROR;
+    } finally {
+      if (cursor != null) {
+        cursor.close();
+      }
+    }
+  }
+
+  /**
+   * Update a batch of records in the database with a single bulk write, which
+   * is ordered if <code>mongodb.bulk.ordered</code> is set.
+   *
+   * @param table
+   *          The name of the table
+   * @param keys
+   *          The record keys of the records to write.
+   * @param values
+   *          A List of field/value pairs to update, one Map per key
+   * @return Zero on success, {@link Status#NOT_FOUND} if any record is
+   *         missing, a non-zero error code on error.
+   */
+  @Override
+  public Status batchUpdate(String table, List<String> keys,
+      List<Map<String, ByteIterator>> values) {
+    try {
+      MongoCollection<Document> collection = database.getCollection(table);
+      List<WriteModel<Document>> updates =
+          new ArrayList<WriteModel<Document>>(keys.size());
+      for (int i = 0; i < keys.size(); i++) {
+        updates.add(new UpdateOneModel<Document>(
+            new Document("_id", keys.get(i)), setDocument(values.get(i))));
+      }
+
+      BulkWriteResult result = collection.bulkWrite(updates, bulkWriteOptions);
+      if (result.wasAcknowledged() && result.getMatchedCount() < keys.size()) {
+        System.err.println("Nothing updated for some of " + keys.size()
+            + " keys");
+        return Status.NOT_FOUND;
+      }
+      return Status.OK;
+    } catch (Exception e) {
+      System.err.println(e.toString());
+      return Status.ERROR;
+    }
+  }
+
+  /**
+   * Insert a batch of records in the database with a single bulk write,
+   * regardless of <code>batchsize</code>.
+   *
+   * @param table
+   *          The name of the table
+   * @param keys
+   *          The record keys of the records to insert.
+   * @param values
+   *          A List of field/value pairs to insert, one Map per key
+   * @return Zero on success, a non-zero error code on error.
+   */
+  @Override
+  public Status batchInsert(String table, List<String> keys,
+      List<Map<String, ByteIterator>> values) {
+    try {
+      List<Document> documents = new ArrayList<Document>(keys.size());
+      for (int i = 0; i < keys.size(); i++) {
+        Document toInsert = new Document("_id", keys.get(i));
+        for (Map.Entry<String, ByteIterator> entry : values.get(i).entrySet()) {
+          toInsert.put(entry.getKey(), entry.getValue().toArray());
+        }
+        documents.add(toInsert);
+      }
+      insertMany(database.getCollection(table), documents);
+      return Status.OK;
+    } catch (Exception e) {
+      System.err.println("Exception while trying bulk insert with "
+          + keys.size());
+      e.printStackTrace();
+      return Status.ERROR;
+    }
+  }
+
+  /**
+   * Inserts the documents with a single bulk write, as upserts if
+   * <code>mongodb.upsert</code> is set.
+   */
+  private static void insertMany(MongoCollection<Document> collection,
+      List<Document> documents) {
+    if (useUpsert) {
+      List<WriteModel<Document>> updates =
+          new ArrayList<WriteModel<Document>>(documents.size());
+      for (Document doc : documents) {
+        updates.add(new ReplaceOneModel<Document>(
+            new Document("_id", doc.get("_id")), doc, UPDATE_WITH_UPSERT));
+      }
+      collection.bulkWrite(updates, bulkWriteOptions);
+    } else {
+      collection.insertMany(documents, insertManyOptions);
+    }
+  }
+
+  /**
+   * Returns an update setting each of the fields to its value.
+   */
+  private static Document setDocument(Map<String, ByteIterator> values) {
+    Document fieldsToSet = new Document();
+    for (Map.Entry<String, ByteIterator> entry : values.entrySet()) {
+      fieldsToSet.put(entry.getKey(), entry.getValue().toArray());
+    }
+    return new Document("$set", fieldsToSet);
+  }
+
+  /**
+   * Returns a projection including each of the fields.
+   */
+  private static Document projection(Set<String> fields) {
+    Document projection = new Document();
+    for (String field : fields) {
+      projection.put(field, INCLUDE);
+    }
+    return projection;
+  }
+
+  /**
+   * Fills the map with the binary values of a raw document. The values are
+   * read in place from the document's bytes, without decoding it into a
+   * {@link Document} or copying them.
+   *
+   * @param resultMap
+   *          The map to fill.
+   * @param obj
+   *          The raw document to read values from.
+   * @return The id of the document, or null if it is not a string.
+   */
+  protected static String fillMap(Map<String, ByteIterator> resultMap,
+      RawBsonDocument obj) {
+    ByteBuffer buffer = obj.getByteBuffer().asNIO();
+    byte[] bytes = buffer.array();
+    String id = null;
+    BsonBinaryReader reader = new BsonBinaryReader(buffer);
+    try {
+      reader.readStartDocument();
+      while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+        String name = reader.readName();
+        if (reader.getCurrentBsonType() == BsonType.BINARY) {
+          // A binary value is its little endian length, its subtype and then
+          // its bytes.
+          int start = buffer.arrayOffset()
+              + reader.getBsonInput().getPosition();
+          int length = (bytes[start] & 0xff) | (bytes[start + 1] & 0xff) << 8
+              | (bytes[start + 2] & 0xff) << 16 | (bytes[start + 3] & 0xff) << 24;
+          resultMap.put(name,
+              new ByteArrayByteIterator(bytes, start + 5, length));
+          reader.skipValue();
+        } else if ("_id".equals(name)
+            && reader.getCurrentBsonType() == BsonType.STRING) {
+          id = reader.readString();
+        } else {
+          reader.skipValue();
+        }
+      }
+      reader.readEndDocument();
+    } finally {
+      reader.close();
+    }
+    return id;
+  }
+
   /**
    * Fills the map with the values from the DBObject.
    * 
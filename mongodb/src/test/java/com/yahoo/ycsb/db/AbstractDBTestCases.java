@@ -35,8 +35,11 @@ import org.junit.Test;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
@@ -304,6 +307,59 @@ public abstract class AbstractDBTestCases {
     }
   }
 
+  /**
+   * Test method for {@link DB#batchInsert}, {@link DB#batchRead}, and
+   * {@link DB#batchUpdate}.
+   */
+  @Test
+  public void testBatchInsertReadUpdate() {
+    Properties props = new Properties();
+    props.setProperty("mongodb.upsert", "true");
+    DB client = getDB(props);
+
+    final String table = getClass().getSimpleName();
+    final List<String> ids = Arrays.asList("batch0", "batch1", "batch2");
+
+    List<Map<String, ByteIterator>> inserted =
+        new ArrayList<Map<String, ByteIterator>>();
+    for (int i = 0; i < ids.size(); ++i) {
+      Map<String, ByteIterator> values = new HashMap<String, ByteIterator>();
+      values.put("a", new ByteArrayByteIterator(new byte[] { (byte) i }));
+      inserted.add(values);
+    }
+    Status result = client.batchInsert(table, ids, inserted);
+    assertThat("Batch insert did not return success (0).", result,
+        is(Status.OK));
+
+    List<Map<String, ByteIterator>> updated =
+        new ArrayList<Map<String, ByteIterator>>();
+    for (int i = 0; i < ids.size(); ++i) {
+      Map<String, ByteIterator> values = new HashMap<String, ByteIterator>();
+      values.put("a", new ByteArrayByteIterator(new byte[] { (byte) (i + 10) }));
+      updated.add(values);
+    }
+    result = client.batchUpdate(table, ids, updated);
+    assertThat("Batch update did not return success (0).", result,
+        is(Status.OK));
+
+    // Read the keys out of order, along with one that is missing.
+    List<String> keys = Arrays.asList("batch2", "missing", "batch0");
+    List<Map<String, ByteIterator>> read =
+        new ArrayList<Map<String, ByteIterator>>();
+    result = client.batchRead(table, keys, Collections.singleton("a"), read);
+    assertThat("Batch read did not return not found.", result,
+        is(Status.NOT_FOUND));
+    assertThat(read.size(), is(3));
+    assertTrue(read.get(1).isEmpty());
+    for (int i : new int[] { 0, 2 }) {
+      ByteIterator iter = read.get(i).get("a");
+      assertThat("Did not read the updated field", iter, notNullValue());
+      assertTrue(iter.hasNext());
+      assertThat(iter.nextByte(), is(Byte.valueOf((byte) (12 - i))));
+      assertFalse(iter.hasNext());
+    }
+  }
+
   /**
    * Gets the test DB.
    * 
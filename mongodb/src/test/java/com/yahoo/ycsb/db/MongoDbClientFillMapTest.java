@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb.db;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.bson.BsonBinary;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonObjectId;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.BsonDocumentCodec;
+import org.bson.types.Binary;
+import org.bson.types.ObjectId;
+import org.junit.Test;
+
+import com.yahoo.ycsb.ByteIterator;
+
+/**
+ * MongoDbClientFillMapTest checks that the values of documents are read into
+ * result maps without a server.
+ */
+public class MongoDbClientFillMapTest {
+
+  private static byte[] bytes(String value) {
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * The binary values of a raw document are sliced out of its bytes, around
+   * the values of other types.
+   */
+  @Test
+  public void testRawDocumentSlices() {
+    BsonDocument document = new BsonDocument("_id", new BsonString("user1"))
+        .append("field0", new BsonBinary(bytes("first value")))
+        .append("count", new BsonInt32(7))
+        .append("field1", new BsonBinary(new byte[0]))
+        .append("name", new BsonString("not binary"))
+        .append("field2", new BsonBinary(bytes("last")));
+    RawBsonDocument raw = new RawBsonDocument(document, new BsonDocumentCodec());
+
+    Map<String, ByteIterator> result = new HashMap<String, ByteIterator>();
+    assertEquals("user1", MongoDbClient.fillMap(result, raw));
+    assertEquals(3, result.size());
+    assertEquals(11, result.get("field0").bytesLeft());
+    assertArrayEquals(bytes("first value"), result.get("field0").toArray());
+    assertArrayEquals(new byte[0], result.get("field1").toArray());
+    assertArrayEquals(bytes("last"), result.get("field2").toArray());
+  }
+
+  /**
+   * Only string ids are returned.
+   */
+  @Test
+  public void testRawDocumentWithoutStringId() {
+    BsonDocument document = new BsonDocument("_id", new BsonObjectId(new ObjectId()))
+        .append("field0", new BsonBinary(bytes("value")));
+    Map<String, ByteIterator> result = new HashMap<String, ByteIterator>();
+    assertNull(MongoDbClient.fillMap(result,
+        new RawBsonDocument(document, new BsonDocumentCodec())));
+    assertArrayEquals(bytes("value"), result.get("field0").toArray());
+  }
+
+  /**
+   * The decoded document overload keeps working for subclasses.
+   */
+  @Test
+  public void testDocument() {
+    Document document = new Document("_id", "user1")
+        .append("field0", new Binary(bytes("value")))
+        .append("count", 7);
+    Map<String, ByteIterator> result = new HashMap<String, ByteIterator>();
+    new MongoDbClient().fillMap(result, document);
+    assertEquals(1, result.size());
+    assertArrayEquals(bytes("value"), result.get("field0").toArray());
+  }
+}
@@ -19,7 +19,8 @@
  * Redis client binding for YCSB.
  *
  * All YCSB records are mapped to a Redis *hash field*.  For scanning
- * operations, all keys are saved (by an arbitrary hash) in a sorted set.
+ * operations, all keys are saved in a sorted set, either by an arbitrary hash
+ * or in lexicographic order.
  */
 
 package com.yahoo.ycsb.db;
@@ -30,10 +31,24 @@ import com.yahoo.ycsb.DBException;
 import com.yahoo.ycsb.Status;
 import com.yahoo.ycsb.StringByteIterator;
 
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import redis.clients.jedis.HostAndPort;
 import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.JedisCommands;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
 import redis.clients.jedis.Protocol;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.util.JedisClusterCRC16;
+import redis.clients.util.SafeEncoder;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Iterator;
 import java.util.List;
@@ -48,14 +63,67 @@ import java.util.Vector;
  */
 public class RedisClient extends DB {
 
-  private Jedis jedis;
+  private JedisCommands jedis;
+
+  /**
+   * The connection to a single server, or null when talking to a cluster.
+   */
+  private Jedis server;
+
+  /**
+   * The cluster, or null when talking to a single server. It is thread safe,
+   * so all client threads share one, closed by the last to clean up.
+   */
+  private JedisCluster cluster;
+
+  private static final Object INIT_LOCK = new Object();
+  private static int clusterClients = 0;
+  private static JedisCluster sharedCluster;
+
+  /**
+   * The pool of the node serving each slot of the cluster, or null for slots
+   * whose node is not known, which are read through the cluster instead.
+   * Replaced as a whole when the slots are mapped again.
+   */
+  private static volatile JedisPool[] slotPools;
+
+  private boolean pipeline;
+  private boolean multi;
+  private boolean lexIndex;
 
   public static final String HOST_PROPERTY = "redis.host";
   public static final String PORT_PROPERTY = "redis.port";
   public static final String PASSWORD_PROPERTY = "redis.password";
 
+  /**
+   * Whether to connect to a Redis Cluster, of which redis.host and redis.port
+   * name one node.
+   */
+  public static final String CLUSTER_PROPERTY = "redis.cluster";
+
+  /**
+   * Whether inserts, updates and deletes send the hash and the index update in
+   * one pipeline, and whether they do so inside MULTI/EXEC. Neither applies to
+   * a cluster, where the hash and the index live in different slots.
+   */
+  public static final String PIPELINE_PROPERTY = "redis.pipeline";
+  public static final String MULTI_PROPERTY = "redis.multi";
+
+  /**
+   * How keys are indexed for scans: "hash" scores each key by its hash code,
+   * "lex" gives every key the same score so that ZRANGEBYLEX returns them in
+   * key order (requires Redis 2.8.9 or later).
+   */
+  public static final String INDEX_PROPERTY = "redis.index";
+  public static final String INDEX_PROPERTY_DEFAULT = "hash";
+
   public static final String INDEX_KEY = "_indices";
 
+  /**
+   * The number of redirections a cluster command follows before failing.
+   */
+  private static final int CLUSTER_MAX_ATTEMPTS = 5;
+
   public void init() throws DBException {
     Properties props = getProperties();
     int port;
@@ -67,18 +135,98 @@ public class RedisClient extends DB {
       port = Protocol.DEFAULT_PORT;
     }
     String host = props.getProperty(HOST_PROPERTY);
+    String password = props.getProperty(PASSWORD_PROPERTY);
 
-    jedis = new Jedis(host, port);
-    jedis.connect();
+    multi = Boolean.parseBoolean(props.getProperty(MULTI_PROPERTY, "false"));
+    pipeline = multi || Boolean.parseBoolean(props.getProperty(PIPELINE_PROPERTY, "false"));
 
-    String password = props.getProperty(PASSWORD_PROPERTY);
-    if (password != null) {
-      jedis.auth(password);
+    String index = props.getProperty(INDEX_PROPERTY, INDEX_PROPERTY_DEFAULT);
+    if (!index.equals("hash") && !index.equals("lex")) {
+      throw new DBException(INDEX_PROPERTY + " must be hash or lex, not " + index);
+    }
+    lexIndex = index.equals("lex");
+
+    if (Boolean.parseBoolean(props.getProperty(CLUSTER_PROPERTY, "false"))) {
+      synchronized (INIT_LOCK) {
+        if (clusterClients == 0) {
+          try {
+            sharedCluster = new JedisCluster(Collections.singleton(new HostAndPort(host, port)),
+                Protocol.DEFAULT_TIMEOUT, Protocol.DEFAULT_TIMEOUT, CLUSTER_MAX_ATTEMPTS,
+                password, new GenericObjectPoolConfig());
+          } catch (JedisException e) {
+            throw new DBException(e);
+          }
+          mapSlots(sharedCluster);
+        }
+        clusterClients++;
+        cluster = sharedCluster;
+      }
+      jedis = cluster;
+    } else {
+      server = new Jedis(host, port);
+      server.connect();
+      if (password != null) {
+        server.auth(password);
+      }
+      jedis = server;
     }
   }
 
   public void cleanup() throws DBException {
-    jedis.disconnect();
+    if (cluster != null) {
+      cluster = null;
+      synchronized (INIT_LOCK) {
+        if (--clusterClients == 0) {
+          try {
+            sharedCluster.close();
+          } catch (Exception e) {
+            throw new DBException(e);
+          } finally {
+            sharedCluster = null;
+            slotPools = null;
+          }
+        }
+      }
+    } else if (server != null) {
+      server.disconnect();
+      server = null;
+    }
+  }
+
+  /**
+   * @return The number of client threads sharing the cluster.
+   */
+  static int getClusterClients() {
+    synchronized (INIT_LOCK) {
+      return clusterClients;
+    }
+  }
+
+  /**
+   * Learns which node serves each slot, so that the reads of a scan can be
+   * pipelined to each node.
+   */
+  @SuppressWarnings("unchecked")
+  private static void mapSlots(JedisCluster cluster) {
+    JedisPool[] pools = new JedisPool[JedisCluster.HASHSLOTS];
+    Map<String, JedisPool> nodes = cluster.getClusterNodes();
+    for (JedisPool pool : nodes.values()) {
+      try (Jedis node = pool.getResource()) {
+        for (Object slotInfo : node.clusterSlots()) {
+          // start slot, end slot, then the master's host and port first
+          List<Object> range = (List<Object>) slotInfo;
+          List<Object> master = (List<Object>) range.get(2);
+          JedisPool owner = nodes.get(SafeEncoder.encode((byte[]) master.get(0)) + ":" + master.get(1));
+          for (int slot = ((Long) range.get(0)).intValue(); slot <= ((Long) range.get(1)).intValue(); slot++) {
+            pools[slot] = owner;
+          }
+        }
+        slotPools = pools;
+        return;
+      } catch (JedisException e) {
+        // try the next node
+      }
+    }
   }
 
   /*
@@ -91,6 +239,14 @@ public class RedisClient extends DB {
     return key.hashCode();
   }
 
+  /**
+   * @return The score of key in the index: its hash, or 0 for a lexicographic
+   *         index, whose members must all share a score.
+   */
+  private double score(String key) {
+    return lexIndex ? 0 : hash(key);
+  }
+
   // XXX jedis.select(int index) to switch to `table`
 
   @Override
@@ -101,58 +257,190 @@ public class RedisClient extends DB {
     } else {
       String[] fieldArray =
           (String[]) fields.toArray(new String[fields.size()]);
-      List<String> values = jedis.hmget(key, fieldArray);
+      putFields(fields, jedis.hmget(key, fieldArray), result);
+    }
+    return result.isEmpty() ? Status.ERROR : Status.OK;
+  }
 
-      Iterator<String> fieldIterator = fields.iterator();
-      Iterator<String> valueIterator = values.iterator();
+  private static void putFields(Set<String> fields, List<String> values,
+      Map<String, ByteIterator> result) {
+    Iterator<String> fieldIterator = fields.iterator();
+    Iterator<String> valueIterator = values.iterator();
 
-      while (fieldIterator.hasNext() && valueIterator.hasNext()) {
-        result.put(fieldIterator.next(),
-            new StringByteIterator(valueIterator.next()));
-      }
-      assert !fieldIterator.hasNext() && !valueIterator.hasNext();
+    while (fieldIterator.hasNext() && valueIterator.hasNext()) {
+      result.put(fieldIterator.next(),
+          new StringByteIterator(valueIterator.next()));
     }
-    return result.isEmpty() ? Status.ERROR : Status.OK;
+    assert !fieldIterator.hasNext() && !valueIterator.hasNext();
   }
 
   @Override
   public Status insert(String table, String key,
       Map<String, ByteIterator> values) {
-    if (jedis.hmset(key, StringByteIterator.getStringMap(values))
-        .equals("OK")) {
-      jedis.zadd(INDEX_KEY, hash(key), key);
+    Map<String, String> hash = StringByteIterator.getStringMap(values);
+    if (pipeline && server != null) {
+      return writePipelined(key, hash);
+    }
+    if (jedis.hmset(key, hash).equals("OK")) {
+      jedis.zadd(INDEX_KEY, score(key), key);
       return Status.OK;
     }
     return Status.ERROR;
   }
 
+  /**
+   * Writes the hash of key and indexes it in one pipeline, inside MULTI/EXEC
+   * with redis.multi.
+   */
+  private Status writePipelined(String key, Map<String, String> hash) {
+    Pipeline p = server.pipelined();
+    if (multi) {
+      p.multi();
+    }
+    Response<String> written = p.hmset(key, hash);
+    p.zadd(INDEX_KEY, score(key), key);
+    if (multi) {
+      p.exec();
+    }
+    p.sync();
+    return "OK".equals(written.get()) ? Status.OK : Status.ERROR;
+  }
+
   @Override
   public Status delete(String table, String key) {
-    return jedis.del(key) == 0 && jedis.zrem(INDEX_KEY, key) == 0 ? Status.ERROR
-        : Status.OK;
+    long deleted;
+    long unindexed;
+    if (pipeline && server != null) {
+      Pipeline p = server.pipelined();
+      if (multi) {
+        p.multi();
+      }
+      Response<Long> del = p.del(key);
+      Response<Long> zrem = p.zrem(INDEX_KEY, key);
+      if (multi) {
+        p.exec();
+      }
+      p.sync();
+      deleted = del.get();
+      unindexed = zrem.get();
+    } else {
+      deleted = jedis.del(key);
+      unindexed = jedis.zrem(INDEX_KEY, key);
+    }
+    return deleted == 0 && unindexed == 0 ? Status.ERROR : Status.OK;
   }
 
+  /**
+   * With redis.pipeline, also indexes the key in the same round trip, as an
+   * update of a missing key creates its hash like an insert does.
+   */
   @Override
   public Status update(String table, String key,
       Map<String, ByteIterator> values) {
-    return jedis.hmset(key, StringByteIterator.getStringMap(values))
-        .equals("OK") ? Status.OK : Status.ERROR;
+    Map<String, String> hash = StringByteIterator.getStringMap(values);
+    if (pipeline && server != null) {
+      return writePipelined(key, hash);
+    }
+    return jedis.hmset(key, hash).equals("OK") ? Status.OK : Status.ERROR;
   }
 
+  /**
+   * Finds the keys in the index, then reads the records in one pipeline, or
+   * in a cluster, one pipeline per node.
+   */
   @Override
   public Status scan(String table, String startkey, int recordcount,
       Set<String> fields, Vector<HashMap<String, ByteIterator>> result) {
-    Set<String> keys = jedis.zrangeByScore(INDEX_KEY, hash(startkey),
-        Double.POSITIVE_INFINITY, 0, recordcount);
+    Set<String> keys;
+    if (lexIndex) {
+      keys = jedis.zrangeByLex(INDEX_KEY, "[" + startkey, "+", 0, recordcount);
+    } else {
+      keys = jedis.zrangeByScore(INDEX_KEY, hash(startkey),
+          Double.POSITIVE_INFINITY, 0, recordcount);
+    }
+    List<String> keyList = new ArrayList<String>(keys);
+    List<HashMap<String, ByteIterator>> records = new ArrayList<HashMap<String, ByteIterator>>(keyList.size());
+    for (int i = 0; i < keyList.size(); i++) {
+      records.add(new HashMap<String, ByteIterator>());
+    }
 
-    HashMap<String, ByteIterator> values;
-    for (String key : keys) {
-      values = new HashMap<String, ByteIterator>();
-      read(table, key, fields, values);
-      result.add(values);
+    if (server != null) {
+      readPipelined(server, keyList, fields, records);
+    } else {
+      // group the keys by the node that serves them, in scan order
+      Map<JedisPool, List<Integer>> byNode = new LinkedHashMap<JedisPool, List<Integer>>();
+      JedisPool[] pools = slotPools;
+      for (int i = 0; i < keyList.size(); i++) {
+        JedisPool pool = pools[JedisClusterCRC16.getSlot(keyList.get(i))];
+        if (pool == null) {
+          read(table, keyList.get(i), fields, records.get(i));
+          continue;
+        }
+        List<Integer> positions = byNode.get(pool);
+        if (positions == null) {
+          positions = new ArrayList<Integer>();
+          byNode.put(pool, positions);
+        }
+        positions.add(i);
+      }
+      for (Map.Entry<JedisPool, List<Integer>> entry : byNode.entrySet()) {
+        List<String> nodeKeys = new ArrayList<String>(entry.getValue().size());
+        List<HashMap<String, ByteIterator>> nodeRecords =
+            new ArrayList<HashMap<String, ByteIterator>>(entry.getValue().size());
+        for (int i : entry.getValue()) {
+          nodeKeys.add(keyList.get(i));
+          nodeRecords.add(records.get(i));
+        }
+        try (Jedis node = entry.getKey().getResource()) {
+          readPipelined(node, nodeKeys, fields, nodeRecords);
+        }
+      }
     }
 
+    result.addAll(records);
     return Status.OK;
   }
 
+  /**
+   * Reads the records of keys from a server in one pipeline. A record that
+   * moved to another node of a cluster is read through the cluster, and the
+   * slots are mapped again.
+   */
+  private void readPipelined(Jedis node, List<String> keys, Set<String> fields,
+      List<HashMap<String, ByteIterator>> records) {
+    String[] fieldArray = fields == null ? null : fields.toArray(new String[fields.size()]);
+    Pipeline p = node.pipelined();
+    List<Response<?>> responses = new ArrayList<Response<?>>(keys.size());
+    for (String key : keys) {
+      responses.add(fields == null ? p.hgetAll(key) : p.hmget(key, fieldArray));
+    }
+    p.sync();
+
+    boolean moved = false;
+    for (int i = 0; i < keys.size(); i++) {
+      try {
+        putResponse(fields, responses.get(i), records.get(i));
+      } catch (JedisDataException e) {
+        if (cluster == null) {
+          throw e;
+        }
+        moved = true;
+        read(null, keys.get(i), fields, records.get(i));
+      }
+    }
+    if (moved) {
+      mapSlots(cluster);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static void putResponse(Set<String> fields, Response<?> response,
+      Map<String, ByteIterator> result) {
+    if (fields == null) {
+      StringByteIterator.putAllAsByteIterators(result, (Map<String, String>) response.get());
+    } else {
+      putFields(fields, (List<String>) response.get(), result);
+    }
+  }
+
 }
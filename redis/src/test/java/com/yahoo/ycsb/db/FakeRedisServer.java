@@ -0,0 +1,394 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.db;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A stand-in for Redis that speaks enough of its protocol for {@link RedisClient}: hashes, sorted sets with their
+ * score and lex ranges, MULTI/EXEC and the CLUSTER SLOTS of a cluster of one node serving every slot. Each
+ * connection is served by a thread of its own, and the data is guarded by the server's monitor.
+ */
+final class FakeRedisServer implements AutoCloseable {
+
+  private final ServerSocket socket;
+  private final Map<String, Map<String, String>> hashes = new HashMap<>();
+  private final Map<String, Map<String, Double>> scores = new HashMap<>();
+  private final Map<String, TreeSet<String>> sets = new HashMap<>();
+  private final AtomicInteger connections = new AtomicInteger();
+  private final List<String> commands = Collections.synchronizedList(new ArrayList<String>());
+
+  FakeRedisServer() throws IOException {
+    socket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+    Thread acceptor = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        while (!socket.isClosed()) {
+          try {
+            final Socket connection = socket.accept();
+            connections.incrementAndGet();
+            Thread handler = new Thread(new Runnable() {
+              @Override
+              public void run() {
+                serve(connection);
+              }
+            }, "FakeRedisServer-connection");
+            handler.setDaemon(true);
+            handler.start();
+          } catch (IOException e) {
+            return;
+          }
+        }
+      }
+    }, "FakeRedisServer");
+    acceptor.setDaemon(true);
+    acceptor.start();
+  }
+
+  int getPort() {
+    return socket.getLocalPort();
+  }
+
+  /**
+   * @return The number of connections accepted so far.
+   */
+  int getConnections() {
+    return connections.get();
+  }
+
+  /**
+   * @return The name of each command received so far, in order.
+   */
+  List<String> getCommands() {
+    synchronized (commands) {
+      return new ArrayList<>(commands);
+    }
+  }
+
+  synchronized Map<String, String> getHash(String key) {
+    Map<String, String> hash = hashes.get(key);
+    return hash == null ? null : new HashMap<>(hash);
+  }
+
+  synchronized boolean isIndexed(String key) {
+    TreeSet<String> set = sets.get(RedisClient.INDEX_KEY);
+    return set != null && set.contains(key);
+  }
+
+  @Override
+  public void close() throws IOException {
+    socket.close();
+  }
+
+  private void serve(Socket connection) {
+    try (Socket s = connection) {
+      InputStream in = new BufferedInputStream(s.getInputStream());
+      OutputStream out = new BufferedOutputStream(s.getOutputStream());
+      List<List<String>> queued = null;
+      while (true) {
+        List<String> command = readCommand(in);
+        String name = command.get(0).toUpperCase();
+        commands.add(name);
+        if (name.equals("MULTI")) {
+          queued = new ArrayList<>();
+          writeReply(out, "+OK");
+        } else if (name.equals("EXEC")) {
+          List<Object> replies = new ArrayList<>();
+          for (List<String> q : queued) {
+            replies.add(execute(q));
+          }
+          queued = null;
+          writeReply(out, replies);
+        } else if (queued != null) {
+          queued.add(command);
+          writeReply(out, "+QUEUED");
+        } else if (name.equals("QUIT")) {
+          writeReply(out, "+OK");
+          out.flush();
+          return;
+        } else {
+          writeReply(out, execute(command));
+        }
+        if (in.available() == 0) {
+          out.flush();
+        }
+      }
+    } catch (IOException e) {
+      // the connection was closed
+    }
+  }
+
+  /**
+   * @return The reply to a command: a String starting with + or - for a status or an error, a Long, a byte array or
+   * null for a bulk string, or a List of replies.
+   */
+  private synchronized Object execute(List<String> c) {
+    String name = c.get(0).toUpperCase();
+    switch (name) {
+    case "PING":
+      return "+PONG";
+    case "AUTH":
+    case "SELECT":
+      return "+OK";
+    case "HMSET": {
+      Map<String, String> hash = hashes.get(c.get(1));
+      if (hash == null) {
+        hash = new LinkedHashMap<>();
+        hashes.put(c.get(1), hash);
+      }
+      for (int i = 2; i + 1 < c.size(); i += 2) {
+        hash.put(c.get(i), c.get(i + 1));
+      }
+      return "+OK";
+    }
+    case "HGETALL": {
+      List<Object> reply = new ArrayList<>();
+      Map<String, String> hash = hashes.get(c.get(1));
+      if (hash != null) {
+        for (Map.Entry<String, String> entry : hash.entrySet()) {
+          reply.add(bytes(entry.getKey()));
+          reply.add(bytes(entry.getValue()));
+        }
+      }
+      return reply;
+    }
+    case "HMGET": {
+      List<Object> reply = new ArrayList<>();
+      Map<String, String> hash = hashes.get(c.get(1));
+      for (int i = 2; i < c.size(); i++) {
+        reply.add(hash == null ? null : bytes(hash.get(c.get(i))));
+      }
+      return reply;
+    }
+    case "DEL": {
+      long deleted = 0;
+      for (int i = 1; i < c.size(); i++) {
+        boolean hash = hashes.remove(c.get(i)) != null;
+        boolean set = sets.remove(c.get(i)) != null;
+        scores.remove(c.get(i));
+        deleted += hash || set ? 1 : 0;
+      }
+      return deleted;
+    }
+    case "ZADD": {
+      long added = 0;
+      for (int i = 2; i + 1 < c.size(); i += 2) {
+        added += zadd(c.get(1), parseScore(c.get(i)), c.get(i + 1)) ? 1 : 0;
+      }
+      return added;
+    }
+    case "ZREM": {
+      long removed = 0;
+      TreeSet<String> set = set(c.get(1));
+      Map<String, Double> memberScores = scores.get(c.get(1));
+      for (int i = 2; i < c.size(); i++) {
+        if (memberScores.containsKey(c.get(i))) {
+          set.remove(c.get(i));
+          memberScores.remove(c.get(i));
+          removed++;
+        }
+      }
+      return removed;
+    }
+    case "ZRANGEBYSCORE": {
+      TreeSet<String> set = set(c.get(1));
+      Map<String, Double> memberScores = scores.get(c.get(1));
+      List<String> members = new ArrayList<>();
+      for (String member : set) {
+        double value = memberScores.get(member);
+        if (value >= parseScore(c.get(2)) && value <= parseScore(c.get(3))) {
+          members.add(member);
+        }
+      }
+      return limit(members, c, 4);
+    }
+    case "ZRANGEBYLEX": {
+      List<String> members = new ArrayList<>();
+      for (String member : set(c.get(1))) {
+        if (inLexRange(member, c.get(2), true) && inLexRange(member, c.get(3), false)) {
+          members.add(member);
+        }
+      }
+      return limit(members, c, 4);
+    }
+    case "CLUSTER":
+      if (c.get(1).equalsIgnoreCase("SLOTS")) {
+        List<Object> node = Arrays.<Object>asList(bytes("127.0.0.1"), (long) getPort(), bytes("fake"));
+        return Collections.<Object>singletonList(Arrays.<Object>asList(0L, 16383L, node));
+      }
+      return "-ERR unknown subcommand " + c.get(1);
+    default:
+      return "-ERR unknown command " + name;
+    }
+  }
+
+  private boolean zadd(String key, double score, String member) {
+    TreeSet<String> set = set(key);
+    Map<String, Double> memberScores = scores.get(key);
+    boolean added = !memberScores.containsKey(member);
+    if (!added) {
+      set.remove(member);
+    }
+    memberScores.put(member, score);
+    set.add(member);
+    return added;
+  }
+
+  /**
+   * @return The members of a sorted set by score, then member, creating it if needed.
+   */
+  private TreeSet<String> set(final String key) {
+    TreeSet<String> set = sets.get(key);
+    if (set == null) {
+      final Map<String, Double> score = new HashMap<>();
+      scores.put(key, score);
+      set = new TreeSet<>(new Comparator<String>() {
+        @Override
+        public int compare(String a, String b) {
+          int c = Double.compare(score.get(a), score.get(b));
+          return c != 0 ? c : a.compareTo(b);
+        }
+      });
+      sets.put(key, set);
+    }
+    return set;
+  }
+
+  private static double parseScore(String score) {
+    switch (score.toLowerCase()) {
+    case "+inf":
+    case "inf":
+      return Double.POSITIVE_INFINITY;
+    case "-inf":
+      return Double.NEGATIVE_INFINITY;
+    default:
+      return Double.parseDouble(score);
+    }
+  }
+
+  private static boolean inLexRange(String member, String bound, boolean min) {
+    if (bound.equals("-")) {
+      return min;
+    }
+    if (bound.equals("+")) {
+      return !min;
+    }
+    int c = member.compareTo(bound.substring(1));
+    boolean inclusive = bound.charAt(0) == '[';
+    return min ? c > 0 || inclusive && c == 0 : c < 0 || inclusive && c == 0;
+  }
+
+  /**
+   * Applies a LIMIT offset count at position i of the command, if there is one.
+   */
+  private static List<Object> limit(List<String> members, List<String> c, int i) {
+    int offset = 0;
+    int count = members.size();
+    if (c.size() > i + 2 && c.get(i).equalsIgnoreCase("LIMIT")) {
+      offset = Integer.parseInt(c.get(i + 1));
+      count = Integer.parseInt(c.get(i + 2));
+    }
+    List<Object> reply = new ArrayList<>();
+    for (int j = offset; j < members.size() && (count < 0 || j < offset + count); j++) {
+      reply.add(bytes(members.get(j)));
+    }
+    return reply;
+  }
+
+  private static byte[] bytes(String s) {
+    return s == null ? null : s.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static List<String> readCommand(InputStream in) throws IOException {
+    String header = readLine(in);
+    if (header.charAt(0) != '*') {
+      return Arrays.asList(header.trim().split("\\s+"));
+    }
+    int count = Integer.parseInt(header.substring(1));
+    List<String> command = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      int length = Integer.parseInt(readLine(in).substring(1));
+      byte[] arg = new byte[length];
+      for (int read = 0; read < length;) {
+        int n = in.read(arg, read, length - read);
+        if (n < 0) {
+          throw new EOFException();
+        }
+        read += n;
+      }
+      readLine(in);
+      command.add(new String(arg, StandardCharsets.UTF_8));
+    }
+    return command;
+  }
+
+  private static String readLine(InputStream in) throws IOException {
+    ByteArrayOutputStream line = new ByteArrayOutputStream();
+    int b;
+    while ((b = in.read()) != '\n') {
+      if (b < 0) {
+        throw new EOFException();
+      }
+      if (b != '\r') {
+        line.write(b);
+      }
+    }
+    return new String(line.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  private static void writeReply(OutputStream out, Object reply) throws IOException {
+    if (reply == null) {
+      out.write("$-1\r\n".getBytes(StandardCharsets.UTF_8));
+    } else if (reply instanceof String) {
+      out.write((reply + "\r\n").getBytes(StandardCharsets.UTF_8));
+    } else if (reply instanceof Long) {
+      out.write((":" + reply + "\r\n").getBytes(StandardCharsets.UTF_8));
+    } else if (reply instanceof byte[]) {
+      byte[] bulk = (byte[]) reply;
+      out.write(("$" + bulk.length + "\r\n").getBytes(StandardCharsets.UTF_8));
+      out.write(bulk);
+      out.write("\r\n".getBytes(StandardCharsets.UTF_8));
+    } else {
+      List<?> list = (List<?>) reply;
+      out.write(("*" + list.size() + "\r\n").getBytes(StandardCharsets.UTF_8));
+      for (Object element : list) {
+        writeReply(out, element);
+      }
+    }
+  }
+}
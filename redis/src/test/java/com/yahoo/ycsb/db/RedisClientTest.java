@@ -0,0 +1,169 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Vector;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.yahoo.ycsb.ByteIterator;
+import com.yahoo.ycsb.DB;
+import com.yahoo.ycsb.DBException;
+import com.yahoo.ycsb.Status;
+import com.yahoo.ycsb.StringByteIterator;
+
+/**
+ * Runs {@link RedisClient} against an in-process stand-in for Redis.
+ */
+public class RedisClientTest {
+
+  private static final String TABLE = "usertable";
+
+  private FakeRedisServer server;
+  private List<DB> clients;
+
+  @Before
+  public void setUp() throws Exception {
+    this.server = new FakeRedisServer();
+    this.clients = new ArrayList<>();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    for (DB client : this.clients) {
+      client.cleanup();
+    }
+    this.server.close();
+  }
+
+  private DB newClient(String... properties) throws DBException {
+    Properties props = new Properties();
+    props.setProperty(RedisClient.HOST_PROPERTY, "127.0.0.1");
+    props.setProperty(RedisClient.PORT_PROPERTY, Integer.toString(this.server.getPort()));
+    for (int i = 0; i + 1 < properties.length; i += 2) {
+      props.setProperty(properties[i], properties[i + 1]);
+    }
+    DB client = new RedisClient();
+    client.setProperties(props);
+    client.init();
+    this.clients.add(client);
+    return client;
+  }
+
+  private static Map<String, ByteIterator> record(String value) {
+    Map<String, ByteIterator> values = new HashMap<>();
+    values.put("FIELD0", new StringByteIterator(value));
+    values.put("FIELD1", new StringByteIterator(value + "!"));
+    return values;
+  }
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    DB client = newClient();
+    assertEquals(Status.OK, client.insert(TABLE, "user1", record("a")));
+    assertTrue(this.server.isIndexed("user1"));
+
+    Map<String, ByteIterator> result = new HashMap<>();
+    assertEquals(Status.OK, client.read(TABLE, "user1", null, result));
+    assertEquals("a", result.get("FIELD0").toString());
+    assertEquals("a!", result.get("FIELD1").toString());
+
+    result.clear();
+    assertEquals(Status.OK, client.read(TABLE, "user1", Collections.singleton("FIELD1"), result));
+    assertEquals(Collections.singleton("FIELD1"), result.keySet());
+
+    assertEquals(Status.OK, client.update(TABLE, "user1",
+        Collections.<String, ByteIterator>singletonMap("FIELD0", new StringByteIterator("b"))));
+    assertEquals("b", this.server.getHash("user1").get("FIELD0"));
+    assertEquals("a!", this.server.getHash("user1").get("FIELD1"));
+
+    assertEquals(Status.OK, client.delete(TABLE, "user1"));
+    assertNull(this.server.getHash("user1"));
+    assertFalse(this.server.isIndexed("user1"));
+    assertEquals(Status.ERROR, client.read(TABLE, "user1", null, new HashMap<String, ByteIterator>()));
+  }
+
+  @Test
+  public void testPipelinedUpdateIndexesTheKey() throws Exception {
+    DB client = newClient(RedisClient.MULTI_PROPERTY, "true");
+    assertEquals(Status.OK, client.update(TABLE, "user1", record("a")));
+    assertEquals("a", this.server.getHash("user1").get("FIELD0"));
+    // an update of a missing key creates it, so it is indexed like an insert, in the same transaction
+    assertTrue(this.server.isIndexed("user1"));
+    List<String> commands = this.server.getCommands();
+    assertEquals(Arrays.asList("MULTI", "HMSET", "ZADD", "EXEC"), commands.subList(commands.size() - 4,
+        commands.size()));
+
+    assertEquals(Status.OK, client.delete(TABLE, "user1"));
+    assertFalse(this.server.isIndexed("user1"));
+  }
+
+  @Test
+  public void testLexScan() throws Exception {
+    DB client = newClient(RedisClient.INDEX_PROPERTY, "lex");
+    for (int i : new int[]{3, 0, 4, 1, 2}) {
+      assertEquals(Status.OK, client.insert(TABLE, "user" + i, record(Integer.toString(i))));
+    }
+
+    Vector<HashMap<String, ByteIterator>> result = new Vector<>();
+    assertEquals(Status.OK, client.scan(TABLE, "user1", 3, Collections.singleton("FIELD0"), result));
+    assertEquals(3, result.size());
+    for (int i = 0; i < 3; i++) {
+      assertEquals(Integer.toString(i + 1), result.get(i).get("FIELD0").toString());
+    }
+  }
+
+  @Test
+  public void testThreadsShareTheCluster() throws Exception {
+    DB first = newClient(RedisClient.CLUSTER_PROPERTY, "true", RedisClient.INDEX_PROPERTY, "lex");
+    DB second = newClient(RedisClient.CLUSTER_PROPERTY, "true", RedisClient.INDEX_PROPERTY, "lex");
+    assertEquals(2, RedisClient.getClusterClients());
+
+    assertEquals(Status.OK, first.insert(TABLE, "user1", record("a")));
+    assertEquals(Status.OK, second.insert(TABLE, "user2", record("b")));
+
+    this.clients.remove(first);
+    first.cleanup();
+    assertEquals(1, RedisClient.getClusterClients());
+
+    // the cluster stays open for the threads still using it, and scans pipeline to the node serving the keys
+    Vector<HashMap<String, ByteIterator>> result = new Vector<>();
+    assertEquals(Status.OK, second.scan(TABLE, "user1", 2, null, result));
+    assertEquals(2, result.size());
+    assertEquals("a", result.get(0).get("FIELD0").toString());
+    assertEquals("b", result.get(1).get("FIELD0").toString());
+
+    this.clients.remove(second);
+    second.cleanup();
+    assertEquals(0, RedisClient.getClusterClients());
+  }
+}